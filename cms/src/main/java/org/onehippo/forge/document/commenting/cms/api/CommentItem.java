@@ -65,6 +65,16 @@ public class CommentItem implements Serializable, Cloneable {
      */
     private Map<String, Object> attributes = new LinkedHashMap<>();
 
+    /**
+     * Whether or not this comment data item is accepted but not persisted yet, e.g, in asynchronous persistence mode.
+     */
+    private boolean pending;
+
+    /**
+     * Loader of the extra attributes map, invoked on the first access to the attributes. Null if already loaded.
+     */
+    private SerializableCallable<Map<String, Object>> attributesLoader;
+
     public CommentItem() {
     }
 
@@ -116,22 +126,91 @@ public class CommentItem implements Serializable, Cloneable {
         this.content = content;
     }
 
+    public boolean isPending() {
+        return pending;
+    }
+
+    public void setPending(boolean pending) {
+        this.pending = pending;
+    }
+
     public boolean hasAttribute(String name) {
-        return attributes.containsKey(name);
+        return loadAttributes().containsKey(name);
     }
 
     public Object getAttribute(String name) {
-        return attributes.get(name);
+        return loadAttributes().get(name);
     }
 
     public void setAttribute(String name, Object value) {
-        attributes.put(name, value);
+        loadAttributes().put(name, value);
     }
 
     public Set<String> getAttributeNames() {
-        return Collections.unmodifiableSet(attributes.keySet());
+        return Collections.unmodifiableSet(loadAttributes().keySet());
+    }
+
+    /**
+     * Sets the loader of the extra attributes map, to load the attributes lazily on the first access to them
+     * instead of the current attributes.
+     * <P>
+     * A lazily loaded item is valid only within the request that read it, as the loader may read the attributes
+     * with the session of that request. Call {@link #ensureAttributesLoaded()} before keeping the item longer,
+     * e.g, in a cache or in a queue processed by another thread.
+     * </P>
+     * @param attributesLoader loader of the extra attributes map
+     */
+    public void setAttributesLoader(SerializableCallable<Map<String, Object>> attributesLoader) {
+        this.attributesLoader = attributesLoader;
+    }
+
+    /**
+     * Returns true if the extra attributes map is not lazily loaded or already loaded.
+     * @return true if the extra attributes map is not lazily loaded or already loaded
+     */
+    public boolean isAttributesLoaded() {
+        return attributesLoader == null;
+    }
+
+    /**
+     * Loads the extra attributes map now if lazily loaded and not loaded yet, so that this item and its clones
+     * don't depend on the loader any more.
+     * @throws IllegalStateException if the attributes cannot be loaded
+     */
+    public void ensureAttributesLoaded() {
+        loadAttributes();
     }
 
+    private Map<String, Object> loadAttributes() {
+        if (attributesLoader != null) {
+            final SerializableCallable<Map<String, Object>> loader = attributesLoader;
+            final Map<String, Object> loaded;
+
+            try {
+                loaded = loader.call();
+            } catch (Exception e) {
+                throw new IllegalStateException("Failed to load the attributes of comment item: " + id, e);
+            }
+
+            attributes = new LinkedHashMap<>();
+
+            if (loaded != null) {
+                attributes.putAll(loaded);
+            }
+
+            attributesLoader = null;
+        }
+
+        return attributes;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * The extra attributes are compared as loaded, so the lazily loaded attributes are loaded on comparison,
+     * unless both items have the same attributes loader not invoked yet, e.g, when one is a clone of the other.
+     * </P>
+     */
     @Override
     public boolean equals(Object o) {
         if (o == null) {
@@ -168,17 +247,28 @@ public class CommentItem implements Serializable, Cloneable {
             return false;
         }
 
-        if (!Objects.equals(this.attributes, that.attributes)) {
+        if (this.pending != that.pending) {
             return false;
         }
 
+        if (this.attributesLoader == null || this.attributesLoader != that.attributesLoader) {
+            return Objects.equals(this.loadAttributes(), that.loadAttributes());
+        }
+
         return true;
     }
 
+    /**
+     * {@inheritDoc}
+     * <P>
+     * The extra attributes are left out not to load them lazily, e.g, when put in a hash set,
+     * which is consistent with {@link #equals(Object)} as equal items have equal built-in properties.
+     * </P>
+     */
     @Override
     public int hashCode() {
         HashCodeBuilder builder = new HashCodeBuilder().append(this.id).append(this.subjectId).append(this.author)
-                .append(this.created).append(this.lastModified).append(this.content).append(attributes);
+                .append(this.created).append(this.lastModified).append(this.content).append(pending);
         return builder.toHashCode();
     }
 
@@ -186,7 +276,8 @@ public class CommentItem implements Serializable, Cloneable {
     public String toString() {
         ToStringBuilder builder = new ToStringBuilder(this).append("id", this.id).append("subjectId", this.subjectId)
                 .append("author", this.author).append("created", this.created).append("lastModified", this.lastModified)
-                .append("content", this.content).append("attributes", attributes);
+                .append("content", this.content)
+                .append("attributes", (attributesLoader == null) ? attributes : "(not loaded)").append("pending", pending);
         return builder.toString();
     }
 
@@ -212,6 +303,10 @@ public class CommentItem implements Serializable, Cloneable {
             cloned.attributes = new LinkedHashMap<>(this.attributes);
         }
 
+        cloned.attributesLoader = this.attributesLoader;
+
+        cloned.pending = this.pending;
+
         return cloned;
     }
 }
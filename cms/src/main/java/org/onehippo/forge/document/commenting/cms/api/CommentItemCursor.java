@@ -0,0 +1,122 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.api;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Calendar;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Position of a comment data item in the latest-first ordering, i.e, creation date time descending
+ * and then identifier descending, used to build the opaque cursor of a {@link CommentItemPage}.
+ */
+public class CommentItemCursor implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creation date time of the comment data item, in milliseconds.
+     */
+    private final long created;
+
+    /**
+     * Identifier of the comment data item.
+     */
+    private final String id;
+
+    public CommentItemCursor(final long created, final String id) {
+        this.created = created;
+        this.id = id;
+    }
+
+    /**
+     * Creates a cursor positioned at {@code commentItem}.
+     * @param commentItem comment data item object
+     * @return a cursor positioned at {@code commentItem}
+     */
+    public static CommentItemCursor of(final CommentItem commentItem) {
+        final Calendar itemCreated = commentItem.getCreated();
+        return new CommentItemCursor((itemCreated != null) ? itemCreated.getTimeInMillis() : 0L,
+                StringUtils.defaultString(commentItem.getId()));
+    }
+
+    /**
+     * Decodes the opaque cursor string, encoded by {@link #encode()}.
+     * @param cursor opaque cursor string
+     * @return decoded cursor
+     * @throws IllegalArgumentException if {@code cursor} is not a valid cursor string
+     */
+    public static CommentItemCursor decode(final String cursor) {
+        final String decoded;
+
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+
+        final int offset = decoded.indexOf(':');
+
+        if (offset <= 0) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+
+        try {
+            return new CommentItemCursor(Long.parseLong(decoded.substring(0, offset)), decoded.substring(offset + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Returns true if the comment data item comes after this cursor position in the latest-first ordering.
+     * @param itemCreated creation date time of the comment data item, in milliseconds
+     * @param itemId identifier of the comment data item
+     * @return true if the comment data item comes after this cursor position in the latest-first ordering
+     */
+    public boolean isFollowedBy(final long itemCreated, final String itemId) {
+        if (itemCreated != created) {
+            return itemCreated < created;
+        }
+
+        return StringUtils.defaultString(itemId).compareTo(id) < 0;
+    }
+
+    /**
+     * Encodes this cursor into an opaque, URL-safe string.
+     * @return encoded opaque cursor string
+     */
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((created + ":" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public String toString() {
+        return encode();
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.api;
+
+import java.io.Serializable;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * Changes of the comment data of a subject since a point in time: the created or updated items,
+ * and the identifiers of the deleted items.
+ */
+public class CommentItemDelta implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Comment data items created or updated since the point in time, ordered by last modified date time ascending.
+     */
+    private final List<CommentItem> modifiedCommentItems;
+
+    /**
+     * Identifiers of the comment data items deleted since the point in time.
+     */
+    private final List<String> deletedCommentIds;
+
+    /**
+     * The point in time when the changes were read, to be used as the point in time for the next changes.
+     */
+    private final Calendar readTime;
+
+    public CommentItemDelta(final List<CommentItem> modifiedCommentItems, final List<String> deletedCommentIds,
+            final Calendar readTime) {
+        this.modifiedCommentItems = (modifiedCommentItems != null) ? modifiedCommentItems : Collections.emptyList();
+        this.deletedCommentIds = (deletedCommentIds != null) ? deletedCommentIds : Collections.emptyList();
+        this.readTime = readTime;
+    }
+
+    public List<CommentItem> getModifiedCommentItems() {
+        return modifiedCommentItems;
+    }
+
+    public List<String> getDeletedCommentIds() {
+        return deletedCommentIds;
+    }
+
+    public Calendar getReadTime() {
+        return readTime;
+    }
+
+    public boolean isEmpty() {
+        return modifiedCommentItems.isEmpty() && deletedCommentIds.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        ToStringBuilder builder = new ToStringBuilder(this).append("modifiedCommentItems", modifiedCommentItems)
+                .append("deletedCommentIds", deletedCommentIds).append("readTime", readTime);
+        return builder.toString();
+    }
+}
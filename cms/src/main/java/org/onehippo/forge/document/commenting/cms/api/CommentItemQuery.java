@@ -0,0 +1,313 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.api;
+
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * Query of comment data items by their extra attributes, with the attribute filters, all of which must match,
+ * and the attribute orderings, followed by the creation date time (latest first) and the identifier descending.
+ * <P>
+ * Filter values must be of {@link String}, {@link Long}, {@link Double}, {@link Boolean} or {@link Calendar},
+ * the types of the residual properties of comment data nodes. A filter matches a multi-valued attribute
+ * if any of its values matches, and never matches a missing attribute. A multi-valued attribute is ordered
+ * by its first value, and a missing attribute comes first in ascending order.
+ * </P>
+ * <PRE>
+ * CommentItemQuery query = new CommentItemQuery()
+ *         .filter("doccommentingdemo:priority", CommentItemQuery.Operator.GREATER_THAN_OR_EQUAL, 3L)
+ *         .orderBy("doccommentingdemo:priority", true);
+ * </PRE>
+ */
+public class CommentItemQuery implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Comparison operator of an attribute filter.
+     */
+    public enum Operator {
+
+        EQUAL("="),
+        NOT_EQUAL("!="),
+        GREATER_THAN(">"),
+        GREATER_THAN_OR_EQUAL(">="),
+        LESS_THAN("<"),
+        LESS_THAN_OR_EQUAL("<=");
+
+        private final String symbol;
+
+        Operator(final String symbol) {
+            this.symbol = symbol;
+        }
+
+        /**
+         * Returns the comparison symbol, e.g, {@code >=}, which is the same in XPath and SQL except {@code !=}.
+         * @return the comparison symbol
+         */
+        public String getSymbol() {
+            return symbol;
+        }
+
+        /**
+         * Returns true if the result of comparing a value to the filter value satisfies this operator.
+         * @param comparison the result of comparing a value to the filter value
+         * @return true if the result satisfies this operator
+         */
+        public boolean test(final int comparison) {
+            switch (this) {
+                case EQUAL:
+                    return comparison == 0;
+                case NOT_EQUAL:
+                    return comparison != 0;
+                case GREATER_THAN:
+                    return comparison > 0;
+                case GREATER_THAN_OR_EQUAL:
+                    return comparison >= 0;
+                case LESS_THAN:
+                    return comparison < 0;
+                default:
+                    return comparison <= 0;
+            }
+        }
+    }
+
+    /**
+     * Filter on an attribute.
+     */
+    public static class Filter implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String attributeName;
+        private final Operator operator;
+        private final Object value;
+
+        private Filter(final String attributeName, final Operator operator, final Object value) {
+            this.attributeName = attributeName;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        public String getAttributeName() {
+            return attributeName;
+        }
+
+        public Operator getOperator() {
+            return operator;
+        }
+
+        public Object getValue() {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return attributeName + " " + operator.getSymbol() + " " + value;
+        }
+    }
+
+    /**
+     * Ordering by an attribute.
+     */
+    public static class Order implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String attributeName;
+        private final boolean descending;
+
+        private Order(final String attributeName, final boolean descending) {
+            this.attributeName = attributeName;
+            this.descending = descending;
+        }
+
+        public String getAttributeName() {
+            return attributeName;
+        }
+
+        public boolean isDescending() {
+            return descending;
+        }
+
+        @Override
+        public String toString() {
+            return attributeName + (descending ? " descending" : " ascending");
+        }
+    }
+
+    private final List<Filter> filters = new ArrayList<>();
+
+    private final List<Order> orders = new ArrayList<>();
+
+    /**
+     * Adds a filter on the attribute.
+     * @param attributeName attribute name
+     * @param operator comparison operator
+     * @param value value of {@link String}, {@link Long}, {@link Double}, {@link Boolean} or {@link Calendar}
+     * @return this query
+     * @throws IllegalArgumentException if the attribute name is blank or the value is not of a supported type
+     */
+    public CommentItemQuery filter(final String attributeName, final Operator operator, final Object value) {
+        if (StringUtils.isBlank(attributeName) || operator == null) {
+            throw new IllegalArgumentException("Blank attribute name or null operator.");
+        }
+
+        if (!(value instanceof String || value instanceof Long || value instanceof Double
+                || value instanceof Boolean || value instanceof Calendar)) {
+            throw new IllegalArgumentException("Unsupported filter value type of " + attributeName + ": "
+                    + ((value != null) ? value.getClass().getName() : null));
+        }
+
+        filters.add(new Filter(attributeName, operator, value));
+        return this;
+    }
+
+    /**
+     * Adds an ordering by the attribute, applied after the orderings added before.
+     * @param attributeName attribute name
+     * @param descending whether or not to order in descending order
+     * @return this query
+     * @throws IllegalArgumentException if the attribute name is blank
+     */
+    public CommentItemQuery orderBy(final String attributeName, final boolean descending) {
+        if (StringUtils.isBlank(attributeName)) {
+            throw new IllegalArgumentException("Blank attribute name.");
+        }
+
+        orders.add(new Order(attributeName, descending));
+        return this;
+    }
+
+    public List<Filter> getFilters() {
+        return Collections.unmodifiableList(filters);
+    }
+
+    public List<Order> getOrders() {
+        return Collections.unmodifiableList(orders);
+    }
+
+    /**
+     * Returns true if {@code commentItem} matches all the filters, for the implementations filtering in their stores.
+     * @param commentItem comment data item
+     * @return true if {@code commentItem} matches all the filters
+     */
+    public boolean matches(final CommentItem commentItem) {
+        for (Filter filter : filters) {
+            if (!matches(commentItem.getAttribute(filter.getAttributeName()), filter)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the comparator ordering comment data items by the orderings, followed by the creation date time
+     * (latest first) and the identifier descending, for the implementations ordering in their stores.
+     * @return the comparator ordering comment data items by this query
+     */
+    public Comparator<CommentItem> getComparator() {
+        return (item1, item2) -> {
+            for (Order order : orders) {
+                final int ret = compareNullable(getFirstValue(item1.getAttribute(order.getAttributeName())),
+                        getFirstValue(item2.getAttribute(order.getAttributeName())));
+
+                if (ret != 0) {
+                    return order.isDescending() ? -ret : ret;
+                }
+            }
+
+            final CommentItemCursor cursor1 = CommentItemCursor.of(item1);
+            final CommentItemCursor cursor2 = CommentItemCursor.of(item2);
+            final int ret = Long.compare(cursor2.getCreated(), cursor1.getCreated());
+            return (ret != 0) ? ret : cursor2.getId().compareTo(cursor1.getId());
+        };
+    }
+
+    @Override
+    public String toString() {
+        ToStringBuilder builder = new ToStringBuilder(this).append("filters", filters).append("orders", orders);
+        return builder.toString();
+    }
+
+    private static boolean matches(final Object attributeValue, final Filter filter) {
+        if (attributeValue == null) {
+            return false;
+        }
+
+        if (attributeValue.getClass().isArray()) {
+            for (int i = 0; i < Array.getLength(attributeValue); i++) {
+                if (matches(Array.get(attributeValue, i), filter)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        final int comparison = compare(attributeValue, filter.getValue());
+        return comparison != Integer.MIN_VALUE && filter.getOperator().test(comparison);
+    }
+
+    private static Object getFirstValue(final Object attributeValue) {
+        if (attributeValue != null && attributeValue.getClass().isArray()) {
+            return (Array.getLength(attributeValue) > 0) ? Array.get(attributeValue, 0) : null;
+        }
+
+        return attributeValue;
+    }
+
+    private static int compareNullable(final Object value1, final Object value2) {
+        if (value1 == null || value2 == null) {
+            return (value1 == null) ? ((value2 == null) ? 0 : -1) : 1;
+        }
+
+        final int ret = compare(value1, value2);
+        return (ret != Integer.MIN_VALUE) ? ret : 0;
+    }
+
+    /**
+     * Compares the values of the same type family, or returns {@link Integer#MIN_VALUE} if not comparable.
+     */
+    private static int compare(final Object value1, final Object value2) {
+        if (value1 instanceof Number && value2 instanceof Number) {
+            if ((value1 instanceof Double || value1 instanceof Float)
+                    || (value2 instanceof Double || value2 instanceof Float)) {
+                return Double.compare(((Number) value1).doubleValue(), ((Number) value2).doubleValue());
+            }
+
+            return Long.compare(((Number) value1).longValue(), ((Number) value2).longValue());
+        } else if (value1 instanceof String && value2 instanceof String) {
+            return Integer.signum(((String) value1).compareTo((String) value2));
+        } else if (value1 instanceof Boolean && value2 instanceof Boolean) {
+            return ((Boolean) value1).compareTo((Boolean) value2);
+        } else if (value1 instanceof Calendar && value2 instanceof Calendar) {
+            return ((Calendar) value1).compareTo((Calendar) value2);
+        }
+
+        return Integer.MIN_VALUE;
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.api;
+
+import java.io.Serializable;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * Result of a create, update or delete operation on a comment data item in a batch.
+ */
+public class CommentOperationResult implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The comment data item given to the operation.
+     */
+    private final CommentItem commentItem;
+
+    /**
+     * The identifier of the comment data item, e.g, the newly created identifier by a create operation.
+     */
+    private final String commentId;
+
+    /**
+     * The exception if the operation failed. Null if the operation succeeded.
+     */
+    private final CommentingException exception;
+
+    private CommentOperationResult(final CommentItem commentItem, final String commentId,
+            final CommentingException exception) {
+        this.commentItem = commentItem;
+        this.commentId = commentId;
+        this.exception = exception;
+    }
+
+    public static CommentOperationResult succeeded(final CommentItem commentItem, final String commentId) {
+        return new CommentOperationResult(commentItem, commentId, null);
+    }
+
+    public static CommentOperationResult failed(final CommentItem commentItem, final CommentingException exception) {
+        return new CommentOperationResult(commentItem, (commentItem != null) ? commentItem.getId() : null, exception);
+    }
+
+    public CommentItem getCommentItem() {
+        return commentItem;
+    }
+
+    public String getCommentId() {
+        return commentId;
+    }
+
+    public CommentingException getException() {
+        return exception;
+    }
+
+    public boolean isSucceeded() {
+        return exception == null;
+    }
+
+    @Override
+    public String toString() {
+        ToStringBuilder builder = new ToStringBuilder(this).append("commentId", commentId)
+                .append("succeeded", isSucceeded()).append("exception", exception);
+        return builder.toString();
+    }
+}
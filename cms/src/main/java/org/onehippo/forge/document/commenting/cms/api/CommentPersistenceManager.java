@@ -16,7 +16,14 @@
 package org.onehippo.forge.document.commenting.cms.api;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Comment data persistence manager service interface, providing CRUD operations.
@@ -59,6 +66,247 @@ public interface CommentPersistenceManager extends Serializable {
     List<CommentItem> getLatestCommentItemsBySubjectId(CommentingContext commentingContext, String subjectId,
             long offset, long limit) throws CommentingException;
 
+    /**
+     * Counts the comment data items of {@code subjectId}.
+     * <P>
+     * The default implementation reads all the comment data items of the subject in chunks
+     * by {@link #getLatestCommentItemsBySubjectId(CommentingContext, String, long, long)} and counts them.
+     * Implementations should override it to count the items without reading them.
+     * </P>
+     * @param commentingContext commenting context instance
+     * @param subjectId the identifier of the subject data (e.g, document handle UUID).
+     * @return the number of the comment data items of {@code subjectId}
+     * @throws CommentingException if any exception occurs while counting comment data
+     */
+    default long countCommentItemsBySubjectId(CommentingContext commentingContext, String subjectId)
+            throws CommentingException {
+        final long chunkSize = 100L;
+        long count = 0L;
+        int size;
+
+        do {
+            size = getLatestCommentItemsBySubjectId(commentingContext, subjectId, count, chunkSize).size();
+            count += size;
+        } while (size == chunkSize);
+
+        return count;
+    }
+
+    /**
+     * Counts the comment data items of multiple subjects at once.
+     * <P>
+     * The default implementation invokes {@link #countCommentItemsBySubjectId(CommentingContext, String)}
+     * for each subject. Implementations should override it to count the items in fewer round-trips.
+     * </P>
+     * @param commentingContext commenting context instance
+     * @param subjectIds the identifiers of the subject data (e.g, document handle UUIDs).
+     * @return map of the subject identifier to the number of the comment data items of the subject,
+     *         containing an entry for every subject identifier in {@code subjectIds} in the iteration order
+     * @throws CommentingException if any exception occurs while counting comment data
+     */
+    default Map<String, Long> countCommentItemsBySubjectIds(CommentingContext commentingContext,
+            Collection<String> subjectIds) throws CommentingException {
+        final Map<String, Long> counts = new LinkedHashMap<>();
+
+        for (String subjectId : subjectIds) {
+            if (!counts.containsKey(subjectId)) {
+                counts.put(subjectId, countCommentItemsBySubjectId(commentingContext, subjectId));
+            }
+        }
+
+        return counts;
+    }
+
+    /**
+     * Retrieves the page of the latest comment data by {@code subjectId}, following the position of {@code cursor}.
+     * <P>
+     * Unlike {@link #getLatestCommentItemsBySubjectId(CommentingContext, String, long, long)}, the cost of retrieving
+     * a page doesn't grow with the number of the preceding items, as the cursor encodes the position
+     * (creation date time and identifier) of the last item of the previous page.
+     * </P>
+     * <P>
+     * The default implementation falls back to {@link #getLatestCommentItemsBySubjectId(CommentingContext, String, long, long)},
+     * skipping the items up to the cursor position. Implementations should override it with a range predicate.
+     * </P>
+     * @param commentingContext commenting context instance
+     * @param subjectId the identifier of the subject data (e.g, document handle UUID).
+     * @param cursor opaque cursor returned by {@link CommentItemPage#getNextCursor()}, or null for the first page
+     * @param limit max item count limit of the page
+     * @return the page of comment data items
+     * @throws CommentingException if any exception occurs while retrieving comment data
+     */
+    default CommentItemPage getLatestCommentItemPageBySubjectId(CommentingContext commentingContext, String subjectId,
+            String cursor, long limit) throws CommentingException {
+        if (limit <= 0) {
+            return new CommentItemPage(null, null);
+        }
+
+        final CommentItemCursor position = (cursor != null) ? CommentItemCursor.decode(cursor) : null;
+        final List<CommentItem> commentItems = new LinkedList<>();
+        final long chunkSize = Math.max(limit + 1, 100L);
+        long offset = 0L;
+        List<CommentItem> chunk;
+
+        do {
+            chunk = getLatestCommentItemsBySubjectId(commentingContext, subjectId, offset, chunkSize);
+            offset += chunk.size();
+
+            for (CommentItem commentItem : chunk) {
+                if (position == null || position.isFollowedBy(CommentItemCursor.of(commentItem).getCreated(),
+                        commentItem.getId())) {
+                    commentItems.add(commentItem);
+
+                    if (commentItems.size() > limit) {
+                        commentItems.remove(commentItems.size() - 1);
+                        return new CommentItemPage(commentItems,
+                                CommentItemCursor.of(commentItems.get(commentItems.size() - 1)).encode());
+                    }
+                }
+            }
+        } while (chunk.size() == chunkSize);
+
+        return new CommentItemPage(commentItems, null);
+    }
+
+    /**
+     * Retrieves the page of the latest comment data of all the subjects written by {@code author},
+     * following the position of {@code cursor}, in the same ordering as
+     * {@link #getLatestCommentItemPageBySubjectId(CommentingContext, String, String, long)}.
+     * <P>
+     * The default implementation returns null, meaning author queries are not supported by the implementation.
+     * </P>
+     * @param commentingContext commenting context instance
+     * @param author the user ID of the comment author
+     * @param cursor opaque cursor returned by {@link CommentItemPage#getNextCursor()}, or null for the first page
+     * @param limit max item count limit of the page
+     * @return the page of comment data items, or null if author queries are not supported
+     * @throws CommentingException if any exception occurs while retrieving comment data
+     */
+    default CommentItemPage getLatestCommentItemPageByAuthor(CommentingContext commentingContext, String author,
+            String cursor, long limit) throws CommentingException {
+        return null;
+    }
+
+    /**
+     * Retrieves the page of the latest comment data of all the subjects having {@code value} in the string attribute
+     * {@code attributeName}, e.g, the user ID in an assignee or mention attribute, following the position of
+     * {@code cursor}, in the same ordering as
+     * {@link #getLatestCommentItemPageBySubjectId(CommentingContext, String, String, long)}.
+     * <P>
+     * The default implementation returns null, meaning attribute queries are not supported by the implementation.
+     * </P>
+     * @param commentingContext commenting context instance
+     * @param attributeName attribute name
+     * @param value the attribute value to match, matching any of the values of a multi-valued attribute
+     * @param cursor opaque cursor returned by {@link CommentItemPage#getNextCursor()}, or null for the first page
+     * @param limit max item count limit of the page
+     * @return the page of comment data items, or null if attribute queries are not supported
+     * @throws CommentingException if any exception occurs while retrieving comment data
+     */
+    default CommentItemPage getLatestCommentItemPageByAttribute(CommentingContext commentingContext,
+            String attributeName, String value, String cursor, long limit) throws CommentingException {
+        return null;
+    }
+
+    /**
+     * Retrieves the latest comment data of multiple subjects at once, up to {@code limit} items per subject.
+     * <P>
+     * The default implementation invokes {@link #getLatestCommentItemsBySubjectId(CommentingContext, String, long, long)}
+     * for each subject. Implementations should override it to retrieve the data in fewer round-trips.
+     * </P>
+     * @param commentingContext commenting context instance
+     * @param subjectIds the identifiers of the subject data (e.g, document handle UUIDs).
+     * @param limit max item count limit per subject
+     * @return map of the subject identifier to the list of the latest comment data items of the subject,
+     *         containing an entry for every subject identifier in {@code subjectIds} in the iteration order
+     * @throws CommentingException if any exception occurs while retrieving comment data
+     */
+    default Map<String, List<CommentItem>> getLatestCommentItemsBySubjectIds(CommentingContext commentingContext,
+            Collection<String> subjectIds, long limit) throws CommentingException {
+        final Map<String, List<CommentItem>> commentItemsMap = new LinkedHashMap<>();
+
+        for (String subjectId : subjectIds) {
+            if (!commentItemsMap.containsKey(subjectId)) {
+                commentItemsMap.put(subjectId,
+                        getLatestCommentItemsBySubjectId(commentingContext, subjectId, 0L, limit));
+            }
+        }
+
+        return commentItemsMap;
+    }
+
+    /**
+     * Returns the change stamp of the comment data of {@code subjectId}, which changes whenever any comment data item
+     * of the subject is created, updated or deleted, so that callers can skip reading the comment data again
+     * if the stamp is equal to the one at the last read.
+     * <P>
+     * The default implementation returns null, meaning the stamp is not available.
+     * </P>
+     * @param commentingContext commenting context instance
+     * @param subjectId the identifier of the subject data (e.g, document handle UUID).
+     * @return opaque change stamp of the comment data of {@code subjectId}, or null if not available
+     * @throws CommentingException if any exception occurs while retrieving the stamp
+     */
+    default String getCommentItemsStamp(CommentingContext commentingContext, String subjectId)
+            throws CommentingException {
+        return null;
+    }
+
+    /**
+     * Retrieves the changes of the comment data of {@code subjectId} since {@code since}: the items created or updated
+     * after {@code since}, and the identifiers of the items deleted after {@code since}.
+     * <P>
+     * The default implementation returns null, meaning the changes are not available,
+     * and callers should read the latest comment data again instead.
+     * </P>
+     * @param commentingContext commenting context instance
+     * @param subjectId the identifier of the subject data (e.g, document handle UUID).
+     * @param since the point in time after which the changes are retrieved
+     * @return the changes of the comment data of {@code subjectId} since {@code since}, or null if not available
+     * @throws CommentingException if any exception occurs while retrieving comment data
+     */
+    default CommentItemDelta getCommentItemsModifiedSince(CommentingContext commentingContext, String subjectId,
+            Calendar since) throws CommentingException {
+        return null;
+    }
+
+    /**
+     * Searches the comment data of all the subjects by the full text of the content and the string attributes,
+     * retrieving the page of the hits in the relevance ordering following the position of {@code cursor}.
+     * <P>
+     * The default implementation returns null, meaning full-text search is not supported by the implementation.
+     * </P>
+     * @param commentingContext commenting context instance
+     * @param text search text, with words to match
+     * @param cursor opaque cursor returned by {@link CommentSearchPage#getNextCursor()}, or null for the first page
+     * @param limit max hit count limit of the page
+     * @return the page of search hits, or null if full-text search is not supported
+     * @throws CommentingException if any exception occurs while searching comment data
+     */
+    default CommentSearchPage searchCommentItems(CommentingContext commentingContext, String text, String cursor,
+            long limit) throws CommentingException {
+        return null;
+    }
+
+    /**
+     * Retrieves the comment data items matching the attribute filters of {@code query} in the ordering of
+     * {@code query}, with filtering and ordering done by the data store rather than by the caller.
+     * <P>
+     * The default implementation returns null, meaning attribute queries are not supported by the implementation.
+     * </P>
+     * @param commentingContext commenting context instance
+     * @param subjectId the identifier of the subject data (e.g, document handle UUID), or null for all the subjects
+     * @param query attribute filters and orderings
+     * @param offset start offset index
+     * @param limit max result count limit
+     * @return the matching comment data items, or null if attribute queries are not supported
+     * @throws CommentingException if any exception occurs while retrieving comment data
+     */
+    default List<CommentItem> queryCommentItems(CommentingContext commentingContext, String subjectId,
+            CommentItemQuery query, long offset, long limit) throws CommentingException {
+        return null;
+    }
+
     /**
      * Updates comment data item by {@code commentItem}.
      * @param commentingContext commenting context instance
@@ -77,6 +325,101 @@ public interface CommentPersistenceManager extends Serializable {
     void deleteCommentItem(CommentingContext commentingContext, CommentItem commentItem)
             throws CommentingException;
 
+    /**
+     * Creates comment data items based on given {@code commentItems}, persisting them all at once if possible.
+     * <P>
+     * The default implementation invokes {@link #createCommentItem(CommentingContext, CommentItem)} for each item.
+     * </P>
+     * @param commentingContext commenting context instance
+     * @param commentItems comment data item objects
+     * @return the operation result for each item in the same order as {@code commentItems},
+     *         containing the identifier of the newly created comment data item if succeeded
+     * @throws CommentingException if any exception occurs other than the failures reported in the results
+     */
+    default List<CommentOperationResult> createCommentItems(CommentingContext commentingContext,
+            List<CommentItem> commentItems) throws CommentingException {
+        final List<CommentOperationResult> results = new ArrayList<>(commentItems.size());
+
+        for (CommentItem commentItem : commentItems) {
+            try {
+                results.add(CommentOperationResult.succeeded(commentItem,
+                        createCommentItem(commentingContext, commentItem)));
+            } catch (CommentingException e) {
+                results.add(CommentOperationResult.failed(commentItem, e));
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Updates comment data items by {@code commentItems}, persisting them all at once if possible.
+     * <P>
+     * The default implementation invokes {@link #updateCommentItem(CommentingContext, CommentItem)} for each item.
+     * </P>
+     * @param commentingContext commenting context instance
+     * @param commentItems comment data item objects
+     * @return the operation result for each item in the same order as {@code commentItems}
+     * @throws CommentingException if any exception occurs other than the failures reported in the results
+     */
+    default List<CommentOperationResult> updateCommentItems(CommentingContext commentingContext,
+            List<CommentItem> commentItems) throws CommentingException {
+        final List<CommentOperationResult> results = new ArrayList<>(commentItems.size());
+
+        for (CommentItem commentItem : commentItems) {
+            try {
+                updateCommentItem(commentingContext, commentItem);
+                results.add(CommentOperationResult.succeeded(commentItem, commentItem.getId()));
+            } catch (CommentingException e) {
+                results.add(CommentOperationResult.failed(commentItem, e));
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Deletes comment data items based on information given by {@code commentItems}, persisting them all at once
+     * if possible.
+     * <P>
+     * The default implementation invokes {@link #deleteCommentItem(CommentingContext, CommentItem)} for each item.
+     * </P>
+     * @param commentingContext commenting context instance
+     * @param commentItems comment data item objects
+     * @return the operation result for each item in the same order as {@code commentItems}
+     * @throws CommentingException if any exception occurs other than the failures reported in the results
+     */
+    default List<CommentOperationResult> deleteCommentItems(CommentingContext commentingContext,
+            List<CommentItem> commentItems) throws CommentingException {
+        final List<CommentOperationResult> results = new ArrayList<>(commentItems.size());
+
+        for (CommentItem commentItem : commentItems) {
+            try {
+                deleteCommentItem(commentingContext, commentItem);
+                results.add(CommentOperationResult.succeeded(commentItem, commentItem.getId()));
+            } catch (CommentingException e) {
+                results.add(CommentOperationResult.failed(commentItem, e));
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Retrieves and clears the results of the writes of the current user which were accepted to be persisted
+     * asynchronously but failed later, e.g, in write-behind mode, so that callers can report them to the user.
+     * <P>
+     * The default implementation returns an empty list, as the writes are persisted synchronously.
+     * </P>
+     * @param commentingContext commenting context instance
+     * @return the failed operation results of the current user since the last invocation
+     * @throws CommentingException if any exception occurs while retrieving the results
+     */
+    default List<CommentOperationResult> pollFailedCommentOperations(CommentingContext commentingContext)
+            throws CommentingException {
+        return Collections.emptyList();
+    }
+
     /**
      * Gets comment header text to display in user interface from {@code commentItem}.
      * @param commentingContext commenting context instance
@@ -0,0 +1,154 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.api;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Position of a search hit in the relevance ordering, i.e, score descending and then identifier descending,
+ * used to build the opaque cursor of a {@link CommentSearchPage}. It may also have the offset of the next hit
+ * in the search result, so an implementation can start reading the next page from the offset.
+ */
+public class CommentSearchCursor implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Relevance score of the search hit.
+     */
+    private final double score;
+
+    /**
+     * Identifier of the comment data item of the search hit.
+     */
+    private final String id;
+
+    /**
+     * Offset of the next hit in the search result, or -1 if unknown.
+     */
+    private final long offset;
+
+    public CommentSearchCursor(final double score, final String id) {
+        this(score, id, -1L);
+    }
+
+    public CommentSearchCursor(final double score, final String id, final long offset) {
+        this.score = score;
+        this.id = id;
+        this.offset = offset;
+    }
+
+    /**
+     * Creates a cursor positioned at {@code hit}.
+     * @param hit search hit
+     * @return a cursor positioned at {@code hit}
+     */
+    public static CommentSearchCursor of(final CommentSearchHit hit) {
+        return of(hit, -1L);
+    }
+
+    /**
+     * Creates a cursor positioned at {@code hit}, followed by the hit at {@code offset} in the search result.
+     * @param hit search hit
+     * @param offset offset of the next hit in the search result, or -1 if unknown
+     * @return a cursor positioned at {@code hit}
+     */
+    public static CommentSearchCursor of(final CommentSearchHit hit, final long offset) {
+        return new CommentSearchCursor(hit.getScore(), StringUtils.defaultString(hit.getCommentItem().getId()),
+                offset);
+    }
+
+    /**
+     * Decodes the opaque cursor string, encoded by {@link #encode()}.
+     * @param cursor opaque cursor string
+     * @return decoded cursor
+     * @throws IllegalArgumentException if {@code cursor} is not a valid cursor string
+     */
+    public static CommentSearchCursor decode(final String cursor) {
+        final String decoded;
+
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+
+        final int offset = decoded.indexOf(':');
+
+        if (offset <= 0) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+
+        final String position = decoded.substring(0, offset);
+        final int separator = position.indexOf(';');
+
+        try {
+            if (separator < 0) {
+                return new CommentSearchCursor(Double.parseDouble(position), decoded.substring(offset + 1));
+            }
+
+            return new CommentSearchCursor(Double.parseDouble(position.substring(0, separator)),
+                    decoded.substring(offset + 1), Long.parseLong(position.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns true if the search hit comes after this cursor position in the relevance ordering.
+     * @param hitScore relevance score of the search hit
+     * @param hitId identifier of the comment data item of the search hit
+     * @return true if the search hit comes after this cursor position in the relevance ordering
+     */
+    public boolean isFollowedBy(final double hitScore, final String hitId) {
+        if (Double.compare(hitScore, score) != 0) {
+            return hitScore < score;
+        }
+
+        return StringUtils.defaultString(hitId).compareTo(id) < 0;
+    }
+
+    /**
+     * Encodes this cursor into an opaque, URL-safe string.
+     * @return encoded opaque cursor string
+     */
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((((offset >= 0L) ? score + ";" + offset : String.valueOf(score)) + ":" + id)
+                        .getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public String toString() {
+        return encode();
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.api;
+
+import java.io.Serializable;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * A comment data item matching a full-text search, with its relevance score and highlighted excerpt.
+ */
+public class CommentSearchHit implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The matching comment data item.
+     */
+    private final CommentItem commentItem;
+
+    /**
+     * Relevance score. The higher, the more relevant. Comparable only within the same search.
+     */
+    private final double score;
+
+    /**
+     * HTML excerpt of the matching text, with the matching terms highlighted in {@code <strong>} elements
+     * and the other text escaped. Null if not available.
+     */
+    private final String excerpt;
+
+    public CommentSearchHit(final CommentItem commentItem, final double score, final String excerpt) {
+        this.commentItem = commentItem;
+        this.score = score;
+        this.excerpt = excerpt;
+    }
+
+    public CommentItem getCommentItem() {
+        return commentItem;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public String getExcerpt() {
+        return excerpt;
+    }
+
+    @Override
+    public String toString() {
+        ToStringBuilder builder = new ToStringBuilder(this).append("commentItem", commentItem).append("score", score)
+                .append("excerpt", excerpt);
+        return builder.toString();
+    }
+}
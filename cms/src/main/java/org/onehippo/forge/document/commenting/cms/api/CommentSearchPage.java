@@ -0,0 +1,63 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.api;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * A page of full-text search hits ordered by relevance, with the cursor to retrieve the next page.
+ */
+public class CommentSearchPage implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Search hits in this page.
+     */
+    private final List<CommentSearchHit> hits;
+
+    /**
+     * Opaque cursor to retrieve the next page. Null if there's no next page.
+     */
+    private final String nextCursor;
+
+    public CommentSearchPage(final List<CommentSearchHit> hits, final String nextCursor) {
+        this.hits = (hits != null) ? hits : Collections.emptyList();
+        this.nextCursor = nextCursor;
+    }
+
+    public List<CommentSearchHit> getHits() {
+        return hits;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    @Override
+    public String toString() {
+        ToStringBuilder builder = new ToStringBuilder(this).append("hits", hits).append("nextCursor", nextCursor);
+        return builder.toString();
+    }
+}
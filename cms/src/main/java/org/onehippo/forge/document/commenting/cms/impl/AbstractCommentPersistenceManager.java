@@ -0,0 +1,168 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.impl;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.jcr.RepositoryException;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.time.DateFormatUtils;
+import org.hippoecm.frontend.plugin.config.IPluginConfig;
+import org.hippoecm.frontend.plugin.config.impl.JavaPluginConfig;
+import org.hippoecm.frontend.session.UserSession;
+import org.onehippo.forge.document.commenting.cms.api.CommentItem;
+import org.onehippo.forge.document.commenting.cms.api.CommentOperationResult;
+import org.onehippo.forge.document.commenting.cms.api.CommentPersistenceManager;
+import org.onehippo.forge.document.commenting.cms.api.CommentingContext;
+import org.onehippo.forge.document.commenting.cms.api.CommentingException;
+
+/**
+ * Base {@link CommentPersistenceManager} implementation for the managers storing comment data outside the
+ * repository, which implement the single item operations by the batch operations, and take the author from
+ * the current user and the subject from the commenting context or the comment data item.
+ */
+public abstract class AbstractCommentPersistenceManager implements CommentPersistenceManager {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String DEFAULT_DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
+
+    private final String dateFormatParamName;
+
+    private String dateFormat;
+
+    /**
+     * Creates a manager reading the date format to display by {@code dateFormatParamName} parameter.
+     * @param dateFormatParamName the name of the date format parameter
+     */
+    protected AbstractCommentPersistenceManager(final String dateFormatParamName) {
+        this.dateFormatParamName = dateFormatParamName;
+    }
+
+    public String createCommentItem(CommentingContext commentingContext, CommentItem commentItem)
+            throws CommentingException {
+        return getSucceededCommentId(createCommentItems(commentingContext, Collections.singletonList(commentItem)));
+    }
+
+    public void updateCommentItem(CommentingContext commentingContext, CommentItem commentItem)
+            throws CommentingException {
+        if (StringUtils.isBlank(commentItem.getId())) {
+            throw new IllegalArgumentException("No identifier in commentItem.");
+        }
+
+        getSucceededCommentId(updateCommentItems(commentingContext, Collections.singletonList(commentItem)));
+    }
+
+    public void deleteCommentItem(CommentingContext commentingContext, CommentItem commentItem)
+            throws CommentingException {
+        getSucceededCommentId(deleteCommentItems(commentingContext, Collections.singletonList(commentItem)));
+    }
+
+    public String getCommentHeadText(CommentingContext commentingContext, CommentItem commentItem)
+            throws CommentingException {
+        StringBuilder sb = new StringBuilder(40);
+        sb.append(commentItem.getAuthor()).append(" - ")
+                .append(DateFormatUtils.format(commentItem.getCreated(), getDateFormat(commentingContext)));
+        return sb.toString();
+    }
+
+    public String getCommentBodyText(CommentingContext commentingContext, CommentItem commentItem)
+            throws CommentingException {
+        return commentItem.getContent();
+    }
+
+    public String getCommentHeadTooltip(CommentingContext commentingContext, CommentItem commentItem)
+            throws CommentingException {
+        return null;
+    }
+
+    public String getCommentBodyTooltip(CommentingContext commentingContext, CommentItem commentItem)
+            throws CommentingException {
+        return null;
+    }
+
+    /**
+     * Returns the ID of the current user, stored as the author of created or updated comment data items.
+     * @return the ID of the current user
+     */
+    protected String getUserID() {
+        return UserSession.get().getJcrSession().getUserID();
+    }
+
+    /**
+     * Returns the subject identifier for {@code commentItem}: the identifier of the handle of the subject document
+     * in {@code commentingContext} if available, or the subject identifier of {@code commentItem} otherwise.
+     * @param commentingContext commenting context instance
+     * @param commentItem comment data item object
+     * @return the subject identifier for {@code commentItem}
+     */
+    protected String getSubjectId(final CommentingContext commentingContext, final CommentItem commentItem) {
+        if (commentingContext.getSubjectDocumentModel() != null
+                && commentingContext.getSubjectDocumentModel().getNode() != null) {
+            try {
+                return commentingContext.getSubjectDocumentModel().getNode().getParent().getIdentifier();
+            } catch (RepositoryException e) {
+                throw new CommentingException(e);
+            }
+        }
+
+        return commentItem.getSubjectId();
+    }
+
+    /**
+     * Returns the {@code cluster.options} plugin configuration of the commenting plugin,
+     * or an empty configuration if not configured.
+     * @param commentingContext commenting context instance
+     * @return the {@code cluster.options} plugin configuration, or an empty configuration if not configured
+     */
+    protected IPluginConfig getClusterOptions(final CommentingContext commentingContext) {
+        IPluginConfig config = null;
+
+        if (commentingContext != null && commentingContext.getPluginConfig() != null) {
+            config = commentingContext.getPluginConfig().getPluginConfig("cluster.options");
+        }
+
+        return (config != null) ? config : new JavaPluginConfig();
+    }
+
+    protected String getDateFormat(final CommentingContext commentingContext) {
+        if (dateFormat == null) {
+            IPluginConfig config = getClusterOptions(commentingContext);
+            dateFormat = config.getString(dateFormatParamName, DEFAULT_DATE_FORMAT);
+        }
+
+        return dateFormat;
+    }
+
+    /**
+     * Returns the comment identifier of the first result, or throws its exception if it failed.
+     * @param results the results of a batch operation on a single comment data item
+     * @return the comment identifier of the first result
+     * @throws CommentingException if the operation failed
+     */
+    protected static String getSucceededCommentId(final List<CommentOperationResult> results)
+            throws CommentingException {
+        final CommentOperationResult result = results.get(0);
+
+        if (!result.isSucceeded()) {
+            throw result.getException();
+        }
+
+        return result.getCommentId();
+    }
+}
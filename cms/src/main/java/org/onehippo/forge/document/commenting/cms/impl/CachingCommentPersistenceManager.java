@@ -0,0 +1,312 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.impl;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.apache.commons.lang3.StringUtils;
+import org.hippoecm.frontend.plugin.config.IPluginConfig;
+import org.onehippo.forge.document.commenting.cms.api.CommentItem;
+import org.onehippo.forge.document.commenting.cms.api.CommentOperationResult;
+import org.onehippo.forge.document.commenting.cms.api.CommentPersistenceManager;
+import org.onehippo.forge.document.commenting.cms.api.CommentingContext;
+import org.onehippo.forge.document.commenting.cms.api.CommentingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link CommentPersistenceManager} decorator which caches the latest comment data item lists by subject
+ * and the comment data items by identifier in the {@link CommentItemCache} shared by the managers
+ * with the same delegate class and the same {@code cluster.options}.
+ * <P>
+ * If the delegate provides the change stamp of a subject, a cached list is used only if read at the current stamp.
+ * </P>
+ * <P>
+ * Entries are invalidated by the writes through this manager, and by the JCR observation events
+ * under <code>/doccommentdata</code> received with a dedicated system session, created from the session of
+ * {@link CommentingServicesModule} and logged out by the module on shutdown.
+ * The changes of the comment data stored outside of the repository, e.g, by {@link JdbcCommentPersistenceManager},
+ * in the other cluster nodes are not observed, so they are read from the cache of this cluster node
+ * only after the entries expire by the TTL.
+ * The max number of entries and the time to live in seconds can be configured by {@code comment.cache.max.size}
+ * and {@code comment.cache.ttl} plugin parameters.
+ * </P>
+ */
+public class CachingCommentPersistenceManager extends DelegatingCommentPersistenceManager {
+
+    private static final long serialVersionUID = 1L;
+
+    private static Logger log = LoggerFactory.getLogger(CachingCommentPersistenceManager.class);
+
+    public CachingCommentPersistenceManager() {
+        super();
+    }
+
+    public CachingCommentPersistenceManager(final CommentPersistenceManager delegate) {
+        super(delegate);
+    }
+
+    @Override
+    public CommentItem getCommentItemById(CommentingContext commentingContext, String commentId)
+            throws CommentingException {
+        final CommentItemCache cache = getCommentItemCache(commentingContext);
+        CommentItem commentItem = cache.getCommentItem(commentId);
+
+        if (commentItem == null) {
+            final long generation = cache.getGeneration();
+            commentItem = super.getCommentItemById(commentingContext, commentId);
+
+            if (commentItem != null) {
+                cache.putCommentItem(commentItem, generation);
+            }
+        }
+
+        return commentItem;
+    }
+
+    @Override
+    public List<CommentItem> getLatestCommentItemsBySubjectId(CommentingContext commentingContext, String subjectId,
+            long offset, long limit) throws CommentingException {
+        if (offset != 0L) {
+            return super.getLatestCommentItemsBySubjectId(commentingContext, subjectId, offset, limit);
+        }
+
+        final CommentItemCache cache = getCommentItemCache(commentingContext);
+        final String stamp = super.getCommentItemsStamp(commentingContext, subjectId);
+        List<CommentItem> commentItems = cache.getLatestCommentItems(subjectId, limit, stamp);
+
+        if (commentItems == null) {
+            final long generation = cache.getGeneration();
+            commentItems = super.getLatestCommentItemsBySubjectId(commentingContext, subjectId, offset, limit);
+            cache.putLatestCommentItems(subjectId, limit, commentItems, generation, stamp);
+        }
+
+        return commentItems;
+    }
+
+    @Override
+    public Map<String, List<CommentItem>> getLatestCommentItemsBySubjectIds(CommentingContext commentingContext,
+            Collection<String> subjectIds, long limit) throws CommentingException {
+        final CommentItemCache cache = getCommentItemCache(commentingContext);
+        final Map<String, List<CommentItem>> commentItemsMap = new LinkedHashMap<>();
+        final Set<String> missingSubjectIds = new LinkedHashSet<>();
+
+        for (String subjectId : subjectIds) {
+            final List<CommentItem> commentItems = cache.getLatestCommentItems(subjectId, limit);
+            commentItemsMap.put(subjectId, commentItems);
+
+            if (commentItems == null) {
+                missingSubjectIds.add(subjectId);
+            }
+        }
+
+        if (!missingSubjectIds.isEmpty()) {
+            final long generation = cache.getGeneration();
+
+            for (Map.Entry<String, List<CommentItem>> entry : super.getLatestCommentItemsBySubjectIds(
+                    commentingContext, missingSubjectIds, limit).entrySet()) {
+                commentItemsMap.put(entry.getKey(), entry.getValue());
+                cache.putLatestCommentItems(entry.getKey(), limit, entry.getValue(), generation);
+            }
+        }
+
+        return commentItemsMap;
+    }
+
+    @Override
+    public String createCommentItem(CommentingContext commentingContext, CommentItem commentItem)
+            throws CommentingException {
+        try {
+            return super.createCommentItem(commentingContext, commentItem);
+        } finally {
+            invalidate(commentingContext, commentItem);
+        }
+    }
+
+    @Override
+    public void updateCommentItem(CommentingContext commentingContext, CommentItem commentItem)
+            throws CommentingException {
+        try {
+            super.updateCommentItem(commentingContext, commentItem);
+        } finally {
+            invalidate(commentingContext, commentItem);
+        }
+    }
+
+    @Override
+    public void deleteCommentItem(CommentingContext commentingContext, CommentItem commentItem)
+            throws CommentingException {
+        try {
+            super.deleteCommentItem(commentingContext, commentItem);
+        } finally {
+            invalidate(commentingContext, commentItem);
+        }
+    }
+
+    @Override
+    public List<CommentOperationResult> createCommentItems(CommentingContext commentingContext,
+            List<CommentItem> commentItems) throws CommentingException {
+        try {
+            return super.createCommentItems(commentingContext, commentItems);
+        } finally {
+            invalidate(commentingContext, commentItems);
+        }
+    }
+
+    @Override
+    public List<CommentOperationResult> updateCommentItems(CommentingContext commentingContext,
+            List<CommentItem> commentItems) throws CommentingException {
+        try {
+            return super.updateCommentItems(commentingContext, commentItems);
+        } finally {
+            invalidate(commentingContext, commentItems);
+        }
+    }
+
+    @Override
+    public List<CommentOperationResult> deleteCommentItems(CommentingContext commentingContext,
+            List<CommentItem> commentItems) throws CommentingException {
+        try {
+            return super.deleteCommentItems(commentingContext, commentItems);
+        } finally {
+            invalidate(commentingContext, commentItems);
+        }
+    }
+
+    /**
+     * Returns the shared cache of the name returned by {@link #getCacheName(CommentingContext)},
+     * registering the invalidation listener with the session created by {@link #createObservationSession()}
+     * if not registered yet.
+     * @param commentingContext commenting context instance
+     * @return the shared cache
+     */
+    protected CommentItemCache getCommentItemCache(final CommentingContext commentingContext) {
+        final IPluginConfig config = (commentingContext != null) ? commentingContext.getPluginConfig() : null;
+        int maxSize = CommentItemCache.DEFAULT_MAX_SIZE;
+        long timeToLive = CommentItemCache.DEFAULT_TIME_TO_LIVE;
+        long invalidationDelay = CommentItemCache.DEFAULT_INVALIDATION_DELAY;
+
+        if (config != null) {
+            maxSize = config.getAsInteger("comment.cache.max.size", maxSize);
+            timeToLive = config.getAsLong("comment.cache.ttl", timeToLive / 1000L) * 1000L;
+            invalidationDelay = config.getAsLong("comment.cache.invalidation.delay", invalidationDelay);
+        }
+
+        final CommentItemCache cache = CommentItemCache.getInstance(getCacheName(commentingContext), maxSize,
+                timeToLive);
+
+        if (!cache.isObservationStarted()) {
+            synchronized (cache) {
+                if (!cache.isObservationStarted()) {
+                    Session session = null;
+
+                    try {
+                        session = createObservationSession();
+                        cache.startObservation(session, invalidationDelay);
+                    } catch (RepositoryException e) {
+                        log.warn("Failed to observe comment data changes. Cache entries expire by TTL only. {}",
+                                e.toString());
+
+                        if (session != null) {
+                            session.logout();
+                        }
+                    }
+                }
+            }
+        }
+
+        return cache;
+    }
+
+    /**
+     * Returns the name of the shared cache, made of the class name of the delegate and a hash of the
+     * {@code cluster.options} of the plugin configuration, so that the managers with different delegates or
+     * different options of the delegate, e.g, a different {@code jcr.comment.persistence.query}, don't read each
+     * other's cached items.
+     * @param commentingContext commenting context instance
+     * @return the name of the shared cache
+     */
+    protected String getCacheName(final CommentingContext commentingContext) {
+        final IPluginConfig config = (commentingContext != null) ? commentingContext.getPluginConfig() : null;
+        final IPluginConfig clusterOptions = (config != null) ? config.getPluginConfig("cluster.options") : null;
+        final StringBuilder options = new StringBuilder();
+
+        if (clusterOptions != null) {
+            for (String key : new TreeSet<>(clusterOptions.keySet())) {
+                final Object value = clusterOptions.get(key);
+                options.append(key).append('=')
+                        .append((value instanceof Object[]) ? Arrays.toString((Object[]) value) : value).append('\n');
+            }
+        }
+
+        return getDelegate(commentingContext).getClass().getName() + "#"
+                + Integer.toHexString(options.toString().hashCode());
+    }
+
+    /**
+     * Creates the dedicated session to receive the JCR observation events and to read the changed nodes,
+     * logged out when the observation is stopped. By default, a system session created by
+     * {@link CommentingServicesModule#createSystemSession()}, so that the events of all the comment data are
+     * received regardless of the user who uses the cache first.
+     * @return the dedicated session to receive the JCR observation events
+     * @throws RepositoryException if repository exception occurs
+     */
+    protected Session createObservationSession() throws RepositoryException {
+        return CommentingServicesModule.createSystemSession();
+    }
+
+    private void invalidate(final CommentingContext commentingContext, final List<CommentItem> commentItems) {
+        for (CommentItem commentItem : commentItems) {
+            invalidate(commentingContext, commentItem);
+        }
+    }
+
+    private void invalidate(final CommentingContext commentingContext, final CommentItem commentItem) {
+        final CommentItemCache cache = getCommentItemCache(commentingContext);
+        String subjectId = commentItem.getSubjectId();
+
+        if (StringUtils.isBlank(subjectId)) {
+            try {
+                if (commentingContext.getSubjectDocumentModel() != null
+                        && commentingContext.getSubjectDocumentModel().getNode() != null) {
+                    subjectId = commentingContext.getSubjectDocumentModel().getNode().getParent().getIdentifier();
+                }
+            } catch (RepositoryException e) {
+                log.warn("Failed to read subject identifier. {}", e.toString());
+            }
+        }
+
+        if (StringUtils.isNotBlank(subjectId)) {
+            cache.invalidateSubject(subjectId);
+        } else {
+            cache.invalidateAllSubjects();
+        }
+
+        if (StringUtils.isNotBlank(commentItem.getId())) {
+            cache.invalidateCommentItem(commentItem.getId());
+        }
+    }
+}
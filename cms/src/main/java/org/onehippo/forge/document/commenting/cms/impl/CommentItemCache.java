@@ -0,0 +1,484 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.impl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.observation.Event;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.onehippo.forge.document.commenting.cms.api.CommentItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded in-memory cache of the latest comment data item lists by subject identifier and comment data items
+ * by identifier, shared by all the {@link CachingCommentPersistenceManager} instances in the JVM
+ * with the same cache name, i.e, with the same delegate and the same configuration.
+ * <P>
+ * Each map evicts the least recently used entry when exceeding the max size, and an entry expires after the TTL.
+ * Entries are invalidated by the writes through {@link CachingCommentPersistenceManager} and by the JCR observation
+ * events under <code>/doccommentdata</code> once {@link #startObservation(Session, long)} is invoked.
+ * As the repository delivers the events of the other cluster nodes from the cluster journal as well,
+ * the entries are kept coherent in all the cluster nodes, as long as the comment data is stored in the repository.
+ * The changes of the comment data stored elsewhere, e.g, by {@link JdbcCommentPersistenceManager}, in the other
+ * cluster nodes are not observed, so the entries are stale in this cluster node until expired by the TTL.
+ * The cached items are copied on put and on get, so callers may modify the returned items freely.
+ * </P>
+ * <P>
+ * The hit, miss and stale read counts are kept for monitoring. A stale read is a cache hit served after the change
+ * of the entry in the repository (by the date of the observation event) but before the entry was invalidated.
+ * </P>
+ */
+public class CommentItemCache {
+
+    private static Logger log = LoggerFactory.getLogger(CommentItemCache.class);
+
+    /**
+     * Default max number of entries in each map.
+     */
+    public static final int DEFAULT_MAX_SIZE = 1000;
+
+    /**
+     * Default time to live of an entry in milliseconds.
+     */
+    public static final long DEFAULT_TIME_TO_LIVE = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * Default delay in milliseconds to collect a burst of observation events into a single invalidation.
+     */
+    public static final long DEFAULT_INVALIDATION_DELAY = 200L;
+
+    private static final int OBSERVED_EVENT_TYPES = Event.NODE_ADDED | Event.NODE_REMOVED | Event.NODE_MOVED
+            | Event.PROPERTY_ADDED | Event.PROPERTY_CHANGED | Event.PROPERTY_REMOVED;
+
+    private static final Map<String, CommentItemCache> instances = new ConcurrentHashMap<>();
+
+    private final long timeToLive;
+    private final Map<String, Entry<List<CommentItem>>> commentItemsBySubject;
+    private final Map<String, Entry<CommentItem>> commentItemsById;
+
+    /**
+     * Incremented on every invalidation, so that a value read before an invalidation is not put after it.
+     */
+    private long generation;
+
+    private long hitCount;
+    private long missCount;
+    private long staleReadCount;
+
+    private Session observationSession;
+    private CommentItemCacheInvalidationListener invalidationListener;
+    private boolean observationStarted;
+
+    public CommentItemCache(final int maxSize, final long timeToLive) {
+        this.timeToLive = timeToLive;
+        commentItemsBySubject = new LruMap<>(maxSize);
+        commentItemsById = new LruMap<>(maxSize);
+    }
+
+    /**
+     * Returns the shared cache of {@code name}, creating it with {@code maxSize} and {@code timeToLive}
+     * on the first invocation with the name.
+     * @param name the name of the cache, identifying the delegate and the configuration of the cached items
+     * @param maxSize max number of entries in each map, used only when creating the cache
+     * @param timeToLive time to live of an entry in milliseconds, used only when creating the cache
+     * @return the shared cache of {@code name}
+     */
+    public static CommentItemCache getInstance(final String name, final int maxSize, final long timeToLive) {
+        synchronized (CommentItemCache.class) {
+            return instances.computeIfAbsent(name, key -> new CommentItemCache(Math.max(1, maxSize), timeToLive));
+        }
+    }
+
+    /**
+     * Stops the JCR observation of all the shared caches and discards them.
+     */
+    public static void shutdown() {
+        synchronized (CommentItemCache.class) {
+            for (CommentItemCache cache : instances.values()) {
+                cache.stopObservation();
+            }
+
+            instances.clear();
+        }
+    }
+
+    /**
+     * Returns the current generation, to be given to the put methods for a value read after this invocation.
+     * @return the current generation
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Returns copies of the cached latest comment data items of {@code subjectId} up to {@code limit} items,
+     * or null if not cached with the same or a greater limit.
+     * @param subjectId the identifier of the subject data
+     * @param limit max item count limit
+     * @return copies of the cached latest comment data items, or null if not cached
+     */
+    public List<CommentItem> getLatestCommentItems(final String subjectId, final long limit) {
+        return getLatestCommentItems(subjectId, limit, null);
+    }
+
+    /**
+     * Returns copies of the cached latest comment data items of {@code subjectId} up to {@code limit} items,
+     * or null if not cached with the same or a greater limit, or if cached with a stamp other than {@code stamp}.
+     * @param subjectId the identifier of the subject data
+     * @param limit max item count limit
+     * @param stamp the current change stamp of the subject, or null if not available
+     * @return copies of the cached latest comment data items, or null if not cached
+     */
+    public synchronized List<CommentItem> getLatestCommentItems(final String subjectId, final long limit,
+            final String stamp) {
+        Entry<List<CommentItem>> entry = getEntry(commentItemsBySubject, subjectId);
+
+        if (entry != null && stamp != null && entry.stamp != null && !stamp.equals(entry.stamp)) {
+            commentItemsBySubject.remove(subjectId);
+            entry = null;
+        }
+
+        if (entry == null || (entry.limit < limit && entry.value.size() >= entry.limit)) {
+            missCount++;
+            return null;
+        }
+
+        final List<CommentItem> commentItems = new ArrayList<>();
+
+        for (CommentItem commentItem : entry.value) {
+            if (commentItems.size() >= limit) {
+                break;
+            }
+
+            commentItems.add((CommentItem) commentItem.clone());
+        }
+
+        hit(entry);
+        return commentItems;
+    }
+
+    /**
+     * Puts copies of the latest comment data items of {@code subjectId} read by {@code limit},
+     * unless invalidated since {@code readGeneration} or any item is pending.
+     * @param subjectId the identifier of the subject data
+     * @param limit max item count limit by which the items were read
+     * @param commentItems the latest comment data items
+     * @param readGeneration the generation before reading the items
+     */
+    public void putLatestCommentItems(final String subjectId, final long limit,
+            final List<CommentItem> commentItems, final long readGeneration) {
+        putLatestCommentItems(subjectId, limit, commentItems, readGeneration, null);
+    }
+
+    /**
+     * Puts copies of the latest comment data items of {@code subjectId} read by {@code limit} at {@code stamp},
+     * unless invalidated since {@code readGeneration} or any item is pending.
+     * The lazily loaded attributes of the items are loaded before being put, not to be loaded later by the copies
+     * outside of the request that read the items.
+     * @param subjectId the identifier of the subject data
+     * @param limit max item count limit by which the items were read
+     * @param commentItems the latest comment data items
+     * @param readGeneration the generation before reading the items
+     * @param stamp the change stamp of the subject before reading the items, or null if not available
+     */
+    public void putLatestCommentItems(final String subjectId, final long limit,
+            final List<CommentItem> commentItems, final long readGeneration, final String stamp) {
+        final List<CommentItem> copies = new ArrayList<>(commentItems.size());
+
+        for (CommentItem commentItem : commentItems) {
+            if (commentItem.isPending() || !loadAttributes(commentItem)) {
+                return;
+            }
+
+            copies.add((CommentItem) commentItem.clone());
+        }
+
+        synchronized (this) {
+            if (readGeneration == generation) {
+                commentItemsBySubject.put(subjectId,
+                        new Entry<>(copies, limit, System.currentTimeMillis() + timeToLive, stamp));
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of the cached comment data item of {@code commentId}, or null if not cached.
+     * @param commentId the identifier of the comment data item
+     * @return a copy of the cached comment data item, or null if not cached
+     */
+    public synchronized CommentItem getCommentItem(final String commentId) {
+        final Entry<CommentItem> entry = getEntry(commentItemsById, commentId);
+
+        if (entry == null) {
+            missCount++;
+            return null;
+        }
+
+        hit(entry);
+        return (CommentItem) entry.value.clone();
+    }
+
+    /**
+     * Puts a copy of {@code commentItem}, unless invalidated since {@code readGeneration} or the item is pending.
+     * The lazily loaded attributes of the item are loaded before being put.
+     * @param commentItem comment data item object
+     * @param readGeneration the generation before reading the item
+     */
+    public void putCommentItem(final CommentItem commentItem, final long readGeneration) {
+        if (commentItem.getId() == null || commentItem.isPending() || !loadAttributes(commentItem)) {
+            return;
+        }
+
+        final CommentItem copy = (CommentItem) commentItem.clone();
+
+        synchronized (this) {
+            if (readGeneration == generation) {
+                commentItemsById.put(copy.getId(),
+                        new Entry<>(copy, 1L, System.currentTimeMillis() + timeToLive, null));
+            }
+        }
+    }
+
+    /**
+     * Invalidates the cached latest comment data items of {@code subjectId}.
+     * @param subjectId the identifier of the subject data
+     */
+    public void invalidateSubject(final String subjectId) {
+        invalidateSubject(subjectId, Long.MAX_VALUE);
+    }
+
+    /**
+     * Invalidates the cached latest comment data items of {@code subjectId} changed at {@code changed},
+     * counting a stale read if the entry was hit after {@code changed}.
+     * @param subjectId the identifier of the subject data
+     * @param changed the time in milliseconds when the subject data was changed
+     */
+    public synchronized void invalidateSubject(final String subjectId, final long changed) {
+        generation++;
+        countStaleRead(commentItemsBySubject.remove(subjectId), changed);
+    }
+
+    /**
+     * Invalidates the cached comment data item of {@code commentId}, and the cached latest comment data item lists
+     * containing it.
+     * @param commentId the identifier of the comment data item
+     */
+    public void invalidateCommentItem(final String commentId) {
+        invalidateCommentItem(commentId, Long.MAX_VALUE);
+    }
+
+    /**
+     * Invalidates the cached comment data item of {@code commentId} changed at {@code changed},
+     * and the cached latest comment data item lists containing it,
+     * counting a stale read if any of the entries was hit after {@code changed}.
+     * @param commentId the identifier of the comment data item
+     * @param changed the time in milliseconds when the comment data item was changed
+     */
+    public synchronized void invalidateCommentItem(final String commentId, final long changed) {
+        generation++;
+        countStaleRead(commentItemsById.remove(commentId), changed);
+
+        for (Iterator<Entry<List<CommentItem>>> it = commentItemsBySubject.values().iterator(); it.hasNext();) {
+            final Entry<List<CommentItem>> entry = it.next();
+
+            for (CommentItem commentItem : entry.value) {
+                if (commentId.equals(commentItem.getId())) {
+                    it.remove();
+                    countStaleRead(entry, changed);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Invalidates all the cached latest comment data item lists.
+     */
+    public synchronized void invalidateAllSubjects() {
+        generation++;
+        commentItemsBySubject.clear();
+    }
+
+    /**
+     * Invalidates all the cached entries.
+     */
+    public synchronized void invalidateAll() {
+        invalidateAllSubjects();
+        commentItemsById.clear();
+    }
+
+    /**
+     * Returns the number of the reads served from the cache.
+     * @return the number of the reads served from the cache
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of the reads not found in the cache.
+     * @return the number of the reads not found in the cache
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the number of the invalidated entries which had been read from the cache after being changed
+     * in the repository, i.e, the number of the known stale reads.
+     * @return the number of the known stale reads
+     */
+    public synchronized long getStaleReadCount() {
+        return staleReadCount;
+    }
+
+    /**
+     * Returns true if {@link #startObservation(Session, long)} has been invoked.
+     * @return true if {@link #startObservation(Session, long)} has been invoked
+     */
+    public synchronized boolean isObservationStarted() {
+        return observationStarted;
+    }
+
+    /**
+     * Registers the invalidation listener for the JCR observation events under <code>/doccommentdata</code>,
+     * including the events of the other cluster nodes, with {@code session}, which is logged out by
+     * {@link #stopObservation()}. Does nothing if already invoked before, even if failed.
+     * @param session the dedicated session to receive the events and to read the changed nodes
+     * @param invalidationDelay delay in milliseconds to collect a burst of events into a single invalidation,
+     *        or zero to invalidate on each event delivery
+     * @throws RepositoryException if the listener cannot be registered
+     */
+    public synchronized void startObservation(final Session session, final long invalidationDelay)
+            throws RepositoryException {
+        if (observationStarted) {
+            return;
+        }
+
+        observationStarted = true;
+        observationSession = session;
+        invalidationListener = new CommentItemCacheInvalidationListener(this, session, invalidationDelay);
+        session.getWorkspace().getObservationManager().addEventListener(invalidationListener, OBSERVED_EVENT_TYPES,
+                "/" + DefaultJcrCommentPersistenceManager.DEFAULT_COMMENTS_LOCATION, true, null, null, false);
+    }
+
+    /**
+     * Unregisters the invalidation listener, stops its scheduler and logs out the session given by
+     * {@link #startObservation(Session, long)}.
+     */
+    public synchronized void stopObservation() {
+        if (observationSession != null) {
+            try {
+                if (observationSession.isLive()) {
+                    observationSession.getWorkspace().getObservationManager()
+                            .removeEventListener(invalidationListener);
+                }
+            } catch (RepositoryException e) {
+                log.warn("Failed to remove comment cache invalidation listener.", e);
+            } finally {
+                invalidationListener.close();
+                observationSession.logout();
+                observationSession = null;
+                invalidationListener = null;
+                observationStarted = false;
+            }
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        ToStringBuilder builder = new ToStringBuilder(this).append("subjects", commentItemsBySubject.size())
+                .append("items", commentItemsById.size()).append("hits", hitCount).append("misses", missCount)
+                .append("staleReads", staleReadCount);
+        return builder.toString();
+    }
+
+    private static boolean loadAttributes(final CommentItem commentItem) {
+        try {
+            commentItem.ensureAttributesLoaded();
+            return true;
+        } catch (IllegalStateException e) {
+            log.debug("Not caching the comment data item as its attributes cannot be loaded: {}",
+                    commentItem.getId(), e);
+            return false;
+        }
+    }
+
+    private void hit(final Entry<?> entry) {
+        hitCount++;
+        entry.lastHit = System.currentTimeMillis();
+    }
+
+    private void countStaleRead(final Entry<?> entry, final long changed) {
+        if (entry != null && entry.lastHit > changed) {
+            staleReadCount++;
+        }
+    }
+
+    private <V> Entry<V> getEntry(final Map<String, Entry<V>> map, final String key) {
+        final Entry<V> entry = map.get(key);
+
+        if (entry != null && entry.expires < System.currentTimeMillis()) {
+            map.remove(key);
+            return null;
+        }
+
+        return entry;
+    }
+
+    private static class Entry<V> {
+
+        private final V value;
+        private final long limit;
+        private final long expires;
+        private final String stamp;
+        private long lastHit;
+
+        private Entry(final V value, final long limit, final long expires, final String stamp) {
+            this.value = value;
+            this.limit = limit;
+            this.expires = expires;
+            this.stamp = stamp;
+        }
+    }
+
+    private static class LruMap<K, V> extends LinkedHashMap<K, V> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+
+        private LruMap(final int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
+            return size() > maxSize;
+        }
+    }
+}
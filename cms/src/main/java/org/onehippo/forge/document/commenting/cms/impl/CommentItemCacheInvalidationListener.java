@@ -0,0 +1,208 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.observation.Event;
+import javax.jcr.observation.EventIterator;
+import javax.jcr.observation.EventListener;
+
+import org.apache.commons.lang3.StringUtils;
+import org.hippoecm.repository.util.JcrUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * JCR observation listener which invalidates the entries of {@link CommentItemCache}
+ * on the changes of comment data nodes, made locally or in the other cluster nodes.
+ * <P>
+ * The subjects and the items to invalidate are collected for the invalidation delay after the first event,
+ * so that a burst of events, e.g, by a bulk import or a cluster journal sync, results in a single invalidation
+ * per subject and per item.
+ * </P>
+ */
+public class CommentItemCacheInvalidationListener implements EventListener {
+
+    private static Logger log = LoggerFactory.getLogger(CommentItemCacheInvalidationListener.class);
+
+    private final CommentItemCache cache;
+    private final Session session;
+    private final long invalidationDelay;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Subject identifiers to invalidate, mapped to the earliest change time in milliseconds.
+     */
+    private final Map<String, Long> pendingSubjectIds = new LinkedHashMap<>();
+
+    /**
+     * Comment identifiers to invalidate, mapped to the earliest change time in milliseconds.
+     */
+    private final Map<String, Long> pendingCommentIds = new LinkedHashMap<>();
+
+    private boolean pendingAllSubjects;
+    private boolean flushScheduled;
+    private long eventCount;
+
+    public CommentItemCacheInvalidationListener(final CommentItemCache cache, final Session session,
+            final long invalidationDelay) {
+        this.cache = cache;
+        this.session = session;
+        this.invalidationDelay = invalidationDelay;
+
+        if (invalidationDelay > 0L) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "doc-commenting-cache-invalidation");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            scheduler = null;
+        }
+    }
+
+    @Override
+    public void onEvent(final EventIterator events) {
+        while (events.hasNext()) {
+            final Event event = events.nextEvent();
+
+            try {
+                collect(event);
+            } catch (RepositoryException e) {
+                log.warn("Failed to read comment data change event. {}", e.toString());
+
+                synchronized (this) {
+                    pendingAllSubjects = true;
+                }
+            }
+        }
+
+        if (scheduler == null) {
+            flush();
+        } else {
+            synchronized (this) {
+                if (!flushScheduled) {
+                    flushScheduled = true;
+                    scheduler.schedule(this::flush, invalidationDelay, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+    }
+
+    /**
+     * Invalidates the collected subjects and items in the cache.
+     */
+    public void flush() {
+        final Map<String, Long> subjectIds;
+        final Map<String, Long> commentIds;
+        final boolean allSubjects;
+
+        synchronized (this) {
+            subjectIds = new LinkedHashMap<>(pendingSubjectIds);
+            commentIds = new LinkedHashMap<>(pendingCommentIds);
+            allSubjects = pendingAllSubjects;
+            pendingSubjectIds.clear();
+            pendingCommentIds.clear();
+            pendingAllSubjects = false;
+            flushScheduled = false;
+        }
+
+        if (allSubjects) {
+            cache.invalidateAllSubjects();
+        } else {
+            for (Map.Entry<String, Long> entry : subjectIds.entrySet()) {
+                cache.invalidateSubject(entry.getKey(), entry.getValue());
+            }
+        }
+
+        for (Map.Entry<String, Long> entry : commentIds.entrySet()) {
+            cache.invalidateCommentItem(entry.getKey(), entry.getValue());
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Comment cache invalidated: {} subjects, {} items. {}",
+                    allSubjects ? "all" : subjectIds.size(), commentIds.size(), cache);
+        }
+    }
+
+    /**
+     * Returns the number of the events received.
+     * @return the number of the events received
+     */
+    public synchronized long getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * Stops the scheduler after invalidating the collected subjects and items.
+     */
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+
+        flush();
+    }
+
+    private void collect(final Event event) throws RepositoryException {
+        final long changed = event.getDate();
+        final String commentId = event.getIdentifier();
+        String subjectId = null;
+        boolean unknownSubject = false;
+
+        if (event.getType() != Event.NODE_REMOVED) {
+            String nodePath = event.getPath();
+
+            if (event.getType() != Event.NODE_ADDED && event.getType() != Event.NODE_MOVED) {
+                nodePath = StringUtils.substringBeforeLast(nodePath, "/");
+            }
+
+            if (session.nodeExists(nodePath)) {
+                final Node node = session.getNode(nodePath);
+
+                if (!node.isNodeType(DefaultJcrCommentPersistenceManager.NT_COMMENT)) {
+                    return;
+                }
+
+                subjectId = JcrUtils.getStringProperty(node, DefaultJcrCommentPersistenceManager.PROP_SUBJECTID, "");
+            } else {
+                unknownSubject = (event.getType() == Event.NODE_ADDED);
+            }
+        }
+
+        synchronized (this) {
+            eventCount++;
+
+            if (StringUtils.isNotEmpty(commentId)) {
+                pendingCommentIds.merge(commentId, changed, Math::min);
+            }
+
+            if (subjectId != null) {
+                pendingSubjectIds.merge(subjectId, changed, Math::min);
+            }
+
+            pendingAllSubjects |= unknownSubject;
+        }
+    }
+}
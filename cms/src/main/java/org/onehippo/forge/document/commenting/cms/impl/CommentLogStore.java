@@ -0,0 +1,1064 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+import org.onehippo.forge.document.commenting.cms.api.CommentItem;
+import org.onehippo.forge.document.commenting.cms.api.CommentItemCursor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only log store of comment data items in a local directory, used by
+ * {@link FileLogCommentPersistenceManager}.
+ * <P>
+ * Every create, update or delete appends a record to the active segment file ({@code segment-<n>.log}),
+ * which is rolled over when it exceeds the max segment size. Each segment file starts with a header of the magic
+ * number and the record format version. Each record consists of its length, the CRC32 checksum and the body:
+ * the record type, the comment identifier, the subject identifier, the creation time and the encoded comment data
+ * item. Only the headers are read when the in-memory index is rebuilt on opening the store; a torn record at
+ * the end of the last segment is detected by the checksum and truncated.
+ * </P>
+ * <P>
+ * A comment data item is encoded field by field instead of by Java serialization, so the records stay readable
+ * across the versions of {@link CommentItem}: the author, the content and the last modification time, followed by
+ * the extra attributes of the value types supported by the other stores, i.e, string, boolean, long, double and
+ * date values or arrays of them. The attributes of the other types are not stored.
+ * </P>
+ * <P>
+ * The index keeps the location of the latest record of each comment, and the comments of each subject
+ * sorted by creation time (latest first), so reading a page of comments of a document reads only those records
+ * from the memory-mapped segments. A background thread compacts the oldest sealed segment having more
+ * superseded or deleted records than live ones, by copying its live records to the active segment.
+ * A delete record (tombstone) stores the sequence of the segment of the deleted record, and is copied only
+ * while a segment which may still have a record of the deleted comment exists, so it is dropped eventually.
+ * A compacted segment is kept mapped until no reader refers to it any more, so lock-free reads of entries
+ * found before the compaction can still read it.
+ * </P>
+ * <P>
+ * The store is local to a JVM, so each cluster node has its own comments unless the directory is shared
+ * by a single node only.
+ * </P>
+ */
+public class CommentLogStore {
+
+    private static Logger log = LoggerFactory.getLogger(CommentLogStore.class);
+
+    /**
+     * Default max size of a segment file in bytes.
+     */
+    public static final long DEFAULT_MAX_SEGMENT_SIZE = 64L * 1024L * 1024L;
+
+    /**
+     * Upper bound of the max size of a segment file in bytes, as the records are located in a memory-mapped
+     * segment by int positions, leaving room for the last record exceeding the max size.
+     */
+    public static final long MAX_SEGMENT_SIZE_LIMIT = 1024L * 1024L * 1024L;
+
+    /**
+     * Interval between the checks for segments to compact.
+     */
+    private static final long COMPACTION_INTERVAL_MILLIS = 60000L;
+
+    /**
+     * Ratio of the dead bytes in a sealed segment from which the segment is compacted.
+     */
+    private static final double COMPACTION_DEAD_RATIO = 0.5d;
+
+    private static final byte TYPE_PUT = 1;
+    private static final byte TYPE_DELETE = 2;
+
+    /**
+     * Magic number at the start of every segment file.
+     */
+    private static final int SEGMENT_MAGIC = 0x44434C47;
+
+    /**
+     * Version of the record format written to the header of new segment files.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Size of the magic number and the format version at the start of every segment file.
+     */
+    private static final int SEGMENT_HEADER_SIZE = 8;
+
+    private static final byte ATTR_STRING = 'S';
+    private static final byte ATTR_BOOLEAN = 'B';
+    private static final byte ATTR_LONG = 'L';
+    private static final byte ATTR_DOUBLE = 'D';
+    private static final byte ATTR_DATE = 'T';
+
+    /**
+     * Size of the length and the checksum preceding each record body.
+     */
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private static final String SEGMENT_FILE_PREFIX = "segment-";
+    private static final String SEGMENT_FILE_SUFFIX = ".log";
+
+    private static final Map<String, CommentLogStore> instances = new ConcurrentHashMap<>();
+
+    private static final Comparator<Entry> LATEST_FIRST = (e1, e2) -> {
+        int ret = Long.compare(e2.created, e1.created);
+        return (ret != 0) ? ret : e2.id.compareTo(e1.id);
+    };
+
+    private final File directory;
+    private final long maxSegmentSize;
+
+    /**
+     * Segments by their sequence numbers. Modified only while holding the lock of this store.
+     */
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+
+    private final Map<String, Entry> entriesById = new ConcurrentHashMap<>();
+    private final Map<String, Subject> subjects = new ConcurrentHashMap<>();
+
+    private Segment activeSegment;
+    private final Thread compactor;
+    private volatile boolean running = true;
+
+    /**
+     * Opens the store in {@code directory}, rebuilding the index from the existing segment files.
+     * @param directory directory of the segment files
+     * @param maxSegmentSize max size of a segment file in bytes, up to {@link #MAX_SEGMENT_SIZE_LIMIT}
+     * @param compact whether or not to compact the segments in a background thread
+     * @throws IOException if the segment files cannot be read or created, or have an unsupported format
+     */
+    CommentLogStore(final File directory, final long maxSegmentSize, final boolean compact) throws IOException {
+        this.directory = directory;
+
+        if (maxSegmentSize > MAX_SEGMENT_SIZE_LIMIT) {
+            log.warn("The max comment log segment size {} exceeds the limit. Using {} instead.", maxSegmentSize,
+                    MAX_SEGMENT_SIZE_LIMIT);
+        }
+
+        this.maxSegmentSize = Math.min(maxSegmentSize, MAX_SEGMENT_SIZE_LIMIT);
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create the comment log directory: " + directory);
+        }
+
+        final long start = System.currentTimeMillis();
+        rebuildIndex();
+        log.info("Opened the comment log store in {} with {} comments in {} segments in {}ms.", directory,
+                entriesById.size(), segments.size(), System.currentTimeMillis() - start);
+
+        if (compact) {
+            compactor = new Thread(this::compactPeriodically, "doc-commenting-log-compactor");
+            compactor.setDaemon(true);
+            compactor.start();
+        } else {
+            compactor = null;
+        }
+    }
+
+    /**
+     * Returns the store in {@code directory}, opening it on the first invocation for the directory.
+     * @param directory directory of the segment files
+     * @param maxSegmentSize max size of a segment file in bytes, up to {@link #MAX_SEGMENT_SIZE_LIMIT},
+     * used only when opening the store
+     * @return the store in {@code directory}
+     * @throws IOException if the store cannot be opened
+     */
+    public static CommentLogStore getInstance(final File directory, final long maxSegmentSize) throws IOException {
+        final String key = directory.getCanonicalPath();
+        CommentLogStore store = instances.get(key);
+
+        if (store == null) {
+            synchronized (CommentLogStore.class) {
+                store = instances.get(key);
+
+                if (store == null) {
+                    store = new CommentLogStore(directory, Math.max(1024L, maxSegmentSize), true);
+                    instances.put(key, store);
+                }
+            }
+        }
+
+        return store;
+    }
+
+    /**
+     * Closes all the opened stores.
+     */
+    public static void shutdown() {
+        synchronized (CommentLogStore.class) {
+            for (CommentLogStore store : instances.values()) {
+                store.close();
+            }
+
+            instances.clear();
+        }
+    }
+
+    /**
+     * Returns the number of the live comments in the store.
+     * @return the number of the live comments in the store
+     */
+    public int size() {
+        return entriesById.size();
+    }
+
+    /**
+     * Returns the identifiers of the subjects having live comments in the store.
+     * @return the identifiers of the subjects having live comments in the store
+     */
+    public List<String> getSubjectIds() {
+        final List<String> subjectIds = new ArrayList<>();
+
+        for (Map.Entry<String, Subject> entry : subjects.entrySet()) {
+            if (entry.getValue().count.get() > 0L) {
+                subjectIds.add(entry.getKey());
+            }
+        }
+
+        return subjectIds;
+    }
+
+    /**
+     * Returns the number of the segment files.
+     * @return the number of the segment files
+     */
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Returns true if the comment exists.
+     * @param commentId comment identifier
+     * @return true if the comment exists
+     */
+    public boolean contains(final String commentId) {
+        return entriesById.containsKey(commentId);
+    }
+
+    /**
+     * Reads the comment data item.
+     * @param commentId comment identifier
+     * @return the comment data item, or null if not found
+     * @throws IOException if the record cannot be read
+     */
+    public CommentItem get(final String commentId) throws IOException {
+        final Entry entry = entriesById.get(commentId);
+        return (entry != null) ? read(entry) : null;
+    }
+
+    /**
+     * Reads the latest comment data items of the subject.
+     * @param subjectId subject identifier
+     * @param cursor position after which the items are read, or null to read from the latest
+     * @param offset number of items to skip
+     * @param limit max number of items to read
+     * @return the latest comment data items of the subject
+     * @throws IOException if a record cannot be read
+     */
+    public List<CommentItem> getLatest(final String subjectId, final CommentItemCursor cursor, final long offset,
+            final long limit) throws IOException {
+        final Subject subject = subjects.get(subjectId);
+
+        if (subject == null || limit <= 0L) {
+            return new ArrayList<>();
+        }
+
+        final NavigableSet<Entry> entries = (cursor != null)
+                ? subject.entries.tailSet(new Entry(cursor.getId(), null, cursor.getCreated(), null, 0L, 0), false)
+                : subject.entries;
+        final List<CommentItem> commentItems = new ArrayList<>();
+        long skipped = 0L;
+
+        for (Iterator<Entry> it = entries.iterator(); it.hasNext() && commentItems.size() < limit; ) {
+            final Entry entry = it.next();
+
+            if (skipped < offset) {
+                skipped++;
+                continue;
+            }
+
+            commentItems.add(read(entry));
+        }
+
+        return commentItems;
+    }
+
+    /**
+     * Returns the number of the comments of the subject.
+     * @param subjectId subject identifier
+     * @return the number of the comments of the subject
+     */
+    public long count(final String subjectId) {
+        final Subject subject = subjects.get(subjectId);
+        return (subject != null) ? subject.count.get() : 0L;
+    }
+
+    /**
+     * Appends the records of the comment data items, replacing the existing items of the same identifiers.
+     * Each item must have its identifier, subject identifier and creation time.
+     * @param commentItems comment data items
+     * @param sync whether or not to force the appended records to the storage device
+     * @throws IOException if the records cannot be written
+     */
+    public synchronized void put(final List<CommentItem> commentItems, final boolean sync) throws IOException {
+        for (CommentItem commentItem : commentItems) {
+            final byte[] body = createRecordBody(TYPE_PUT, commentItem.getId(), commentItem.getSubjectId(),
+                    commentItem.getCreated().getTimeInMillis(), encode(commentItem));
+            final Entry entry = append(body, commentItem.getId(), commentItem.getSubjectId(),
+                    commentItem.getCreated().getTimeInMillis());
+            index(entry);
+        }
+
+        if (sync) {
+            activeSegment.channel.force(false);
+        }
+    }
+
+    /**
+     * Appends the delete records of the comments.
+     * @param commentIds comment identifiers
+     * @param sync whether or not to force the appended records to the storage device
+     * @throws IOException if the records cannot be written
+     */
+    public synchronized void delete(final List<String> commentIds, final boolean sync) throws IOException {
+        for (String commentId : commentIds) {
+            final Entry existing = entriesById.get(commentId);
+
+            if (existing == null) {
+                continue;
+            }
+
+            final long deletedSequence = existing.segment.sequence;
+            final byte[] body = createRecordBody(TYPE_DELETE, commentId, existing.subjectId, existing.created,
+                    createTombstonePayload(deletedSequence));
+            final Entry tombstone = append(body, commentId, existing.subjectId, existing.created);
+            unindex(existing);
+            addTombstone(tombstone, deletedSequence);
+        }
+
+        if (sync) {
+            activeSegment.channel.force(false);
+        }
+    }
+
+    /**
+     * Compacts the oldest sealed segment having more dead bytes than the threshold, if any.
+     * @return true if a segment was compacted
+     * @throws IOException if the segment cannot be compacted
+     */
+    public synchronized boolean compact() throws IOException {
+        Segment candidate = null;
+
+        for (Segment segment : segments.values()) {
+            if (segment != activeSegment && segment.deadBytes >= segment.size * COMPACTION_DEAD_RATIO) {
+                candidate = segment;
+                break;
+            }
+        }
+
+        if (candidate == null) {
+            return false;
+        }
+
+        long copied = 0L;
+        long offset = SEGMENT_HEADER_SIZE;
+
+        while (offset < candidate.size) {
+            final int length = candidate.readInt(offset);
+            final ByteBuffer body = candidate.read(offset + RECORD_HEADER_SIZE, length);
+            final byte type = body.get();
+            final String commentId = readString(body);
+            final String subjectId = readString(body);
+            final long created = body.getLong();
+            final Entry current = entriesById.get(commentId);
+
+            if (type == TYPE_PUT && current != null && current.segment == candidate && current.offset == offset) {
+                body.rewind();
+                final byte[] bytes = new byte[length];
+                body.get(bytes);
+                index(append(bytes, commentId, subjectId, created));
+                copied++;
+            } else if (type == TYPE_DELETE && current == null) {
+                final long deletedSequence = readDeletedSequence(body, candidate);
+
+                // keep the tombstone while another segment may still have a record of the deleted comment
+                if (isTombstoneNeeded(deletedSequence, candidate)) {
+                    body.rewind();
+                    final byte[] bytes = new byte[length];
+                    body.get(bytes);
+                    addTombstone(append(bytes, commentId, subjectId, created), deletedSequence);
+                }
+            }
+
+            offset += RECORD_HEADER_SIZE + length;
+        }
+
+        activeSegment.channel.force(false);
+        segments.remove(candidate.sequence);
+        releaseTombstones();
+        candidate.retire();
+
+        if (!candidate.file.delete()) {
+            log.warn("Cannot delete the compacted comment log segment: {}", candidate.file);
+        }
+
+        log.info("Compacted the comment log segment {}, copying {} live comments.", candidate.file.getName(), copied);
+        return true;
+    }
+
+    /**
+     * Stops the compaction thread and closes the segment files.
+     */
+    public synchronized void close() {
+        running = false;
+
+        if (compactor != null) {
+            compactor.interrupt();
+        }
+
+        for (Segment segment : segments.values()) {
+            try {
+                segment.channel.close();
+            } catch (IOException e) {
+                log.warn("Cannot close the comment log segment: {}", segment.file, e);
+            }
+        }
+    }
+
+    private void compactPeriodically() {
+        while (running) {
+            try {
+                Thread.sleep(COMPACTION_INTERVAL_MILLIS);
+
+                while (running && compact()) {
+                    // compact the next segment if any
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Failed to compact the comment log segments in {}.", directory, e);
+            }
+        }
+    }
+
+    private void rebuildIndex() throws IOException {
+        final File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_FILE_PREFIX)
+                && name.endsWith(SEGMENT_FILE_SUFFIX));
+
+        if (files != null) {
+            for (File file : files) {
+                final String name = file.getName();
+                final long sequence = Long.parseLong(
+                        name.substring(SEGMENT_FILE_PREFIX.length(), name.length() - SEGMENT_FILE_SUFFIX.length()));
+                segments.put(sequence, new Segment(sequence, file));
+            }
+        }
+
+        final Segment lastSegment = segments.isEmpty() ? null : segments.lastEntry().getValue();
+
+        for (Segment segment : segments.values()) {
+            if (segment == lastSegment && segment.size < SEGMENT_HEADER_SIZE) {
+                // torn while being created
+                segment.channel.truncate(0L);
+                segment.size = 0L;
+                writeSegmentHeader(segment);
+            }
+
+            verifySegmentHeader(segment);
+            long offset = SEGMENT_HEADER_SIZE;
+
+            while (offset < segment.size) {
+                // only the last segment can end with a torn record, as the others were forced before rolling over
+                final int length = readValidRecordLength(segment, offset, segment == lastSegment);
+
+                if (length < 0) {
+                    log.warn("Truncating the comment log segment {} at the invalid record at {}.", segment.file,
+                            offset);
+                    segment.channel.truncate(offset);
+                    segment.size = offset;
+                    segment.mapped = null;
+                    break;
+                }
+
+                final ByteBuffer body = segment.read(offset + RECORD_HEADER_SIZE, length);
+                final byte type = body.get();
+                final String commentId = readString(body);
+                final String subjectId = readString(body);
+                final long created = body.getLong();
+                final Entry entry = new Entry(commentId, subjectId, created, segment, offset,
+                        RECORD_HEADER_SIZE + length);
+
+                if (type == TYPE_PUT) {
+                    index(entry);
+                } else {
+                    addTombstone(entry, readDeletedSequence(body, segment));
+                    final Entry existing = entriesById.get(commentId);
+
+                    if (existing != null) {
+                        unindex(existing);
+                    }
+                }
+
+                offset += RECORD_HEADER_SIZE + length;
+            }
+        }
+
+        if (segments.isEmpty()) {
+            activeSegment = createSegment(1L);
+        } else {
+            activeSegment = segments.lastEntry().getValue();
+        }
+    }
+
+    /**
+     * Returns the body length of the record at {@code offset}, or -1 if the record is torn or corrupted.
+     * The checksum is verified only if {@code verify} is true.
+     */
+    private static int readValidRecordLength(final Segment segment, final long offset, final boolean verify)
+            throws IOException {
+        if (offset + RECORD_HEADER_SIZE > segment.size) {
+            return -1;
+        }
+
+        final int length = segment.readInt(offset);
+
+        if (length <= 0 || offset + RECORD_HEADER_SIZE + length > segment.size) {
+            return -1;
+        }
+
+        if (!verify) {
+            return length;
+        }
+
+        final int checksum = segment.readInt(offset + 4);
+        final ByteBuffer body = segment.read(offset + RECORD_HEADER_SIZE, length);
+        final CRC32 crc = new CRC32();
+        crc.update(body);
+        return ((int) crc.getValue() == checksum) ? length : -1;
+    }
+
+    /**
+     * Accounts the {@code tombstone} as live bytes of its segment while it is needed, or as dead bytes otherwise,
+     * so that a segment isn't compacted only to copy the needed tombstones again.
+     */
+    private void addTombstone(final Entry tombstone, final long deletedSequence) {
+        final Segment segment = tombstone.segment;
+
+        if (isTombstoneNeeded(deletedSequence, segment)) {
+            segment.liveTombstoneBytes.merge(deletedSequence, (long) tombstone.length, Long::sum);
+        } else {
+            segment.deadBytes += tombstone.length;
+        }
+    }
+
+    /**
+     * Accounts the tombstones as dead bytes of their segments if no longer needed after a segment was removed.
+     */
+    private void releaseTombstones() {
+        for (Segment segment : segments.values()) {
+            for (Iterator<Map.Entry<Long, Long>> it = segment.liveTombstoneBytes.entrySet().iterator();
+                    it.hasNext(); ) {
+                final Map.Entry<Long, Long> entry = it.next();
+
+                if (!isTombstoneNeeded(entry.getKey(), segment)) {
+                    segment.deadBytes += entry.getValue();
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true if a segment other than {@code excluded} may still have a record of a comment deleted
+     * when its latest record was in the segment of {@code deletedSequence}.
+     */
+    private boolean isTombstoneNeeded(final long deletedSequence, final Segment excluded) {
+        for (Segment segment : segments.headMap(deletedSequence, true).values()) {
+            if (segment != excluded) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Reads the sequence of the segment of the deleted record from the tombstone body positioned after the
+     * header fields, or returns the sequence of {@code segment} for the tombstones written without it.
+     */
+    private static long readDeletedSequence(final ByteBuffer body, final Segment segment) {
+        return (body.remaining() >= 8) ? body.getLong() : segment.sequence;
+    }
+
+    private static byte[] createTombstonePayload(final long deletedSequence) {
+        return ByteBuffer.allocate(8).putLong(deletedSequence).array();
+    }
+
+    private Segment createSegment(final long sequence) throws IOException {
+        final File file = new File(directory,
+                String.format("%s%016d%s", SEGMENT_FILE_PREFIX, sequence, SEGMENT_FILE_SUFFIX));
+        final Segment segment = new Segment(sequence, file);
+        writeSegmentHeader(segment);
+        segments.put(sequence, segment);
+        return segment;
+    }
+
+    private static void writeSegmentHeader(final Segment segment) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+        header.putInt(SEGMENT_MAGIC).putInt(FORMAT_VERSION).flip();
+
+        while (header.hasRemaining()) {
+            segment.channel.write(header, header.position());
+        }
+
+        segment.size = SEGMENT_HEADER_SIZE;
+    }
+
+    private static void verifySegmentHeader(final Segment segment) throws IOException {
+        if (segment.size < SEGMENT_HEADER_SIZE || segment.readInt(0L) != SEGMENT_MAGIC) {
+            throw new IOException("Not a comment log segment: " + segment.file);
+        }
+
+        final int version = segment.readInt(4L);
+
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported format version " + version + " of the comment log segment: "
+                    + segment.file);
+        }
+    }
+
+    private Entry append(final byte[] body, final String commentId, final String subjectId, final long created)
+            throws IOException {
+        if (RECORD_HEADER_SIZE + (long) body.length > MAX_SEGMENT_SIZE_LIMIT) {
+            throw new IOException("The comment log record of " + commentId + " is too large: " + body.length);
+        }
+
+        if (activeSegment.size > SEGMENT_HEADER_SIZE
+                && activeSegment.size + RECORD_HEADER_SIZE + body.length > maxSegmentSize) {
+            activeSegment.channel.force(false);
+            activeSegment = createSegment(activeSegment.sequence + 1L);
+        }
+
+        final CRC32 crc = new CRC32();
+        crc.update(body);
+        final ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + body.length);
+        buffer.putInt(body.length).putInt((int) crc.getValue()).put(body).flip();
+
+        final long offset = activeSegment.size;
+
+        while (buffer.hasRemaining()) {
+            activeSegment.channel.write(buffer, offset + buffer.position());
+        }
+
+        activeSegment.size += RECORD_HEADER_SIZE + body.length;
+        return new Entry(commentId, subjectId, created, activeSegment, offset, RECORD_HEADER_SIZE + body.length);
+    }
+
+    private void index(final Entry entry) {
+        final Entry existing = entriesById.put(entry.id, entry);
+        final Subject subject = subjects.computeIfAbsent(entry.subjectId, id -> new Subject());
+
+        if (existing != null) {
+            existing.segment.deadBytes += existing.length;
+            final Subject existingSubject = subjects.get(existing.subjectId);
+
+            if (existingSubject != null && existingSubject.entries.remove(existing)) {
+                existingSubject.count.decrementAndGet();
+            }
+        }
+
+        // the entry replaces the equally ordered existing entry if any
+        if (subject.entries.add(entry)) {
+            subject.count.incrementAndGet();
+        }
+    }
+
+    private void unindex(final Entry existing) {
+        entriesById.remove(existing.id);
+        existing.segment.deadBytes += existing.length;
+        final Subject subject = subjects.get(existing.subjectId);
+
+        if (subject != null && subject.entries.remove(existing)) {
+            subject.count.decrementAndGet();
+        }
+    }
+
+    private static CommentItem read(final Entry entry) throws IOException {
+        final ByteBuffer body = entry.segment.read(entry.offset + RECORD_HEADER_SIZE,
+                entry.length - RECORD_HEADER_SIZE);
+        return decode(body);
+    }
+
+    private static byte[] createRecordBody(final byte type, final String commentId, final String subjectId,
+            final long created, final byte[] payload) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream(256);
+
+        try (DataOutputStream dos = new DataOutputStream(baos)) {
+            dos.writeByte(type);
+            writeString(dos, commentId);
+            writeString(dos, subjectId);
+            dos.writeLong(created);
+
+            if (payload != null) {
+                dos.write(payload);
+            }
+        }
+
+        return baos.toByteArray();
+    }
+
+    /**
+     * Encodes the fields of {@code commentItem} following the creation time in the record body.
+     */
+    private static byte[] encode(final CommentItem commentItem) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream(256);
+
+        try (DataOutputStream dos = new DataOutputStream(baos)) {
+            writeLongString(dos, commentItem.getAuthor());
+            writeLongString(dos, commentItem.getContent());
+            dos.writeBoolean(commentItem.getLastModified() != null);
+
+            if (commentItem.getLastModified() != null) {
+                dos.writeLong(commentItem.getLastModified().getTimeInMillis());
+            }
+
+            final List<String> names = new ArrayList<>();
+
+            for (String name : commentItem.getAttributeNames()) {
+                if (getAttributeType(commentItem.getAttribute(name)) != 0) {
+                    names.add(name);
+                }
+            }
+
+            dos.writeInt(names.size());
+
+            for (String name : names) {
+                final Object value = commentItem.getAttribute(name);
+                writeString(dos, name);
+                dos.writeByte(getAttributeType(value));
+
+                if (!value.getClass().isArray()) {
+                    dos.writeInt(-1);
+                    writeAttributeValue(dos, value);
+                } else {
+                    final int length = Array.getLength(value);
+                    dos.writeInt(length);
+
+                    for (int i = 0; i < length; i++) {
+                        writeAttributeValue(dos, Array.get(value, i));
+                    }
+                }
+            }
+        }
+
+        return baos.toByteArray();
+    }
+
+    /**
+     * Decodes the comment data item from the body of a put record.
+     */
+    private static CommentItem decode(final ByteBuffer body) {
+        body.get();
+        final CommentItem commentItem = new CommentItem();
+        commentItem.setId(readString(body));
+        commentItem.setSubjectId(readString(body));
+        commentItem.setCreated(toCalendar(body.getLong()));
+        commentItem.setAuthor(readLongString(body));
+        commentItem.setContent(readLongString(body));
+
+        if (body.get() != 0) {
+            commentItem.setLastModified(toCalendar(body.getLong()));
+        }
+
+        final int count = body.getInt();
+
+        for (int i = 0; i < count; i++) {
+            final String name = readString(body);
+            final byte type = body.get();
+            final int length = body.getInt();
+
+            if (length < 0) {
+                commentItem.setAttribute(name, readAttributeValue(body, type));
+                continue;
+            }
+
+            switch (type) {
+                case ATTR_BOOLEAN: {
+                    final boolean[] array = new boolean[length];
+                    for (int j = 0; j < length; j++) {
+                        array[j] = (Boolean) readAttributeValue(body, type);
+                    }
+                    commentItem.setAttribute(name, array);
+                    break;
+                }
+                case ATTR_LONG: {
+                    final long[] array = new long[length];
+                    for (int j = 0; j < length; j++) {
+                        array[j] = (Long) readAttributeValue(body, type);
+                    }
+                    commentItem.setAttribute(name, array);
+                    break;
+                }
+                case ATTR_DOUBLE: {
+                    final double[] array = new double[length];
+                    for (int j = 0; j < length; j++) {
+                        array[j] = (Double) readAttributeValue(body, type);
+                    }
+                    commentItem.setAttribute(name, array);
+                    break;
+                }
+                case ATTR_DATE: {
+                    final Calendar[] array = new Calendar[length];
+                    for (int j = 0; j < length; j++) {
+                        array[j] = (Calendar) readAttributeValue(body, type);
+                    }
+                    commentItem.setAttribute(name, array);
+                    break;
+                }
+                default: {
+                    final String[] array = new String[length];
+                    for (int j = 0; j < length; j++) {
+                        array[j] = (String) readAttributeValue(body, type);
+                    }
+                    commentItem.setAttribute(name, array);
+                }
+            }
+        }
+
+        return commentItem;
+    }
+
+    /**
+     * Returns the type of the attribute value or of the elements of the attribute value array,
+     * or zero if not supported.
+     */
+    private static byte getAttributeType(final Object value) {
+        if (value instanceof String || value instanceof String[]) {
+            return ATTR_STRING;
+        } else if (value instanceof Boolean || value instanceof boolean[]) {
+            return ATTR_BOOLEAN;
+        } else if (value instanceof Long || value instanceof long[]) {
+            return ATTR_LONG;
+        } else if (value instanceof Double || value instanceof double[]) {
+            return ATTR_DOUBLE;
+        } else if (value instanceof Calendar || value instanceof Calendar[]) {
+            return ATTR_DATE;
+        }
+
+        return 0;
+    }
+
+    private static void writeAttributeValue(final DataOutputStream dos, final Object value) throws IOException {
+        if (value instanceof Boolean) {
+            dos.writeBoolean((Boolean) value);
+        } else if (value instanceof Long) {
+            dos.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            dos.writeDouble((Double) value);
+        } else if (value instanceof Calendar) {
+            dos.writeLong(((Calendar) value).getTimeInMillis());
+        } else {
+            writeLongString(dos, (String) value);
+        }
+    }
+
+    private static Object readAttributeValue(final ByteBuffer buffer, final byte type) {
+        switch (type) {
+            case ATTR_BOOLEAN:
+                return buffer.get() != 0;
+            case ATTR_LONG:
+                return buffer.getLong();
+            case ATTR_DOUBLE:
+                return buffer.getDouble();
+            case ATTR_DATE:
+                return toCalendar(buffer.getLong());
+            default:
+                return readLongString(buffer);
+        }
+    }
+
+    private static Calendar toCalendar(final long timeInMillis) {
+        final Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(timeInMillis);
+        return calendar;
+    }
+
+    /**
+     * Writes the nullable {@code value} of any length, e.g, the content of a comment.
+     */
+    private static void writeLongString(final DataOutputStream dos, final String value) throws IOException {
+        if (value == null) {
+            dos.writeInt(-1);
+            return;
+        }
+
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        dos.writeInt(bytes.length);
+        dos.write(bytes);
+    }
+
+    private static String readLongString(final ByteBuffer buffer) {
+        final int length = buffer.getInt();
+
+        if (length < 0) {
+            return null;
+        }
+
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(final DataOutputStream dos, final String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        dos.writeShort(bytes.length);
+        dos.write(bytes);
+    }
+
+    private static String readString(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Location of the latest record of a comment.
+     */
+    private static class Entry implements Comparable<Entry> {
+
+        private final String id;
+        private final String subjectId;
+        private final long created;
+        private final Segment segment;
+        private final long offset;
+        private final int length;
+
+        private Entry(final String id, final String subjectId, final long created, final Segment segment,
+                final long offset, final int length) {
+            this.id = id;
+            this.subjectId = subjectId;
+            this.created = created;
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int compareTo(final Entry o) {
+            return LATEST_FIRST.compare(this, o);
+        }
+    }
+
+    private static class Subject {
+
+        private final NavigableSet<Entry> entries = new ConcurrentSkipListSet<>();
+        private final AtomicInteger count = new AtomicInteger();
+    }
+
+    /**
+     * Segment file, read through a memory-mapped buffer which is remapped when the file has grown.
+     */
+    private static class Segment {
+
+        private final long sequence;
+        private final File file;
+        private final FileChannel channel;
+        private volatile long size;
+        private volatile MappedByteBuffer mapped;
+
+        /**
+         * Bytes of the superseded or deleted records and of the tombstones. Modified only while holding
+         * the lock of the store.
+         */
+        private long deadBytes;
+
+        /**
+         * Bytes of the tombstones still needed, by the sequence of the segment of the deleted records.
+         * Modified only while holding the lock of the store.
+         */
+        private final TreeMap<Long, Long> liveTombstoneBytes = new TreeMap<>();
+
+        private Segment(final long sequence, final File file) throws IOException {
+            this.sequence = sequence;
+            this.file = file;
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            size = channel.size();
+        }
+
+        private int readInt(final long offset) throws IOException {
+            return read(offset, 4).getInt();
+        }
+
+        /**
+         * Maps the whole segment and closes the file channel. The mapping stays valid after the channel is closed
+         * and the file is deleted, until the segment isn't referred to any more.
+         */
+        private void retire() throws IOException {
+            synchronized (this) {
+                if (mapped == null || mapped.capacity() < size) {
+                    mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0L, size);
+                }
+            }
+
+            channel.close();
+        }
+
+        /**
+         * Returns a buffer of {@code length} bytes from {@code offset}, positioned at zero.
+         */
+        private ByteBuffer read(final long offset, final int length) throws IOException {
+            MappedByteBuffer buffer = mapped;
+
+            if (buffer == null || offset + length > buffer.capacity()) {
+                synchronized (this) {
+                    buffer = mapped;
+
+                    if (buffer == null || offset + length > buffer.capacity()) {
+                        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+                        mapped = buffer;
+                    }
+                }
+            }
+
+            final ByteBuffer slice = buffer.duplicate();
+            slice.position((int) offset).limit((int) (offset + length));
+            return slice.slice();
+        }
+    }
+}
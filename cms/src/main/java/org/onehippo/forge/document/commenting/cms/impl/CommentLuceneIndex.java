@@ -0,0 +1,724 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryParser.ParseException;
+import org.apache.lucene.queryParser.QueryParser;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.FieldCache;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.NumericRangeQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreCachingWrappingScorer;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TermRangeQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.search.TotalHitCountCollector;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Version;
+import org.onehippo.forge.document.commenting.cms.api.CommentItem;
+import org.onehippo.forge.document.commenting.cms.api.CommentItemCursor;
+import org.onehippo.forge.document.commenting.cms.api.CommentSearchCursor;
+import org.onehippo.forge.document.commenting.cms.api.CommentSearchHit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Local Lucene index of comment data items in a directory, used by {@link LuceneIndexedCommentPersistenceManager}
+ * to look up comments across all the subjects by author and by typed attributes, and to search them by full text,
+ * without a repository or database round trip.
+ * <P>
+ * Each comment is a document with the identifier, the subject identifier, the author, the creation and
+ * modification times, the attributes in {@code attr:<name>} fields by their types (exact terms for
+ * {@link String} and {@link Boolean} values, numeric terms for {@link Long}, {@link Double} and {@link Calendar}
+ * values), the full text of the content and the string attributes, and the serialized comment data item,
+ * so a page of hits is read from the index only.
+ * </P>
+ * <P>
+ * Changes are visible to the searches right after {@link #index(Collection)} or {@link #delete(Collection)}
+ * by near-real-time reopening of the searcher, which is also refreshed in a background thread every refresh
+ * interval, and committed to the directory periodically and on {@link #close()}. Changes not committed before
+ * a crash are lost, so the index should be rebuilt by {@link LuceneCommentIndexRebuildJob} after a crash.
+ * </P>
+ * <P>
+ * The index is local to a JVM, so each cluster node sees only the changes made through the node
+ * until it is rebuilt. The completion of the last rebuild is kept in the commit user data,
+ * see {@link #isRebuilt()}.
+ * </P>
+ */
+public class CommentLuceneIndex {
+
+    private static Logger log = LoggerFactory.getLogger(CommentLuceneIndex.class);
+
+    /**
+     * Default interval in milliseconds between the background refreshes of the searcher.
+     */
+    public static final long DEFAULT_REFRESH_INTERVAL = 1000L;
+
+    public static final String FIELD_ID = "id";
+    public static final String FIELD_SUBJECT_ID = "subjectId";
+    public static final String FIELD_AUTHOR = "author";
+    public static final String FIELD_CREATED = "created";
+    public static final String FIELD_LAST_MODIFIED = "lastModified";
+    public static final String FIELD_TEXT = "text";
+    public static final String FIELD_INDEXED = "indexed";
+    public static final String FIELD_ITEM = "item";
+    public static final String ATTRIBUTE_FIELD_PREFIX = "attr:";
+
+    /**
+     * Key of the commit user data keeping the start time of the last completed rebuild.
+     */
+    private static final String REBUILT_TIME_KEY = "doccommenting.rebuilt";
+
+    /**
+     * Interval between the commits of the changes to the directory.
+     */
+    private static final long COMMIT_INTERVAL_MILLIS = 10000L;
+
+    private static final Version LUCENE_VERSION = Version.LUCENE_36;
+
+    private static final Sort LATEST_FIRST = new Sort(new SortField(FIELD_CREATED, SortField.LONG, true),
+            new SortField(FIELD_ID, SortField.STRING, true));
+
+    private static final Sort RELEVANCE_FIRST = new Sort(SortField.FIELD_SCORE,
+            new SortField(FIELD_ID, SortField.STRING, true));
+
+    private static final Map<String, CommentLuceneIndex> instances = new ConcurrentHashMap<>();
+
+    private final Directory directory;
+    private final Analyzer analyzer;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+    private final long refreshInterval;
+    private final Thread refresher;
+    private volatile boolean running = true;
+    private volatile boolean uncommitted;
+    private volatile long rebuiltTime;
+
+    /**
+     * Opens the index in {@code directory}, creating it if not existing.
+     * @param directory index directory
+     * @param refreshInterval interval in milliseconds between the background refreshes of the searcher
+     * @param background whether or not to refresh and commit in a background thread
+     * @throws IOException if the index cannot be opened
+     */
+    CommentLuceneIndex(final Directory directory, final long refreshInterval, final boolean background)
+            throws IOException {
+        this.directory = directory;
+        this.refreshInterval = Math.max(10L, refreshInterval);
+
+        if (IndexReader.indexExists(directory)) {
+            final Map<String, String> commitUserData = IndexReader.getCommitUserData(directory);
+
+            if (commitUserData != null) {
+                rebuiltTime = NumberUtils.toLong(commitUserData.get(REBUILT_TIME_KEY), 0L);
+            }
+        }
+
+        analyzer = new StandardAnalyzer(LUCENE_VERSION);
+        writer = new IndexWriter(directory, new IndexWriterConfig(LUCENE_VERSION, analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        searcherManager = new SearcherManager(writer, true, null);
+
+        if (background) {
+            refresher = new Thread(this::refreshPeriodically, "doc-commenting-index-refresher");
+            refresher.setDaemon(true);
+            refresher.start();
+        } else {
+            refresher = null;
+        }
+    }
+
+    /**
+     * Returns the index opened in {@code directory}, opening it on the first call.
+     * @param directory index directory
+     * @param refreshInterval interval in milliseconds between the background refreshes of the searcher
+     * @return the index opened in {@code directory}
+     * @throws IOException if the index cannot be opened
+     */
+    public static CommentLuceneIndex getInstance(final File directory, final long refreshInterval)
+            throws IOException {
+        final String key = directory.getCanonicalPath();
+        CommentLuceneIndex index = instances.get(key);
+
+        if (index == null) {
+            synchronized (CommentLuceneIndex.class) {
+                index = instances.get(key);
+
+                if (index == null) {
+                    if (!directory.isDirectory() && !directory.mkdirs()) {
+                        throw new IOException("Cannot create the comment index directory: " + directory);
+                    }
+
+                    index = new CommentLuceneIndex(FSDirectory.open(directory), refreshInterval, true);
+                    instances.put(key, index);
+                }
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Closes all the opened indexes.
+     */
+    public static void shutdown() {
+        synchronized (CommentLuceneIndex.class) {
+            for (CommentLuceneIndex index : instances.values()) {
+                index.close();
+            }
+
+            instances.clear();
+        }
+    }
+
+    /**
+     * Returns the number of the indexed comments visible to the searches.
+     * @return the number of the indexed comments
+     * @throws IOException if the index cannot be read
+     */
+    public int size() throws IOException {
+        final IndexSearcher searcher = searcherManager.acquire();
+
+        try {
+            return searcher.getIndexReader().numDocs();
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * Indexes the comment data items, replacing the existing documents of the same identifiers,
+     * and refreshes the searcher. The items without identifier are skipped.
+     * The lazily loaded attributes of the items are loaded first, in the calling thread.
+     * @param commentItems comment data items
+     * @throws IOException if the items cannot be indexed
+     */
+    public void index(final Collection<CommentItem> commentItems) throws IOException {
+        final long now = System.currentTimeMillis();
+
+        for (CommentItem commentItem : commentItems) {
+            if (StringUtils.isBlank(commentItem.getId())) {
+                log.debug("Skipping to index comment data item without identifier: {}", commentItem);
+                continue;
+            }
+
+            commentItem.ensureAttributesLoaded();
+            writer.updateDocument(new Term(FIELD_ID, commentItem.getId()), createDocument(commentItem, now));
+        }
+
+        uncommitted = true;
+        refresh();
+    }
+
+    /**
+     * Deletes the documents of the comments and refreshes the searcher.
+     * @param commentIds comment identifiers
+     * @throws IOException if the documents cannot be deleted
+     */
+    public void delete(final Collection<String> commentIds) throws IOException {
+        for (String commentId : commentIds) {
+            if (StringUtils.isNotBlank(commentId)) {
+                writer.deleteDocuments(new Term(FIELD_ID, commentId));
+            }
+        }
+
+        uncommitted = true;
+        refresh();
+    }
+
+    /**
+     * Deletes the documents indexed before {@code time}, e.g, the comments not found any more
+     * by a rebuild started at {@code time}, and refreshes the searcher.
+     * @param time time in milliseconds
+     * @throws IOException if the documents cannot be deleted
+     */
+    public void deleteIndexedBefore(final long time) throws IOException {
+        writer.deleteDocuments(NumericRangeQuery.newLongRange(FIELD_INDEXED, null, time, true, false));
+        uncommitted = true;
+        refresh();
+    }
+
+    /**
+     * Returns the identifiers of the comments indexed before {@code time}, e.g, the candidates for the comments
+     * not found any more by a rebuild started at {@code time}.
+     * @param time time in milliseconds
+     * @return the identifiers of the comments indexed before {@code time}
+     * @throws IOException if the index cannot be read
+     */
+    public List<String> getIdsIndexedBefore(final long time) throws IOException {
+        final List<String> commentIds = new ArrayList<>();
+        final IndexSearcher searcher = searcherManager.acquire();
+
+        try {
+            final TopDocs topDocs = searcher.search(
+                    NumericRangeQuery.newLongRange(FIELD_INDEXED, null, time, true, false),
+                    Math.max(1, searcher.getIndexReader().maxDoc()));
+
+            for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                commentIds.add(searcher.doc(scoreDoc.doc).get(FIELD_ID));
+            }
+        } finally {
+            searcherManager.release(searcher);
+        }
+
+        return commentIds;
+    }
+
+    /**
+     * Returns true if the index was rebuilt completely from the comment data store at least once, so that it contains
+     * the comments created before the index was enabled.
+     * @return true if the index was rebuilt completely at least once
+     */
+    public boolean isRebuilt() {
+        return rebuiltTime > 0L;
+    }
+
+    /**
+     * Records the completion of a rebuild started at {@code time} and commits the changes.
+     * @param time the start time of the completed rebuild in milliseconds
+     * @throws IOException if the changes cannot be committed
+     */
+    public synchronized void markRebuilt(final long time) throws IOException {
+        rebuiltTime = time;
+        commit();
+    }
+
+    /**
+     * Reopens the searcher if there are changes since the last reopening.
+     * @throws IOException if the searcher cannot be reopened
+     */
+    public void refresh() throws IOException {
+        searcherManager.maybeRefresh();
+    }
+
+    /**
+     * Commits the changes to the directory.
+     * @throws IOException if the changes cannot be committed
+     */
+    public synchronized void commit() throws IOException {
+        uncommitted = false;
+        // the user data is replaced by every commit, so the rebuild time is kept in every commit.
+        writer.commit((rebuiltTime > 0L)
+                ? Collections.singletonMap(REBUILT_TIME_KEY, Long.toString(rebuiltTime))
+                : Collections.emptyMap());
+    }
+
+    /**
+     * Reads the comment data item from the index.
+     * @param commentId comment identifier
+     * @return the comment data item, or null if not indexed
+     * @throws IOException if the index cannot be read
+     */
+    public CommentItem get(final String commentId) throws IOException {
+        final List<CommentItem> commentItems = getLatest(new TermQuery(new Term(FIELD_ID, commentId)), null, 1);
+        return commentItems.isEmpty() ? null : commentItems.get(0);
+    }
+
+    /**
+     * Reads the latest comment data items matching {@code query}, ordered by the creation time (latest first)
+     * and then by the identifier descending.
+     * @param query query created by {@link #createQuery(String, String, Map)}
+     * @param cursor position after which the items are read, or null to read from the latest
+     * @param limit max number of items to read
+     * @return the latest comment data items matching {@code query}
+     * @throws IOException if the index cannot be read
+     */
+    public List<CommentItem> getLatest(final Query query, final CommentItemCursor cursor, final int limit)
+            throws IOException {
+        final List<CommentItem> commentItems = new ArrayList<>();
+
+        if (limit <= 0) {
+            return commentItems;
+        }
+
+        final IndexSearcher searcher = searcherManager.acquire();
+
+        try {
+            final TopDocs topDocs = searcher.search(createCursorQuery(query, cursor), null, limit, LATEST_FIRST);
+
+            for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                commentItems.add(readCommentItem(searcher, scoreDoc.doc));
+            }
+        } finally {
+            searcherManager.release(searcher);
+        }
+
+        return commentItems;
+    }
+
+    /**
+     * Counts the comments matching {@code query}.
+     * @param query query created by {@link #createQuery(String, String, Map)}
+     * @return the number of the comments matching {@code query}
+     * @throws IOException if the index cannot be read
+     */
+    public long count(final Query query) throws IOException {
+        final IndexSearcher searcher = searcherManager.acquire();
+
+        try {
+            final TotalHitCountCollector collector = new TotalHitCountCollector();
+            searcher.search(query, collector);
+            return collector.getTotalHits();
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * Searches the comments by the full text of the content and the string attributes, requiring all the words,
+     * and reads the hits ordered by the relevance score and then by the identifier descending.
+     * The excerpts of the returned hits are null.
+     * <P>
+     * The hits are collected in a single pass keeping only the top {@code limit} hits following the cursor,
+     * like the range constraint on the cursor position of the latest-first reads, as the relevance score
+     * is not an indexed field to query by range.
+     * </P>
+     * @param text search text
+     * @param cursor position after which the hits are read, or null to read from the most relevant
+     * @param limit max number of hits to read
+     * @return the search hits
+     * @throws IOException if the index cannot be read
+     */
+    public List<CommentSearchHit> search(final String text, final CommentSearchCursor cursor, final int limit)
+            throws IOException {
+        final List<CommentSearchHit> hits = new ArrayList<>();
+
+        if (limit <= 0 || StringUtils.isBlank(text)) {
+            return hits;
+        }
+
+        final Query query = createFullTextQuery(text);
+        final IndexSearcher searcher = searcherManager.acquire();
+
+        try {
+            final TopFieldCollector topCollector = TopFieldCollector.create(RELEVANCE_FIRST, limit, true, true,
+                    false, false);
+            searcher.search(query, (cursor != null) ? new SearchCursorCollector(topCollector, cursor) : topCollector);
+
+            for (ScoreDoc scoreDoc : topCollector.topDocs().scoreDocs) {
+                final Document document = searcher.doc(scoreDoc.doc);
+                hits.add(new CommentSearchHit(deserialize(document.getBinaryValue(FIELD_ITEM)), getScore(scoreDoc),
+                        null));
+            }
+
+            return hits;
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * Creates a query matching the comments of the subject, of the author and having the attribute values,
+     * all of which are optional.
+     * @param subjectId subject identifier, or null to match any subject
+     * @param author author, or null to match any author
+     * @param attributes attribute values to match exactly, each of which is {@link String}, {@link Boolean},
+     *        {@link Long}, {@link Integer}, {@link Double} or {@link Calendar}, or null to match any attributes
+     * @return query matching the comments
+     * @throws IllegalArgumentException if an attribute value is not of a supported type
+     */
+    public static Query createQuery(final String subjectId, final String author, final Map<String, ?> attributes) {
+        final BooleanQuery query = new BooleanQuery();
+        query.add(new MatchAllDocsQuery(), Occur.MUST);
+
+        if (subjectId != null) {
+            query.add(new TermQuery(new Term(FIELD_SUBJECT_ID, subjectId)), Occur.MUST);
+        }
+
+        if (author != null) {
+            query.add(new TermQuery(new Term(FIELD_AUTHOR, author)), Occur.MUST);
+        }
+
+        if (attributes != null) {
+            for (Map.Entry<String, ?> entry : attributes.entrySet()) {
+                query.add(createAttributeQuery(ATTRIBUTE_FIELD_PREFIX + entry.getKey(), entry.getValue()), Occur.MUST);
+            }
+        }
+
+        return query;
+    }
+
+    /**
+     * Stops the background thread, commits the changes and closes the index.
+     */
+    public synchronized void close() {
+        running = false;
+
+        if (refresher != null) {
+            refresher.interrupt();
+        }
+
+        try {
+            if (uncommitted) {
+                commit();
+            }
+
+            searcherManager.close();
+            writer.close();
+            directory.close();
+        } catch (IOException e) {
+            log.warn("Cannot close the comment index.", e);
+        }
+    }
+
+    private void refreshPeriodically() {
+        long lastCommitTime = System.currentTimeMillis();
+
+        while (running) {
+            try {
+                Thread.sleep(refreshInterval);
+                refresh();
+
+                if (uncommitted && System.currentTimeMillis() - lastCommitTime >= COMMIT_INTERVAL_MILLIS) {
+                    commit();
+                    lastCommitTime = System.currentTimeMillis();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Failed to refresh the comment index.", e);
+            }
+        }
+    }
+
+    private Query createFullTextQuery(final String text) {
+        final QueryParser parser = new QueryParser(LUCENE_VERSION, FIELD_TEXT, analyzer);
+        parser.setDefaultOperator(QueryParser.AND_OPERATOR);
+
+        try {
+            return parser.parse(QueryParser.escape(StringUtils.normalizeSpace(text)));
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("Invalid search text: " + text, e);
+        }
+    }
+
+    private static Query createCursorQuery(final Query query, final CommentItemCursor cursor) {
+        if (cursor == null) {
+            return query;
+        }
+
+        final BooleanQuery sameCreated = new BooleanQuery();
+        sameCreated.add(NumericRangeQuery.newLongRange(FIELD_CREATED, cursor.getCreated(), cursor.getCreated(),
+                true, true), Occur.MUST);
+        sameCreated.add(new TermRangeQuery(FIELD_ID, null, cursor.getId(), true, false), Occur.MUST);
+
+        final BooleanQuery following = new BooleanQuery();
+        following.add(NumericRangeQuery.newLongRange(FIELD_CREATED, null, cursor.getCreated(), true, false),
+                Occur.SHOULD);
+        following.add(sameCreated, Occur.SHOULD);
+
+        final BooleanQuery cursorQuery = new BooleanQuery();
+        cursorQuery.add(query, Occur.MUST);
+        cursorQuery.add(following, Occur.MUST);
+        return cursorQuery;
+    }
+
+    private static Query createAttributeQuery(final String field, final Object value) {
+        if (value instanceof String || value instanceof Boolean) {
+            return new TermQuery(new Term(field, value.toString()));
+        } else if (value instanceof Long || value instanceof Integer) {
+            final long longValue = ((Number) value).longValue();
+            return NumericRangeQuery.newLongRange(field, longValue, longValue, true, true);
+        } else if (value instanceof Double) {
+            return NumericRangeQuery.newDoubleRange(field, (Double) value, (Double) value, true, true);
+        } else if (value instanceof Calendar) {
+            final long time = ((Calendar) value).getTimeInMillis();
+            return NumericRangeQuery.newLongRange(field, time, time, true, true);
+        }
+
+        throw new IllegalArgumentException("Unsupported attribute value type of " + field + ": "
+                + ((value != null) ? value.getClass().getName() : null));
+    }
+
+    private static Document createDocument(final CommentItem commentItem, final long indexedTime)
+            throws IOException {
+        final Document document = new Document();
+        final StringBuilder text = new StringBuilder(256);
+
+        document.add(new Field(FIELD_ID, commentItem.getId(), Field.Store.YES, Field.Index.NOT_ANALYZED_NO_NORMS));
+        document.add(new Field(FIELD_SUBJECT_ID, StringUtils.defaultString(commentItem.getSubjectId()), Field.Store.NO,
+                Field.Index.NOT_ANALYZED_NO_NORMS));
+        document.add(new Field(FIELD_AUTHOR, StringUtils.defaultString(commentItem.getAuthor()), Field.Store.NO,
+                Field.Index.NOT_ANALYZED_NO_NORMS));
+        document.add(new NumericField(FIELD_CREATED, Field.Store.NO, true)
+                .setLongValue(CommentItemCursor.of(commentItem).getCreated()));
+        document.add(new NumericField(FIELD_LAST_MODIFIED, Field.Store.NO, true).setLongValue(
+                (commentItem.getLastModified() != null) ? commentItem.getLastModified().getTimeInMillis() : 0L));
+        document.add(new NumericField(FIELD_INDEXED, Field.Store.NO, true).setLongValue(indexedTime));
+
+        text.append(StringUtils.defaultString(commentItem.getContent()).replaceAll("<[^>]*>", " "));
+
+        for (String name : commentItem.getAttributeNames()) {
+            addAttributeFields(document, text, ATTRIBUTE_FIELD_PREFIX + name, commentItem.getAttribute(name));
+        }
+
+        document.add(new Field(FIELD_TEXT, text.toString(), Field.Store.NO, Field.Index.ANALYZED));
+        // the attributes are loaded above, so the attributes loader is not serialized.
+        document.add(new Field(FIELD_ITEM, serialize(commentItem)));
+        return document;
+    }
+
+    private static void addAttributeFields(final Document document, final StringBuilder text, final String field,
+            final Object value) {
+        if (value instanceof String) {
+            document.add(new Field(field, (String) value, Field.Store.NO, Field.Index.NOT_ANALYZED_NO_NORMS));
+            text.append(' ').append((String) value);
+        } else if (value instanceof String[]) {
+            for (String item : (String[]) value) {
+                addAttributeFields(document, text, field, item);
+            }
+        } else if (value instanceof Boolean) {
+            document.add(new Field(field, value.toString(), Field.Store.NO, Field.Index.NOT_ANALYZED_NO_NORMS));
+        } else if (value instanceof boolean[]) {
+            for (boolean item : (boolean[]) value) {
+                addAttributeFields(document, text, field, item);
+            }
+        } else if (value instanceof Long || value instanceof Integer) {
+            document.add(new NumericField(field, Field.Store.NO, true).setLongValue(((Number) value).longValue()));
+        } else if (value instanceof long[]) {
+            for (long item : (long[]) value) {
+                addAttributeFields(document, text, field, item);
+            }
+        } else if (value instanceof Double) {
+            document.add(new NumericField(field, Field.Store.NO, true).setDoubleValue((Double) value));
+        } else if (value instanceof double[]) {
+            for (double item : (double[]) value) {
+                addAttributeFields(document, text, field, item);
+            }
+        } else if (value instanceof Calendar) {
+            document.add(new NumericField(field, Field.Store.NO, true)
+                    .setLongValue(((Calendar) value).getTimeInMillis()));
+        } else if (value instanceof Calendar[]) {
+            for (Calendar item : (Calendar[]) value) {
+                addAttributeFields(document, text, field, item);
+            }
+        }
+    }
+
+    /**
+     * Returns the relevance score of a hit sorted by {@link #RELEVANCE_FIRST}, kept in the first sort field value.
+     */
+    private static double getScore(final ScoreDoc scoreDoc) {
+        if (scoreDoc instanceof FieldDoc && ((FieldDoc) scoreDoc).fields != null
+                && ((FieldDoc) scoreDoc).fields.length > 0 && ((FieldDoc) scoreDoc).fields[0] instanceof Number) {
+            return ((Number) ((FieldDoc) scoreDoc).fields[0]).doubleValue();
+        }
+
+        return scoreDoc.score;
+    }
+
+    private static CommentItem readCommentItem(final IndexSearcher searcher, final int doc) throws IOException {
+        return deserialize(searcher.doc(doc).getBinaryValue(FIELD_ITEM));
+    }
+
+    private static byte[] serialize(final CommentItem commentItem) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream(256);
+
+        try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+            oos.writeObject(commentItem);
+        }
+
+        return baos.toByteArray();
+    }
+
+    private static CommentItem deserialize(final byte[] bytes) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (CommentItem) ois.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Cannot deserialize the indexed comment data item.", e);
+        }
+    }
+
+    /**
+     * Collector passing only the hits following the cursor position, by the relevance score and then by the
+     * identifier descending, to the collector of the top hits.
+     */
+    private static class SearchCursorCollector extends Collector {
+
+        private final Collector delegate;
+        private final CommentSearchCursor cursor;
+        private Scorer scorer;
+        private String[] ids;
+
+        private SearchCursorCollector(final Collector delegate, final CommentSearchCursor cursor) {
+            this.delegate = delegate;
+            this.cursor = cursor;
+        }
+
+        @Override
+        public void setScorer(final Scorer scorer) throws IOException {
+            // the score is read by both this and the delegate
+            this.scorer = new ScoreCachingWrappingScorer(scorer);
+            delegate.setScorer(this.scorer);
+        }
+
+        @Override
+        public void collect(final int doc) throws IOException {
+            if (cursor.isFollowedBy(scorer.score(), ids[doc])) {
+                delegate.collect(doc);
+            }
+        }
+
+        @Override
+        public void setNextReader(final IndexReader reader, final int docBase) throws IOException {
+            ids = FieldCache.DEFAULT.getStrings(reader, FIELD_ID);
+            delegate.setNextReader(reader, docBase);
+        }
+
+        @Override
+        public boolean acceptsDocsOutOfOrder() {
+            return delegate.acceptsDocsOutOfOrder();
+        }
+    }
+}
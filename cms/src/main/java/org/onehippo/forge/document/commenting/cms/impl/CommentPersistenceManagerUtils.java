@@ -0,0 +1,200 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.impl;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+import org.onehippo.forge.document.commenting.cms.api.CommentItem;
+import org.onehippo.forge.document.commenting.cms.api.CommentPersistenceManager;
+import org.onehippo.forge.document.commenting.cms.api.CommentingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Utilities to create {@link CommentPersistenceManager} instances from plugin parameters,
+ * to resolve their local data directories and to create the excerpts of their search hits.
+ */
+public class CommentPersistenceManagerUtils {
+
+    private static Logger log = LoggerFactory.getLogger(CommentPersistenceManagerUtils.class);
+
+    /**
+     * System property of the absolute base directory against which the relative local data directories
+     * of the comment persistence managers are resolved, e.g, the directory of the local comment index.
+     */
+    public static final String DATA_DIRECTORY_PROPERTY = "doccommenting.data.dir";
+
+    /**
+     * System property of the repository storage directory, used as the base directory if
+     * {@link #DATA_DIRECTORY_PROPERTY} is not set.
+     */
+    private static final String REPOSITORY_PATH_PROPERTY = "repo.path";
+
+    /**
+     * Number of the characters before the first matching word in a search hit excerpt.
+     */
+    private static final int EXCERPT_CONTEXT_LENGTH = 40;
+
+    private CommentPersistenceManagerUtils() {
+    }
+
+    /**
+     * Resolves {@code path} of a local data directory against the absolute base directory configured by
+     * {@code doccommenting.data.dir} system property, or by {@code repo.path} system property if not set,
+     * not to depend on the working directory of the JVM.
+     * @param path absolute or relative path of a local data directory
+     * @return the absolute local data directory
+     * @throws CommentingException if {@code path} is relative and no absolute base directory is configured
+     */
+    public static File resolveDataDirectory(final String path) throws CommentingException {
+        final File directory = new File(path);
+
+        if (directory.isAbsolute()) {
+            return directory;
+        }
+
+        String baseDirectory = System.getProperty(DATA_DIRECTORY_PROPERTY);
+
+        if (StringUtils.isBlank(baseDirectory)) {
+            baseDirectory = System.getProperty(REPOSITORY_PATH_PROPERTY);
+        }
+
+        if (StringUtils.isBlank(baseDirectory) || !new File(baseDirectory).isAbsolute()) {
+            throw new CommentingException("Cannot resolve the relative comment data directory '" + path
+                    + "' without an absolute base directory by -D" + DATA_DIRECTORY_PROPERTY + " or -D"
+                    + REPOSITORY_PATH_PROPERTY + " system property.");
+        }
+
+        return new File(baseDirectory, path);
+    }
+
+    /**
+     * Creates a {@link CommentPersistenceManager} instance of the class named {@code className}
+     * by its default constructor, or a {@link DefaultJcrCommentPersistenceManager} if {@code className} is blank
+     * or the instance cannot be created.
+     * @param className the FQCN of the {@link CommentPersistenceManager} implementation
+     * @return a {@link CommentPersistenceManager} instance
+     */
+    public static CommentPersistenceManager createCommentPersistenceManager(final String className) {
+        if (StringUtils.isNotBlank(className)) {
+            try {
+                return (CommentPersistenceManager) Class.forName(className.trim()).getDeclaredConstructor()
+                        .newInstance();
+            } catch (Exception e) {
+                log.error("Cannot create custom comment persistence manager.", e);
+            }
+        }
+
+        return new DefaultJcrCommentPersistenceManager();
+    }
+
+    /**
+     * Returns the texts of {@code commentItem} searched by full-text search: the content without the HTML tags,
+     * followed by the values of the string attributes.
+     */
+    static List<String> getSearchableTexts(final CommentItem commentItem) {
+        final List<String> texts = new ArrayList<>();
+        texts.add(StringUtils.defaultString(commentItem.getContent()).replaceAll("<[^>]*>", " "));
+
+        for (String name : commentItem.getAttributeNames()) {
+            final Object value = commentItem.getAttribute(name);
+
+            if (value instanceof String) {
+                texts.add((String) value);
+            } else if (value instanceof String[]) {
+                texts.addAll(Arrays.asList((String[]) value));
+            }
+        }
+
+        return texts;
+    }
+
+    /**
+     * Creates an HTML excerpt of the first searchable text of {@code commentItem} containing any of the terms,
+     * or returns null if none contains them.
+     */
+    static String createExcerpt(final CommentItem commentItem, final String[] terms) {
+        for (String value : getSearchableTexts(commentItem)) {
+            final String lowerValue = value.toLowerCase();
+
+            for (String term : terms) {
+                if (lowerValue.contains(term)) {
+                    return createExcerpt(value, terms);
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Creates an HTML excerpt around the first occurrence of the terms, highlighting the terms.
+     */
+    static String createExcerpt(final String text, final String[] terms) {
+        final String lowerText = text.toLowerCase();
+        int first = text.length();
+
+        for (String term : terms) {
+            final int index = lowerText.indexOf(term);
+
+            if (index >= 0 && index < first) {
+                first = index;
+            }
+        }
+
+        final int begin = Math.max(0, first - EXCERPT_CONTEXT_LENGTH);
+        final int end = Math.min(text.length(), first + EXCERPT_CONTEXT_LENGTH * 2);
+        final StringBuilder sb = new StringBuilder(end - begin + 32);
+
+        if (begin > 0) {
+            sb.append("... ");
+        }
+
+        for (int i = begin; i < end; ) {
+            String matched = null;
+
+            for (String term : terms) {
+                if (lowerText.startsWith(term, i)) {
+                    matched = text.substring(i, Math.min(end, i + term.length()));
+                    break;
+                }
+            }
+
+            if (matched != null) {
+                sb.append("<strong>").append(escapeHtml(matched)).append("</strong>");
+                i += matched.length();
+            } else {
+                sb.append(escapeHtml(text.substring(i, i + 1)));
+                i++;
+            }
+        }
+
+        if (end < text.length()) {
+            sb.append(" ...");
+        }
+
+        return sb.toString();
+    }
+
+    private static String escapeHtml(final String text) {
+        return StringUtils.replaceEach(text, new String[] { "&", "<", ">", "\"" },
+                new String[] { "&amp;", "&lt;", "&gt;", "&quot;" });
+    }
+}
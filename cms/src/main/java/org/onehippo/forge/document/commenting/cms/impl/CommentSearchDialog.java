@@ -0,0 +1,265 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.jcr.ItemNotFoundException;
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.ajax.markup.html.AjaxLink;
+import org.apache.wicket.ajax.markup.html.form.AjaxButton;
+import org.apache.wicket.markup.head.CssHeaderItem;
+import org.apache.wicket.markup.head.IHeaderResponse;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.markup.html.form.TextField;
+import org.apache.wicket.markup.html.list.ListItem;
+import org.apache.wicket.markup.html.list.ListView;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.Model;
+import org.apache.wicket.model.StringResourceModel;
+import org.apache.wicket.request.resource.PackageResourceReference;
+import org.apache.wicket.util.value.IValueMap;
+import org.apache.wicket.util.value.ValueMap;
+import org.hippoecm.frontend.dialog.AbstractDialog;
+import org.hippoecm.frontend.model.JcrNodeModel;
+import org.hippoecm.frontend.plugin.config.IPluginConfig;
+import org.hippoecm.frontend.service.IBrowseService;
+import org.hippoecm.frontend.session.UserSession;
+import org.hippoecm.repository.api.HippoNode;
+import org.onehippo.forge.document.commenting.cms.api.CommentPersistenceManager;
+import org.onehippo.forge.document.commenting.cms.api.CommentSearchHit;
+import org.onehippo.forge.document.commenting.cms.api.CommentSearchPage;
+import org.onehippo.forge.document.commenting.cms.api.CommentingContext;
+import org.onehippo.forge.document.commenting.cms.api.CommentingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Dialog to search comments of all the documents by full text through
+ * {@link CommentPersistenceManager#searchCommentItems(CommentingContext, String, String, long)},
+ * listing the hits in the relevance ordering with the excerpts and links to open the documents.
+ */
+public class CommentSearchDialog extends AbstractDialog<Void> {
+
+    private static final long serialVersionUID = 1L;
+
+    private static Logger log = LoggerFactory.getLogger(CommentSearchDialog.class);
+
+    private final IModel<String> titleModel;
+    private final CommentingContext commentingContext;
+    private final CommentPersistenceManager commentPersistenceManager;
+    private final IValueMap dialogSize;
+    private final long pageSize;
+    private final IModel<String> searchTextModel = new Model<>();
+    private final List<CommentSearchHit> hits = new ArrayList<>();
+    private final WebMarkupContainer resultsContainer;
+    private String searchedText;
+    private String nextCursor;
+    private String message;
+
+    public CommentSearchDialog(IModel<String> titleModel, CommentingContext commentingContext,
+            CommentPersistenceManager commentPersistenceManager) {
+        super();
+        setOutputMarkupId(true);
+        this.titleModel = titleModel;
+        this.commentingContext = commentingContext;
+        this.commentPersistenceManager = commentPersistenceManager;
+
+        final IPluginConfig pluginConfig = commentingContext.getPluginConfig();
+        dialogSize = new ValueMap(pluginConfig.getString(PluginConstants.PARAM_DIALOG_SIZE,
+                PluginConstants.DEFAULT_DIALOG_SIZE)).makeImmutable();
+        pageSize = pluginConfig.getAsLong("comment.search.page.size", 20L);
+        setOkVisible(false);
+        setCancelLabel(new StringResourceModel("close", this, null).setDefaultValue("Close"));
+
+        add(new TextField<>("search-text", searchTextModel));
+
+        resultsContainer = new WebMarkupContainer("search-results");
+        resultsContainer.setOutputMarkupId(true);
+        add(resultsContainer);
+
+        add(new AjaxButton("search") {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void onSubmit(AjaxRequestTarget target) {
+                hits.clear();
+                nextCursor = null;
+                searchedText = searchTextModel.getObject();
+                search();
+                target.add(resultsContainer);
+            }
+        });
+
+        resultsContainer.add(new Label("search-message", () -> message) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void onConfigure() {
+                super.onConfigure();
+                setVisible(message != null);
+            }
+        });
+
+        resultsContainer.add(new ListView<CommentSearchHit>("search-hits", hits) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void populateItem(ListItem<CommentSearchHit> item) {
+                final CommentSearchHit hit = item.getModelObject();
+                final String subjectId = hit.getCommentItem().getSubjectId();
+
+                final AjaxLink<Void> openLink = new AjaxLink<Void>("open-document") {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    public void onClick(AjaxRequestTarget target) {
+                        openDocument(subjectId);
+                    }
+                };
+                openLink.add(new Label("document-name", getDocumentName(subjectId)));
+                item.add(openLink);
+
+                item.add(new Label("hit-head-text",
+                        getCommentPersistenceManager().getCommentHeadText(getCommentingContext(), hit.getCommentItem()))
+                        .setEscapeModelStrings(false));
+                item.add(new Label("hit-excerpt", hit.getExcerpt()).setEscapeModelStrings(false));
+            }
+        });
+
+        resultsContainer.add(new AjaxLink<Void>("more") {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public void onClick(AjaxRequestTarget target) {
+                search();
+                target.add(resultsContainer);
+            }
+
+            @Override
+            protected void onConfigure() {
+                super.onConfigure();
+                setVisible(nextCursor != null);
+            }
+        });
+    }
+
+    @Override
+    public void renderHead(IHeaderResponse response) {
+        super.renderHead(response);
+        response.render(CssHeaderItem.forReference(new PackageResourceReference(CommentSearchDialog.class,
+                CommentSearchDialog.class.getSimpleName() + ".css")));
+    }
+
+    @Override
+    public IModel<String> getTitle() {
+        return titleModel;
+    }
+
+    @Override
+    public IValueMap getProperties() {
+        return dialogSize;
+    }
+
+    protected CommentingContext getCommentingContext() {
+        return commentingContext;
+    }
+
+    protected CommentPersistenceManager getCommentPersistenceManager() {
+        return commentPersistenceManager;
+    }
+
+    /**
+     * Returns the display name of the document handle of {@code subjectId}, or {@code subjectId} itself
+     * if the handle is not found or not readable.
+     * @param subjectId the identifier of the subject data (e.g, document handle UUID).
+     * @return the display name of the document handle of {@code subjectId}
+     */
+    protected String getDocumentName(final String subjectId) {
+        try {
+            final Node handle = UserSession.get().getJcrSession().getNodeByIdentifier(subjectId);
+            return (handle instanceof HippoNode) ? ((HippoNode) handle).getDisplayName() : handle.getName();
+        } catch (ItemNotFoundException e) {
+            return subjectId;
+        } catch (RepositoryException e) {
+            log.warn("Failed to read the document of the comment subject: {}", subjectId, e);
+            return subjectId;
+        }
+    }
+
+    /**
+     * Opens the document handle of {@code subjectId} by the browse service and closes this dialog.
+     * @param subjectId the identifier of the subject data (e.g, document handle UUID).
+     */
+    @SuppressWarnings("unchecked")
+    protected void openDocument(final String subjectId) {
+        final String browserId = getCommentingContext().getPluginConfig().getString(IBrowseService.BROWSER_ID,
+                "service.browse");
+        final IBrowseService<JcrNodeModel> browseService = getCommentingContext().getPluginContext()
+                .getService(browserId, IBrowseService.class);
+
+        if (browseService == null) {
+            log.warn("Browse service not found: {}", browserId);
+            return;
+        }
+
+        try {
+            browseService.browse(new JcrNodeModel(UserSession.get().getJcrSession().getNodeByIdentifier(subjectId)));
+            closeDialog();
+        } catch (RepositoryException e) {
+            log.warn("Failed to open the document of the comment subject: {}", subjectId, e);
+        }
+    }
+
+    private void search() {
+        message = null;
+
+        if (StringUtils.isBlank(searchedText)) {
+            return;
+        }
+
+        try {
+            final CommentSearchPage page = getCommentPersistenceManager().searchCommentItems(getCommentingContext(),
+                    searchedText, nextCursor, pageSize);
+
+            if (page == null) {
+                nextCursor = null;
+                message = new StringResourceModel("search.not.supported", this, null)
+                        .setDefaultValue("Searching comments is not supported.").getString();
+                return;
+            }
+
+            hits.addAll(page.getHits());
+            nextCursor = page.getNextCursor();
+
+            if (hits.isEmpty()) {
+                message = new StringResourceModel("search.no.hits", this, null)
+                        .setDefaultValue("No comments found.").getString();
+            }
+        } catch (CommentingException e) {
+            log.error("Failed to search comments.", e);
+            nextCursor = null;
+            message = new StringResourceModel("search.failed", this, null)
+                    .setDefaultValue("Failed to search comments.").getString();
+        }
+    }
+}
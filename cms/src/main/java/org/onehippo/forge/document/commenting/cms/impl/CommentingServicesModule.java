@@ -0,0 +1,113 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.impl;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+
+import org.onehippo.repository.modules.DaemonModule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Daemon module owning the lifecycle of the background services of the comment persistence managers,
+ * which are created on demand by the managers and stopped by this module on shutdown.
+ * <P>
+ * The JCR observation of {@link CommentItemCache} is done with a system session created from the session of this
+ * module by {@link #createSystemSession()}, not with a session of the user who happens to use the cache first.
+ * Likewise, the dedicated sessions of the users for the write-behind queue are impersonated from the session of this
+ * module by {@link #createUserSession(String)}.
+ * </P>
+ * <P>
+ * On shutdown, the JCR observation of the {@link CommentItemCache} is stopped, the write-behind queue of {@link DefaultJcrCommentPersistenceManager} persists the items remaining
+ * in the queue before stopping, the {@link CommentLuceneIndex} is committed and closed, the
+ * {@link CommentLogStore} segment files are closed, and the data sources cached by
+ * {@link JdbcCommentPersistenceManager} are released.
+ * </P>
+ */
+public class CommentingServicesModule implements DaemonModule {
+
+    private static Logger log = LoggerFactory.getLogger(CommentingServicesModule.class);
+
+    private static volatile Session moduleSession;
+
+    @Override
+    public void initialize(final Session session) throws RepositoryException {
+        moduleSession = session;
+    }
+
+    @Override
+    public void shutdown() {
+        try {
+            CommentItemCache.shutdown();
+        } catch (RuntimeException e) {
+            log.error("Failed to stop the comment cache observation.", e);
+        }
+
+        try {
+            JcrCommentWriteBehindQueue.shutdown();
+        } catch (RuntimeException e) {
+            log.error("Failed to stop the comment write-behind queue.", e);
+        }
+
+        try {
+            CommentLuceneIndex.shutdown();
+        } catch (RuntimeException e) {
+            log.error("Failed to close the comment index.", e);
+        }
+
+        try {
+            CommentLogStore.shutdown();
+        } catch (RuntimeException e) {
+            log.error("Failed to close the comment log store.", e);
+        }
+
+        JdbcCommentPersistenceManager.clearDataSources();
+        moduleSession = null;
+    }
+
+    /**
+     * Creates a system session from the session of this module, to be logged out by the caller.
+     * @return a system session
+     * @throws RepositoryException if this module is not initialized or the session cannot be created
+     */
+    static Session createSystemSession() throws RepositoryException {
+        final Session session = moduleSession;
+
+        if (session == null) {
+            throw new RepositoryException("The commenting services module is not initialized.");
+        }
+
+        return session.impersonate(new SimpleCredentials("system", new char[0]));
+    }
+
+    /**
+     * Creates a session of {@code userId} impersonated from the session of this module, to be logged out by the caller.
+     * @param userId the user ID
+     * @return a session of {@code userId}
+     * @throws RepositoryException if this module is not initialized or the session cannot be created
+     */
+    static Session createUserSession(final String userId) throws RepositoryException {
+        final Session session = moduleSession;
+
+        if (session == null) {
+            throw new RepositoryException("The commenting services module is not initialized.");
+        }
+
+        return session.impersonate(new SimpleCredentials(userId, new char[0]));
+    }
+}
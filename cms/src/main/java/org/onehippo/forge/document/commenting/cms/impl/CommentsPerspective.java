@@ -0,0 +1,406 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.impl;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.query.Query;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.ajax.markup.html.AjaxLink;
+import org.apache.wicket.markup.head.CssHeaderItem;
+import org.apache.wicket.markup.head.IHeaderResponse;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.markup.html.list.ListItem;
+import org.apache.wicket.markup.html.list.ListView;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.StringResourceModel;
+import org.apache.wicket.request.resource.PackageResourceReference;
+import org.hippoecm.frontend.model.JcrNodeModel;
+import org.hippoecm.frontend.plugin.IPluginContext;
+import org.hippoecm.frontend.plugin.config.IPluginConfig;
+import org.hippoecm.frontend.plugins.standards.perspective.Perspective;
+import org.hippoecm.frontend.service.IBrowseService;
+import org.hippoecm.frontend.session.UserSession;
+import org.hippoecm.repository.api.HippoNode;
+import org.onehippo.forge.document.commenting.cms.api.CommentItem;
+import org.onehippo.forge.document.commenting.cms.api.CommentItemCursor;
+import org.onehippo.forge.document.commenting.cms.api.CommentItemPage;
+import org.onehippo.forge.document.commenting.cms.api.CommentPersistenceManager;
+import org.onehippo.forge.document.commenting.cms.api.CommentingContext;
+import org.onehippo.forge.document.commenting.cms.api.CommentingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * CMS perspective listing the comments of all the documents written by the current user ("My comments"),
+ * or having the current user in the attribute configured by {@code comment.assignee.attribute} parameter
+ * ("Assigned to me").
+ * <P>
+ * The comments are read by pages of {@code comment.page.size} items with cursors, through
+ * {@link CommentPersistenceManager#getLatestCommentItemPageByAuthor(CommentingContext, String, String, long)} and
+ * {@link CommentPersistenceManager#getLatestCommentItemPageByAttribute(CommentingContext, String, String, String, long)},
+ * and the document names of each page are resolved by a single query. Whenever the perspective is activated
+ * or refreshed, only the comments newer than the first loaded comment are read and prepended.
+ * </P>
+ */
+public class CommentsPerspective extends Perspective {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger log = LoggerFactory.getLogger(CommentsPerspective.class);
+
+    /**
+     * Max number of handle identifiers in a single query with OR-ed identifier predicates.
+     */
+    private static final int HANDLES_QUERY_CHUNK_SIZE = 50;
+
+    private static final String HANDLES_QUERY = "//element(*,hippo:handle)[{0}]";
+
+    private final CommentingContext commentingContext;
+    private final CommentPersistenceManager commentPersistenceManager;
+    private final String assigneeAttributeName;
+    private final long pageSize;
+    private final List<CommentItem> commentItems = new ArrayList<>();
+    private final Map<String, String> documentNames = new HashMap<>();
+    private final WebMarkupContainer commentsContainer;
+    private boolean assignedMode;
+    private String nextCursor;
+    private boolean loaded;
+    private String message;
+
+    public CommentsPerspective(IPluginContext context, IPluginConfig config) {
+        super(context, config);
+        setOutputMarkupId(true);
+        commentingContext = new CommentingContext(context, config, null);
+        commentPersistenceManager = CommentPersistenceManagerUtils.createCommentPersistenceManager(
+                config.getString("comment.persistence.manager", null));
+        assigneeAttributeName = config.getString("comment.assignee.attribute", null);
+        pageSize = config.getAsLong("comment.page.size", 20L);
+
+        add(createModeLink("mine", false));
+        add(createModeLink("assigned", true).setVisible(StringUtils.isNotBlank(assigneeAttributeName)));
+
+        add(new AjaxLink<Void>("refresh") {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public void onClick(AjaxRequestTarget target) {
+                refreshCommentItems();
+                target.add(commentsContainer);
+            }
+        });
+
+        commentsContainer = new WebMarkupContainer("comments");
+        commentsContainer.setOutputMarkupId(true);
+        add(commentsContainer);
+
+        commentsContainer.add(new Label("comments-message", () -> message) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void onConfigure() {
+                super.onConfigure();
+                setVisible(message != null);
+            }
+        });
+
+        commentsContainer.add(new ListView<CommentItem>("comment-items", commentItems) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void populateItem(ListItem<CommentItem> item) {
+                final CommentItem commentItem = item.getModelObject();
+                final String subjectId = commentItem.getSubjectId();
+
+                final AjaxLink<Void> openLink = new AjaxLink<Void>("open-document") {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    public void onClick(AjaxRequestTarget target) {
+                        openDocument(subjectId);
+                    }
+                };
+                openLink.add(new Label("document-name", StringUtils.defaultString(documentNames.get(subjectId),
+                        subjectId)));
+                item.add(openLink);
+
+                item.add(new Label("comment-head-text",
+                        getCommentPersistenceManager().getCommentHeadText(getCommentingContext(), commentItem))
+                        .setEscapeModelStrings(false));
+                item.add(new Label("comment-body-text",
+                        getCommentPersistenceManager().getCommentBodyText(getCommentingContext(), commentItem))
+                        .setEscapeModelStrings(false));
+            }
+        });
+
+        commentsContainer.add(new AjaxLink<Void>("more") {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public void onClick(AjaxRequestTarget target) {
+                loadNextPage();
+                target.add(commentsContainer);
+            }
+
+            @Override
+            protected void onConfigure() {
+                super.onConfigure();
+                setVisible(nextCursor != null);
+            }
+        });
+    }
+
+    @Override
+    public IModel<String> getTitle() {
+        return new StringResourceModel("perspective.title", this, null).setDefaultValue("Comments");
+    }
+
+    @Override
+    protected void onActivated() {
+        super.onActivated();
+        refreshCommentItems();
+        redraw();
+    }
+
+    @Override
+    public void renderHead(IHeaderResponse response) {
+        super.renderHead(response);
+        response.render(CssHeaderItem.forReference(new PackageResourceReference(CommentsPerspective.class,
+                CommentsPerspective.class.getSimpleName() + ".css")));
+    }
+
+    protected CommentingContext getCommentingContext() {
+        return commentingContext;
+    }
+
+    protected CommentPersistenceManager getCommentPersistenceManager() {
+        return commentPersistenceManager;
+    }
+
+    /**
+     * Reads the page of the comments following {@code cursor} in the current mode, for the current user.
+     * @param cursor opaque cursor of the page, or null for the first page
+     * @return the page of the comments, or null if not supported by the persistence manager
+     */
+    protected CommentItemPage readCommentItemPage(final String cursor) {
+        final String userId = UserSession.get().getJcrSession().getUserID();
+
+        if (assignedMode) {
+            return getCommentPersistenceManager().getLatestCommentItemPageByAttribute(getCommentingContext(),
+                    assigneeAttributeName, userId, cursor, pageSize);
+        }
+
+        return getCommentPersistenceManager().getLatestCommentItemPageByAuthor(getCommentingContext(), userId, cursor,
+                pageSize);
+    }
+
+    /**
+     * Resolves the display names of the document handles of {@code subjectIds} not resolved yet by queries of
+     * up to {@link #HANDLES_QUERY_CHUNK_SIZE} handles each. The subjects of which the handles are not found
+     * or not readable are shown by their identifiers.
+     * @param subjectIds the identifiers of the subject data (e.g, document handle UUIDs).
+     */
+    protected void resolveDocumentNames(final Collection<String> subjectIds) {
+        final List<String> unresolved = new ArrayList<>();
+
+        for (String subjectId : subjectIds) {
+            if (!documentNames.containsKey(subjectId) && !unresolved.contains(subjectId)) {
+                unresolved.add(subjectId);
+            }
+        }
+
+        try {
+            for (int i = 0; i < unresolved.size(); i += HANDLES_QUERY_CHUNK_SIZE) {
+                final List<String> predicates = new ArrayList<>();
+
+                for (String subjectId : unresolved.subList(i, Math.min(i + HANDLES_QUERY_CHUNK_SIZE,
+                        unresolved.size()))) {
+                    predicates.add("@jcr:uuid='" + StringUtils.replace(subjectId, "'", "''") + "'");
+                }
+
+                final Query query = UserSession.get().getJcrSession().getWorkspace().getQueryManager().createQuery(
+                        MessageFormat.format(HANDLES_QUERY, StringUtils.join(predicates, " or ")), Query.XPATH);
+
+                for (NodeIterator nodeIt = query.execute().getNodes(); nodeIt.hasNext();) {
+                    final Node handle = nodeIt.nextNode();
+                    documentNames.put(handle.getIdentifier(),
+                            (handle instanceof HippoNode) ? ((HippoNode) handle).getDisplayName() : handle.getName());
+                }
+            }
+        } catch (RepositoryException e) {
+            log.warn("Failed to resolve the document names of the comment subjects.", e);
+        }
+    }
+
+    /**
+     * Opens the document handle of {@code subjectId} by the browse service.
+     * @param subjectId the identifier of the subject data (e.g, document handle UUID).
+     */
+    @SuppressWarnings("unchecked")
+    protected void openDocument(final String subjectId) {
+        final String browserId = getPluginConfig().getString(IBrowseService.BROWSER_ID, "service.browse");
+        final IBrowseService<JcrNodeModel> browseService = getPluginContext().getService(browserId,
+                IBrowseService.class);
+
+        if (browseService == null) {
+            log.warn("Browse service not found: {}", browserId);
+            return;
+        }
+
+        try {
+            browseService.browse(new JcrNodeModel(UserSession.get().getJcrSession().getNodeByIdentifier(subjectId)));
+        } catch (RepositoryException e) {
+            log.warn("Failed to open the document of the comment subject: {}", subjectId, e);
+        }
+    }
+
+    private AjaxLink<Void> createModeLink(final String id, final boolean assigned) {
+        return new AjaxLink<Void>(id) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public void onClick(AjaxRequestTarget target) {
+                assignedMode = assigned;
+                commentItems.clear();
+                loaded = false;
+                refreshCommentItems();
+                target.add(CommentsPerspective.this);
+            }
+
+            @Override
+            protected void onConfigure() {
+                super.onConfigure();
+                setEnabled(assignedMode != assigned);
+            }
+        };
+    }
+
+    /**
+     * Loads the first page if nothing is loaded yet. Otherwise, reads the pages from the latest again until passing
+     * the last loaded comment, and replaces the loaded comments by them, so that not only the newer comments
+     * but also the comments updated or deleted within the loaded window are shown as they are now.
+     * If none of the loaded window is left, the first page is loaded again.
+     */
+    private void refreshCommentItems() {
+        if (!loaded || commentItems.isEmpty()) {
+            nextCursor = null;
+            loadNextPage();
+            return;
+        }
+
+        final CommentItemCursor lastPosition = CommentItemCursor.of(commentItems.get(commentItems.size() - 1));
+        final List<CommentItem> window = new ArrayList<>();
+        String windowNextCursor = null;
+
+        try {
+            String cursor = null;
+
+            do {
+                final CommentItemPage page = readCommentItemPage(cursor);
+
+                if (page == null) {
+                    return;
+                }
+
+                cursor = page.getNextCursor();
+
+                for (CommentItem commentItem : page.getCommentItems()) {
+                    final CommentItemCursor position = CommentItemCursor.of(commentItem);
+
+                    if (lastPosition.isFollowedBy(position.getCreated(), position.getId())) {
+                        // passed the loaded window, so the next page follows the last loaded position
+                        windowNextCursor = lastPosition.encode();
+                        cursor = null;
+                        break;
+                    }
+
+                    window.add(commentItem);
+                }
+            } while (cursor != null);
+        } catch (CommentingException e) {
+            log.error("Failed to refresh the comments.", e);
+            return;
+        }
+
+        commentItems.clear();
+
+        if (window.isEmpty()) {
+            nextCursor = null;
+            loadNextPage();
+            return;
+        }
+
+        resolveDocumentNames(getSubjectIds(window));
+        commentItems.addAll(window);
+        nextCursor = windowNextCursor;
+        message = null;
+    }
+
+    private void loadNextPage() {
+        message = null;
+
+        try {
+            final CommentItemPage page = readCommentItemPage(nextCursor);
+            loaded = true;
+
+            if (page == null) {
+                nextCursor = null;
+                message = new StringResourceModel("comments.not.supported", this, null)
+                        .setDefaultValue("Listing comments across documents is not supported.").getString();
+                return;
+            }
+
+            resolveDocumentNames(getSubjectIds(page.getCommentItems()));
+            commentItems.addAll(page.getCommentItems());
+            nextCursor = page.getNextCursor();
+
+            if (commentItems.isEmpty()) {
+                message = new StringResourceModel("comments.none", this, null)
+                        .setDefaultValue("No comments found.").getString();
+            }
+        } catch (CommentingException e) {
+            log.error("Failed to read the comments.", e);
+            nextCursor = null;
+            message = new StringResourceModel("comments.failed", this, null)
+                    .setDefaultValue("Failed to read the comments.").getString();
+        }
+    }
+
+    private static Set<String> getSubjectIds(final List<CommentItem> commentItems) {
+        final Set<String> subjectIds = new LinkedHashSet<>();
+
+        for (CommentItem commentItem : commentItems) {
+            if (commentItem.getSubjectId() != null) {
+                subjectIds.add(commentItem.getSubjectId());
+            }
+        }
+
+        return subjectIds;
+    }
+}
@@ -16,9 +16,17 @@
 package org.onehippo.forge.document.commenting.cms.impl;
 
 import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import javax.jcr.Node;
 import javax.jcr.RepositoryException;
@@ -29,11 +37,16 @@ import org.apache.wicket.AttributeModifier;
 import org.apache.wicket.MarkupContainer;
 import org.apache.wicket.ajax.AjaxRequestTarget;
 import org.apache.wicket.ajax.markup.html.AjaxLink;
+import org.apache.wicket.ajax.markup.html.form.AjaxButton;
 import org.apache.wicket.behavior.AttributeAppender;
 import org.apache.wicket.markup.head.CssHeaderItem;
 import org.apache.wicket.markup.head.IHeaderResponse;
 import org.apache.wicket.markup.html.WebMarkupContainer;
 import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.markup.html.form.ChoiceRenderer;
+import org.apache.wicket.markup.html.form.DropDownChoice;
+import org.apache.wicket.markup.html.form.Form;
+import org.apache.wicket.markup.html.form.TextField;
 import org.apache.wicket.markup.html.image.Image;
 import org.apache.wicket.markup.repeater.Item;
 import org.apache.wicket.markup.repeater.RefreshingView;
@@ -57,6 +70,10 @@ import org.hippoecm.frontend.service.IEditor;
 import org.hippoecm.frontend.service.render.RenderPlugin;
 import org.hippoecm.frontend.session.UserSession;
 import org.onehippo.forge.document.commenting.cms.api.CommentItem;
+import org.onehippo.forge.document.commenting.cms.api.CommentItemCursor;
+import org.onehippo.forge.document.commenting.cms.api.CommentItemDelta;
+import org.onehippo.forge.document.commenting.cms.api.CommentItemQuery;
+import org.onehippo.forge.document.commenting.cms.api.CommentOperationResult;
 import org.onehippo.forge.document.commenting.cms.api.CommentPersistenceManager;
 import org.onehippo.forge.document.commenting.cms.api.CommentingContext;
 import org.onehippo.forge.document.commenting.cms.api.CommentingException;
@@ -75,6 +92,8 @@ public class DefaultDocumentCommentingFieldPlugin extends RenderPlugin<Node> imp
             DefaultDocumentCommentingFieldPlugin.class, "edit-small-16.png");
     private static final ResourceReference DELETE_ICON_REF = new PackageResourceReference(
             DefaultDocumentCommentingFieldPlugin.class, "delete-small-16.png");
+    private static final String SORT_ASCENDING = "ascending";
+    private static final String SORT_DESCENDING = "descending";
 
     private final CommentingContext commentingContext;
     private final long queryLimit;
@@ -82,28 +101,40 @@ public class DefaultDocumentCommentingFieldPlugin extends RenderPlugin<Node> imp
     private final DialogAction addDialogAction;
     private final boolean editableByAuthorOnly;
     private final boolean deletableByAuthorOnly;
+    private final long deltaSkewMargin;
     private CommentPersistenceManager commentPersistenceManager;
+    private String currentCommentItemsStamp;
+    private Calendar currentCommentItemsReadTime;
+    private long currentCommentItemsCount;
+    private final Map<String, String> filterAttributeTypes = new LinkedHashMap<>();
+    private final List<String> sortAttributes;
+    private final IModel<String> filterAttributeModel = new Model<>();
+    private final IModel<CommentItemQuery.Operator> filterOperatorModel = Model.of(CommentItemQuery.Operator.EQUAL);
+    private final IModel<String> filterValueModel = new Model<>();
+    private final IModel<String> sortAttributeModel = new Model<>();
+    private final IModel<String> sortDirectionModel = Model.of(SORT_DESCENDING);
+    private CommentItemQuery currentCommentItemQuery;
+    private int failedCommentOperationsCount;
 
     public DefaultDocumentCommentingFieldPlugin(IPluginContext context, IPluginConfig config) {
         super(context, config);
         setOutputMarkupId(true);
         JcrNodeModel documentModel = (JcrNodeModel) getModel();
         commentingContext = new CommentingContext(context, config, documentModel);
-        String commentPersistenceManagerClazz = config.getString("comment.persistence.manager", null);
-        if (StringUtils.isNotBlank(commentPersistenceManagerClazz)) {
-            try {
-                commentPersistenceManager = (CommentPersistenceManager) Class.forName(commentPersistenceManagerClazz)
-                        .getDeclaredConstructor().newInstance();
-            } catch (Exception e) {
-                log.error("Cannot create custom comment persistence manager.", e);
-            }
-        }
-        if (commentPersistenceManager == null) {
-            commentPersistenceManager = new DefaultJcrCommentPersistenceManager();
-        }
+        commentPersistenceManager = CommentPersistenceManagerUtils.createCommentPersistenceManager(
+                config.getString("comment.persistence.manager", null));
         queryLimit = config.getAsLong("comment.query.limit", 100);
         editableByAuthorOnly = config.getAsBoolean("comment.editable.author.only", false);
         deletableByAuthorOnly = config.getAsBoolean("comment.deletable.author.only", false);
+        deltaSkewMargin = config.getAsLong("comment.delta.skew.margin", 10000L);
+        final String[] filterAttributes = config.getStringArray("comment.filter.attributes");
+        final String[] filterTypes = config.getStringArray("comment.filter.attribute.types");
+        for (int i = 0; filterAttributes != null && i < filterAttributes.length; i++) {
+            filterAttributeTypes.put(filterAttributes[i],
+                    (filterTypes != null && i < filterTypes.length) ? filterTypes[i] : "String");
+        }
+        final String[] sortAttributeNames = config.getStringArray("comment.sort.attributes");
+        sortAttributes = (sortAttributeNames != null) ? Arrays.asList(sortAttributeNames) : new LinkedList<>();
         add(new Label("doc-commenting-caption", getCaptionModel()));
         MarkupContainer commentsContainer = new WebMarkupContainer("doc-comments-container");
         addDialogAction = new DialogAction(
@@ -129,23 +160,166 @@ public class DefaultDocumentCommentingFieldPlugin extends RenderPlugin<Node> imp
         addLink.add(addImage);
         addLink.setVisible(canCreateCommentItem(UserSession.get().getJcrSession()));
         commentsContainer.add(addLink);
+
+        final DialogAction searchDialogAction = new DialogAction(new IDialogFactory() {
+            private static final long serialVersionUID = 1L;
+
+            public AbstractDialog<Void> createDialog() {
+                return createSearchDialogInstance();
+            }
+        }, getDialogService());
+
+        AjaxLink<Void> searchLink = new AjaxLink<Void>("search") {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public void onClick(AjaxRequestTarget target) {
+                searchDialogAction.execute();
+            }
+        };
+
+        searchLink.setVisible(config.getAsBoolean("comment.search.enabled", false));
+        commentsContainer.add(searchLink);
+        commentsContainer.add(createQueryForm());
         refreshCommentItems();
         commentsContainer.add(createRefreshingView());
+        commentsContainer.add(new Label("doc-comments-count", () -> new StringResourceModel("doc.commenting.count",
+                DefaultDocumentCommentingFieldPlugin.this, null)
+                .setDefaultValue("Showing the latest {0} of {1} comments.")
+                .setParameters(currentCommentItems.size(), currentCommentItemsCount).getString()) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void onConfigure() {
+                super.onConfigure();
+                setVisible(currentCommentItemsCount > currentCommentItems.size());
+            }
+        });
+        commentsContainer.add(new Label("doc-comments-failed", () -> new StringResourceModel("doc.commenting.failed",
+                DefaultDocumentCommentingFieldPlugin.this, null)
+                .setDefaultValue("{0} comment(s) could not be saved. Please try again.")
+                .setParameters(failedCommentOperationsCount).getString()) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void onConfigure() {
+                super.onConfigure();
+                setVisible(failedCommentOperationsCount > 0);
+            }
+        });
         add(commentsContainer);
     }
 
     private void refreshCommentItems() {
+        pollFailedCommentOperations();
         try {
             String subjectId = getCommentingContext().getSubjectDocumentModel().getNode().getParent().getIdentifier();
-            List<CommentItem> commentItems = getCommentPersistenceManager().getLatestCommentItemsBySubjectId(getCommentingContext(),
-                    subjectId, 0, getQueryLimit());
-            currentCommentItems.clear();
-            currentCommentItems.addAll(commentItems);
+            if (currentCommentItemQuery != null && refreshQueriedCommentItems(subjectId)) {
+                return;
+            }
+            String stamp = getCommentPersistenceManager().getCommentItemsStamp(getCommentingContext(), subjectId);
+            if (stamp != null && stamp.equals(currentCommentItemsStamp)) {
+                return;
+            }
+            if (!mergeCommentItemsModifiedSince(subjectId)) {
+                Calendar readTime = Calendar.getInstance();
+                List<CommentItem> commentItems = getCommentPersistenceManager().getLatestCommentItemsBySubjectId(getCommentingContext(),
+                        subjectId, 0, getQueryLimit());
+                currentCommentItems.clear();
+                currentCommentItems.addAll(commentItems);
+                currentCommentItemsReadTime = readTime;
+            }
+            currentCommentItemsStamp = stamp;
+            if (currentCommentItems.size() >= getQueryLimit()) {
+                currentCommentItemsCount = getCommentPersistenceManager().countCommentItemsBySubjectId(
+                        getCommentingContext(), subjectId);
+            } else {
+                currentCommentItemsCount = currentCommentItems.size();
+            }
         } catch (RepositoryException e) {
             log.error("Failed to refresh current comment items.", e);
         }
     }
 
+    /**
+     * Retrieves the failures of the comment items of the current user accepted to be persisted asynchronously,
+     * e.g, by the write-behind queue, to be reported until the next refresh.
+     */
+    private void pollFailedCommentOperations() {
+        failedCommentOperationsCount = 0;
+        try {
+            List<CommentOperationResult> results = getCommentPersistenceManager().pollFailedCommentOperations(
+                    getCommentingContext());
+            if (results != null) {
+                failedCommentOperationsCount = results.size();
+            }
+        } catch (CommentingException e) {
+            log.error("Failed to retrieve failed comment operations.", e);
+        }
+    }
+
+    /**
+     * Reads the comment items by the current filter and sort query, filtered and sorted by the persistence manager.
+     * The stamp and the read time are reset so that the latest comment items are read again after the query is reset.
+     * Returns false if the persistence manager does not support attribute queries.
+     */
+    private boolean refreshQueriedCommentItems(final String subjectId) {
+        List<CommentItem> commentItems = getCommentPersistenceManager().queryCommentItems(getCommentingContext(),
+                subjectId, currentCommentItemQuery, 0, getQueryLimit());
+        if (commentItems == null) {
+            log.warn("Comment filter and sort not supported by the persistence manager: {}",
+                    getCommentPersistenceManager().getClass().getName());
+            return false;
+        }
+        currentCommentItems.clear();
+        currentCommentItems.addAll(commentItems);
+        currentCommentItemsStamp = null;
+        currentCommentItemsReadTime = null;
+        currentCommentItemsCount = currentCommentItems.size();
+        return true;
+    }
+
+    /**
+     * Merges the changes since the last read into the current comment items, reading the changes from a bit earlier
+     * than the last read for the clock skew between cluster nodes.
+     * Returns false if the changes are not available or the current comment items cannot be complete by the changes,
+     * e.g, when items beyond the query limit would be needed after deletions.
+     */
+    private boolean mergeCommentItemsModifiedSince(final String subjectId) {
+        if (currentCommentItemsReadTime == null) {
+            return false;
+        }
+        for (CommentItem commentItem : currentCommentItems) {
+            if (commentItem.isPending()) {
+                return false;
+            }
+        }
+        Calendar since = (Calendar) currentCommentItemsReadTime.clone();
+        since.add(Calendar.MILLISECOND, (int) -deltaSkewMargin);
+        CommentItemDelta delta = getCommentPersistenceManager().getCommentItemsModifiedSince(getCommentingContext(),
+                subjectId, since);
+        if (delta == null) {
+            return false;
+        }
+        boolean full = currentCommentItems.size() >= getQueryLimit();
+        currentCommentItems.removeIf(item -> delta.getDeletedCommentIds().contains(item.getId()));
+        if (full && currentCommentItems.size() < getQueryLimit()) {
+            return false;
+        }
+        for (CommentItem modified : delta.getModifiedCommentItems()) {
+            currentCommentItems.removeIf(item -> StringUtils.equals(item.getId(), modified.getId()));
+            currentCommentItems.add(modified);
+        }
+        currentCommentItems.sort(Comparator.comparingLong((CommentItem item) -> CommentItemCursor.of(item).getCreated())
+                .thenComparing(item -> StringUtils.defaultString(item.getId())).reversed());
+        while (currentCommentItems.size() > getQueryLimit()) {
+            currentCommentItems.remove(currentCommentItems.size() - 1);
+        }
+        currentCommentItemsReadTime = delta.getReadTime();
+        return true;
+    }
+
     @Override
     public void renderHead(IHeaderResponse response) {
         super.renderHead(response);
@@ -160,6 +334,113 @@ public class DefaultDocumentCommentingFieldPlugin extends RenderPlugin<Node> imp
         return new StringResourceModel(caption, this, null).setDefaultValue(caption);
     }
 
+    private Form<Void> createQueryForm() {
+        final Form<Void> queryForm = new Form<>("doc-comments-query-form");
+        queryForm.setVisible(!filterAttributeTypes.isEmpty() || !sortAttributes.isEmpty());
+
+        final WebMarkupContainer filterContainer = new WebMarkupContainer("filter");
+        filterContainer.setVisible(!filterAttributeTypes.isEmpty());
+        filterContainer.add(new DropDownChoice<>("filter-attribute", filterAttributeModel,
+                new LinkedList<>(filterAttributeTypes.keySet())).setNullValid(true));
+        filterContainer.add(new DropDownChoice<>("filter-operator", filterOperatorModel,
+                Arrays.asList(CommentItemQuery.Operator.values()), new ChoiceRenderer<CommentItemQuery.Operator>() {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    public Object getDisplayValue(CommentItemQuery.Operator operator) {
+                        return operator.getSymbol();
+                    }
+
+                    @Override
+                    public String getIdValue(CommentItemQuery.Operator operator, int index) {
+                        return operator.name();
+                    }
+                }));
+        filterContainer.add(new TextField<>("filter-value", filterValueModel));
+        queryForm.add(filterContainer);
+
+        final WebMarkupContainer sortContainer = new WebMarkupContainer("sort");
+        sortContainer.setVisible(!sortAttributes.isEmpty());
+        sortContainer.add(new DropDownChoice<>("sort-attribute", sortAttributeModel, sortAttributes)
+                .setNullValid(true));
+        sortContainer.add(new DropDownChoice<>("sort-direction", sortDirectionModel,
+                Arrays.asList(SORT_DESCENDING, SORT_ASCENDING)));
+        queryForm.add(sortContainer);
+
+        queryForm.add(new AjaxButton("apply") {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void onSubmit(AjaxRequestTarget target) {
+                currentCommentItemQuery = createCommentItemQuery();
+                refreshCommentItems();
+                target.add(DefaultDocumentCommentingFieldPlugin.this);
+            }
+        });
+
+        queryForm.add(new AjaxLink<Void>("reset") {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public void onClick(AjaxRequestTarget target) {
+                filterAttributeModel.setObject(null);
+                filterOperatorModel.setObject(CommentItemQuery.Operator.EQUAL);
+                filterValueModel.setObject(null);
+                sortAttributeModel.setObject(null);
+                sortDirectionModel.setObject(SORT_DESCENDING);
+                currentCommentItemQuery = null;
+                refreshCommentItems();
+                target.add(DefaultDocumentCommentingFieldPlugin.this);
+            }
+        });
+
+        return queryForm;
+    }
+
+    /**
+     * Creates the query by the selected filter and sort controls, or returns null if neither is selected.
+     * The filter value is converted to the type configured for the attribute by {@code comment.filter.attribute.types}
+     * ({@code String}, {@code Long}, {@code Double}, {@code Boolean} or {@code Date} in {@code yyyy-MM-dd} format),
+     * and the filter is ignored if the value cannot be converted.
+     */
+    protected CommentItemQuery createCommentItemQuery() {
+        final CommentItemQuery query = new CommentItemQuery();
+        final String filterAttribute = filterAttributeModel.getObject();
+        final String sortAttribute = sortAttributeModel.getObject();
+        if (filterAttribute != null && filterValueModel.getObject() != null) {
+            final Object value = convertFilterValue(filterAttributeTypes.get(filterAttribute),
+                    StringUtils.trim(filterValueModel.getObject()));
+            if (value != null) {
+                query.filter(filterAttribute, filterOperatorModel.getObject(), value);
+            }
+        }
+        if (sortAttribute != null) {
+            query.orderBy(sortAttribute, SORT_DESCENDING.equals(sortDirectionModel.getObject()));
+        }
+        return (query.getFilters().isEmpty() && query.getOrders().isEmpty()) ? null : query;
+    }
+
+    private static Object convertFilterValue(final String type, final String value) {
+        try {
+            if ("Long".equals(type)) {
+                return Long.valueOf(value);
+            } else if ("Double".equals(type)) {
+                return Double.valueOf(value);
+            } else if ("Boolean".equals(type)) {
+                return Boolean.valueOf(value);
+            } else if ("Date".equals(type)) {
+                Calendar date = Calendar.getInstance();
+                date.setTimeInMillis(LocalDate.parse(value).atStartOfDay(ZoneId.systemDefault()).toInstant()
+                        .toEpochMilli());
+                return date;
+            }
+        } catch (NumberFormatException | DateTimeParseException e) {
+            log.debug("Ignoring the filter value not convertible to {}: {}", type, value);
+            return null;
+        }
+        return value;
+    }
+
     private RefreshingView<? extends Serializable> createRefreshingView() {
 
         return new RefreshingView<>("view") {
@@ -217,6 +498,11 @@ public class DefaultDocumentCommentingFieldPlugin extends RenderPlugin<Node> imp
                     commentBodyLabel.add(new AttributeModifier("title", bodyTooltip));
                 }
 
+                final Label pendingLabel = new Label("docitem-pending",
+                        new StringResourceModel("doc.commenting.pending", this, null).setDefaultValue("(pending)"));
+                pendingLabel.setVisible(comment.isPending());
+                item.add(pendingLabel);
+
                 if (item.getIndex() == currentCommentItems.size() - 1) {
                     item.add(new AttributeAppender("class", "last", " "));
                 }
@@ -262,6 +548,7 @@ public class DefaultDocumentCommentingFieldPlugin extends RenderPlugin<Node> imp
                                 public void invokeWorkflow() {
                                     getCommentPersistenceManager().deleteCommentItem(getCommentingContext(), comment);
                                     currentCommentItems.remove(comment);
+                                    currentCommentItemsCount--;
                                     refreshDocumentEditorWithSelectedCompounds();
                                 }
                             };
@@ -309,6 +596,12 @@ public class DefaultDocumentCommentingFieldPlugin extends RenderPlugin<Node> imp
                 commentItem, onOkCallback);
     }
 
+    protected AbstractDialog<Void> createSearchDialogInstance() {
+        final String defaultTitle = new StringResourceModel("doc.commenting.search", this, null)
+                .setDefaultValue("Search comments").getString();
+        return new CommentSearchDialog(Model.of(defaultTitle), getCommentingContext(), getCommentPersistenceManager());
+    }
+
     protected IDialogFactory createDialogFactory(final CommentItem commentItem, final SerializableCallable<Object> onOkCallback) {
         return new IDialogFactory() {
             private static final long serialVersionUID = 1L;
@@ -324,14 +617,14 @@ public class DefaultDocumentCommentingFieldPlugin extends RenderPlugin<Node> imp
     }
 
     protected boolean isEditableCommentItem(final Session userJcrSession, final CommentItem commentItem) {
-        if (!isEditMode()) {
+        if (!isEditMode() || commentItem.isPending()) {
             return false;
         }
         return !isEditableByAuthorOnly() || StringUtils.equals(commentItem.getAuthor(), userJcrSession.getUserID());
     }
 
     protected boolean isDeletableCommentItem(final Session userJcrSession, final CommentItem commentItem) {
-        if (!isEditMode()) {
+        if (!isEditMode() || commentItem.isPending()) {
             return false;
         }
         return !isDeletableByAuthorOnly() || StringUtils.equals(commentItem.getAuthor(), userJcrSession.getUserID());
@@ -15,15 +15,34 @@
  */
 package org.onehippo.forge.document.commenting.cms.impl;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.MessageFormat;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import javax.jcr.InvalidItemStateException;
+import javax.jcr.ItemExistsException;
 import javax.jcr.ItemNotFoundException;
 import javax.jcr.Node;
 import javax.jcr.NodeIterator;
@@ -34,17 +53,31 @@ import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.Value;
 import javax.jcr.query.Query;
+import javax.jcr.query.QueryManager;
 import javax.jcr.query.QueryResult;
+import javax.jcr.query.Row;
+import javax.jcr.query.RowIterator;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.DateFormatUtils;
 import org.hippoecm.frontend.plugin.config.IPluginConfig;
+import org.hippoecm.frontend.plugin.config.impl.JavaPluginConfig;
 import org.hippoecm.frontend.session.UserSession;
+import org.hippoecm.repository.api.NodeNameCodec;
 import org.hippoecm.repository.util.JcrUtils;
 import org.onehippo.forge.document.commenting.cms.api.CommentItem;
+import org.onehippo.forge.document.commenting.cms.api.CommentItemCursor;
+import org.onehippo.forge.document.commenting.cms.api.CommentItemDelta;
+import org.onehippo.forge.document.commenting.cms.api.CommentItemPage;
+import org.onehippo.forge.document.commenting.cms.api.CommentItemQuery;
+import org.onehippo.forge.document.commenting.cms.api.CommentOperationResult;
 import org.onehippo.forge.document.commenting.cms.api.CommentPersistenceManager;
+import org.onehippo.forge.document.commenting.cms.api.CommentSearchCursor;
+import org.onehippo.forge.document.commenting.cms.api.CommentSearchHit;
+import org.onehippo.forge.document.commenting.cms.api.CommentSearchPage;
 import org.onehippo.forge.document.commenting.cms.api.CommentingContext;
 import org.onehippo.forge.document.commenting.cms.api.CommentingException;
+import org.onehippo.forge.document.commenting.cms.api.SerializableCallable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -56,20 +89,82 @@ public class DefaultJcrCommentPersistenceManager implements CommentPersistenceMa
     private static final long serialVersionUID = 1L;
 
     private static Logger log = LoggerFactory.getLogger(DefaultJcrCommentPersistenceManager.class);
-    private static final Object mutex = new Object();
     public static final String DEFAULT_COMMENTS_LOCATION = "doccommentdata";
     public static final String NT_COMMENTS_CONTAINER = "doccommenting:commentdatacontainer";
     public static final String NT_COMMENT = "doccommenting:commentdata";
+    public static final String NT_TOMBSTONE = "doccommenting:tombstone";
     public static final String PROP_SUBJECTID = "doccommenting:subjectid";
     public static final String PROP_AUTHOR = "doccommenting:author";
     public static final String PROP_CREATED = "doccommenting:created";
     public static final String PROP_LAST_MODIFIED = "doccommenting:lastModified";
     public static final String PROP_CONTENT = "doccommenting:content";
+    public static final String PROP_STAMP = "doccommenting:stamp";
+    public static final String PROP_COUNT = "doccommenting:count";
+    public static final String PROP_COMMENTID = "doccommenting:commentid";
+    public static final String PROP_DELETED = "doccommenting:deleted";
+    public static final String PROP_MIGRATED = "doccommenting:migrated";
     private static final Set<String> BUILTIN_PROP_NAMES =
             new HashSet<>(Arrays.asList(PROP_SUBJECTID, PROP_AUTHOR, PROP_CREATED, PROP_LAST_MODIFIED, PROP_CONTENT));
     private static final String DEFAULT_COMMENTS_QUERY =
-            "//element(*,doccommenting:commentdata)[@doccommenting:subjectid=''{0}''] order by @doccommenting:created descending";
+            "SELECT * FROM [doccommenting:commentdata] AS comment WHERE comment.[doccommenting:subjectid] = $subjectId ORDER BY comment.[doccommenting:created] DESC";
+    private static final String PROJECTION_COMMENTS_QUERY =
+            "SELECT comment.[jcr:uuid] AS [jcr:uuid], comment.[doccommenting:subjectid] AS [doccommenting:subjectid], comment.[doccommenting:author] AS [doccommenting:author], comment.[doccommenting:created] AS [doccommenting:created], comment.[doccommenting:lastModified] AS [doccommenting:lastModified], comment.[doccommenting:content] AS [doccommenting:content] FROM [doccommenting:commentdata] AS comment WHERE comment.[doccommenting:subjectid] = $subjectId ORDER BY comment.[doccommenting:created] DESC";
+    private static final String SUBJECT_ID_BIND_VARIABLE = "subjectId";
+    private static final String UUID_COLUMN = "jcr:uuid";
+    private static final String COMMENTS_CURSOR_QUERY =
+            "//element(*,doccommenting:commentdata)[@doccommenting:subjectid=''{0}''] order by @doccommenting:created descending, @jcr:uuid descending";
+    private static final String COMMENTS_AFTER_CURSOR_QUERY =
+            "//element(*,doccommenting:commentdata)[@doccommenting:subjectid=''{0}'' and (@doccommenting:created < xs:dateTime(''{1}'') or (@doccommenting:created = xs:dateTime(''{1}'') and @jcr:uuid < ''{2}''))] order by @doccommenting:created descending, @jcr:uuid descending";
+    private static final String COMMENTS_BY_PROPERTY_CURSOR_QUERY =
+            "//element(*,doccommenting:commentdata)[@{0}=''{1}''] order by @doccommenting:created descending, @jcr:uuid descending";
+    private static final String COMMENTS_BY_PROPERTY_AFTER_CURSOR_QUERY =
+            "//element(*,doccommenting:commentdata)[@{0}=''{1}'' and (@doccommenting:created < xs:dateTime(''{2}'') or (@doccommenting:created = xs:dateTime(''{2}'') and @jcr:uuid < ''{3}''))] order by @doccommenting:created descending, @jcr:uuid descending";
+    private static final String COMMENTS_MODIFIED_SINCE_QUERY =
+            "//element(*,doccommenting:commentdata)[@doccommenting:subjectid=''{0}'' and @doccommenting:lastModified > xs:dateTime(''{1}'')] order by @doccommenting:lastModified ascending";
+    private static final String TOMBSTONES_SINCE_QUERY =
+            "//element(*,doccommenting:tombstone)[@doccommenting:subjectid=''{0}'' and @doccommenting:deleted > xs:dateTime(''{1}'')]";
+    private static final String COMMENTS_BY_SUBJECTS_QUERY =
+            "//element(*,doccommenting:commentdata)[{0}] order by @doccommenting:created descending";
+    private static final String COUNT_BY_SUBJECTS_QUERY = "//element(*,doccommenting:commentdata)[{0}]";
+    private static final String SUBJECT_NODES_QUERY = "//element(*,{0})[@doccommenting:subjectid=''{1}'']";
+    private static final String FULL_TEXT_SEARCH_QUERY =
+            "//element(*,doccommenting:commentdata)[jcr:contains(., ''{0}'')]/rep:excerpt(.) order by @jcr:score descending";
+    private static final String EXCERPT_COLUMN = "rep:excerpt(.)";
+    private static final String ATTRIBUTES_QUERY = "//element(*,doccommenting:commentdata){0} order by {1}";
+    /**
+     * Pattern of the attribute names allowed in attribute queries, which are put into the query statements as is.
+     */
+    private static final Pattern QUERY_ATTRIBUTE_NAME_PATTERN =
+            Pattern.compile("([A-Za-z_][\\w.-]*:)?[A-Za-z_][\\w.-]*");
+    /**
+     * Characters having special meanings in the full-text search syntax, other than quotes for phrases
+     * and minus signs for excluded words.
+     */
+    private static final String FULL_TEXT_SEARCH_SPECIAL_CHARS = "!():^[]{}?\\~*+&|";
+    /**
+     * Max number of subject IDs in a single query with OR-ed subject ID predicates.
+     */
+    private static final int SUBJECTS_QUERY_CHUNK_SIZE = 50;
+    private static final DateTimeFormatter XPATH_DATE_TIME_FORMATTER =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSXXX").withZone(ZoneOffset.UTC);
     private static final String DEFAULT_DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
+    private static final Comparator<Node> LATEST_COMMENT_NODE_COMPARATOR = new LatestCommentNodeComparator();
+    private static final long DEFAULT_WRITE_BEHIND_OFFER_TIMEOUT = 100L;
+    private static final int DEFAULT_SAVE_RETRIES = 3;
+    private static final long DEFAULT_SAVE_RETRY_DELAY = 50L;
+    private static final long MAX_SAVE_RETRY_DELAY = 1000L;
+    /**
+     * Default max age of tombstone nodes in days.
+     */
+    static final long DEFAULT_TOMBSTONE_MAX_AGE = 30L;
+    /**
+     * Total number of the retried session saves on conflicts.
+     */
+    private static final AtomicLong SAVE_RETRY_COUNT = new AtomicLong();
+    /**
+     * Session used instead of the user session by the current thread, e.g, by the write-behind worker thread.
+     */
+    private static final ThreadLocal<Session> BOUND_SESSION = new ThreadLocal<>();
     private String dateFormat;
 
     public CommentItem getCommentItemById(CommentingContext commentingContext, String commentId) throws CommentingException {
@@ -86,12 +181,61 @@ public class DefaultJcrCommentPersistenceManager implements CommentPersistenceMa
         return commentItem;
     }
 
+    /**
+     * {@inheritDoc}
+     * <P>
+     * In write-behind mode, the pending items of the subject which are not persisted yet are merged into the first page.
+     * </P>
+     */
     public List<CommentItem> getLatestCommentItemsBySubjectId(CommentingContext commentingContext, String subjectId,
             long offset, long limit) throws CommentingException {
+        List<CommentItem> commentItems = readLatestCommentItemsBySubjectId(commentingContext, subjectId, offset, limit);
+
+        if (offset == 0L && limit > 0L && isWriteBehindEnabled(commentingContext)) {
+            commentItems = getWriteBehindQueue(commentingContext).mergePendingCommentItems(subjectId, commentItems);
+
+            while (commentItems.size() > limit) {
+                commentItems.remove(commentItems.size() - 1);
+            }
+        }
+
+        return commentItems;
+    }
+
+    private List<CommentItem> readLatestCommentItemsBySubjectId(CommentingContext commentingContext, String subjectId,
+            long offset, long limit) throws CommentingException {
         List<CommentItem> commentItems = new LinkedList<>();
 
         if (limit > 0) {
             try {
+                Node subjectContainerNode = getSubjectContainerNode(commentingContext, subjectId);
+
+                if (subjectContainerNode != null) {
+                    List<Node> commentNodes = getLatestCommentNodes(subjectContainerNode);
+                    int fromIndex = (int) Math.min(offset, commentNodes.size());
+                    int toIndex = (int) Math.min(commentNodes.size(), fromIndex + Math.min(limit, commentNodes.size()));
+
+                    for (Node commentNode : commentNodes.subList(fromIndex, toIndex)) {
+                        CommentItem commentItem = new CommentItem();
+                        mapCommentItem(commentItem, commentNode);
+                        commentItems.add(commentItem);
+                    }
+
+                    return commentItems;
+                }
+
+                if (isProjectionEnabled(commentingContext)) {
+                    Query query = createLatestCommentItemsProjectionReadQuery(commentingContext, subjectId, offset, limit);
+
+                    for (RowIterator rowIt = query.execute().getRows(); rowIt.hasNext();) {
+                        CommentItem commentItem = new CommentItem();
+                        mapCommentItem(commentItem, rowIt.nextRow());
+                        commentItems.add(commentItem);
+                    }
+
+                    return commentItems;
+                }
+
                 Query query = createLatestCommentItemsReadQuery(commentingContext, subjectId, offset, limit);
                 QueryResult result = query.execute();
                 Node commentNode;
@@ -110,81 +254,754 @@ public class DefaultJcrCommentPersistenceManager implements CommentPersistenceMa
         return commentItems;
     }
 
+    public CommentItemPage getLatestCommentItemPageBySubjectId(CommentingContext commentingContext, String subjectId,
+            String cursor, long limit) throws CommentingException {
+        List<CommentItem> commentItems = new LinkedList<>();
+
+        if (limit <= 0) {
+            return new CommentItemPage(commentItems, null);
+        }
+
+        final CommentItemCursor position = (cursor != null) ? CommentItemCursor.decode(cursor) : null;
+
+        try {
+            Node subjectContainerNode = getSubjectContainerNode(commentingContext, subjectId);
+
+            if (subjectContainerNode != null) {
+                for (Node commentNode : getLatestCommentNodes(subjectContainerNode)) {
+                    if (position == null
+                            || position.isFollowedBy(getCreatedTimeInMillis(commentNode), commentNode.getIdentifier())) {
+                        CommentItem commentItem = new CommentItem();
+                        mapCommentItem(commentItem, commentNode);
+                        commentItems.add(commentItem);
+
+                        if (commentItems.size() > limit) {
+                            break;
+                        }
+                    }
+                }
+            } else {
+                Query query = createLatestCommentItemsCursorReadQuery(commentingContext, subjectId, position, limit + 1);
+                QueryResult result = query.execute();
+
+                for (NodeIterator nodeIt = result.getNodes(); nodeIt.hasNext();) {
+                    CommentItem commentItem = new CommentItem();
+                    mapCommentItem(commentItem, nodeIt.nextNode());
+                    commentItems.add(commentItem);
+                }
+            }
+        } catch (RepositoryException e) {
+            throw new CommentingException(e);
+        }
+
+        String nextCursor = null;
+
+        if (commentItems.size() > limit) {
+            commentItems.remove(commentItems.size() - 1);
+            nextCursor = CommentItemCursor.of(commentItems.get(commentItems.size() - 1)).encode();
+        }
+
+        return new CommentItemPage(commentItems, nextCursor);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * The page is read by a query on {@code doccommenting:author} with a range predicate on
+     * {@code doccommenting:created} and {@code jcr:uuid}, both of which are in the search index of the repository.
+     * </P>
+     */
+    public CommentItemPage getLatestCommentItemPageByAuthor(CommentingContext commentingContext, String author,
+            String cursor, long limit) throws CommentingException {
+        return getLatestCommentItemPageByProperty(PROP_AUTHOR, author, cursor, limit);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * The page is read by a query on the attribute property with a range predicate on
+     * {@code doccommenting:created} and {@code jcr:uuid}, like {@link #getLatestCommentItemPageByAuthor}.
+     * </P>
+     */
+    public CommentItemPage getLatestCommentItemPageByAttribute(CommentingContext commentingContext,
+            String attributeName, String value, String cursor, long limit) throws CommentingException {
+        return getLatestCommentItemPageByProperty(getQueryAttributeName(attributeName), value, cursor, limit);
+    }
+
+    private CommentItemPage getLatestCommentItemPageByProperty(final String propName, final String value,
+            final String cursor, final long limit) throws CommentingException {
+        List<CommentItem> commentItems = new LinkedList<>();
+
+        if (limit <= 0) {
+            return new CommentItemPage(commentItems, null);
+        }
+
+        final CommentItemCursor position = (cursor != null) ? CommentItemCursor.decode(cursor) : null;
+        String statement;
+
+        if (position == null) {
+            statement = MessageFormat.format(COMMENTS_BY_PROPERTY_CURSOR_QUERY, propName,
+                    escapeXPathStringLiteral(value));
+        } else {
+            statement = MessageFormat.format(COMMENTS_BY_PROPERTY_AFTER_CURSOR_QUERY, propName,
+                    escapeXPathStringLiteral(value),
+                    XPATH_DATE_TIME_FORMATTER.format(Instant.ofEpochMilli(position.getCreated())),
+                    escapeXPathStringLiteral(position.getId()));
+        }
+
+        try {
+            Query query = getSession().getWorkspace().getQueryManager().createQuery(statement, Query.XPATH);
+            query.setLimit(limit + 1);
+
+            for (NodeIterator nodeIt = query.execute().getNodes(); nodeIt.hasNext();) {
+                CommentItem commentItem = new CommentItem();
+                mapCommentItem(commentItem, nodeIt.nextNode());
+                commentItems.add(commentItem);
+            }
+        } catch (RepositoryException e) {
+            throw new CommentingException(e);
+        }
+
+        String nextCursor = null;
+
+        if (commentItems.size() > limit) {
+            commentItems.remove(commentItems.size() - 1);
+            nextCursor = CommentItemCursor.of(commentItems.get(commentItems.size() - 1)).encode();
+        }
+
+        return new CommentItemPage(commentItems, nextCursor);
+    }
+
+    public Map<String, List<CommentItem>> getLatestCommentItemsBySubjectIds(CommentingContext commentingContext,
+            Collection<String> subjectIds, long limit) throws CommentingException {
+        Map<String, List<CommentItem>> commentItemsMap = new LinkedHashMap<>();
+
+        for (String subjectId : subjectIds) {
+            commentItemsMap.put(subjectId, new LinkedList<>());
+        }
+
+        if (limit <= 0) {
+            return commentItemsMap;
+        }
+
+        try {
+            List<String> querySubjectIds = new ArrayList<>();
+
+            for (String subjectId : commentItemsMap.keySet()) {
+                Node subjectContainerNode = getSubjectContainerNode(commentingContext, subjectId);
+
+                if (subjectContainerNode != null) {
+                    List<CommentItem> commentItems = commentItemsMap.get(subjectId);
+
+                    for (Node commentNode : getLatestCommentNodes(subjectContainerNode)) {
+                        if (commentItems.size() >= limit) {
+                            break;
+                        }
+
+                        CommentItem commentItem = new CommentItem();
+                        mapCommentItem(commentItem, commentNode);
+                        commentItems.add(commentItem);
+                    }
+                } else {
+                    querySubjectIds.add(subjectId);
+                }
+            }
+
+            for (int i = 0; i < querySubjectIds.size(); i += SUBJECTS_QUERY_CHUNK_SIZE) {
+                List<String> chunk = querySubjectIds.subList(i,
+                        Math.min(querySubjectIds.size(), i + SUBJECTS_QUERY_CHUNK_SIZE));
+                Query query = createLatestCommentItemsBySubjectsReadQuery(commentingContext, chunk);
+                int fullSubjectCount = 0;
+                Node commentNode;
+                List<CommentItem> commentItems;
+
+                for (NodeIterator nodeIt = query.execute().getNodes();
+                        nodeIt.hasNext() && fullSubjectCount < chunk.size();) {
+                    commentNode = nodeIt.nextNode();
+                    commentItems = commentItemsMap.get(JcrUtils.getStringProperty(commentNode, PROP_SUBJECTID, ""));
+
+                    if (commentItems != null && commentItems.size() < limit) {
+                        CommentItem commentItem = new CommentItem();
+                        mapCommentItem(commentItem, commentNode);
+                        commentItems.add(commentItem);
+
+                        if (commentItems.size() == limit) {
+                            fullSubjectCount++;
+                        }
+                    }
+                }
+            }
+        } catch (RepositoryException e) {
+            throw new CommentingException(e);
+        }
+
+        return commentItemsMap;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * In write-behind mode, the item is queued to be persisted asynchronously and null is returned,
+     * unless the queue is full, in which case the item is persisted synchronously.
+     * </P>
+     */
     public String createCommentItem(CommentingContext commentingContext, CommentItem commentItem) throws CommentingException {
         String commentId = null;
 
         try {
-            commentItem.setSubjectId(commentingContext.getSubjectDocumentModel().getNode().getParent().getIdentifier());
+            commentItem.setSubjectId(getSubjectId(commentingContext, commentItem));
             commentItem.setAuthor(getSession().getUserID());
-            Node docCommentsDataNode = getDocCommentsDataNode(getSession());
-            Node randomNode = createRandomNode(docCommentsDataNode);
-            Node commentNode = randomNode.addNode("comment_" + System.currentTimeMillis(), NT_COMMENT);
 
-            if (!commentNode.isNodeType("mix:referenceable")) {
-                commentNode.addMixin("mix:referenceable");
+            if (offerToWriteBehindQueue(commentingContext, JcrCommentWriteBehindQueue.Operation.CREATE, commentItem)) {
+                return null;
             }
 
-            bindCommentNode(commentNode, commentItem);
-            getSession().save();
-            commentId = commentNode.getIdentifier();
-        } catch (RepositoryException e1) {
-            try {
-                getSession().refresh(false);
-            } catch (RepositoryException e2) {
-                log.error("Failed to refresh.", e2);
+            Node commentNode;
+
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    commentNode = addCommentNode(commentingContext, getDocCommentsDataNode(getSession()), commentItem);
+                    getSession().save();
+                    break;
+                } catch (InvalidItemStateException | ItemExistsException e) {
+                    if (!backOffBeforeSaveRetry(commentingContext, attempt, e)) {
+                        throw e;
+                    }
+                }
             }
 
+            commentId = commentNode.getIdentifier();
+        } catch (RepositoryException e1) {
+            refreshSession();
             throw new CommentingException(e1);
         }
 
         return commentId;
     }
 
+    /**
+     * {@inheritDoc}
+     * <P>
+     * In write-behind mode, the item is queued to be persisted asynchronously,
+     * unless the queue is full, in which case the item is persisted synchronously.
+     * The session save is retried on a conflict like creations, e.g, when the stamp of the per-subject container node
+     * was updated by another session or cluster node at the same time.
+     * </P>
+     */
     public void updateCommentItem(CommentingContext commentingContext, CommentItem commentItem) throws CommentingException {
         if (StringUtils.isBlank(commentItem.getId())) {
             throw new IllegalArgumentException("No identifier in commentItem.");
         }
 
         try {
-            commentItem.setSubjectId(commentingContext.getSubjectDocumentModel().getNode().getParent().getIdentifier());
+            commentItem.setSubjectId(getSubjectId(commentingContext, commentItem));
             commentItem.setAuthor(getSession().getUserID());
-            Node commentNode = getSession().getNodeByIdentifier(commentItem.getId());
 
-            if (!commentNode.isNodeType("mix:referenceable")) {
-                commentNode.addMixin("mix:referenceable");
+            if (offerToWriteBehindQueue(commentingContext, JcrCommentWriteBehindQueue.Operation.UPDATE, commentItem)) {
+                return;
             }
 
-            bindCommentNode(commentNode, commentItem);
-            getSession().save();
-        } catch (RepositoryException e1) {
-            try {
-                getSession().refresh(false);
-            } catch (RepositoryException e2) {
-                log.error("Failed to refresh.", e2);
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    bindExistingCommentNode(commentItem);
+                    getSession().save();
+                    break;
+                } catch (InvalidItemStateException e) {
+                    if (!backOffBeforeSaveRetry(commentingContext, attempt, e)) {
+                        throw e;
+                    }
+                }
             }
-
+        } catch (RepositoryException e1) {
+            refreshSession();
             throw new CommentingException(e1);
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <P>
+     * The session save is retried on a conflict like creations, e.g, when the stamp or the count of the per-subject
+     * container node was updated by another session or cluster node at the same time.
+     * </P>
+     */
     public void deleteCommentItem(CommentingContext commentingContext, CommentItem commentItem) throws CommentingException {
         try {
-            Node commentNode = getSession().getNodeByIdentifier(commentItem.getId());
-            commentNode.remove();
-            getSession().save();
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    removeCommentNode(commentingContext, commentItem);
+                    getSession().save();
+                    break;
+                } catch (InvalidItemStateException | ItemExistsException e) {
+                    if (!backOffBeforeSaveRetry(commentingContext, attempt, e)) {
+                        throw e;
+                    }
+                }
+            }
         } catch (ItemNotFoundException e) {
             throw new CommentingException(e);
         } catch (RepositoryException e1) {
-            try {
-                getSession().refresh(false);
-            } catch (RepositoryException e2) {
-                log.error("Failed to refresh.", e2);
+            refreshSession();
+            throw new CommentingException(e1);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * All the comment data nodes are added first and persisted by a single session save.
+     * If {@code commentingContext} has no subject document model, the subject identifier of each item is used as-is.
+     * If the session save fails, the session is refreshed and every item is reported as failed.
+     * </P>
+     */
+    public List<CommentOperationResult> createCommentItems(final CommentingContext commentingContext,
+            final List<CommentItem> commentItems) throws CommentingException {
+        return saveInBatch(commentingContext, commentItems, commentItem -> {
+            commentItem.setSubjectId(getSubjectId(commentingContext, commentItem));
+            commentItem.setAuthor(getSession().getUserID());
+            return addCommentNode(commentingContext, getDocCommentsDataNode(getSession()), commentItem);
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * All the comment data nodes are modified first and persisted by a single session save.
+     * If {@code commentingContext} has no subject document model, the subject identifier of each item is used as-is.
+     * If the session save fails, the session is refreshed and every item is reported as failed.
+     * </P>
+     */
+    public List<CommentOperationResult> updateCommentItems(final CommentingContext commentingContext,
+            final List<CommentItem> commentItems) throws CommentingException {
+        return saveInBatch(commentingContext, commentItems, commentItem -> {
+            if (StringUtils.isBlank(commentItem.getId())) {
+                throw new CommentingException("No identifier in commentItem.");
             }
 
-            throw new CommentingException(e1);
+            commentItem.setSubjectId(getSubjectId(commentingContext, commentItem));
+            commentItem.setAuthor(getSession().getUserID());
+            return bindExistingCommentNode(commentItem);
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * All the comment data nodes are removed first and persisted by a single session save.
+     * If the session save fails, the session is refreshed and every item is reported as failed.
+     * </P>
+     */
+    public List<CommentOperationResult> deleteCommentItems(final CommentingContext commentingContext,
+            final List<CommentItem> commentItems) throws CommentingException {
+        return saveInBatch(commentingContext, commentItems, commentItem -> {
+            removeCommentNode(commentingContext, commentItem);
+            return null;
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * In write-behind mode, the results of the queued items of the current user failed to be persisted are returned.
+     * </P>
+     */
+    public List<CommentOperationResult> pollFailedCommentOperations(CommentingContext commentingContext)
+            throws CommentingException {
+        if (!isWriteBehindEnabled(commentingContext)) {
+            return Collections.emptyList();
+        }
+
+        return getWriteBehindQueue(commentingContext).pollFailedCommentOperations(getSession().getUserID());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * If the subject has a per-subject container node in {@link JcrCommentStorageLayout#SUBJECT} layout,
+     * the count is read from {@code doccommenting:count} property
+     * of the container node, maintained by every create and delete, or from the child nodes if not maintained yet.
+     * Otherwise, the count is taken from the size of the rows of the configured query without reading the nodes.
+     * In write-behind mode, the pending creations of the subject are counted as well.
+     * </P>
+     */
+    public long countCommentItemsBySubjectId(CommentingContext commentingContext, String subjectId)
+            throws CommentingException {
+        long count = 0L;
+
+        try {
+            Node subjectContainerNode = getSubjectContainerNode(commentingContext, subjectId);
+
+            if (subjectContainerNode != null) {
+                if (subjectContainerNode.hasProperty(PROP_COUNT)) {
+                    count = subjectContainerNode.getProperty(PROP_COUNT).getLong();
+                } else {
+                    count = countCommentNodes(subjectContainerNode);
+                }
+            } else {
+                RowIterator rowIt = createLatestCommentItemsReadQuery(commentingContext, subjectId, 0L, 0L).execute()
+                        .getRows();
+                count = rowIt.getSize();
+
+                if (count < 0L) {
+                    for (count = 0L; rowIt.hasNext(); count++) {
+                        rowIt.nextRow();
+                    }
+                }
+            }
+        } catch (RepositoryException e) {
+            throw new CommentingException(e);
+        }
+
+        if (isWriteBehindEnabled(commentingContext)) {
+            count += getWriteBehindQueue(commentingContext).countPendingCreations(subjectId);
+        }
+
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * The subjects having a per-subject container node are counted as in
+     * {@link #countCommentItemsBySubjectId(CommentingContext, String)}, and the other subjects are counted together
+     * from the rows of a query with OR-ed subject ID predicates, without reading the nodes.
+     * </P>
+     */
+    public Map<String, Long> countCommentItemsBySubjectIds(CommentingContext commentingContext,
+            Collection<String> subjectIds) throws CommentingException {
+        Map<String, Long> counts = new LinkedHashMap<>();
+
+        for (String subjectId : subjectIds) {
+            counts.put(subjectId, 0L);
+        }
+
+        try {
+            List<String> querySubjectIds = new ArrayList<>();
+
+            for (String subjectId : counts.keySet()) {
+                Node subjectContainerNode = getSubjectContainerNode(commentingContext, subjectId);
+
+                if (subjectContainerNode == null) {
+                    querySubjectIds.add(subjectId);
+                } else if (subjectContainerNode.hasProperty(PROP_COUNT)) {
+                    counts.put(subjectId, subjectContainerNode.getProperty(PROP_COUNT).getLong());
+                } else {
+                    counts.put(subjectId, countCommentNodes(subjectContainerNode));
+                }
+            }
+
+            for (int i = 0; i < querySubjectIds.size(); i += SUBJECTS_QUERY_CHUNK_SIZE) {
+                List<String> chunk = querySubjectIds.subList(i,
+                        Math.min(querySubjectIds.size(), i + SUBJECTS_QUERY_CHUNK_SIZE));
+                String statement = MessageFormat.format(COUNT_BY_SUBJECTS_QUERY, createSubjectIdsPredicate(chunk));
+                Query query = getSession().getWorkspace().getQueryManager().createQuery(statement, Query.XPATH);
+
+                for (RowIterator rowIt = query.execute().getRows(); rowIt.hasNext();) {
+                    Value value = rowIt.nextRow().getValue(PROP_SUBJECTID);
+
+                    if (value != null) {
+                        counts.computeIfPresent(value.getString(), (subjectId, count) -> count + 1L);
+                    }
+                }
+            }
+        } catch (RepositoryException e) {
+            throw new CommentingException(e);
+        }
+
+        if (isWriteBehindEnabled(commentingContext)) {
+            JcrCommentWriteBehindQueue writeBehindQueue = getWriteBehindQueue(commentingContext);
+
+            for (Map.Entry<String, Long> entry : counts.entrySet()) {
+                entry.setValue(entry.getValue() + writeBehindQueue.countPendingCreations(entry.getKey()));
+            }
+        }
+
+        return counts;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * The items are found by {@code doccommenting:lastModified} property, and the deleted items by the
+     * {@code doccommenting:tombstone} nodes left in place of the deleted nodes, by scanning the per-subject container
+     * node in {@link JcrCommentStorageLayout#SUBJECT} layout, or by queries otherwise.
+     * The read time of the result is the time of this JVM before reading the changes, so callers should subtract
+     * a margin for the clock skew between cluster nodes when using it for the next changes.
+     * Null is returned if {@code since} is older than the max age of tombstones, as the tombstones of the deletions
+     * since then may have been removed.
+     * </P>
+     */
+    public CommentItemDelta getCommentItemsModifiedSince(CommentingContext commentingContext, String subjectId,
+            Calendar since) throws CommentingException {
+        final Calendar readTime = Calendar.getInstance();
+        final long sinceMillis = since.getTimeInMillis();
+
+        if (sinceMillis < getTombstoneCutoffTimeInMillis(commentingContext)) {
+            return null;
+        }
+        final List<CommentItem> modifiedCommentItems = new ArrayList<>();
+        final List<String> deletedCommentIds = new ArrayList<>();
+
+        try {
+            Node subjectContainerNode = getSubjectContainerNode(commentingContext, subjectId);
+
+            if (subjectContainerNode != null) {
+                List<Node> modifiedNodes = new ArrayList<>();
+                Node childNode;
+
+                for (NodeIterator nodeIt = subjectContainerNode.getNodes(); nodeIt.hasNext();) {
+                    childNode = nodeIt.nextNode();
+
+                    if (childNode == null) {
+                        continue;
+                    }
+
+                    if (childNode.isNodeType(NT_COMMENT)) {
+                        if (getDateTimeInMillis(childNode, PROP_LAST_MODIFIED) > sinceMillis) {
+                            modifiedNodes.add(childNode);
+                        }
+                    } else if (childNode.isNodeType(NT_TOMBSTONE)) {
+                        if (getDateTimeInMillis(childNode, PROP_DELETED) > sinceMillis) {
+                            deletedCommentIds.add(JcrUtils.getStringProperty(childNode, PROP_COMMENTID, ""));
+                        }
+                    }
+                }
+
+                modifiedNodes.sort(Comparator.comparingLong(node -> {
+                    try {
+                        return getDateTimeInMillis(node, PROP_LAST_MODIFIED);
+                    } catch (RepositoryException e) {
+                        throw new CommentingException(e);
+                    }
+                }));
+
+                for (Node commentNode : modifiedNodes) {
+                    CommentItem commentItem = new CommentItem();
+                    mapCommentItem(commentItem, commentNode);
+                    modifiedCommentItems.add(commentItem);
+                }
+            } else {
+                final String subjectIdLiteral = escapeXPathStringLiteral(subjectId);
+                final String sinceLiteral = XPATH_DATE_TIME_FORMATTER.format(Instant.ofEpochMilli(sinceMillis));
+                final QueryManager queryManager = getSession().getWorkspace().getQueryManager();
+
+                for (NodeIterator nodeIt = queryManager.createQuery(MessageFormat.format(COMMENTS_MODIFIED_SINCE_QUERY,
+                        subjectIdLiteral, sinceLiteral), Query.XPATH).execute().getNodes(); nodeIt.hasNext();) {
+                    CommentItem commentItem = new CommentItem();
+                    mapCommentItem(commentItem, nodeIt.nextNode());
+                    modifiedCommentItems.add(commentItem);
+                }
+
+                for (NodeIterator nodeIt = queryManager.createQuery(MessageFormat.format(TOMBSTONES_SINCE_QUERY,
+                        subjectIdLiteral, sinceLiteral), Query.XPATH).execute().getNodes(); nodeIt.hasNext();) {
+                    deletedCommentIds.add(JcrUtils.getStringProperty(nodeIt.nextNode(), PROP_COMMENTID, ""));
+                }
+            }
+        } catch (RepositoryException e) {
+            throw new CommentingException(e);
+        }
+
+        return new CommentItemDelta(modifiedCommentItems, deletedCommentIds, readTime);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * The stamp is a counter stored in the per-subject container node, increased by every create, update and delete
+     * on the comment data nodes in the container. So, it is available only for the subjects stored
+     * in {@link JcrCommentStorageLayout#SUBJECT} layout. Null is returned if the configured layout is not
+     * {@link JcrCommentStorageLayout#SUBJECT}, as the comments created in the other layouts do not update the stamp
+     * even if the per-subject container node exists, e.g, created by the compaction job. Null is also returned
+     * if the subject has no per-subject container node yet, or if the subject has pending items in write-behind mode.
+     * </P>
+     */
+    public String getCommentItemsStamp(CommentingContext commentingContext, String subjectId)
+            throws CommentingException {
+        if (isWriteBehindEnabled(commentingContext)
+                && getWriteBehindQueue(commentingContext).hasPendingCommentItems(subjectId)) {
+            return null;
+        }
+
+        try {
+            Node subjectContainerNode = getSubjectContainerNode(commentingContext, subjectId);
+
+            if (subjectContainerNode == null) {
+                return null;
+            }
+
+            return Long.toString(JcrUtils.getLongProperty(subjectContainerNode, PROP_STAMP, 0L));
+        } catch (RepositoryException e) {
+            throw new CommentingException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * The comment data nodes are searched by {@code jcr:contains} on the full-text index of the repository,
+     * which covers the content and the string attributes, and the excerpts are created by {@code rep:excerpt}.
+     * The cursor has the offset of the next hit in the search result, so the next page is read by the offset
+     * of the query, if the hit before the offset is still the hit of the cursor. Otherwise, e.g, if comments were
+     * added or removed in the meantime, the hits up to the cursor are skipped by their scores, reading the comment
+     * data nodes only of the hits with the same score as the cursor, which are in the order returned by the
+     * repository.
+     * </P>
+     */
+    public CommentSearchPage searchCommentItems(CommentingContext commentingContext, String text, String cursor,
+            long limit) throws CommentingException {
+        final String searchText = normalizeFullTextSearchText(text);
+
+        if (limit <= 0L || StringUtils.isBlank(searchText)) {
+            return new CommentSearchPage(null, null);
+        }
+
+        final CommentSearchCursor position = (cursor != null) ? CommentSearchCursor.decode(cursor) : null;
+        final String statement = MessageFormat.format(FULL_TEXT_SEARCH_QUERY, escapeXPathStringLiteral(searchText));
+
+        try {
+            final QueryManager queryManager = getSession().getWorkspace().getQueryManager();
+            CommentSearchPage page = null;
+
+            if (position != null && position.getOffset() > 0L) {
+                page = searchCommentItemsFromOffset(queryManager, statement, position, limit);
+            }
+
+            if (page == null) {
+                page = searchCommentItemsAfterScore(queryManager, statement, position, limit);
+            }
+
+            return page;
+        } catch (RepositoryException e) {
+            throw new CommentingException(e);
         }
     }
 
+    /**
+     * Reads the page from the offset of {@code position}, or returns null if the hit before the offset
+     * is not the hit of {@code position} any more.
+     */
+    private CommentSearchPage searchCommentItemsFromOffset(final QueryManager queryManager, final String statement,
+            final CommentSearchCursor position, final long limit) throws RepositoryException {
+        final Query query = queryManager.createQuery(statement, Query.XPATH);
+        query.setOffset(position.getOffset() - 1L);
+        query.setLimit(limit + 2L);
+        final RowIterator rowIt = query.execute().getRows();
+
+        if (!rowIt.hasNext()) {
+            return null;
+        }
+
+        final Row cursorRow = rowIt.nextRow();
+
+        if (Double.compare(cursorRow.getScore(), position.getScore()) != 0
+                || !cursorRow.getNode().getIdentifier().equals(position.getId())) {
+            return null;
+        }
+
+        final List<CommentSearchHit> hits = new ArrayList<>();
+
+        while (rowIt.hasNext()) {
+            hits.add(createCommentSearchHit(rowIt.nextRow()));
+        }
+
+        return createCommentSearchPage(hits, position.getOffset(), limit);
+    }
+
+    /**
+     * Reads the page after {@code position} by skipping the hits with the higher scores and the hits with the same
+     * score up to the hit of {@code position}, or from the first hit if {@code position} is null.
+     */
+    private CommentSearchPage searchCommentItemsAfterScore(final QueryManager queryManager, final String statement,
+            final CommentSearchCursor position, final long limit) throws RepositoryException {
+        final Query query = queryManager.createQuery(statement, Query.XPATH);
+        final List<CommentSearchHit> hits = new ArrayList<>();
+        boolean afterCursor = (position == null);
+        long offset = 0L;
+        long firstHitOffset = 0L;
+
+        for (RowIterator rowIt = query.execute().getRows(); rowIt.hasNext() && hits.size() <= limit; offset++) {
+            final Row row = rowIt.nextRow();
+
+            if (!afterCursor) {
+                final int comparison = Double.compare(row.getScore(), position.getScore());
+
+                if (comparison == 0 && row.getNode().getIdentifier().equals(position.getId())) {
+                    afterCursor = true;
+                }
+
+                if (comparison >= 0) {
+                    continue;
+                }
+
+                afterCursor = true;
+            }
+
+            if (hits.isEmpty()) {
+                firstHitOffset = offset;
+            }
+
+            hits.add(createCommentSearchHit(row));
+        }
+
+        return createCommentSearchPage(hits, firstHitOffset, limit);
+    }
+
+    private CommentSearchHit createCommentSearchHit(final Row row) throws RepositoryException {
+        final CommentItem commentItem = new CommentItem();
+        mapCommentItem(commentItem, row.getNode());
+        final Value excerpt = row.getValue(EXCERPT_COLUMN);
+        return new CommentSearchHit(commentItem, row.getScore(), (excerpt != null) ? excerpt.getString() : null);
+    }
+
+    /**
+     * Creates the page of up to {@code limit} hits, with the cursor at the last hit if there are more hits.
+     * @param hits hits read from {@code firstHitOffset} in the search result, up to {@code limit} + 1 hits
+     */
+    private static CommentSearchPage createCommentSearchPage(final List<CommentSearchHit> hits,
+            final long firstHitOffset, final long limit) {
+        if (hits.size() > limit) {
+            hits.remove(hits.size() - 1);
+            return new CommentSearchPage(hits,
+                    CommentSearchCursor.of(hits.get(hits.size() - 1), firstHitOffset + limit).encode());
+        }
+
+        return new CommentSearchPage(hits, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * The query is translated into an XPath query on the comment data nodes, with a predicate per filter
+     * and an {@code order by} clause per ordering, so both filtering and ordering are done by the search index
+     * of the repository, and the offset and limit are applied by the query as well.
+     * </P>
+     */
+    public List<CommentItem> queryCommentItems(CommentingContext commentingContext, String subjectId,
+            CommentItemQuery query, long offset, long limit) throws CommentingException {
+        List<CommentItem> commentItems = new LinkedList<>();
+
+        if (limit <= 0) {
+            return commentItems;
+        }
+
+        try {
+            Query jcrQuery = getSession().getWorkspace().getQueryManager()
+                    .createQuery(createAttributesQueryStatement(subjectId, query), Query.XPATH);
+            jcrQuery.setOffset(Math.max(offset, 0L));
+            jcrQuery.setLimit(limit);
+
+            for (NodeIterator nodeIt = jcrQuery.execute().getNodes(); nodeIt.hasNext();) {
+                CommentItem commentItem = new CommentItem();
+                mapCommentItem(commentItem, nodeIt.nextNode());
+                commentItems.add(commentItem);
+            }
+        } catch (RepositoryException e) {
+            throw new CommentingException(e);
+        }
+
+        return commentItems;
+    }
+
     public String getCommentHeadText(CommentingContext commentingContext, CommentItem commentItem) throws CommentingException {
         StringBuilder sb = new StringBuilder(40);
         sb.append(getAuthorName(commentItem)).append(" - ")
@@ -192,28 +1009,247 @@ public class DefaultJcrCommentPersistenceManager implements CommentPersistenceMa
         return sb.toString();
     }
 
-    public String getCommentBodyText(CommentingContext commentingContext, CommentItem commentItem) throws CommentingException {
-        return commentItem.getContent();
+    public String getCommentBodyText(CommentingContext commentingContext, CommentItem commentItem) throws CommentingException {
+        return commentItem.getContent();
+    }
+
+    public String getCommentHeadTooltip(CommentingContext commentingContext, CommentItem commentItem)
+            throws CommentingException {
+        return null;
+    }
+
+    public String getCommentBodyTooltip(CommentingContext commentingContext, CommentItem commentItem)
+            throws CommentingException {
+        return null;
+    }
+
+    protected Session getSession() {
+        Session session = BOUND_SESSION.get();
+
+        if (session != null) {
+            return session;
+        }
+
+        return UserSession.get().getJcrSession();
+    }
+
+    /**
+     * Creates the dedicated session of the user, used by the write-behind worker thread to persist the queued items
+     * of the user. By default, the session of {@link CommentingServicesModule} impersonates the user,
+     * as users are generally not allowed to impersonate even themselves.
+     * @param userSession the session of the current user
+     * @return the dedicated session of the user
+     * @throws RepositoryException if repository exception occurs
+     */
+    protected Session createWriteBehindSession(final Session userSession) throws RepositoryException {
+        return CommentingServicesModule.createUserSession(userSession.getUserID());
+    }
+
+    /**
+     * Returns true if the write-behind mode is enabled by {@code jcr.comment.persistence.write.behind} parameter.
+     * @param commentingContext commenting context instance
+     * @return true if the write-behind mode is enabled
+     */
+    protected boolean isWriteBehindEnabled(final CommentingContext commentingContext) {
+        return getClusterOptions(commentingContext).getAsBoolean("jcr.comment.persistence.write.behind", false);
+    }
+
+    /**
+     * Returns the write-behind queue, created with the capacity configured by
+     * {@code jcr.comment.persistence.write.behind.capacity} parameter if not created yet.
+     * @param commentingContext commenting context instance
+     * @return the write-behind queue
+     */
+    protected JcrCommentWriteBehindQueue getWriteBehindQueue(final CommentingContext commentingContext) {
+        return JcrCommentWriteBehindQueue.getInstance(getClusterOptions(commentingContext)
+                .getAsInteger("jcr.comment.persistence.write.behind.capacity", JcrCommentWriteBehindQueue.DEFAULT_CAPACITY));
+    }
+
+    /**
+     * Returns the total number of the session saves retried on conflicts, e.g, when the same container node was added
+     * by another session or cluster node at the same time.
+     * @return the total number of the session saves retried on conflicts
+     */
+    public static long getSaveRetryCount() {
+        return SAVE_RETRY_COUNT.get();
+    }
+
+    /**
+     * Discards the pending changes and waits for a jittered, exponentially increasing delay before retrying
+     * a session save failed on a conflict, unless the max number of retries configured by
+     * {@code jcr.comment.persistence.save.retries} parameter is reached.
+     * The base delay in milliseconds is configured by {@code jcr.comment.persistence.save.retry.delay} parameter.
+     * @param commentingContext commenting context instance
+     * @param attempt the number of the failed attempt, starting from 1
+     * @param e the conflict exception
+     * @return true if the save is to be retried
+     */
+    protected boolean backOffBeforeSaveRetry(final CommentingContext commentingContext, final int attempt,
+            final RepositoryException e) {
+        final IPluginConfig config = getClusterOptions(commentingContext);
+
+        if (attempt > config.getAsInteger("jcr.comment.persistence.save.retries", DEFAULT_SAVE_RETRIES)) {
+            return false;
+        }
+
+        final long baseDelay = config.getAsLong("jcr.comment.persistence.save.retry.delay", DEFAULT_SAVE_RETRY_DELAY);
+        final long maxDelay = Math.min(MAX_SAVE_RETRY_DELAY, Math.max(0L, baseDelay) << Math.min(attempt - 1, 10));
+        final long delay = maxDelay / 2 + ThreadLocalRandom.current().nextLong(maxDelay / 2 + 1);
+
+        SAVE_RETRY_COUNT.incrementAndGet();
+        log.info("Conflict on saving comment data. Retrying in {}ms (attempt {}): {}", delay, attempt, e.toString());
+        refreshSession();
+
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Invokes {@code callable} with {@code session} used instead of the user session in the current thread.
+     */
+    <T> T callWithSession(final Session session, final Callable<T> callable) throws Exception {
+        final Session oldSession = BOUND_SESSION.get();
+        BOUND_SESSION.set(session);
+
+        try {
+            return callable.call();
+        } finally {
+            if (oldSession != null) {
+                BOUND_SESSION.set(oldSession);
+            } else {
+                BOUND_SESSION.remove();
+            }
+        }
+    }
+
+    /**
+     * Discards all the pending changes in the session, e.g, after a failed session save.
+     */
+    protected void refreshSession() {
+        try {
+            getSession().refresh(false);
+        } catch (RepositoryException e) {
+            log.error("Failed to refresh.", e);
+        }
+    }
+
+    /**
+     * Returns the subject identifier for {@code commentItem}: the identifier of the handle of the subject document
+     * in {@code commentingContext} if available, or the subject identifier of {@code commentItem} otherwise.
+     * @param commentingContext commenting context instance
+     * @param commentItem comment data item object
+     * @return the subject identifier for {@code commentItem}
+     * @throws RepositoryException if repository exception occurs
+     */
+    protected String getSubjectId(final CommentingContext commentingContext, final CommentItem commentItem)
+            throws RepositoryException {
+        if (commentingContext.getSubjectDocumentModel() != null
+                && commentingContext.getSubjectDocumentModel().getNode() != null) {
+            return commentingContext.getSubjectDocumentModel().getNode().getParent().getIdentifier();
+        }
+
+        return commentItem.getSubjectId();
     }
 
-    public String getCommentHeadTooltip(CommentingContext commentingContext, CommentItem commentItem)
-            throws CommentingException {
-        return null;
+    /**
+     * Returns the {@code cluster.options} plugin configuration of the commenting plugin,
+     * or an empty configuration if not configured.
+     * @param commentingContext commenting context instance
+     * @return the {@code cluster.options} plugin configuration, or an empty configuration if not configured
+     */
+    protected IPluginConfig getClusterOptions(final CommentingContext commentingContext) {
+        IPluginConfig config = null;
+
+        if (commentingContext.getPluginConfig() != null) {
+            config = commentingContext.getPluginConfig().getPluginConfig("cluster.options");
+        }
+
+        return (config != null) ? config : new JavaPluginConfig();
     }
 
-    public String getCommentBodyTooltip(CommentingContext commentingContext, CommentItem commentItem)
-            throws CommentingException {
-        return null;
+    /**
+     * Returns the storage layout configured by {@code jcr.comment.persistence.layout} parameter.
+     * @param commentingContext commenting context instance
+     * @return the configured storage layout, {@link JcrCommentStorageLayout#RANDOM} by default
+     */
+    protected JcrCommentStorageLayout getStorageLayout(final CommentingContext commentingContext) {
+        return JcrCommentStorageLayout.fromString(getClusterOptions(commentingContext)
+                .getString("jcr.comment.persistence.layout", JcrCommentStorageLayout.RANDOM.name()));
     }
 
-    protected Session getSession() {
-        return UserSession.get().getJcrSession();
+    /**
+     * Returns true if the projection mode is enabled by {@code jcr.comment.persistence.projection} parameter,
+     * in which the latest comment data items are mapped from the built-in property columns of the query result rows,
+     * and the extra attributes are loaded only when accessed.
+     * @param commentingContext commenting context instance
+     * @return true if the projection mode is enabled
+     */
+    protected boolean isProjectionEnabled(final CommentingContext commentingContext) {
+        return getClusterOptions(commentingContext).getAsBoolean("jcr.comment.persistence.projection", false);
     }
 
+    /**
+     * Creates the query to read the latest comment data nodes of {@code subjectId}.
+     * <P>
+     * If {@code jcr.comment.persistence.query} parameter is configured, the subject identifier is formatted into
+     * the XPath query template. Otherwise, the JCR-SQL2 statement configured by
+     * {@code jcr.comment.persistence.query.sql2} parameter is used as is, with the subject identifier bound to
+     * the {@code $subjectId} bind variable of a new query created for this read.
+     * </P>
+     * @param commentingContext commenting context instance
+     * @param subjectId the identifier of the subject data
+     * @param offset query item offset
+     * @param limit max query item count limit
+     * @return the query to read the latest comment data nodes
+     * @throws RepositoryException if repository exception occurs
+     */
     protected Query createLatestCommentItemsReadQuery(CommentingContext commentingContext, String subjectId,
             long offset, long limit) throws RepositoryException {
-        IPluginConfig config = commentingContext.getPluginConfig().getPluginConfig("cluster.options");
-        String queryTemplate = config.getString("jcr.comment.persistence.query", DEFAULT_COMMENTS_QUERY);
+        IPluginConfig config = getClusterOptions(commentingContext);
+        String queryTemplate = config.getString("jcr.comment.persistence.query", null);
+
+        if (StringUtils.isNotBlank(queryTemplate)) {
+            return createTemplateQuery(queryTemplate, subjectId, offset, limit);
+        }
+
+        return createPreparedQuery(config.getString("jcr.comment.persistence.query.sql2", DEFAULT_COMMENTS_QUERY),
+                subjectId, offset, limit);
+    }
+
+    /**
+     * Creates the query to read the built-in property columns of the latest comment data nodes of {@code subjectId},
+     * by the XPath query template configured by {@code jcr.comment.persistence.projection.query} parameter
+     * if configured, or by the JCR-SQL2 statement configured by {@code jcr.comment.persistence.projection.query.sql2}
+     * parameter otherwise, with the subject identifier bound to the {@code $subjectId} bind variable.
+     * @param commentingContext commenting context instance
+     * @param subjectId the identifier of the subject data
+     * @param offset query item offset
+     * @param limit max query item count limit
+     * @return the query to read the built-in property columns of the latest comment data nodes
+     * @throws RepositoryException if repository exception occurs
+     */
+    protected Query createLatestCommentItemsProjectionReadQuery(CommentingContext commentingContext, String subjectId,
+            long offset, long limit) throws RepositoryException {
+        IPluginConfig config = getClusterOptions(commentingContext);
+        String queryTemplate = config.getString("jcr.comment.persistence.projection.query", null);
+
+        if (StringUtils.isNotBlank(queryTemplate)) {
+            return createTemplateQuery(queryTemplate, subjectId, offset, limit);
+        }
+
+        return createPreparedQuery(
+                config.getString("jcr.comment.persistence.projection.query.sql2", PROJECTION_COMMENTS_QUERY),
+                subjectId, offset, limit);
+    }
+
+    private Query createTemplateQuery(final String queryTemplate, final String subjectId, final long offset,
+            final long limit) throws RepositoryException {
         String statement = MessageFormat.format(queryTemplate, subjectId);
         Query query = getSession().getWorkspace().getQueryManager().createQuery(statement, Query.XPATH);
 
@@ -228,14 +1264,148 @@ public class DefaultJcrCommentPersistenceManager implements CommentPersistenceMa
         return query;
     }
 
+    private Query createPreparedQuery(final String statement, final String subjectId, final long offset,
+            final long limit) throws RepositoryException {
+        final Session session = getSession();
+        Query query = JcrPreparedQueryCache.getInstance().createQuery(session, statement, Query.JCR_SQL2,
+                SUBJECT_ID_BIND_VARIABLE);
+        query.bindValue(SUBJECT_ID_BIND_VARIABLE, session.getValueFactory().createValue(subjectId));
+        query.setOffset(offset);
+
+        if (limit > 0L) {
+            query.setLimit(limit);
+        }
+
+        return query;
+    }
+
+    /**
+     * Creates the query to read the latest comment data nodes of {@code subjectId} following the {@code position},
+     * by a range predicate on {@code doccommenting:created} (and the identifier for the nodes created at the same time).
+     * @param commentingContext commenting context instance
+     * @param subjectId the identifier of the subject data
+     * @param position the position of the last item of the previous page, or null for the first page
+     * @param limit max query item count limit
+     * @return the query to read the latest comment data nodes following the {@code position}
+     * @throws RepositoryException if repository exception occurs
+     */
+    protected Query createLatestCommentItemsCursorReadQuery(CommentingContext commentingContext, String subjectId,
+            CommentItemCursor position, long limit) throws RepositoryException {
+        String statement;
+
+        if (position == null) {
+            statement = MessageFormat.format(COMMENTS_CURSOR_QUERY, escapeXPathStringLiteral(subjectId));
+        } else {
+            statement = MessageFormat.format(COMMENTS_AFTER_CURSOR_QUERY, escapeXPathStringLiteral(subjectId),
+                    XPATH_DATE_TIME_FORMATTER.format(Instant.ofEpochMilli(position.getCreated())),
+                    escapeXPathStringLiteral(position.getId()));
+        }
+
+        Query query = getSession().getWorkspace().getQueryManager().createQuery(statement, Query.XPATH);
+
+        if (limit > 0L) {
+            query.setLimit(limit);
+        }
+
+        return query;
+    }
+
+    /**
+     * Creates the query to read the latest comment data nodes of all the {@code subjectIds} at once,
+     * by OR-ed subject ID predicates.
+     * @param commentingContext commenting context instance
+     * @param subjectIds the identifiers of the subject data
+     * @return the query to read the latest comment data nodes of all the {@code subjectIds}
+     * @throws RepositoryException if repository exception occurs
+     */
+    protected Query createLatestCommentItemsBySubjectsReadQuery(CommentingContext commentingContext,
+            Collection<String> subjectIds) throws RepositoryException {
+        String statement = MessageFormat.format(COMMENTS_BY_SUBJECTS_QUERY, createSubjectIdsPredicate(subjectIds));
+        return getSession().getWorkspace().getQueryManager().createQuery(statement, Query.XPATH);
+    }
+
+    /**
+     * Maps the built-in properties of {@code commentNode} to {@code commentItem}, with the extra attributes
+     * to be loaded from the residual properties of the comment data node only when accessed.
+     * @param commentItem comment data item object
+     * @param commentNode comment data node
+     * @throws RepositoryException if repository exception occurs
+     */
     protected void mapCommentItem(final CommentItem commentItem, final Node commentNode) throws RepositoryException {
+        mapBuiltinCommentItemProperties(commentItem, commentNode);
+        commentItem.setAttributesLoader(createAttributesLoader(commentItem.getId()));
+    }
+
+    /**
+     * Maps the built-in property columns of {@code commentRow} to {@code commentItem}, with the extra attributes
+     * to be loaded from the comment data node only when accessed.
+     * @param commentItem comment data item object
+     * The identifier is read from the {@code jcr:uuid} column not to load the node, and from the node only if
+     * the column is not selected, e.g, by a custom projection query.
+     * @param commentRow query result row of a comment data node, selecting the built-in property columns
+     * @throws RepositoryException if repository exception occurs
+     */
+    protected void mapCommentItem(final CommentItem commentItem, final Row commentRow) throws RepositoryException {
+        final Value uuid = commentRow.getValue(UUID_COLUMN);
+        commentItem.setId((uuid != null) ? uuid.getString() : commentRow.getNode().getIdentifier());
+        commentItem.setSubjectId(getStringValue(commentRow, PROP_SUBJECTID));
+        commentItem.setAuthor(getStringValue(commentRow, PROP_AUTHOR));
+        commentItem.setCreated(getDateValue(commentRow, PROP_CREATED));
+        commentItem.setLastModified(getDateValue(commentRow, PROP_LAST_MODIFIED));
+        commentItem.setContent(getStringValue(commentRow, PROP_CONTENT));
+        commentItem.setAttributesLoader(createAttributesLoader(commentItem.getId()));
+    }
+
+    /**
+     * Creates the loader of the extra attributes of the comment data item, reading the comment data node
+     * by {@code commentId} from the session at the moment of loading.
+     * @param commentId the identifier of the comment data item
+     * @return the loader of the extra attributes of the comment data item
+     */
+    protected SerializableCallable<Map<String, Object>> createAttributesLoader(final String commentId) {
+        return new JcrCommentItemAttributesLoader(this, commentId);
+    }
+
+    /**
+     * Reads the extra attributes of the comment data item from the residual properties of the comment data node,
+     * or returns an empty map if the comment data node does not exist any more.
+     */
+    Map<String, Object> loadCommentItemAttributes(final String commentId) throws RepositoryException {
+        try {
+            return readCommentItemAttributes(getSession().getNodeByIdentifier(commentId));
+        } catch (ItemNotFoundException e) {
+            log.debug("Comment data node not found to load the attributes: {}", commentId);
+            return new LinkedHashMap<>();
+        }
+    }
+
+    /**
+     * Reads the comment data item from {@code commentNode}, with all the extra attributes loaded eagerly,
+     * e.g, to index it outside of a user session.
+     */
+    static CommentItem readCommentItem(final Node commentNode) throws RepositoryException {
+        final CommentItem commentItem = new CommentItem();
+        mapBuiltinCommentItemProperties(commentItem, commentNode);
+
+        for (Map.Entry<String, Object> entry : readCommentItemAttributes(commentNode).entrySet()) {
+            commentItem.setAttribute(entry.getKey(), entry.getValue());
+        }
+
+        return commentItem;
+    }
+
+    private static void mapBuiltinCommentItemProperties(final CommentItem commentItem, final Node commentNode)
+            throws RepositoryException {
         commentItem.setId(commentNode.getIdentifier());
         commentItem.setSubjectId(JcrUtils.getStringProperty(commentNode, PROP_SUBJECTID, ""));
         commentItem.setAuthor(JcrUtils.getStringProperty(commentNode, PROP_AUTHOR, ""));
         commentItem.setCreated(JcrUtils.getDateProperty(commentNode, PROP_CREATED, null));
         commentItem.setLastModified(JcrUtils.getDateProperty(commentNode, PROP_LAST_MODIFIED, null));
         commentItem.setContent(JcrUtils.getStringProperty(commentNode, PROP_CONTENT, ""));
+    }
 
+    private static Map<String, Object> readCommentItemAttributes(final Node commentNode) throws RepositoryException {
+        final Map<String, Object> attributes = new LinkedHashMap<>();
         Property prop;
         String propName;
         int propType;
@@ -249,15 +1419,15 @@ public class DefaultJcrCommentPersistenceManager implements CommentPersistenceMa
 
                 if (!prop.isMultiple()) {
                     if (propType == PropertyType.STRING) {
-                        commentItem.setAttribute(propName, prop.getString());
+                        attributes.put(propName, prop.getString());
                     } else if (propType == PropertyType.BOOLEAN) {
-                        commentItem.setAttribute(propName, prop.getBoolean());
+                        attributes.put(propName, prop.getBoolean());
                     } else if (propType == PropertyType.LONG) {
-                        commentItem.setAttribute(propName, prop.getLong());
+                        attributes.put(propName, prop.getLong());
                     } else if (propType == PropertyType.DOUBLE) {
-                        commentItem.setAttribute(propName, prop.getDouble());
+                        attributes.put(propName, prop.getDouble());
                     } else if (propType == PropertyType.DATE) {
-                        commentItem.setAttribute(propName, prop.getDate());
+                        attributes.put(propName, prop.getDate());
                     }
                 } else {
                     Value [] values = prop.getValues();
@@ -267,35 +1437,37 @@ public class DefaultJcrCommentPersistenceManager implements CommentPersistenceMa
                         for (int i = 0; i < values.length; i++) {
                             stringValues[i] = values[i].getString();
                         }
-                        commentItem.setAttribute(propName, stringValues);
+                        attributes.put(propName, stringValues);
                     } else if (propType == PropertyType.BOOLEAN) {
                         boolean [] booleanValues = new boolean[values.length];
                         for (int i = 0; i < values.length; i++) {
                             booleanValues[i] = values[i].getBoolean();
                         }
-                        commentItem.setAttribute(propName, booleanValues);
+                        attributes.put(propName, booleanValues);
                     } else if (propType == PropertyType.LONG) {
                         long [] longValues = new long[values.length];
                         for (int i = 0; i < values.length; i++) {
                             longValues[i] = values[i].getLong();
                         }
-                        commentItem.setAttribute(propName, longValues);
+                        attributes.put(propName, longValues);
                     } else if (propType == PropertyType.DOUBLE) {
                         double [] doubleValues = new double[values.length];
                         for (int i = 0; i < values.length; i++) {
                             doubleValues[i] = values[i].getDouble();
                         }
-                        commentItem.setAttribute(propName, doubleValues);
+                        attributes.put(propName, doubleValues);
                     } else if (propType == PropertyType.DATE) {
                         Calendar [] dateValues = new Calendar[values.length];
                         for (int i = 0; i < values.length; i++) {
                             dateValues[i] = values[i].getDate();
                         }
-                        commentItem.setAttribute(propName, dateValues);
+                        attributes.put(propName, dateValues);
                     }
                 }
             }
         }
+
+        return attributes;
     }
 
     protected void bindCommentNode(final Node commentNode, final CommentItem commentItem) throws RepositoryException {
@@ -388,7 +1560,7 @@ public class DefaultJcrCommentPersistenceManager implements CommentPersistenceMa
 
     protected String getDateFormat(final CommentingContext commentingContext) {
         if (dateFormat == null) {
-            IPluginConfig config = commentingContext.getPluginConfig().getPluginConfig("cluster.options");
+            IPluginConfig config = getClusterOptions(commentingContext);
             dateFormat = config.getString("jcr.comment.persistence.date.format", DEFAULT_DATE_FORMAT);
         }
 
@@ -399,34 +1571,278 @@ public class DefaultJcrCommentPersistenceManager implements CommentPersistenceMa
         return commentItem.getAuthor();
     }
 
-    private Node getDocCommentsDataNode(final Session session) throws RepositoryException {
-        Node rootNode = session.getRootNode();
-        Node docCommentsDataNode;
+    /**
+     * Queues {@code commentItem} to be persisted asynchronously if the write-behind mode is enabled,
+     * waiting up to {@code jcr.comment.persistence.write.behind.offer.timeout} milliseconds for a free slot.
+     * @return true if queued, or false if the item should be persisted synchronously, e.g, if the queue is full
+     *         or the dedicated session of the user cannot be created
+     */
+    private boolean offerToWriteBehindQueue(final CommentingContext commentingContext,
+            final JcrCommentWriteBehindQueue.Operation operation, final CommentItem commentItem) {
+        if (!isWriteBehindEnabled(commentingContext)) {
+            return false;
+        }
 
-        if (!rootNode.hasNode(DEFAULT_COMMENTS_LOCATION)) {
-            synchronized (mutex) {
-                docCommentsDataNode = rootNode.addNode(DEFAULT_COMMENTS_LOCATION, NT_COMMENTS_CONTAINER);
-                addInitialStructure(docCommentsDataNode);
+        final long timeout = getClusterOptions(commentingContext)
+                .getAsLong("jcr.comment.persistence.write.behind.offer.timeout", DEFAULT_WRITE_BEHIND_OFFER_TIMEOUT);
+
+        try {
+            if (getWriteBehindQueue(commentingContext).offer(this, commentingContext, getSession(), operation,
+                    commentItem, timeout)) {
+                return true;
             }
+        } catch (RepositoryException e) {
+            log.warn("Failed to create the write-behind session. Persisting comment data synchronously: {}",
+                    e.toString());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        log.info("Write-behind queue is full. Persisting comment data synchronously.");
+        return false;
+    }
+
+    private Node addCommentNode(final CommentingContext commentingContext, final Node docCommentsDataNode,
+            final CommentItem commentItem) throws RepositoryException {
+        Node containerNode;
+
+        if (getStorageLayout(commentingContext) == JcrCommentStorageLayout.SUBJECT) {
+            containerNode = getOrCreateSubjectContainerNode(docCommentsDataNode, commentItem.getSubjectId());
         } else {
-            docCommentsDataNode = rootNode.getNode(DEFAULT_COMMENTS_LOCATION);
+            containerNode = createRandomNode(docCommentsDataNode);
+        }
+
+        Node commentNode = containerNode.addNode(createChildNodeName(containerNode, "comment_"), NT_COMMENT);
+
+        try {
+            if (!commentNode.isNodeType("mix:referenceable")) {
+                commentNode.addMixin("mix:referenceable");
+            }
+
+            bindCommentNode(commentNode, commentItem);
+        } catch (RepositoryException e) {
+            commentNode.remove();
+            throw e;
         }
 
-        return docCommentsDataNode;
+        updateSubjectContainer(commentNode, 1L);
+
+        if (getStorageLayout(commentingContext) == JcrCommentStorageLayout.SUBJECT) {
+            removeExpiredTombstones(commentingContext, containerNode);
+        }
+
+        return commentNode;
     }
 
-    private void addInitialStructure(Node commentData) throws RepositoryException {
-        char a = 'a';
+    private Node bindExistingCommentNode(final CommentItem commentItem) throws RepositoryException {
+        Node commentNode = getSession().getNodeByIdentifier(commentItem.getId());
+
+        if (!commentNode.isNodeType("mix:referenceable")) {
+            commentNode.addMixin("mix:referenceable");
+        }
+
+        bindCommentNode(commentNode, commentItem);
+        updateSubjectContainer(commentNode, 0L);
+        return commentNode;
+    }
+
+    /**
+     * Removes the comment data node of {@code commentItem}, leaving a tombstone node in the same container node
+     * to find the deletion by {@link #getCommentItemsModifiedSince(CommentingContext, String, Calendar)},
+     * and removes the expired tombstone nodes in the container node.
+     */
+    private void removeCommentNode(final CommentingContext commentingContext, final CommentItem commentItem)
+            throws RepositoryException {
+        Node commentNode = getSession().getNodeByIdentifier(commentItem.getId());
+        Node containerNode = commentNode.getParent();
+        String commentId = commentNode.getIdentifier();
+        String subjectId = JcrUtils.getStringProperty(commentNode, PROP_SUBJECTID, "");
+        updateSubjectContainer(commentNode, -1L);
+        commentNode.remove();
+
+        Node tombstoneNode = containerNode.addNode(createChildNodeName(containerNode, "tombstone_"), NT_TOMBSTONE);
+        tombstoneNode.setProperty(PROP_SUBJECTID, subjectId);
+        tombstoneNode.setProperty(PROP_COMMENTID, commentId);
+        tombstoneNode.setProperty(PROP_DELETED, Calendar.getInstance());
+        removeExpiredTombstones(commentingContext, containerNode);
+    }
+
+    /**
+     * Removes the tombstone nodes in {@code containerNode} older than the max age configured by
+     * {@code jcr.comment.persistence.tombstone.max.age} parameter, together with the write to the container node,
+     * so that tombstones do not pile up even if the compaction job is not enabled.
+     */
+    private void removeExpiredTombstones(final CommentingContext commentingContext, final Node containerNode)
+            throws RepositoryException {
+        final long cutoffMillis = getTombstoneCutoffTimeInMillis(commentingContext);
+
+        if (cutoffMillis <= 0L) {
+            return;
+        }
+
+        Node childNode;
+
+        for (NodeIterator nodeIt = containerNode.getNodes(); nodeIt.hasNext();) {
+            childNode = nodeIt.nextNode();
+
+            if (childNode != null && childNode.isNodeType(NT_TOMBSTONE)) {
+                final long deleted = getDateTimeInMillis(childNode, PROP_DELETED);
+
+                if (deleted > 0L && deleted < cutoffMillis) {
+                    childNode.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the time in milliseconds before which tombstones are expired by the max age in days configured by
+     * {@code jcr.comment.persistence.tombstone.max.age} parameter, or 0 if tombstones are kept forever.
+     * @param commentingContext commenting context instance
+     * @return the time in milliseconds before which tombstones are expired, or 0 if tombstones are kept forever
+     */
+    protected long getTombstoneCutoffTimeInMillis(final CommentingContext commentingContext) {
+        final long maxAge = getClusterOptions(commentingContext).getAsLong("jcr.comment.persistence.tombstone.max.age",
+                DEFAULT_TOMBSTONE_MAX_AGE);
+        return (maxAge > 0L) ? System.currentTimeMillis() - TimeUnit.DAYS.toMillis(maxAge) : 0L;
+    }
+
+    /**
+     * Creates a child node name, unique also against the names created concurrently by other sessions or cluster nodes
+     * by a random suffix following the current time.
+     */
+    private static String createChildNodeName(final Node parentNode, final String prefix) throws RepositoryException {
+        String name;
+
+        do {
+            name = prefix + System.currentTimeMillis() + "_"
+                    + Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+        } while (parentNode.hasNode(name));
+
+        return name;
+    }
+
+    /**
+     * Increases the stamp of the per-subject container node and adds {@code countDelta} to the comment count of it,
+     * if {@code commentNode} is stored in it. To be invoked after adding {@code commentNode},
+     * or before removing {@code commentNode}.
+     */
+    static void updateSubjectContainer(final Node commentNode, final long countDelta) throws RepositoryException {
+        Node containerNode = commentNode.getParent();
+        String subjectId = JcrUtils.getStringProperty(commentNode, PROP_SUBJECTID, "");
+
+        if (StringUtils.isNotEmpty(subjectId) && containerNode.isNodeType(NT_COMMENTS_CONTAINER)
+                && containerNode.getName().equals(NodeNameCodec.encode(subjectId, true))) {
+            containerNode.setProperty(PROP_STAMP, JcrUtils.getLongProperty(containerNode, PROP_STAMP, 0L) + 1L);
+
+            if (countDelta != 0L) {
+                long count;
+
+                if (containerNode.hasProperty(PROP_COUNT)) {
+                    count = containerNode.getProperty(PROP_COUNT).getLong();
+                } else {
+                    // not counted yet, e.g, in a newly created container. the added node is counted already.
+                    count = countCommentNodes(containerNode) - Math.max(0L, countDelta);
+                }
+
+                containerNode.setProperty(PROP_COUNT, Math.max(0L, count + countDelta));
+            }
+        }
+    }
+
+    private static long countCommentNodes(final Node containerNode) throws RepositoryException {
+        long count = 0L;
+        Node childNode;
+
+        for (NodeIterator nodeIt = containerNode.getNodes(); nodeIt.hasNext();) {
+            childNode = nodeIt.nextNode();
+
+            if (childNode != null && childNode.isNodeType(NT_COMMENT)) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Applies {@code operation} to each item, and persists all the applied changes by a single session save.
+     * An item of which operation fails is reported as failed without affecting the other items.
+     * If the session save fails, the session is refreshed and all the applied items are reported as failed.
+     */
+    private List<CommentOperationResult> saveInBatch(final CommentingContext commentingContext,
+            final List<CommentItem> commentItems, final CommentNodeOperation operation) throws CommentingException {
+        final CommentOperationResult[] results = new CommentOperationResult[commentItems.size()];
+        final Node[] commentNodes = new Node[commentItems.size()];
+        CommentItem commentItem;
+
+        for (int attempt = 1; ; attempt++) {
+            Arrays.fill(results, null);
+            Arrays.fill(commentNodes, null);
+
+            for (int i = 0; i < results.length; i++) {
+                commentItem = commentItems.get(i);
+
+                try {
+                    commentNodes[i] = operation.apply(commentItem);
+                } catch (RepositoryException e) {
+                    results[i] = CommentOperationResult.failed(commentItem, new CommentingException(e));
+                } catch (CommentingException e) {
+                    results[i] = CommentOperationResult.failed(commentItem, e);
+                }
+            }
+
+            try {
+                getSession().save();
+
+                for (int i = 0; i < results.length; i++) {
+                    if (results[i] == null) {
+                        commentItem = commentItems.get(i);
+                        results[i] = CommentOperationResult.succeeded(commentItem,
+                                (commentNodes[i] != null) ? commentNodes[i].getIdentifier() : commentItem.getId());
+                    }
+                }
+            } catch (InvalidItemStateException | ItemExistsException e) {
+                if (backOffBeforeSaveRetry(commentingContext, attempt, e)) {
+                    continue;
+                }
+
+                failUnsaved(commentItems, results, e);
+            } catch (RepositoryException e) {
+                failUnsaved(commentItems, results, e);
+            }
+
+            return Arrays.asList(results);
+        }
+    }
 
-        for (int i = 0; i < 26; i++) {
-            Node letter = commentData.addNode(Character.toString((char) (a + i)), NT_COMMENTS_CONTAINER);
+    private void failUnsaved(final List<CommentItem> commentItems, final CommentOperationResult[] results,
+            final RepositoryException e) {
+        refreshSession();
+        final CommentingException saveException = new CommentingException("Failed to save comment data.", e);
 
-            for (int j = 0; j < 26; j++) {
-                letter.addNode(Character.toString((char) (a + j)), NT_COMMENTS_CONTAINER);
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                results[i] = CommentOperationResult.failed(commentItems.get(i), saveException);
             }
         }
     }
 
+    /**
+     * Returns the comment data root node, normally initialized on startup with its container nodes.
+     * If missing, it is added without the container nodes, which are then added on demand.
+     */
+    private Node getDocCommentsDataNode(final Session session) throws RepositoryException {
+        Node rootNode = session.getRootNode();
+
+        if (!rootNode.hasNode(DEFAULT_COMMENTS_LOCATION)) {
+            return rootNode.addNode(DEFAULT_COMMENTS_LOCATION, NT_COMMENTS_CONTAINER);
+        }
+
+        return rootNode.getNode(DEFAULT_COMMENTS_LOCATION);
+    }
+
     private Node createRandomNode(Node docCommentsData) throws RepositoryException {
         Node result = docCommentsData;
         char a = 'a';
@@ -447,4 +1863,257 @@ public class DefaultJcrCommentPersistenceManager implements CommentPersistenceMa
         return result;
     }
 
+    /**
+     * Returns the relative path segments of the per-subject container node from the comment data root node
+     * in {@link JcrCommentStorageLayout#SUBJECT} layout, e.g, <code>{"k", "q", "&lt;subjectId&gt;"}</code>.
+     * The first two segments are derived from a hash of {@code subjectId} to spread subjects over
+     * the 26 x 26 containers.
+     * @param subjectId the identifier of the subject data (e.g, document handle UUID)
+     * @return the relative path segments of the per-subject container node from the comment data root node
+     */
+    public static String[] getSubjectContainerPathSegments(final String subjectId) {
+        byte[] digest;
+
+        try {
+            digest = MessageDigest.getInstance("MD5").digest(subjectId.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not supported.", e);
+        }
+
+        char a = 'a';
+        return new String[] { Character.toString((char) (a + (digest[0] & 0xFF) % 26)),
+                Character.toString((char) (a + (digest[1] & 0xFF) % 26)), NodeNameCodec.encode(subjectId, true) };
+    }
+
+    /**
+     * Returns the per-subject container node of {@code subjectId} if the configured storage layout is
+     * {@link JcrCommentStorageLayout#SUBJECT} and the container node holds all the nodes of the subject,
+     * or null otherwise, in which case the nodes of the subject are to be read by queries.
+     * The comments created in the other layouts are stored outside of the per-subject container node even if it
+     * exists, and the nodes of the subject stored in {@link JcrCommentStorageLayout#RANDOM} layout before
+     * the container node was created remain outside of it until moved by {@link JcrCommentDataCompactionJob}.
+     */
+    private Node getSubjectContainerNode(final CommentingContext commentingContext, final String subjectId)
+            throws RepositoryException {
+        if (getStorageLayout(commentingContext) != JcrCommentStorageLayout.SUBJECT) {
+            return null;
+        }
+
+        final Node subjectContainerNode = getSubjectContainerNode(getSession(), subjectId);
+
+        if (subjectContainerNode == null || !JcrUtils.getBooleanProperty(subjectContainerNode, PROP_MIGRATED, false)) {
+            return null;
+        }
+
+        return subjectContainerNode;
+    }
+
+    private Node getSubjectContainerNode(final Session session, final String subjectId) throws RepositoryException {
+        String path = "/" + DEFAULT_COMMENTS_LOCATION + "/"
+                + StringUtils.join(getSubjectContainerPathSegments(subjectId), "/");
+
+        if (session.nodeExists(path)) {
+            return session.getNode(path);
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the per-subject container node of {@code subjectId}, created if not existing yet.
+     * A new container node is marked as holding all the nodes of the subject by {@code doccommenting:migrated}
+     * property, unless the subject has nodes stored in {@link JcrCommentStorageLayout#RANDOM} layout already,
+     * which are left in place to be moved by {@link JcrCommentDataCompactionJob}, not to move them in the save
+     * of the first comment.
+     */
+    private Node getOrCreateSubjectContainerNode(final Node docCommentsData, final String subjectId)
+            throws RepositoryException {
+        Node result = docCommentsData;
+        boolean created = false;
+
+        for (String segment : getSubjectContainerPathSegments(subjectId)) {
+            if (!created && result.hasNode(segment)) {
+                result = result.getNode(segment);
+            } else {
+                created = true;
+                result = result.addNode(segment, NT_COMMENTS_CONTAINER);
+            }
+        }
+
+        if (created && !hasSubjectNodes(result.getSession(), subjectId)) {
+            result.setProperty(PROP_MIGRATED, true);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns true if any comment data or tombstone node of {@code subjectId} is found by a query.
+     */
+    static boolean hasSubjectNodes(final Session session, final String subjectId) throws RepositoryException {
+        final QueryManager queryManager = session.getWorkspace().getQueryManager();
+
+        for (String nodeType : new String[] { NT_COMMENT, NT_TOMBSTONE }) {
+            final Query query = queryManager.createQuery(MessageFormat.format(SUBJECT_NODES_QUERY, nodeType,
+                    escapeXPathStringLiteral(subjectId)), Query.XPATH);
+            query.setLimit(1L);
+
+            if (query.execute().getNodes().hasNext()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private List<Node> getLatestCommentNodes(final Node subjectContainerNode) throws RepositoryException {
+        List<Node> commentNodes = new ArrayList<>();
+        Node childNode;
+
+        for (NodeIterator nodeIt = subjectContainerNode.getNodes(); nodeIt.hasNext();) {
+            childNode = nodeIt.nextNode();
+
+            if (childNode != null && childNode.isNodeType(NT_COMMENT)) {
+                commentNodes.add(childNode);
+            }
+        }
+
+        try {
+            commentNodes.sort(LATEST_COMMENT_NODE_COMPARATOR);
+        } catch (CommentingException e) {
+            throw (RepositoryException) e.getCause();
+        }
+
+        return commentNodes;
+    }
+
+    private static long getCreatedTimeInMillis(final Node commentNode) throws RepositoryException {
+        return getDateTimeInMillis(commentNode, PROP_CREATED);
+    }
+
+    private static long getDateTimeInMillis(final Node node, final String propName) throws RepositoryException {
+        Calendar value = JcrUtils.getDateProperty(node, propName, null);
+        return (value != null) ? value.getTimeInMillis() : 0L;
+    }
+
+    private static String getStringValue(final Row row, final String columnName) throws RepositoryException {
+        final Value value = row.getValue(columnName);
+        return (value != null) ? value.getString() : "";
+    }
+
+    private static Calendar getDateValue(final Row row, final String columnName) throws RepositoryException {
+        final Value value = row.getValue(columnName);
+        return (value != null) ? value.getDate() : null;
+    }
+
+    private static String createSubjectIdsPredicate(final Collection<String> subjectIds) {
+        StringBuilder predicate = new StringBuilder(subjectIds.size() * 64);
+
+        for (String subjectId : subjectIds) {
+            if (predicate.length() > 0) {
+                predicate.append(" or ");
+            }
+
+            predicate.append('@').append(PROP_SUBJECTID).append("='").append(escapeXPathStringLiteral(subjectId))
+                    .append('\'');
+        }
+
+        return predicate.toString();
+    }
+
+    /**
+     * Replaces the characters having special meanings in the full-text search syntax by spaces,
+     * keeping quotes for phrases and minus signs for excluded words.
+     */
+    private static String normalizeFullTextSearchText(final String text) {
+        final StringBuilder sb = new StringBuilder(StringUtils.length(text));
+
+        for (char c : StringUtils.defaultString(text).toCharArray()) {
+            sb.append((FULL_TEXT_SEARCH_SPECIAL_CHARS.indexOf(c) >= 0) ? ' ' : c);
+        }
+
+        return StringUtils.normalizeSpace(sb.toString());
+    }
+
+    static String createAttributesQueryStatement(final String subjectId, final CommentItemQuery query) {
+        final List<String> predicates = new ArrayList<>();
+
+        if (subjectId != null) {
+            predicates.add("@" + PROP_SUBJECTID + "='" + escapeXPathStringLiteral(subjectId) + "'");
+        }
+
+        for (CommentItemQuery.Filter filter : query.getFilters()) {
+            predicates.add("@" + getQueryAttributeName(filter.getAttributeName()) + " "
+                    + filter.getOperator().getSymbol() + " " + getXPathLiteral(filter.getValue()));
+        }
+
+        final StringBuilder orderings = new StringBuilder();
+
+        for (CommentItemQuery.Order order : query.getOrders()) {
+            orderings.append('@').append(getQueryAttributeName(order.getAttributeName()))
+                    .append(order.isDescending() ? " descending, " : " ascending, ");
+        }
+
+        orderings.append('@').append(PROP_CREATED).append(" descending, @jcr:uuid descending");
+
+        return MessageFormat.format(ATTRIBUTES_QUERY,
+                predicates.isEmpty() ? "" : "[" + StringUtils.join(predicates, " and ") + "]", orderings.toString());
+    }
+
+    private static String getQueryAttributeName(final String attributeName) {
+        if (!QUERY_ATTRIBUTE_NAME_PATTERN.matcher(attributeName).matches()) {
+            throw new IllegalArgumentException("Invalid attribute name in query: " + attributeName);
+        }
+
+        return attributeName;
+    }
+
+    private static String getXPathLiteral(final Object value) {
+        if (value instanceof Calendar) {
+            return "xs:dateTime('"
+                    + XPATH_DATE_TIME_FORMATTER.format(Instant.ofEpochMilli(((Calendar) value).getTimeInMillis()))
+                    + "')";
+        } else if (value instanceof Number) {
+            return value.toString();
+        }
+
+        return "'" + escapeXPathStringLiteral(value.toString()) + "'";
+    }
+
+    static String escapeXPathStringLiteral(final String value) {
+        return StringUtils.replace(StringUtils.defaultString(value), "'", "''");
+    }
+
+    /**
+     * Operation on a comment data node for a comment data item in a batch,
+     * returning the created or modified node, or null if the node was removed.
+     */
+    @FunctionalInterface
+    private interface CommentNodeOperation {
+        Node apply(CommentItem commentItem) throws RepositoryException;
+    }
+
+    /**
+     * Orders comment data nodes by {@code doccommenting:created} descending, and by identifier descending
+     * for the nodes created at the same time.
+     */
+    private static class LatestCommentNodeComparator implements Comparator<Node> {
+
+        @Override
+        public int compare(final Node node1, final Node node2) {
+            try {
+                long time1 = getCreatedTimeInMillis(node1);
+                long time2 = getCreatedTimeInMillis(node2);
+
+                if (time1 != time2) {
+                    return Long.compare(time2, time1);
+                }
+
+                return node2.getIdentifier().compareTo(node1.getIdentifier());
+            } catch (RepositoryException e) {
+                throw new CommentingException(e);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,207 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.impl;
+
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.onehippo.forge.document.commenting.cms.api.CommentItem;
+import org.onehippo.forge.document.commenting.cms.api.CommentItemDelta;
+import org.onehippo.forge.document.commenting.cms.api.CommentItemPage;
+import org.onehippo.forge.document.commenting.cms.api.CommentItemQuery;
+import org.onehippo.forge.document.commenting.cms.api.CommentOperationResult;
+import org.onehippo.forge.document.commenting.cms.api.CommentPersistenceManager;
+import org.onehippo.forge.document.commenting.cms.api.CommentSearchPage;
+import org.onehippo.forge.document.commenting.cms.api.CommentingContext;
+import org.onehippo.forge.document.commenting.cms.api.CommentingException;
+
+/**
+ * {@link CommentPersistenceManager} implementation which delegates all the operations to another
+ * {@link CommentPersistenceManager}, to be extended by decorators.
+ * <P>
+ * If not given by the constructor, the delegate is created on the first operation
+ * from the FQCN configured by {@code comment.persistence.manager.delegate} plugin parameter,
+ * or {@link DefaultJcrCommentPersistenceManager} by default.
+ * </P>
+ */
+public class DelegatingCommentPersistenceManager implements CommentPersistenceManager {
+
+    private static final long serialVersionUID = 1L;
+
+    private CommentPersistenceManager delegate;
+
+    public DelegatingCommentPersistenceManager() {
+    }
+
+    public DelegatingCommentPersistenceManager(final CommentPersistenceManager delegate) {
+        this.delegate = delegate;
+    }
+
+    public String createCommentItem(CommentingContext commentingContext, CommentItem commentItem)
+            throws CommentingException {
+        return getDelegate(commentingContext).createCommentItem(commentingContext, commentItem);
+    }
+
+    public CommentItem getCommentItemById(CommentingContext commentingContext, String commentId)
+            throws CommentingException {
+        return getDelegate(commentingContext).getCommentItemById(commentingContext, commentId);
+    }
+
+    public List<CommentItem> getLatestCommentItemsBySubjectId(CommentingContext commentingContext, String subjectId,
+            long offset, long limit) throws CommentingException {
+        return getDelegate(commentingContext).getLatestCommentItemsBySubjectId(commentingContext, subjectId, offset,
+                limit);
+    }
+
+    @Override
+    public long countCommentItemsBySubjectId(CommentingContext commentingContext, String subjectId)
+            throws CommentingException {
+        return getDelegate(commentingContext).countCommentItemsBySubjectId(commentingContext, subjectId);
+    }
+
+    @Override
+    public Map<String, Long> countCommentItemsBySubjectIds(CommentingContext commentingContext,
+            Collection<String> subjectIds) throws CommentingException {
+        return getDelegate(commentingContext).countCommentItemsBySubjectIds(commentingContext, subjectIds);
+    }
+
+    @Override
+    public CommentItemPage getLatestCommentItemPageBySubjectId(CommentingContext commentingContext, String subjectId,
+            String cursor, long limit) throws CommentingException {
+        return getDelegate(commentingContext).getLatestCommentItemPageBySubjectId(commentingContext, subjectId, cursor,
+                limit);
+    }
+
+    @Override
+    public CommentItemPage getLatestCommentItemPageByAuthor(CommentingContext commentingContext, String author,
+            String cursor, long limit) throws CommentingException {
+        return getDelegate(commentingContext).getLatestCommentItemPageByAuthor(commentingContext, author, cursor,
+                limit);
+    }
+
+    @Override
+    public CommentItemPage getLatestCommentItemPageByAttribute(CommentingContext commentingContext,
+            String attributeName, String value, String cursor, long limit) throws CommentingException {
+        return getDelegate(commentingContext).getLatestCommentItemPageByAttribute(commentingContext, attributeName,
+                value, cursor, limit);
+    }
+
+    @Override
+    public Map<String, List<CommentItem>> getLatestCommentItemsBySubjectIds(CommentingContext commentingContext,
+            Collection<String> subjectIds, long limit) throws CommentingException {
+        return getDelegate(commentingContext).getLatestCommentItemsBySubjectIds(commentingContext, subjectIds, limit);
+    }
+
+    @Override
+    public String getCommentItemsStamp(CommentingContext commentingContext, String subjectId)
+            throws CommentingException {
+        return getDelegate(commentingContext).getCommentItemsStamp(commentingContext, subjectId);
+    }
+
+    @Override
+    public CommentItemDelta getCommentItemsModifiedSince(CommentingContext commentingContext, String subjectId,
+            Calendar since) throws CommentingException {
+        return getDelegate(commentingContext).getCommentItemsModifiedSince(commentingContext, subjectId, since);
+    }
+
+    @Override
+    public CommentSearchPage searchCommentItems(CommentingContext commentingContext, String text, String cursor,
+            long limit) throws CommentingException {
+        return getDelegate(commentingContext).searchCommentItems(commentingContext, text, cursor, limit);
+    }
+
+    @Override
+    public List<CommentItem> queryCommentItems(CommentingContext commentingContext, String subjectId,
+            CommentItemQuery query, long offset, long limit) throws CommentingException {
+        return getDelegate(commentingContext).queryCommentItems(commentingContext, subjectId, query, offset, limit);
+    }
+
+    public void updateCommentItem(CommentingContext commentingContext, CommentItem commentItem)
+            throws CommentingException {
+        getDelegate(commentingContext).updateCommentItem(commentingContext, commentItem);
+    }
+
+    public void deleteCommentItem(CommentingContext commentingContext, CommentItem commentItem)
+            throws CommentingException {
+        getDelegate(commentingContext).deleteCommentItem(commentingContext, commentItem);
+    }
+
+    @Override
+    public List<CommentOperationResult> createCommentItems(CommentingContext commentingContext,
+            List<CommentItem> commentItems) throws CommentingException {
+        return getDelegate(commentingContext).createCommentItems(commentingContext, commentItems);
+    }
+
+    @Override
+    public List<CommentOperationResult> updateCommentItems(CommentingContext commentingContext,
+            List<CommentItem> commentItems) throws CommentingException {
+        return getDelegate(commentingContext).updateCommentItems(commentingContext, commentItems);
+    }
+
+    @Override
+    public List<CommentOperationResult> deleteCommentItems(CommentingContext commentingContext,
+            List<CommentItem> commentItems) throws CommentingException {
+        return getDelegate(commentingContext).deleteCommentItems(commentingContext, commentItems);
+    }
+
+    @Override
+    public List<CommentOperationResult> pollFailedCommentOperations(CommentingContext commentingContext)
+            throws CommentingException {
+        return getDelegate(commentingContext).pollFailedCommentOperations(commentingContext);
+    }
+
+    public String getCommentHeadText(CommentingContext commentingContext, CommentItem commentItem)
+            throws CommentingException {
+        return getDelegate(commentingContext).getCommentHeadText(commentingContext, commentItem);
+    }
+
+    public String getCommentBodyText(CommentingContext commentingContext, CommentItem commentItem)
+            throws CommentingException {
+        return getDelegate(commentingContext).getCommentBodyText(commentingContext, commentItem);
+    }
+
+    public String getCommentHeadTooltip(CommentingContext commentingContext, CommentItem commentItem)
+            throws CommentingException {
+        return getDelegate(commentingContext).getCommentHeadTooltip(commentingContext, commentItem);
+    }
+
+    public String getCommentBodyTooltip(CommentingContext commentingContext, CommentItem commentItem)
+            throws CommentingException {
+        return getDelegate(commentingContext).getCommentBodyTooltip(commentingContext, commentItem);
+    }
+
+    /**
+     * Returns the delegate, creating it from {@code comment.persistence.manager.delegate} plugin parameter
+     * if not created yet.
+     * @param commentingContext commenting context instance
+     * @return the delegate
+     */
+    protected CommentPersistenceManager getDelegate(final CommentingContext commentingContext) {
+        if (delegate == null) {
+            String className = null;
+
+            if (commentingContext != null && commentingContext.getPluginConfig() != null) {
+                className = commentingContext.getPluginConfig().getString("comment.persistence.manager.delegate", null);
+            }
+
+            delegate = CommentPersistenceManagerUtils.createCommentPersistenceManager(className);
+        }
+
+        return delegate;
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+
+import org.apache.wicket.Component;
+import org.apache.wicket.MetaDataKey;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.model.LoadableDetachableModel;
+import org.apache.wicket.model.StringResourceModel;
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.hippoecm.frontend.plugin.IPluginContext;
+import org.hippoecm.frontend.plugin.config.IPluginConfig;
+import org.hippoecm.frontend.plugins.standards.list.AbstractListColumnProviderPlugin;
+import org.hippoecm.frontend.plugins.standards.list.ListColumn;
+import org.hippoecm.frontend.plugins.standards.list.resolvers.AbstractNodeRenderer;
+import org.onehippo.forge.document.commenting.cms.api.CommentPersistenceManager;
+import org.onehippo.forge.document.commenting.cms.api.CommentingContext;
+import org.onehippo.forge.document.commenting.cms.api.CommentingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Document list column provider plugin showing the number of the comments of each document handle.
+ * <P>
+ * Each cell only registers its document handle when created. When the first cell is rendered,
+ * the counts of all the registered document handles, i.e, the whole page of rows, are resolved by a single
+ * {@link CommentPersistenceManager#countCommentItemsBySubjectIds(CommentingContext, java.util.Collection)} call,
+ * and kept until the end of the request.
+ * </P>
+ */
+public class DocumentCommentCountColumnProviderPlugin extends AbstractListColumnProviderPlugin {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger log = LoggerFactory.getLogger(DocumentCommentCountColumnProviderPlugin.class);
+
+    private static final MetaDataKey<Map<String, CommentCountCollector>> COLLECTORS_KEY =
+            new MetaDataKey<Map<String, CommentCountCollector>>() {
+                private static final long serialVersionUID = 1L;
+            };
+
+    private final CommentingContext commentingContext;
+    private final CommentPersistenceManager commentPersistenceManager;
+    private final String collectorName;
+
+    public DocumentCommentCountColumnProviderPlugin(IPluginContext context, IPluginConfig config) {
+        super(context, config);
+        commentingContext = new CommentingContext(context, config, null);
+        commentPersistenceManager = CommentPersistenceManagerUtils.createCommentPersistenceManager(
+                config.getString("comment.persistence.manager", null));
+        collectorName = config.getName();
+    }
+
+    @Override
+    public List<ListColumn<Node>> getColumns() {
+        return Collections.singletonList(createCommentCountColumn());
+    }
+
+    @Override
+    public List<ListColumn<Node>> getExpandedColumns() {
+        return getColumns();
+    }
+
+    protected ListColumn<Node> createCommentCountColumn() {
+        final ListColumn<Node> column = new ListColumn<>(
+                new StringResourceModel("doc.commenting.count.column", null, null).setDefaultValue("Comments"), null);
+        column.setRenderer(new CommentCountRenderer());
+        column.setCssClass("doc-commenting-count-column");
+        return column;
+    }
+
+    private CommentCountCollector getCommentCountCollector() {
+        final RequestCycle requestCycle = RequestCycle.get();
+        Map<String, CommentCountCollector> collectors = requestCycle.getMetaData(COLLECTORS_KEY);
+
+        if (collectors == null) {
+            collectors = new HashMap<>();
+            requestCycle.setMetaData(COLLECTORS_KEY, collectors);
+        }
+
+        return collectors.computeIfAbsent(collectorName, name -> new CommentCountCollector());
+    }
+
+    private class CommentCountRenderer extends AbstractNodeRenderer {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected Component getViewer(final String id, final Node node) throws RepositoryException {
+            if (node == null || !node.isNodeType("hippo:handle")) {
+                return new Label(id);
+            }
+
+            final String subjectId = node.getIdentifier();
+            getCommentCountCollector().register(subjectId);
+            return new Label(id, new CommentCountModel(subjectId));
+        }
+    }
+
+    private class CommentCountModel extends LoadableDetachableModel<String> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String subjectId;
+
+        private CommentCountModel(final String subjectId) {
+            this.subjectId = subjectId;
+        }
+
+        @Override
+        protected String load() {
+            final long count = getCommentCountCollector().getCount(subjectId);
+            return (count > 0L) ? Long.toString(count) : "";
+        }
+    }
+
+    /**
+     * Collects the document handles of the cells in a request, and resolves the counts of all the collected
+     * document handles at once.
+     */
+    private class CommentCountCollector {
+
+        private final Set<String> unresolvedSubjectIds = new LinkedHashSet<>();
+        private final Map<String, Long> counts = new HashMap<>();
+
+        private void register(final String subjectId) {
+            if (!counts.containsKey(subjectId)) {
+                unresolvedSubjectIds.add(subjectId);
+            }
+        }
+
+        private long getCount(final String subjectId) {
+            if (!counts.containsKey(subjectId)) {
+                unresolvedSubjectIds.add(subjectId);
+                final List<String> subjectIds = new ArrayList<>(unresolvedSubjectIds);
+                unresolvedSubjectIds.clear();
+
+                try {
+                    counts.putAll(commentPersistenceManager.countCommentItemsBySubjectIds(commentingContext,
+                            subjectIds));
+                } catch (CommentingException e) {
+                    log.error("Failed to count comments of {} documents.", subjectIds.size(), e);
+
+                    for (String unresolvedSubjectId : subjectIds) {
+                        counts.put(unresolvedSubjectId, 0L);
+                    }
+                }
+            }
+
+            final Long count = counts.get(subjectId);
+            return (count != null) ? count : 0L;
+        }
+    }
+}
@@ -0,0 +1,327 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.commons.lang3.StringUtils;
+import org.hippoecm.frontend.plugin.config.IPluginConfig;
+import org.onehippo.forge.document.commenting.cms.api.CommentItem;
+import org.onehippo.forge.document.commenting.cms.api.CommentItemCursor;
+import org.onehippo.forge.document.commenting.cms.api.CommentItemPage;
+import org.onehippo.forge.document.commenting.cms.api.CommentItemQuery;
+import org.onehippo.forge.document.commenting.cms.api.CommentOperationResult;
+import org.onehippo.forge.document.commenting.cms.api.CommentPersistenceManager;
+import org.onehippo.forge.document.commenting.cms.api.CommentingContext;
+import org.onehippo.forge.document.commenting.cms.api.CommentingException;
+
+/**
+ * {@link CommentPersistenceManager} implementation which stores data into an append-only {@link CommentLogStore}
+ * in a local directory, without a repository or database round trip.
+ * <P>
+ * The directory is configured by {@code file.comment.persistence.directory} parameter, {@code doccommenting}
+ * by default, resolved by {@link CommentPersistenceManagerUtils#resolveDataDirectory(String)} if relative.
+ * Every write is forced to the storage device before returning, unless disabled by
+ * {@code file.comment.persistence.sync} parameter, in which case the writes of the last seconds may be lost
+ * on a crash of the operating system or a power failure.
+ * </P>
+ */
+public class FileLogCommentPersistenceManager extends AbstractCommentPersistenceManager {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String DEFAULT_DIRECTORY = "doccommenting";
+
+    /**
+     * Store given explicitly, e.g, in unit tests. Not kept on serialization.
+     */
+    private transient CommentLogStore store;
+
+    public FileLogCommentPersistenceManager() {
+        super("file.comment.persistence.date.format");
+    }
+
+    /**
+     * Creates a manager using {@code store} instead of the one in the configured directory.
+     * @param store comment log store
+     */
+    public FileLogCommentPersistenceManager(final CommentLogStore store) {
+        super("file.comment.persistence.date.format");
+        this.store = store;
+    }
+
+    public CommentItem getCommentItemById(CommentingContext commentingContext, String commentId)
+            throws CommentingException {
+        try {
+            final CommentItem commentItem = getStore(commentingContext).get(commentId);
+
+            if (commentItem == null) {
+                throw new CommentingException("Comment data not found: " + commentId);
+            }
+
+            return commentItem;
+        } catch (IOException e) {
+            throw new CommentingException(e);
+        }
+    }
+
+    public List<CommentItem> getLatestCommentItemsBySubjectId(CommentingContext commentingContext, String subjectId,
+            long offset, long limit) throws CommentingException {
+        try {
+            return getStore(commentingContext).getLatest(subjectId, null, Math.max(0L, offset), limit);
+        } catch (IOException e) {
+            throw new CommentingException(e);
+        }
+    }
+
+    @Override
+    public CommentItemPage getLatestCommentItemPageBySubjectId(CommentingContext commentingContext, String subjectId,
+            String cursor, long limit) throws CommentingException {
+        if (limit <= 0L) {
+            return new CommentItemPage(new ArrayList<>(), null);
+        }
+
+        final List<CommentItem> commentItems;
+
+        try {
+            commentItems = getStore(commentingContext).getLatest(subjectId,
+                    (cursor != null) ? CommentItemCursor.decode(cursor) : null, 0L, limit + 1L);
+        } catch (IOException e) {
+            throw new CommentingException(e);
+        }
+
+        String nextCursor = null;
+
+        if (commentItems.size() > limit) {
+            commentItems.remove(commentItems.size() - 1);
+            nextCursor = CommentItemCursor.of(commentItems.get(commentItems.size() - 1)).encode();
+        }
+
+        return new CommentItemPage(commentItems, nextCursor);
+    }
+
+    @Override
+    public long countCommentItemsBySubjectId(CommentingContext commentingContext, String subjectId)
+            throws CommentingException {
+        return getStore(commentingContext).count(subjectId);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * The records of the subject, or of all the subjects if {@code subjectId} is null, are read and sorted
+     * by {@link CommentItemQuery#matches(CommentItem)} and {@link CommentItemQuery#getComparator()},
+     * e.g, to rebuild an index from the store.
+     * </P>
+     */
+    @Override
+    public List<CommentItem> queryCommentItems(CommentingContext commentingContext, String subjectId,
+            CommentItemQuery query, long offset, long limit) throws CommentingException {
+        if (limit <= 0L) {
+            return new ArrayList<>();
+        }
+
+        final CommentLogStore commentLogStore = getStore(commentingContext);
+        final List<String> subjectIds = (subjectId != null) ? Collections.singletonList(subjectId)
+                : commentLogStore.getSubjectIds();
+        final List<CommentItem> commentItems = new ArrayList<>();
+
+        try {
+            for (String id : subjectIds) {
+                for (CommentItem commentItem : commentLogStore.getLatest(id, null, 0L, Long.MAX_VALUE)) {
+                    if (query.matches(commentItem)) {
+                        commentItems.add(commentItem);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new CommentingException(e);
+        }
+
+        commentItems.sort(query.getComparator());
+        final int fromIndex = (int) Math.min(commentItems.size(), Math.max(0L, offset));
+        final int toIndex = (int) Math.min(commentItems.size(), fromIndex + limit);
+        return new ArrayList<>(commentItems.subList(fromIndex, toIndex));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * The records of all the items are appended together. If appending fails, every item is reported as failed.
+     * </P>
+     */
+    @Override
+    public List<CommentOperationResult> createCommentItems(final CommentingContext commentingContext,
+            final List<CommentItem> commentItems) throws CommentingException {
+        final CommentOperationResult[] results = new CommentOperationResult[commentItems.size()];
+        final List<CommentItem> records = new ArrayList<>();
+        final Calendar now = Calendar.getInstance();
+
+        for (int i = 0; i < results.length; i++) {
+            final CommentItem commentItem = commentItems.get(i);
+
+            try {
+                commentItem.setSubjectId(getSubjectId(commentingContext, commentItem));
+                commentItem.setAuthor(getUserID());
+            } catch (CommentingException e) {
+                results[i] = CommentOperationResult.failed(commentItem, e);
+                continue;
+            }
+
+            final CommentItem record = (CommentItem) commentItem.clone();
+            record.setId(UUID.randomUUID().toString());
+            record.setSubjectId(StringUtils.defaultIfBlank(commentItem.getSubjectId(), ""));
+            record.setAuthor(StringUtils.defaultIfBlank(commentItem.getAuthor(), ""));
+            record.setContent(StringUtils.defaultIfBlank(commentItem.getContent(), ""));
+            record.setCreated(now);
+            record.setLastModified(now);
+            record.setPending(false);
+            records.add(record);
+            results[i] = CommentOperationResult.succeeded(commentItem, record.getId());
+        }
+
+        return write(commentingContext, commentItems, results, records, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * The extra attributes in each item replace the existing attributes of the same names.
+     * The records of all the items are appended together. If appending fails, every item is reported as failed.
+     * </P>
+     */
+    @Override
+    public List<CommentOperationResult> updateCommentItems(final CommentingContext commentingContext,
+            final List<CommentItem> commentItems) throws CommentingException {
+        final CommentOperationResult[] results = new CommentOperationResult[commentItems.size()];
+        final List<CommentItem> records = new ArrayList<>();
+        final Calendar now = Calendar.getInstance();
+        final CommentLogStore logStore = getStore(commentingContext);
+
+        for (int i = 0; i < results.length; i++) {
+            final CommentItem commentItem = commentItems.get(i);
+
+            try {
+                final CommentItem record = logStore.get(commentItem.getId());
+
+                if (record == null) {
+                    throw new CommentingException("Comment data not found: " + commentItem.getId());
+                }
+
+                commentItem.setSubjectId(getSubjectId(commentingContext, commentItem));
+                commentItem.setAuthor(getUserID());
+
+                record.setSubjectId(StringUtils.defaultIfBlank(commentItem.getSubjectId(), ""));
+                record.setAuthor(StringUtils.defaultIfBlank(commentItem.getAuthor(), ""));
+                record.setContent(StringUtils.defaultIfBlank(commentItem.getContent(), ""));
+                record.setLastModified(now);
+
+                for (String name : commentItem.getAttributeNames()) {
+                    record.setAttribute(name, commentItem.getAttribute(name));
+                }
+
+                records.add(record);
+                results[i] = CommentOperationResult.succeeded(commentItem, commentItem.getId());
+            } catch (CommentingException e) {
+                results[i] = CommentOperationResult.failed(commentItem, e);
+            } catch (IOException e) {
+                results[i] = CommentOperationResult.failed(commentItem, new CommentingException(e));
+            }
+        }
+
+        return write(commentingContext, commentItems, results, records, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * The delete records of all the items are appended together.
+     * If appending fails, every item is reported as failed.
+     * </P>
+     */
+    @Override
+    public List<CommentOperationResult> deleteCommentItems(final CommentingContext commentingContext,
+            final List<CommentItem> commentItems) throws CommentingException {
+        final CommentOperationResult[] results = new CommentOperationResult[commentItems.size()];
+        final List<String> commentIds = new ArrayList<>();
+
+        for (int i = 0; i < results.length; i++) {
+            commentIds.add(commentItems.get(i).getId());
+            results[i] = CommentOperationResult.succeeded(commentItems.get(i), commentItems.get(i).getId());
+        }
+
+        return write(commentingContext, commentItems, results, null, commentIds);
+    }
+
+    /**
+     * Returns the store in the configured directory, opening it on the first access.
+     * @param commentingContext commenting context instance
+     * @return the comment log store
+     */
+    protected CommentLogStore getStore(final CommentingContext commentingContext) {
+        if (store != null) {
+            return store;
+        }
+
+        final IPluginConfig config = getClusterOptions(commentingContext);
+        final String directory = config.getString("file.comment.persistence.directory", DEFAULT_DIRECTORY);
+        final long maxSegmentSize = config.getAsLong("file.comment.persistence.segment.size",
+                CommentLogStore.DEFAULT_MAX_SEGMENT_SIZE);
+
+        try {
+            return CommentLogStore.getInstance(CommentPersistenceManagerUtils.resolveDataDirectory(directory),
+                    maxSegmentSize);
+        } catch (IOException e) {
+            throw new CommentingException("Cannot open the comment log store in " + directory, e);
+        }
+    }
+
+    /**
+     * Appends the {@code records} or the delete records of {@code commentIds}, replacing the succeeded results
+     * by failed ones if appending fails.
+     */
+    private List<CommentOperationResult> write(final CommentingContext commentingContext,
+            final List<CommentItem> commentItems, final CommentOperationResult[] results,
+            final List<CommentItem> records, final List<String> commentIds) {
+        final boolean sync = getClusterOptions(commentingContext).getAsBoolean("file.comment.persistence.sync",
+                true);
+
+        try {
+            if (records != null) {
+                getStore(commentingContext).put(records, sync);
+            } else {
+                getStore(commentingContext).delete(commentIds, sync);
+            }
+        } catch (IOException e) {
+            final CommentingException ce = new CommentingException(e);
+
+            for (int i = 0; i < results.length; i++) {
+                if (results[i].isSucceeded()) {
+                    results[i] = CommentOperationResult.failed(commentItems.get(i), ce);
+                }
+            }
+        }
+
+        return Arrays.asList(results);
+    }
+
+}
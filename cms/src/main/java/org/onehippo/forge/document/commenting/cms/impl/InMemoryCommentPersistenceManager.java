@@ -0,0 +1,539 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import org.apache.commons.lang3.StringUtils;
+import org.onehippo.forge.document.commenting.cms.api.CommentItem;
+import org.onehippo.forge.document.commenting.cms.api.CommentItemCursor;
+import org.onehippo.forge.document.commenting.cms.api.CommentItemPage;
+import org.onehippo.forge.document.commenting.cms.api.CommentItemQuery;
+import org.onehippo.forge.document.commenting.cms.api.CommentOperationResult;
+import org.onehippo.forge.document.commenting.cms.api.CommentPersistenceManager;
+import org.onehippo.forge.document.commenting.cms.api.CommentSearchCursor;
+import org.onehippo.forge.document.commenting.cms.api.CommentSearchHit;
+import org.onehippo.forge.document.commenting.cms.api.CommentSearchPage;
+import org.onehippo.forge.document.commenting.cms.api.CommentingContext;
+import org.onehippo.forge.document.commenting.cms.api.CommentingException;
+
+/**
+ * {@link CommentPersistenceManager} implementation which keeps data in memory only, e.g, for tests, demos
+ * and as a baseline in throughput benchmarks.
+ * <P>
+ * Comment data items are indexed by identifier, and by subject in sorted maps (latest first).
+ * Reads do not lock, and writes lock only the stripe of the subject. The copies of the items are stored
+ * and returned, so the callers cannot modify the stored items.
+ * </P>
+ * <P>
+ * The instances created by the default constructor share a store in the JVM, of which the max number of the items
+ * is configured by {@code memory.comment.persistence.capacity} parameter, unbounded by default.
+ * Creating an item beyond the capacity fails.
+ * </P>
+ */
+public class InMemoryCommentPersistenceManager extends AbstractCommentPersistenceManager {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int LOCK_STRIPES = 32;
+
+    private static final Comparator<Key> LATEST_FIRST = (k1, k2) -> {
+        int ret = Long.compare(k2.created, k1.created);
+        return (ret != 0) ? ret : k2.id.compareTo(k1.id);
+    };
+
+    private static volatile Store sharedStore;
+
+    /**
+     * Store given explicitly, e.g, in unit tests. Not kept on serialization.
+     */
+    private transient Store store;
+
+    public InMemoryCommentPersistenceManager() {
+        super("memory.comment.persistence.date.format");
+    }
+
+    /**
+     * Creates a manager with its own store which can keep up to {@code capacity} items.
+     * @param capacity max number of the items, or zero or a negative number for unbounded
+     */
+    public InMemoryCommentPersistenceManager(final int capacity) {
+        super("memory.comment.persistence.date.format");
+        store = new Store(capacity);
+    }
+
+    /**
+     * Removes all the items in the shared store.
+     */
+    public static void clear() {
+        sharedStore = null;
+    }
+
+    public CommentItem getCommentItemById(CommentingContext commentingContext, String commentId)
+            throws CommentingException {
+        final CommentItem commentItem = getStore(commentingContext).itemsById.get(commentId);
+
+        if (commentItem == null) {
+            throw new CommentingException("Comment data not found: " + commentId);
+        }
+
+        return (CommentItem) commentItem.clone();
+    }
+
+    public List<CommentItem> getLatestCommentItemsBySubjectId(CommentingContext commentingContext, String subjectId,
+            long offset, long limit) throws CommentingException {
+        return getStore(commentingContext).getLatest(subjectId, null, Math.max(0L, offset), limit);
+    }
+
+    @Override
+    public CommentItemPage getLatestCommentItemPageBySubjectId(CommentingContext commentingContext, String subjectId,
+            String cursor, long limit) throws CommentingException {
+        if (limit <= 0L) {
+            return new CommentItemPage(new ArrayList<>(), null);
+        }
+
+        final List<CommentItem> commentItems = getStore(commentingContext).getLatest(subjectId,
+                (cursor != null) ? CommentItemCursor.decode(cursor) : null, 0L, limit + 1L);
+        String nextCursor = null;
+
+        if (commentItems.size() > limit) {
+            commentItems.remove(commentItems.size() - 1);
+            nextCursor = CommentItemCursor.of(commentItems.get(commentItems.size() - 1)).encode();
+        }
+
+        return new CommentItemPage(commentItems, nextCursor);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * All the items are scanned, as the store is indexed only by subject.
+     * </P>
+     */
+    @Override
+    public CommentItemPage getLatestCommentItemPageByAuthor(CommentingContext commentingContext, String author,
+            String cursor, long limit) throws CommentingException {
+        return getLatestCommentItemPage(commentingContext,
+                commentItem -> StringUtils.equals(author, commentItem.getAuthor()), cursor, limit);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * All the items are scanned, as the store is indexed only by subject.
+     * </P>
+     */
+    @Override
+    public CommentItemPage getLatestCommentItemPageByAttribute(CommentingContext commentingContext,
+            String attributeName, String value, String cursor, long limit) throws CommentingException {
+        final CommentItemQuery query = new CommentItemQuery().filter(attributeName, CommentItemQuery.Operator.EQUAL,
+                value);
+        return getLatestCommentItemPage(commentingContext, query::matches, cursor, limit);
+    }
+
+    @Override
+    public long countCommentItemsBySubjectId(CommentingContext commentingContext, String subjectId)
+            throws CommentingException {
+        final Subject subject = getStore(commentingContext).subjects.get(subjectId);
+        return (subject != null) ? subject.count.get() : 0L;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * All the items are scanned, matching the items containing all the words in {@code text}, case-insensitively,
+     * in the content or the string attributes. The score is the number of the occurrences of the words.
+     * </P>
+     */
+    @Override
+    public CommentSearchPage searchCommentItems(CommentingContext commentingContext, String text, String cursor,
+            long limit) throws CommentingException {
+        final String[] terms = StringUtils.split(StringUtils.lowerCase(StringUtils.remove(text, '"')));
+
+        if (limit <= 0L || terms == null || terms.length == 0) {
+            return new CommentSearchPage(null, null);
+        }
+
+        final CommentSearchCursor position = (cursor != null) ? CommentSearchCursor.decode(cursor) : null;
+        final List<CommentSearchHit> hits = new ArrayList<>();
+
+        for (CommentItem commentItem : getStore(commentingContext).itemsById.values()) {
+            final CommentSearchHit hit = match(commentItem, terms);
+
+            if (hit != null && (position == null || position.isFollowedBy(hit.getScore(), commentItem.getId()))) {
+                hits.add(hit);
+            }
+        }
+
+        hits.sort(Comparator.comparingDouble(CommentSearchHit::getScore)
+                .thenComparing(hit -> hit.getCommentItem().getId()).reversed());
+
+        if (hits.size() > limit) {
+            final List<CommentSearchHit> page = new ArrayList<>(hits.subList(0, (int) limit));
+            return new CommentSearchPage(page, CommentSearchCursor.of(page.get(page.size() - 1)).encode());
+        }
+
+        return new CommentSearchPage(hits, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * The items of the subject, or all the items if {@code subjectId} is null, are scanned and sorted
+     * by {@link CommentItemQuery#matches(CommentItem)} and {@link CommentItemQuery#getComparator()}.
+     * </P>
+     */
+    @Override
+    public List<CommentItem> queryCommentItems(CommentingContext commentingContext, String subjectId,
+            CommentItemQuery query, long offset, long limit) throws CommentingException {
+        if (limit <= 0L) {
+            return new ArrayList<>();
+        }
+
+        final List<CommentItem> commentItems = new ArrayList<>();
+
+        for (CommentItem commentItem : getStore(commentingContext).itemsById.values()) {
+            if ((subjectId == null || subjectId.equals(commentItem.getSubjectId())) && query.matches(commentItem)) {
+                commentItems.add(commentItem);
+            }
+        }
+
+        commentItems.sort(query.getComparator());
+
+        final List<CommentItem> page = new ArrayList<>();
+        final long end = Math.min(commentItems.size(), Math.max(0L, offset) + limit);
+
+        for (long i = Math.max(0L, offset); i < end; i++) {
+            page.add((CommentItem) commentItems.get((int) i).clone());
+        }
+
+        return page;
+    }
+
+    @Override
+    public List<CommentOperationResult> createCommentItems(final CommentingContext commentingContext,
+            final List<CommentItem> commentItems) throws CommentingException {
+        final Store itemStore = getStore(commentingContext);
+        final CommentOperationResult[] results = new CommentOperationResult[commentItems.size()];
+        final Calendar now = Calendar.getInstance();
+
+        for (int i = 0; i < results.length; i++) {
+            final CommentItem commentItem = commentItems.get(i);
+
+            try {
+                commentItem.setSubjectId(getSubjectId(commentingContext, commentItem));
+                commentItem.setAuthor(getUserID());
+
+                final CommentItem stored = (CommentItem) commentItem.clone();
+                stored.setId(UUID.randomUUID().toString());
+                stored.setSubjectId(StringUtils.defaultIfBlank(commentItem.getSubjectId(), ""));
+                stored.setAuthor(StringUtils.defaultIfBlank(commentItem.getAuthor(), ""));
+                stored.setContent(StringUtils.defaultIfBlank(commentItem.getContent(), ""));
+                stored.setCreated((Calendar) now.clone());
+                stored.setLastModified((Calendar) now.clone());
+                stored.setPending(false);
+                itemStore.add(stored);
+                results[i] = CommentOperationResult.succeeded(commentItem, stored.getId());
+            } catch (CommentingException e) {
+                results[i] = CommentOperationResult.failed(commentItem, e);
+            }
+        }
+
+        return Arrays.asList(results);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * The extra attributes in each item replace the existing attributes of the same names.
+     * </P>
+     */
+    @Override
+    public List<CommentOperationResult> updateCommentItems(final CommentingContext commentingContext,
+            final List<CommentItem> commentItems) throws CommentingException {
+        final Store itemStore = getStore(commentingContext);
+        final CommentOperationResult[] results = new CommentOperationResult[commentItems.size()];
+
+        for (int i = 0; i < results.length; i++) {
+            final CommentItem commentItem = commentItems.get(i);
+
+            try {
+                commentItem.setSubjectId(getSubjectId(commentingContext, commentItem));
+                commentItem.setAuthor(getUserID());
+                itemStore.update(commentItem);
+                results[i] = CommentOperationResult.succeeded(commentItem, commentItem.getId());
+            } catch (CommentingException e) {
+                results[i] = CommentOperationResult.failed(commentItem, e);
+            }
+        }
+
+        return Arrays.asList(results);
+    }
+
+    @Override
+    public List<CommentOperationResult> deleteCommentItems(final CommentingContext commentingContext,
+            final List<CommentItem> commentItems) throws CommentingException {
+        final Store itemStore = getStore(commentingContext);
+        final CommentOperationResult[] results = new CommentOperationResult[commentItems.size()];
+
+        for (int i = 0; i < results.length; i++) {
+            itemStore.remove(commentItems.get(i).getId());
+            results[i] = CommentOperationResult.succeeded(commentItems.get(i), commentItems.get(i).getId());
+        }
+
+        return Arrays.asList(results);
+    }
+
+    private CommentItemPage getLatestCommentItemPage(final CommentingContext commentingContext,
+            final Predicate<CommentItem> predicate, final String cursor, final long limit) {
+        if (limit <= 0L) {
+            return new CommentItemPage(new ArrayList<>(), null);
+        }
+
+        final CommentItemCursor position = (cursor != null) ? CommentItemCursor.decode(cursor) : null;
+        final TreeMap<Key, CommentItem> matches = new TreeMap<>(LATEST_FIRST);
+
+        for (CommentItem commentItem : getStore(commentingContext).itemsById.values()) {
+            final CommentItemCursor itemCursor = CommentItemCursor.of(commentItem);
+
+            if ((position == null || position.isFollowedBy(itemCursor.getCreated(), itemCursor.getId()))
+                    && predicate.test(commentItem)) {
+                matches.put(new Key(itemCursor.getCreated(), itemCursor.getId()), commentItem);
+
+                if (matches.size() > limit + 1L) {
+                    matches.pollLastEntry();
+                }
+            }
+        }
+
+        final List<CommentItem> commentItems = new ArrayList<>();
+
+        for (CommentItem commentItem : matches.values()) {
+            commentItems.add((CommentItem) commentItem.clone());
+        }
+
+        String nextCursor = null;
+
+        if (commentItems.size() > limit) {
+            commentItems.remove(commentItems.size() - 1);
+            nextCursor = CommentItemCursor.of(commentItems.get(commentItems.size() - 1)).encode();
+        }
+
+        return new CommentItemPage(commentItems, nextCursor);
+    }
+
+    private Store getStore(final CommentingContext commentingContext) {
+        if (store != null) {
+            return store;
+        }
+
+        Store shared = sharedStore;
+
+        if (shared == null) {
+            synchronized (InMemoryCommentPersistenceManager.class) {
+                shared = sharedStore;
+
+                if (shared == null) {
+                    shared = new Store(getClusterOptions(commentingContext)
+                            .getAsInteger("memory.comment.persistence.capacity", 0));
+                    sharedStore = shared;
+                }
+            }
+        }
+
+        return shared;
+    }
+
+    /**
+     * Returns the search hit of {@code commentItem} if it contains all the {@code terms}, or null otherwise.
+     */
+    private static CommentSearchHit match(final CommentItem commentItem, final String[] terms) {
+        final List<String> texts = CommentPersistenceManagerUtils.getSearchableTexts(commentItem);
+        int occurrences = 0;
+        String excerptSource = null;
+
+        for (String term : terms) {
+            int termOccurrences = 0;
+
+            for (String value : texts) {
+                final int count = StringUtils.countMatches(value.toLowerCase(), term);
+
+                if (count > 0 && excerptSource == null) {
+                    excerptSource = value;
+                }
+
+                termOccurrences += count;
+            }
+
+            if (termOccurrences == 0) {
+                return null;
+            }
+
+            occurrences += termOccurrences;
+        }
+
+        return new CommentSearchHit((CommentItem) commentItem.clone(), occurrences,
+                CommentPersistenceManagerUtils.createExcerpt(excerptSource, terms));
+    }
+
+    private static class Key {
+
+        private final long created;
+        private final String id;
+
+        private Key(final long created, final String id) {
+            this.created = created;
+            this.id = id;
+        }
+
+        private static Key of(final CommentItem commentItem) {
+            return new Key(commentItem.getCreated().getTimeInMillis(), commentItem.getId());
+        }
+    }
+
+    private static class Subject {
+
+        private final NavigableMap<Key, CommentItem> items = new ConcurrentSkipListMap<>(LATEST_FIRST);
+        private final AtomicInteger count = new AtomicInteger();
+    }
+
+    private static class Store {
+
+        private final int capacity;
+        private final AtomicInteger size = new AtomicInteger();
+        private final Map<String, CommentItem> itemsById = new ConcurrentHashMap<>();
+        private final Map<String, Subject> subjects = new ConcurrentHashMap<>();
+        private final Object[] locks = new Object[LOCK_STRIPES];
+
+        private Store(final int capacity) {
+            this.capacity = capacity;
+
+            for (int i = 0; i < locks.length; i++) {
+                locks[i] = new Object();
+            }
+        }
+
+        private List<CommentItem> getLatest(final String subjectId, final CommentItemCursor cursor,
+                final long offset, final long limit) {
+            final List<CommentItem> commentItems = new ArrayList<>();
+            final Subject subject = subjects.get(subjectId);
+
+            if (subject == null || limit <= 0L) {
+                return commentItems;
+            }
+
+            final NavigableMap<Key, CommentItem> items = (cursor != null)
+                    ? subject.items.tailMap(new Key(cursor.getCreated(), cursor.getId()), false)
+                    : subject.items;
+            long skipped = 0L;
+
+            for (Iterator<CommentItem> it = items.values().iterator(); it.hasNext() && commentItems.size() < limit; ) {
+                final CommentItem commentItem = it.next();
+
+                if (skipped < offset) {
+                    skipped++;
+                    continue;
+                }
+
+                commentItems.add((CommentItem) commentItem.clone());
+            }
+
+            return commentItems;
+        }
+
+        private void add(final CommentItem commentItem) {
+            if (size.incrementAndGet() > capacity && capacity > 0) {
+                size.decrementAndGet();
+                throw new CommentingException("The max number of comments reached: " + capacity);
+            }
+
+            synchronized (getLock(commentItem.getSubjectId())) {
+                final Subject subject = subjects.computeIfAbsent(commentItem.getSubjectId(), id -> new Subject());
+                subject.items.put(Key.of(commentItem), commentItem);
+                subject.count.incrementAndGet();
+                itemsById.put(commentItem.getId(), commentItem);
+            }
+        }
+
+        private void update(final CommentItem commentItem) {
+            final CommentItem existing = itemsById.get(commentItem.getId());
+
+            if (existing == null) {
+                throw new CommentingException("Comment data not found: " + commentItem.getId());
+            }
+
+            synchronized (getLock(existing.getSubjectId())) {
+                final CommentItem current = itemsById.get(commentItem.getId());
+
+                if (current == null) {
+                    throw new CommentingException("Comment data not found: " + commentItem.getId());
+                }
+
+                // replace the stored item by an updated copy, not to expose partial updates to the readers
+                final CommentItem updated = (CommentItem) current.clone();
+                updated.setAuthor(StringUtils.defaultIfBlank(commentItem.getAuthor(), ""));
+                updated.setContent(StringUtils.defaultIfBlank(commentItem.getContent(), ""));
+                updated.setLastModified(Calendar.getInstance());
+
+                for (String name : commentItem.getAttributeNames()) {
+                    updated.setAttribute(name, commentItem.getAttribute(name));
+                }
+
+                subjects.get(updated.getSubjectId()).items.put(Key.of(updated), updated);
+                itemsById.put(updated.getId(), updated);
+            }
+        }
+
+        private void remove(final String commentId) {
+            final CommentItem existing = itemsById.get(commentId);
+
+            if (existing == null) {
+                return;
+            }
+
+            synchronized (getLock(existing.getSubjectId())) {
+                if (itemsById.remove(commentId) == null) {
+                    return;
+                }
+
+                final Subject subject = subjects.get(existing.getSubjectId());
+
+                if (subject.items.remove(Key.of(existing)) != null) {
+                    subject.count.decrementAndGet();
+                }
+
+                size.decrementAndGet();
+            }
+        }
+
+        private Object getLock(final String subjectId) {
+            return locks[(subjectId.hashCode() & 0x7fffffff) % locks.length];
+        }
+    }
+}
@@ -0,0 +1,465 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.impl;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.InvalidItemStateException;
+import javax.jcr.ItemExistsException;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryManager;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.hippoecm.repository.api.NodeNameCodec;
+import org.hippoecm.repository.util.JcrUtils;
+import org.onehippo.repository.scheduling.RepositoryJob;
+import org.onehippo.repository.scheduling.RepositoryJobExecutionContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.onehippo.forge.document.commenting.cms.impl.DefaultJcrCommentPersistenceManager.DEFAULT_COMMENTS_LOCATION;
+import static org.onehippo.forge.document.commenting.cms.impl.DefaultJcrCommentPersistenceManager.NT_COMMENT;
+import static org.onehippo.forge.document.commenting.cms.impl.DefaultJcrCommentPersistenceManager.NT_COMMENTS_CONTAINER;
+import static org.onehippo.forge.document.commenting.cms.impl.DefaultJcrCommentPersistenceManager.NT_TOMBSTONE;
+import static org.onehippo.forge.document.commenting.cms.impl.DefaultJcrCommentPersistenceManager.PROP_DELETED;
+import static org.onehippo.forge.document.commenting.cms.impl.DefaultJcrCommentPersistenceManager.PROP_MIGRATED;
+import static org.onehippo.forge.document.commenting.cms.impl.DefaultJcrCommentPersistenceManager.PROP_SUBJECTID;
+
+/**
+ * Repository job compacting the comment data tree under {@code /doccommentdata}.
+ * <P>
+ * It walks the 26 x 26 containers one by one, moves the comment data and tombstone nodes stored in the
+ * {@link JcrCommentStorageLayout#RANDOM} layout into their per-subject containers if the target layout is
+ * {@link JcrCommentStorageLayout#SUBJECT}, removes the tombstones older than the max age if configured,
+ * and removes the empty random layout containers. Per-subject containers are never removed,
+ * because their {@code doccommenting:stamp} must not start over.
+ * </P>
+ * <P>
+ * The changes are saved in batches, with a pause between batches, also while moving the nodes of a subject having
+ * many comments. The readers look up only the per-subject container once it is marked as holding all the nodes of
+ * the subject by {@code doccommenting:migrated} property, and read the nodes of the subject by queries until then,
+ * so the container is marked only after all the nodes of the subject are moved into it.
+ * The last completed container is kept as
+ * the checkpoint in {@code doccommenting:checkpoint} property of the comment data root node, so a run stopped
+ * by the max duration, a conflict or a failure resumes after it in the next run, moving the rest of the nodes of
+ * a subject of which migration was stopped. The checkpoint is cleared
+ * when a run walks all the containers.
+ * </P>
+ * <P>
+ * The job attributes are:
+ * </P>
+ * <UL>
+ *   <LI>{@code target.layout}: the target storage layout, {@code subject} by default.
+ *       With {@code random}, nothing is moved.</LI>
+ *   <LI>{@code batch.size}: the max number of changes saved at once, 100 by default.</LI>
+ *   <LI>{@code throttle}: the pause in milliseconds after each batch save, 1000 by default.</LI>
+ *   <LI>{@code max.duration}: the max duration of a run in seconds, or 0 for no limit, 3600 by default.</LI>
+ *   <LI>{@code tombstone.max.age}: the max age of tombstones in days, or 0 to keep them, 30 by default.
+ *       Tombstones are also removed on writes to their container by the persistence manager.</LI>
+ * </UL>
+ */
+public class JcrCommentDataCompactionJob implements RepositoryJob {
+
+    private static Logger log = LoggerFactory.getLogger(JcrCommentDataCompactionJob.class);
+
+    public static final String PROP_CHECKPOINT = "doccommenting:checkpoint";
+
+    private static final int DEFAULT_BATCH_SIZE = 100;
+
+    private static final long DEFAULT_THROTTLE = 1000L;
+
+    private static final long DEFAULT_MAX_DURATION = 3600L;
+
+    private static final String SUBJECT_NODES_QUERY =
+            "/jcr:root/" + DEFAULT_COMMENTS_LOCATION + "//element(*,{0})[@" + PROP_SUBJECTID + "=''{1}'']";
+
+    @Override
+    public void execute(final RepositoryJobExecutionContext context) throws RepositoryException {
+        final Session session = context.createSystemSession();
+
+        try {
+            final Compaction compaction = new Compaction(session);
+            compaction.targetLayout = JcrCommentStorageLayout.fromString(
+                    StringUtils.defaultIfBlank(context.getAttribute("target.layout"), "subject"));
+            compaction.batchSize = Math.max(1,
+                    NumberUtils.toInt(context.getAttribute("batch.size"), DEFAULT_BATCH_SIZE));
+            compaction.throttle = Math.max(0L, NumberUtils.toLong(context.getAttribute("throttle"), DEFAULT_THROTTLE));
+
+            final long maxDuration = NumberUtils.toLong(context.getAttribute("max.duration"), DEFAULT_MAX_DURATION);
+            compaction.deadline = (maxDuration > 0L)
+                    ? System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(maxDuration) : Long.MAX_VALUE;
+
+            final long tombstoneMaxAge = NumberUtils.toLong(context.getAttribute("tombstone.max.age"),
+                    DefaultJcrCommentPersistenceManager.DEFAULT_TOMBSTONE_MAX_AGE);
+
+            if (tombstoneMaxAge > 0L) {
+                compaction.tombstoneCutoff = Calendar.getInstance();
+                compaction.tombstoneCutoff.setTimeInMillis(
+                        System.currentTimeMillis() - TimeUnit.DAYS.toMillis(tombstoneMaxAge));
+            }
+
+            compaction.run();
+        } finally {
+            session.logout();
+        }
+    }
+
+    private static class Compaction {
+
+        private final Session session;
+        private JcrCommentStorageLayout targetLayout;
+        private int batchSize;
+        private long throttle;
+        private long deadline;
+        private Calendar tombstoneCutoff;
+
+        private Node rootNode;
+        private int unsavedChanges;
+        private boolean stopped;
+        private long movedCount;
+        private long removedContainerCount;
+        private long removedTombstoneCount;
+
+        private Compaction(final Session session) {
+            this.session = session;
+        }
+
+        private void run() throws RepositoryException {
+            final String rootPath = "/" + DEFAULT_COMMENTS_LOCATION;
+
+            if (!session.nodeExists(rootPath)) {
+                return;
+            }
+
+            rootNode = session.getNode(rootPath);
+            final String checkpoint = JcrUtils.getStringProperty(rootNode, PROP_CHECKPOINT, null);
+            log.info("Compacting comment data into {} layout, starting after {}.", targetLayout,
+                    StringUtils.defaultString(checkpoint, "the beginning"));
+
+            for (String name1 : getChildContainerNames(rootNode)) {
+                for (String name2 : getChildContainerNames(rootNode.getNode(name1))) {
+                    final String bucket = name1 + "/" + name2;
+
+                    if (checkpoint != null && bucket.compareTo(checkpoint) <= 0) {
+                        continue;
+                    }
+
+                    if (System.currentTimeMillis() > deadline) {
+                        stopped = true;
+                    }
+
+                    if (stopped) {
+                        saveChanges();
+                        logSummary("Stopped");
+                        return;
+                    }
+
+                    compactBucket(rootNode.getNode(bucket));
+
+                    if (stopped) {
+                        logSummary("Stopped");
+                        return;
+                    }
+
+                    rootNode.setProperty(PROP_CHECKPOINT, bucket);
+                    unsavedChanges++;
+                    saveChangesIfBatchFull();
+                }
+            }
+
+            if (rootNode.hasProperty(PROP_CHECKPOINT)) {
+                rootNode.getProperty(PROP_CHECKPOINT).remove();
+            }
+
+            saveChanges();
+            logSummary("Completed");
+        }
+
+        private void compactBucket(final Node bucketNode) throws RepositoryException {
+            for (String name : getChildContainerNames(bucketNode)) {
+                if (stopped) {
+                    return;
+                }
+
+                final Node childNode = bucketNode.getNode(name);
+
+                if (isRandomLayoutContainerName(name)) {
+                    compactRandomLayoutContainer(childNode);
+                    continue;
+                }
+
+                if (targetLayout == JcrCommentStorageLayout.SUBJECT
+                        && !JcrUtils.getBooleanProperty(childNode, PROP_MIGRATED, false)) {
+                    // e.g, created for a new comment while the subject had comments in random layout.
+                    migrateSubject(NodeNameCodec.decode(name), childNode, null);
+                }
+
+                if (!stopped && tombstoneCutoff != null) {
+                    removeExpiredTombstones(childNode);
+                }
+            }
+        }
+
+        private void compactRandomLayoutContainer(final Node containerNode) throws RepositoryException {
+            for (String name : getChildNodeNames(containerNode)) {
+                if (stopped) {
+                    return;
+                }
+
+                if (!containerNode.hasNode(name)) {
+                    // moved already together with another node of the same subject.
+                    continue;
+                }
+
+                final Node childNode = containerNode.getNode(name);
+
+                if (childNode.isNodeType(NT_COMMENTS_CONTAINER)) {
+                    compactRandomLayoutContainer(childNode);
+                } else if (childNode.isNodeType(NT_TOMBSTONE) && isExpiredTombstone(childNode)) {
+                    childNode.remove();
+                    removedTombstoneCount++;
+                    unsavedChanges++;
+                    saveChangesIfBatchFull();
+                } else if (targetLayout == JcrCommentStorageLayout.SUBJECT
+                        && (childNode.isNodeType(NT_COMMENT) || childNode.isNodeType(NT_TOMBSTONE))) {
+                    moveToSubjectContainer(childNode);
+                }
+            }
+
+            if (!stopped && !containerNode.hasNodes()) {
+                containerNode.remove();
+                removedContainerCount++;
+                unsavedChanges++;
+                saveChangesIfBatchFull();
+            }
+        }
+
+        private void moveToSubjectContainer(final Node node) throws RepositoryException {
+            final String subjectId = JcrUtils.getStringProperty(node, PROP_SUBJECTID, "");
+
+            if (StringUtils.isEmpty(subjectId)) {
+                return;
+            }
+
+            Node subjectContainerNode = rootNode;
+            boolean created = false;
+
+            for (String segment : DefaultJcrCommentPersistenceManager.getSubjectContainerPathSegments(subjectId)) {
+                if (!created && subjectContainerNode.hasNode(segment)) {
+                    subjectContainerNode = subjectContainerNode.getNode(segment);
+                } else {
+                    created = true;
+                    subjectContainerNode = subjectContainerNode.addNode(segment, NT_COMMENTS_CONTAINER);
+                }
+            }
+
+            if (JcrUtils.getBooleanProperty(subjectContainerNode, PROP_MIGRATED, false)) {
+                // the subject was migrated already, e.g, a comment created in random layout afterwards.
+                moveNode(node.getPath(), subjectContainerNode);
+                unsavedChanges++;
+                saveChangesIfBatchFull();
+                return;
+            }
+
+            migrateSubject(subjectId, subjectContainerNode, node);
+        }
+
+        /**
+         * Moves all the nodes of the subject found by queries, and {@code node} if not null, into the per-subject
+         * container in batches, and marks the container as migrated unless stopped in the middle.
+         */
+        private void migrateSubject(final String subjectId, final Node subjectContainerNode, final Node node)
+                throws RepositoryException {
+            final String containerPath = subjectContainerNode.getPath() + "/";
+            final List<String> paths = findSubjectNodePaths(subjectId);
+
+            if (node != null) {
+                paths.add(node.getPath());
+            }
+
+            for (String path : paths) {
+                if (stopped) {
+                    return;
+                }
+
+                if (!path.startsWith(containerPath) && session.nodeExists(path)) {
+                    moveNode(path, subjectContainerNode);
+                    unsavedChanges++;
+                    saveChangesIfBatchFull();
+                }
+            }
+
+            if (stopped) {
+                return;
+            }
+
+            // readers switch to the per-subject container as soon as it is marked as migrated,
+            // so it is marked only after all the nodes of the subject are moved into it.
+            subjectContainerNode.setProperty(PROP_MIGRATED, true);
+            unsavedChanges++;
+            saveChangesIfBatchFull();
+        }
+
+        private void moveNode(final String path, final Node subjectContainerNode) throws RepositoryException {
+            String name = StringUtils.substringAfterLast(path, "/");
+
+            while (subjectContainerNode.hasNode(name)) {
+                name = name + "_";
+            }
+
+            final String destPath = subjectContainerNode.getPath() + "/" + name;
+            session.move(path, destPath);
+            final Node movedNode = session.getNode(destPath);
+            DefaultJcrCommentPersistenceManager.updateSubjectContainer(movedNode,
+                    movedNode.isNodeType(NT_COMMENT) ? 1L : 0L);
+            movedCount++;
+        }
+
+        private List<String> findSubjectNodePaths(final String subjectId) throws RepositoryException {
+            final List<String> paths = new ArrayList<>();
+            final QueryManager queryManager = session.getWorkspace().getQueryManager();
+
+            for (String nodeType : new String[] { NT_COMMENT, NT_TOMBSTONE }) {
+                final String statement = MessageFormat.format(SUBJECT_NODES_QUERY, nodeType,
+                        DefaultJcrCommentPersistenceManager.escapeXPathStringLiteral(subjectId));
+
+                for (NodeIterator nodeIt = queryManager.createQuery(statement, Query.XPATH).execute().getNodes();
+                        nodeIt.hasNext();) {
+                    final Node subjectNode = nodeIt.nextNode();
+
+                    if (subjectNode != null) {
+                        paths.add(subjectNode.getPath());
+                    }
+                }
+            }
+
+            return paths;
+        }
+
+        private void removeExpiredTombstones(final Node subjectContainerNode) throws RepositoryException {
+            for (String name : getChildNodeNames(subjectContainerNode)) {
+                if (stopped) {
+                    return;
+                }
+
+                final Node childNode = subjectContainerNode.getNode(name);
+
+                if (childNode.isNodeType(NT_TOMBSTONE) && isExpiredTombstone(childNode)) {
+                    childNode.remove();
+                    removedTombstoneCount++;
+                    unsavedChanges++;
+                    saveChangesIfBatchFull();
+                }
+            }
+        }
+
+        private boolean isExpiredTombstone(final Node tombstoneNode) throws RepositoryException {
+            if (tombstoneCutoff == null) {
+                return false;
+            }
+
+            final Calendar deleted = JcrUtils.getDateProperty(tombstoneNode, PROP_DELETED, null);
+            return deleted != null && deleted.before(tombstoneCutoff);
+        }
+
+        private void saveChangesIfBatchFull() throws RepositoryException {
+            if (unsavedChanges < batchSize) {
+                return;
+            }
+
+            saveChanges();
+
+            if (!stopped && throttle > 0L) {
+                try {
+                    Thread.sleep(throttle);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    stopped = true;
+                }
+            }
+
+            if (System.currentTimeMillis() > deadline) {
+                stopped = true;
+            }
+        }
+
+        private void saveChanges() throws RepositoryException {
+            if (unsavedChanges == 0) {
+                return;
+            }
+
+            try {
+                session.save();
+            } catch (InvalidItemStateException | ItemExistsException e) {
+                // e.g, a comment added into a container being removed, or the same per-subject container added
+                // by the persistence manager at the same time. resume from the checkpoint in the next run.
+                log.info("Conflict on saving compacted comment data. Stopping until the next run: {}", e.toString());
+                session.refresh(false);
+                stopped = true;
+            }
+
+            unsavedChanges = 0;
+        }
+
+        private void logSummary(final String status) {
+            log.info("{} compacting comment data: {} nodes moved, {} containers removed, {} tombstones removed.",
+                    status, movedCount, removedContainerCount, removedTombstoneCount);
+        }
+    }
+
+    /**
+     * Returns true if {@code name} is a name of a random layout container below the 26 x 26 containers,
+     * which is a single letter, unlike the per-subject container names.
+     */
+    private static boolean isRandomLayoutContainerName(final String name) {
+        return name.length() == 1;
+    }
+
+    static List<String> getChildContainerNames(final Node node) throws RepositoryException {
+        final List<String> names = new ArrayList<>();
+
+        for (NodeIterator nodeIt = node.getNodes(); nodeIt.hasNext(); ) {
+            final Node childNode = nodeIt.nextNode();
+
+            if (childNode.isNodeType(NT_COMMENTS_CONTAINER)) {
+                names.add(childNode.getName());
+            }
+        }
+
+        Collections.sort(names);
+        return names;
+    }
+
+    private static List<String> getChildNodeNames(final Node node) throws RepositoryException {
+        final List<String> names = new ArrayList<>();
+
+        for (NodeIterator nodeIt = node.getNodes(); nodeIt.hasNext(); ) {
+            names.add(nodeIt.nextNode().getName());
+        }
+
+        return names;
+    }
+}
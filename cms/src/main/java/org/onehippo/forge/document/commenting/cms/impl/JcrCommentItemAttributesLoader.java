@@ -0,0 +1,48 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.impl;
+
+import java.util.Map;
+
+import org.onehippo.forge.document.commenting.cms.api.SerializableCallable;
+
+/**
+ * Serializable loader of the extra attributes of a comment data item, holding only the comment data node identifier
+ * and reading the residual properties of the comment data node when the attributes are first accessed.
+ * <P>
+ * The node is read with the session of the persistence manager at the moment of loading, i.e, the session of the
+ * current request, so the loader is valid only within the request that read the comment data item.
+ * </P>
+ */
+class JcrCommentItemAttributesLoader implements SerializableCallable<Map<String, Object>> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final DefaultJcrCommentPersistenceManager persistenceManager;
+
+    private final String commentId;
+
+    JcrCommentItemAttributesLoader(final DefaultJcrCommentPersistenceManager persistenceManager,
+            final String commentId) {
+        this.persistenceManager = persistenceManager;
+        this.commentId = commentId;
+    }
+
+    @Override
+    public Map<String, Object> call() throws Exception {
+        return persistenceManager.loadCommentItemAttributes(commentId);
+    }
+}
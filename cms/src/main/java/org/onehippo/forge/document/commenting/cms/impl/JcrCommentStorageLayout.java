@@ -0,0 +1,55 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.impl;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Storage layout of comment data nodes under the comment data root node,
+ * used by {@link DefaultJcrCommentPersistenceManager}.
+ */
+public enum JcrCommentStorageLayout {
+
+    /**
+     * Each comment data node is stored in a randomly selected 4-level container (e.g, {@code /doccommentdata/a/b/c/d}).
+     * Comment data of a subject can be found only by query.
+     */
+    RANDOM,
+
+    /**
+     * Comment data nodes are stored in a per-subject container under a 2-level container derived from a hash
+     * of the subject ID (e.g, {@code /doccommentdata/k/q/<subjectId>}).
+     * Comment data of a subject can be found by a path lookup.
+     */
+    SUBJECT;
+
+    /**
+     * Returns the layout by the (case insensitive) name, or {@link #RANDOM} if {@code name} is blank or unknown.
+     * @param name layout name
+     * @return the layout by the name, or {@link #RANDOM} if {@code name} is blank or unknown
+     */
+    public static JcrCommentStorageLayout fromString(final String name) {
+        if (StringUtils.isNotBlank(name)) {
+            for (JcrCommentStorageLayout layout : values()) {
+                if (layout.name().equalsIgnoreCase(name.trim())) {
+                    return layout;
+                }
+            }
+        }
+
+        return RANDOM;
+    }
+}
@@ -0,0 +1,493 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.apache.commons.lang3.StringUtils;
+import org.hippoecm.frontend.plugin.config.IPluginConfig;
+import org.hippoecm.frontend.plugin.config.impl.JavaPluginConfig;
+import org.onehippo.forge.document.commenting.cms.api.CommentItem;
+import org.onehippo.forge.document.commenting.cms.api.CommentOperationResult;
+import org.onehippo.forge.document.commenting.cms.api.CommentingContext;
+import org.onehippo.forge.document.commenting.cms.api.CommentingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded in-memory queue of comment data items to create or update asynchronously, used by
+ * {@link DefaultJcrCommentPersistenceManager} in write-behind mode.
+ * <P>
+ * A background worker thread drains the queue and persists the queued items in batches, each by a single session save,
+ * using a dedicated session per user. Until persisted, the queued items are available as pending items
+ * through {@link #mergePendingCommentItems(String, List)}. The items failed to be persisted are kept per user
+ * until retrieved by {@link #pollFailedCommentOperations(String)}, to be reported to the user.
+ * </P>
+ */
+public class JcrCommentWriteBehindQueue {
+
+    private static Logger log = LoggerFactory.getLogger(JcrCommentWriteBehindQueue.class);
+
+    /**
+     * Default max number of the queued items.
+     */
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    /**
+     * Max number of the queued items persisted by a single session save.
+     */
+    private static final int MAX_BATCH_SIZE = 100;
+
+    /**
+     * Idle time after which a dedicated user session is logged out while the queue is empty.
+     */
+    private static final long IDLE_SESSION_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * Max number of the failed results kept per user until retrieved by {@link #pollFailedCommentOperations(String)}.
+     */
+    private static final int MAX_FAILED_RESULTS_PER_USER = 100;
+
+    private static volatile JcrCommentWriteBehindQueue instance;
+
+    private final BlockingQueue<PendingWrite> queue;
+    private final Map<String, WorkerSession> workerSessions = new LinkedHashMap<>();
+    private final Map<String, List<CommentItem>> pendingCommentItems = new ConcurrentHashMap<>();
+    private final Map<String, List<CommentOperationResult>> failedCommentOperations = new ConcurrentHashMap<>();
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    enum Operation {
+        CREATE, UPDATE
+    }
+
+    private JcrCommentWriteBehindQueue(final int capacity) {
+        queue = new ArrayBlockingQueue<>(capacity);
+        worker = new Thread(this::drain, "doc-commenting-write-behind");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Returns the singleton queue, creating it with {@code capacity} on the first invocation.
+     * @param capacity max number of the queued items, used only when creating the queue
+     * @return the singleton queue
+     */
+    public static JcrCommentWriteBehindQueue getInstance(final int capacity) {
+        JcrCommentWriteBehindQueue queue = instance;
+
+        if (queue == null) {
+            synchronized (JcrCommentWriteBehindQueue.class) {
+                queue = instance;
+
+                if (queue == null) {
+                    queue = new JcrCommentWriteBehindQueue(Math.max(1, capacity));
+                    instance = queue;
+                }
+            }
+        }
+
+        return queue;
+    }
+
+    /**
+     * Stops the singleton queue if created, after persisting the items remaining in the queue.
+     * Invoked by {@link CommentingServicesModule} on shutdown.
+     */
+    public static void shutdown() {
+        JcrCommentWriteBehindQueue queue;
+
+        synchronized (JcrCommentWriteBehindQueue.class) {
+            queue = instance;
+            instance = null;
+        }
+
+        if (queue != null) {
+            queue.stop();
+        }
+    }
+
+    /**
+     * Returns the number of the items waiting in the queue.
+     * @return the number of the items waiting in the queue
+     */
+    public int size() {
+        return queue.size();
+    }
+
+    /**
+     * Returns true if any item of {@code subjectId} is queued and not persisted yet.
+     * @param subjectId the identifier of the subject data
+     * @return true if any item of {@code subjectId} is queued and not persisted yet
+     */
+    public boolean hasPendingCommentItems(final String subjectId) {
+        final List<CommentItem> pendingItems = pendingCommentItems.get(subjectId);
+        return pendingItems != null && !pendingItems.isEmpty();
+    }
+
+    /**
+     * Returns the number of the items of {@code subjectId} queued to create and not persisted yet.
+     * @param subjectId the identifier of the subject data
+     * @return the number of the items of {@code subjectId} queued to create and not persisted yet
+     */
+    public int countPendingCreations(final String subjectId) {
+        final List<CommentItem> pendingItems = pendingCommentItems.get(subjectId);
+        int count = 0;
+
+        if (pendingItems != null) {
+            for (CommentItem pendingItem : pendingItems) {
+                if (StringUtils.isBlank(pendingItem.getId())) {
+                    count++;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns a new list of {@code commentItems}, with the pending items of {@code subjectId} merged:
+     * a pending update replaces the item with the same identifier, and pending creations are put in front of the list.
+     * @param subjectId the identifier of the subject data
+     * @param commentItems the latest comment data items of the subject read from the repository
+     * @return a new list of {@code commentItems}, with the pending items of {@code subjectId} merged
+     */
+    public List<CommentItem> mergePendingCommentItems(final String subjectId, final List<CommentItem> commentItems) {
+        final List<CommentItem> pendingItems = pendingCommentItems.get(subjectId);
+
+        if (pendingItems == null || pendingItems.isEmpty()) {
+            return commentItems;
+        }
+
+        final List<CommentItem> merged = new LinkedList<>(commentItems);
+
+        for (CommentItem pendingItem : pendingItems) {
+            if (StringUtils.isBlank(pendingItem.getId())) {
+                merged.add(0, (CommentItem) pendingItem.clone());
+            } else {
+                for (int i = 0; i < merged.size(); i++) {
+                    if (StringUtils.equals(pendingItem.getId(), merged.get(i).getId())) {
+                        merged.set(i, (CommentItem) pendingItem.clone());
+                        break;
+                    }
+                }
+            }
+        }
+
+        return merged;
+    }
+
+    /**
+     * Enqueues {@code commentItem} to create or update, waiting up to {@code timeoutMillis} if the queue is full.
+     * @param manager the persistence manager to persist the item with
+     * @param commentingContext commenting context instance
+     * @param userSession the session of the current user, from which the dedicated session is created if not existing
+     * @param operation create or update
+     * @param commentItem comment data item object, with the subject identifier and the author set
+     * @param timeoutMillis max time to wait for a free slot in milliseconds
+     * @return true if enqueued, or false if the queue is still full after {@code timeoutMillis}
+     * @throws RepositoryException if the dedicated session cannot be created
+     * @throws InterruptedException if interrupted while waiting
+     */
+    boolean offer(final DefaultJcrCommentPersistenceManager manager, final CommentingContext commentingContext,
+            final Session userSession, final Operation operation, final CommentItem commentItem,
+            final long timeoutMillis) throws RepositoryException, InterruptedException {
+        // load the attributes with the session of the current request, not by the worker thread.
+        commentItem.ensureAttributesLoaded();
+        final CommentItem pendingItem = (CommentItem) commentItem.clone();
+        pendingItem.setPending(true);
+
+        if (pendingItem.getCreated() == null) {
+            pendingItem.setCreated(Calendar.getInstance());
+        }
+
+        pendingItem.setLastModified(Calendar.getInstance());
+
+        final WorkerSession workerSession;
+
+        synchronized (workerSessions) {
+            if (!running) {
+                return false;
+            }
+
+            workerSession = getOrCreateWorkerSession(manager, userSession);
+        }
+
+        final PendingWrite write = new PendingWrite(manager, createPluginConfigSnapshot(manager, commentingContext),
+                workerSession.session, operation, pendingItem);
+        final List<CommentItem> pendingItems = pendingCommentItems.computeIfAbsent(pendingItem.getSubjectId(),
+                key -> new CopyOnWriteArrayList<>());
+        pendingItems.add(pendingItem);
+
+        // wait for a free slot without the lock, not to block the other users and the idle session cleanup.
+        if (!queue.offer(write, timeoutMillis, TimeUnit.MILLISECONDS)) {
+            removePendingCommentItem(pendingItem);
+            return false;
+        }
+
+        // stopped while waiting. take it back to persist it synchronously unless taken by the final drain.
+        if (!running && queue.remove(write)) {
+            removePendingCommentItem(pendingItem);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns and clears the failed results of the queued items of {@code userId}.
+     * @param userId the user ID of the author of the queued items
+     * @return the failed results of the queued items of {@code userId} since the last invocation
+     */
+    public List<CommentOperationResult> pollFailedCommentOperations(final String userId) {
+        final List<CommentOperationResult> results = failedCommentOperations.remove(userId);
+        return (results != null) ? new ArrayList<>(results) : Collections.emptyList();
+    }
+
+    /**
+     * Copies the options used on persisting from the plugin configuration, which is bound to the UI of the user
+     * and may be changed or detached before the worker persists the item.
+     */
+    private static IPluginConfig createPluginConfigSnapshot(final DefaultJcrCommentPersistenceManager manager,
+            final CommentingContext commentingContext) {
+        final JavaPluginConfig pluginConfig = new JavaPluginConfig();
+        pluginConfig.put("cluster.options", new JavaPluginConfig(manager.getClusterOptions(commentingContext)));
+        return pluginConfig;
+    }
+
+    private WorkerSession getOrCreateWorkerSession(final DefaultJcrCommentPersistenceManager manager,
+            final Session userSession) throws RepositoryException {
+        WorkerSession workerSession = workerSessions.get(userSession.getUserID());
+
+        if (workerSession == null || !workerSession.session.isLive()) {
+            workerSession = new WorkerSession(manager.createWriteBehindSession(userSession));
+            workerSessions.put(userSession.getUserID(), workerSession);
+        }
+
+        workerSession.lastUsed = System.currentTimeMillis();
+        return workerSession;
+    }
+
+    private void stop() {
+        synchronized (workerSessions) {
+            running = false;
+        }
+
+        worker.interrupt();
+
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (worker.isAlive()) {
+            // the sessions are not thread-safe, so neither persist the rest nor log out the sessions in use.
+            log.warn("Write-behind worker not finished in time. {} queued comment data items left behind.",
+                    queue.size());
+            return;
+        }
+
+        // the items offered while the worker was finishing.
+        final List<PendingWrite> batch = new ArrayList<>(MAX_BATCH_SIZE);
+
+        while (queue.drainTo(batch, MAX_BATCH_SIZE) > 0) {
+            persist(batch);
+            batch.clear();
+        }
+
+        synchronized (workerSessions) {
+            for (WorkerSession workerSession : workerSessions.values()) {
+                workerSession.session.logout();
+            }
+
+            workerSessions.clear();
+        }
+    }
+
+    private void drain() {
+        final List<PendingWrite> batch = new ArrayList<>(MAX_BATCH_SIZE);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = running ? queue.poll(1, TimeUnit.MINUTES) : queue.poll();
+
+                if (first == null) {
+                    logoutIdleWorkerSessions();
+                    continue;
+                }
+
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                persist(batch);
+            } catch (InterruptedException e) {
+                if (running) {
+                    log.warn("Write-behind worker interrupted unexpectedly.");
+                }
+            } catch (RuntimeException e) {
+                log.error("Failed to persist queued comment data.", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Persists the {@code batch}, coalescing the writes by the same persistence manager, configuration, session and
+     * operation into a single batch operation, and the updates on the same item into the last one.
+     */
+    private void persist(final List<PendingWrite> batch) {
+        final Map<List<Object>, Map<Object, PendingWrite>> groups = new LinkedHashMap<>();
+
+        for (PendingWrite write : batch) {
+            final Map<Object, PendingWrite> group = groups.computeIfAbsent(
+                    Arrays.asList(write.manager, write.pluginConfig, write.session, write.operation),
+                    key -> new LinkedHashMap<>());
+            final Object itemKey = (write.operation == Operation.UPDATE) ? write.commentItem.getId() : write;
+            final PendingWrite replaced = group.put(itemKey, write);
+
+            if (replaced != null) {
+                removePendingCommentItem(replaced.commentItem);
+            }
+        }
+
+        for (Map<Object, PendingWrite> group : groups.values()) {
+            final List<PendingWrite> writes = new ArrayList<>(group.values());
+            final PendingWrite head = writes.get(0);
+            final CommentingContext commentingContext = new CommentingContext(null, head.pluginConfig, null);
+            final List<CommentItem> commentItems = new ArrayList<>(writes.size());
+
+            for (PendingWrite write : writes) {
+                final CommentItem commentItem = (CommentItem) write.commentItem.clone();
+                commentItem.setPending(false);
+                commentItems.add(commentItem);
+            }
+
+            try {
+                final List<CommentOperationResult> results = head.manager.callWithSession(head.session, () ->
+                        (head.operation == Operation.CREATE)
+                                ? head.manager.createCommentItems(commentingContext, commentItems)
+                                : head.manager.updateCommentItems(commentingContext, commentItems));
+
+                for (CommentOperationResult result : results) {
+                    if (!result.isSucceeded()) {
+                        log.error("Failed to persist queued comment data: {}", result.getCommentItem(),
+                                result.getException());
+                        addFailedCommentOperation(head.session.getUserID(), result);
+                    }
+                }
+            } catch (Exception e) {
+                log.error("Failed to persist {} queued comment data items.", commentItems.size(), e);
+                final CommentingException failure = (e instanceof CommentingException) ? (CommentingException) e
+                        : new CommentingException("Failed to persist queued comment data.", e);
+
+                for (CommentItem commentItem : commentItems) {
+                    addFailedCommentOperation(head.session.getUserID(), CommentOperationResult.failed(commentItem,
+                            failure));
+                }
+            } finally {
+                for (PendingWrite write : writes) {
+                    removePendingCommentItem(write.commentItem);
+                }
+            }
+        }
+    }
+
+    private void addFailedCommentOperation(final String userId, final CommentOperationResult result) {
+        final List<CommentOperationResult> results = failedCommentOperations.computeIfAbsent(userId,
+                key -> new CopyOnWriteArrayList<>());
+        results.add(result);
+
+        while (results.size() > MAX_FAILED_RESULTS_PER_USER) {
+            results.remove(0);
+        }
+    }
+
+    private void removePendingCommentItem(final CommentItem pendingItem) {
+        final List<CommentItem> pendingItems = pendingCommentItems.get(pendingItem.getSubjectId());
+
+        if (pendingItems != null) {
+            pendingItems.removeIf(item -> item == pendingItem);
+
+            if (pendingItems.isEmpty()) {
+                pendingCommentItems.remove(pendingItem.getSubjectId(), pendingItems);
+            }
+        }
+    }
+
+    private void logoutIdleWorkerSessions() {
+        final long now = System.currentTimeMillis();
+
+        synchronized (workerSessions) {
+            if (!queue.isEmpty()) {
+                return;
+            }
+
+            for (Iterator<WorkerSession> it = workerSessions.values().iterator(); it.hasNext();) {
+                final WorkerSession workerSession = it.next();
+
+                if (now - workerSession.lastUsed > IDLE_SESSION_TIMEOUT_MILLIS) {
+                    it.remove();
+                    workerSession.session.logout();
+                }
+            }
+        }
+    }
+
+    private static class WorkerSession {
+
+        private final Session session;
+        private volatile long lastUsed;
+
+        private WorkerSession(final Session session) {
+            this.session = session;
+        }
+    }
+
+    private static class PendingWrite {
+
+        private final DefaultJcrCommentPersistenceManager manager;
+        private final IPluginConfig pluginConfig;
+        private final Session session;
+        private final Operation operation;
+        private final CommentItem commentItem;
+
+        private PendingWrite(final DefaultJcrCommentPersistenceManager manager, final IPluginConfig pluginConfig,
+                final Session session, final Operation operation, final CommentItem commentItem) {
+            this.manager = manager;
+            this.pluginConfig = pluginConfig;
+            this.session = session;
+            this.operation = operation;
+            this.commentItem = commentItem;
+        }
+    }
+}
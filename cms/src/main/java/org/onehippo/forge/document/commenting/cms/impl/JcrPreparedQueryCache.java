@@ -0,0 +1,88 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.query.InvalidQueryException;
+import javax.jcr.query.Query;
+
+/**
+ * Cache of the query statements with bind variables configured in the plugin configurations, used by
+ * {@link DefaultJcrCommentPersistenceManager} to verify a statement only once and to create a new query from it
+ * for every read.
+ * <P>
+ * A JCR query belongs to the session that created it and holds the bind values, the offset and the limit set on it,
+ * so a query is never shared between the reads, even in the same session. Only the statements whose bind variables
+ * were verified on the first parsing are cached, keyed by the language and the statement text.
+ * </P>
+ */
+class JcrPreparedQueryCache {
+
+    /**
+     * Max number of the cached statements.
+     */
+    private static final int MAX_STATEMENTS = 64;
+
+    private static final JcrPreparedQueryCache instance = new JcrPreparedQueryCache();
+
+    private final Map<String, Boolean> verifiedStatements = Collections.synchronizedMap(
+            new LinkedHashMap<String, Boolean>(MAX_STATEMENTS, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, Boolean> eldest) {
+                    return size() > MAX_STATEMENTS;
+                }
+            });
+
+    static JcrPreparedQueryCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Creates a new query from {@code statement} in {@code language} for {@code session}, to be bound and executed
+     * only by the caller. The first time a statement is seen, the query is verified to declare the
+     * {@code bindVariableName} bind variable.
+     * @param session the session to create the query with
+     * @param statement query statement, with bind variables
+     * @param language query language
+     * @param bindVariableName the name of the bind variable required in the statement
+     * @return a new query
+     * @throws RepositoryException if the statement cannot be parsed or does not declare the bind variable
+     */
+    Query createQuery(final Session session, final String statement, final String language,
+            final String bindVariableName) throws RepositoryException {
+        final Query query = session.getWorkspace().getQueryManager().createQuery(statement, language);
+        final String key = language + ":" + statement;
+
+        if (!verifiedStatements.containsKey(key)) {
+            if (!Arrays.asList(query.getBindVariableNames()).contains(bindVariableName)) {
+                throw new InvalidQueryException("The query statement doesn't declare the $" + bindVariableName
+                        + " bind variable: " + statement);
+            }
+
+            verifiedStatements.put(key, Boolean.TRUE);
+        }
+
+        return query;
+    }
+}
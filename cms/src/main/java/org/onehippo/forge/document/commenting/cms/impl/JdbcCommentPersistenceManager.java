@@ -0,0 +1,1070 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.impl;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+
+import org.apache.commons.lang3.StringUtils;
+import org.onehippo.forge.document.commenting.cms.api.CommentItem;
+import org.onehippo.forge.document.commenting.cms.api.CommentItemCursor;
+import org.onehippo.forge.document.commenting.cms.api.CommentItemPage;
+import org.onehippo.forge.document.commenting.cms.api.CommentItemQuery;
+import org.onehippo.forge.document.commenting.cms.api.CommentOperationResult;
+import org.onehippo.forge.document.commenting.cms.api.CommentPersistenceManager;
+import org.onehippo.forge.document.commenting.cms.api.CommentingContext;
+import org.onehippo.forge.document.commenting.cms.api.CommentingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link CommentPersistenceManager} implementation which stores data into a relational database through JDBC.
+ * <P>
+ * Comment data items are stored in {@code doccomment} table, indexed by {@code (subject_id, created desc)},
+ * and their extra attributes are stored in {@code doccomment_attr} table, one row per value
+ * with the type of the value, in the same types as supported by {@link DefaultJcrCommentPersistenceManager}.
+ * The tables are created on the first access if not existing, unless disabled
+ * by {@code jdbc.comment.persistence.schema.create} parameter, with the column types of the
+ * {@link JdbcCommentSchemaDialect} of the database.
+ * </P>
+ * <P>
+ * The connections are taken from the (pooled) {@link DataSource} looked up from JNDI by the name configured by
+ * {@code jdbc.comment.persistence.datasource} parameter, {@code java:comp/env/jdbc/doccommentingDS} by default.
+ * </P>
+ */
+public class JdbcCommentPersistenceManager extends AbstractCommentPersistenceManager {
+
+    private static final long serialVersionUID = 1L;
+
+    private static Logger log = LoggerFactory.getLogger(JdbcCommentPersistenceManager.class);
+
+    public static final String DEFAULT_DATASOURCE_NAME = "java:comp/env/jdbc/doccommentingDS";
+
+    /**
+     * Max number of subject IDs or comment IDs in a single statement with an IN predicate.
+     */
+    private static final int IN_PREDICATE_CHUNK_SIZE = 50;
+
+    /**
+     * Schema statement templates, with the text, the timestamp and the 64-bit integer types
+     * of the {@link JdbcCommentSchemaDialect} as the arguments.
+     */
+    private static final String[] SCHEMA_STATEMENTS = {
+            "CREATE TABLE doccomment (id VARCHAR(36) NOT NULL, subject_id VARCHAR(255) NOT NULL,"
+                    + " author VARCHAR(255), created {1} NOT NULL, last_modified {1}, content {0},"
+                    + " PRIMARY KEY (id))",
+            "CREATE INDEX doccomment_subject_created ON doccomment (subject_id, created DESC)",
+            "CREATE INDEX doccomment_author_created ON doccomment (author, created DESC)",
+            "CREATE TABLE doccomment_attr (comment_id VARCHAR(36) NOT NULL, name VARCHAR(255) NOT NULL,"
+                    + " idx INTEGER NOT NULL, attr_type CHAR(1) NOT NULL, string_value VARCHAR(4000),"
+                    + " long_value {2}, double_value DOUBLE PRECISION, date_value {1},"
+                    + " PRIMARY KEY (comment_id, name, idx))" };
+
+    /**
+     * Indexes added after the first schema version, created on the existing tables if missing.
+     */
+    private static final String[][] ADDED_INDEX_STATEMENTS = {
+            { "doccomment_author_created",
+                    "CREATE INDEX doccomment_author_created ON doccomment (author, created DESC)" } };
+
+    private static final String COLUMNS = "id, subject_id, author, created, last_modified, content";
+
+    private static final String SELECT_BY_ID = "SELECT " + COLUMNS + " FROM doccomment WHERE id = ?";
+
+    private static final String SELECT_LATEST =
+            "SELECT " + COLUMNS + " FROM doccomment WHERE subject_id = ? ORDER BY created DESC, id DESC";
+
+    private static final String SELECT_LATEST_AFTER_CURSOR = "SELECT " + COLUMNS
+            + " FROM doccomment WHERE subject_id = ? AND (created < ? OR (created = ? AND id < ?))"
+            + " ORDER BY created DESC, id DESC";
+
+    private static final String SELECT_LATEST_BY_PREDICATE =
+            "SELECT " + COLUMNS + " FROM doccomment c WHERE {0} ORDER BY created DESC, id DESC";
+
+    private static final String CURSOR_PREDICATE = " AND (created < ? OR (created = ? AND id < ?))";
+
+    private static final String AUTHOR_PREDICATE = "author = ?";
+
+    private static final String STRING_ATTRIBUTE_PREDICATE = "EXISTS (SELECT 1 FROM doccomment_attr a"
+            + " WHERE a.comment_id = c.id AND a.name = ? AND a.attr_type = 'S' AND a.string_value = ?)";
+
+    private static final String COUNT_BY_SUBJECT = "SELECT COUNT(*) FROM doccomment WHERE subject_id = ?";
+
+    private static final String COUNT_BY_SUBJECTS =
+            "SELECT subject_id, COUNT(*) FROM doccomment WHERE subject_id IN ({0}) GROUP BY subject_id";
+
+    private static final String SELECT_ATTRIBUTES = "SELECT comment_id, name, idx, attr_type, string_value,"
+            + " long_value, double_value, date_value FROM doccomment_attr WHERE comment_id IN ({0})"
+            + " ORDER BY comment_id, name, idx";
+
+    private static final String SELECT_BY_QUERY = "SELECT " + COLUMNS + " FROM doccomment c";
+
+    private static final String ATTRIBUTE_SUBQUERY =
+            "SELECT {0} FROM doccomment_attr a WHERE a.comment_id = c.id AND a.name = ?";
+
+    private static final String[] ATTRIBUTE_VALUE_COLUMNS = { "a.string_value", "a.long_value", "a.double_value",
+            "a.date_value" };
+
+    private static final String INSERT =
+            "INSERT INTO doccomment (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String UPDATE =
+            "UPDATE doccomment SET subject_id = ?, author = ?, last_modified = ?, content = ? WHERE id = ?";
+
+    private static final String DELETE = "DELETE FROM doccomment WHERE id = ?";
+
+    private static final String INSERT_ATTRIBUTE = "INSERT INTO doccomment_attr (comment_id, name, idx, attr_type,"
+            + " string_value, long_value, double_value, date_value) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String DELETE_ATTRIBUTE = "DELETE FROM doccomment_attr WHERE comment_id = ? AND name = ?";
+
+    private static final String DELETE_ATTRIBUTES = "DELETE FROM doccomment_attr WHERE comment_id = ?";
+
+    private static final char TYPE_STRING = 'S';
+    private static final char TYPE_BOOLEAN = 'B';
+    private static final char TYPE_LONG = 'L';
+    private static final char TYPE_DOUBLE = 'D';
+    private static final char TYPE_DATE = 'T';
+
+    /**
+     * Data sources by JNDI name, of which the schema was checked already.
+     */
+    private static final Map<String, DataSource> DATA_SOURCES = new ConcurrentHashMap<>();
+
+    /**
+     * Data source given explicitly, e.g, in unit tests. Not kept on serialization.
+     */
+    private transient DataSource dataSource;
+
+    private transient boolean dataSourceInitialized;
+
+    public JdbcCommentPersistenceManager() {
+        super("jdbc.comment.persistence.date.format");
+    }
+
+    /**
+     * Creates a manager using {@code dataSource} instead of the one looked up from JNDI.
+     * The schema is created on the first access if not existing.
+     * @param dataSource data source
+     */
+    public JdbcCommentPersistenceManager(final DataSource dataSource) {
+        super("jdbc.comment.persistence.date.format");
+        this.dataSource = dataSource;
+    }
+
+    public CommentItem getCommentItemById(CommentingContext commentingContext, String commentId)
+            throws CommentingException {
+        try (Connection conn = getConnection(commentingContext);
+                PreparedStatement ps = conn.prepareStatement(SELECT_BY_ID)) {
+            ps.setString(1, commentId);
+            final List<CommentItem> commentItems = readCommentItems(ps, 0L);
+
+            if (commentItems.isEmpty()) {
+                throw new CommentingException("Comment data not found: " + commentId);
+            }
+
+            loadAttributes(conn, commentItems);
+            return commentItems.get(0);
+        } catch (SQLException e) {
+            throw new CommentingException(e);
+        }
+    }
+
+    public List<CommentItem> getLatestCommentItemsBySubjectId(CommentingContext commentingContext, String subjectId,
+            long offset, long limit) throws CommentingException {
+        if (limit <= 0L) {
+            return new LinkedList<>();
+        }
+
+        try (Connection conn = getConnection(commentingContext);
+                PreparedStatement ps = conn.prepareStatement(SELECT_LATEST)) {
+            ps.setString(1, subjectId);
+            ps.setMaxRows((int) Math.min(Integer.MAX_VALUE, Math.max(0L, offset) + limit));
+            final List<CommentItem> commentItems = readCommentItems(ps, offset);
+            loadAttributes(conn, commentItems);
+            return commentItems;
+        } catch (SQLException e) {
+            throw new CommentingException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * The page is read by a range predicate on {@code (created, id)}, following the {@code (subject_id, created desc)}
+     * index from the position of the cursor.
+     * </P>
+     */
+    @Override
+    public CommentItemPage getLatestCommentItemPageBySubjectId(CommentingContext commentingContext, String subjectId,
+            String cursor, long limit) throws CommentingException {
+        if (limit <= 0L) {
+            return new CommentItemPage(new LinkedList<>(), null);
+        }
+
+        final CommentItemCursor position = (cursor != null) ? CommentItemCursor.decode(cursor) : null;
+        final List<CommentItem> commentItems;
+
+        try (Connection conn = getConnection(commentingContext);
+                PreparedStatement ps = conn.prepareStatement(
+                        (position != null) ? SELECT_LATEST_AFTER_CURSOR : SELECT_LATEST)) {
+            ps.setString(1, subjectId);
+
+            if (position != null) {
+                final Timestamp created = new Timestamp(position.getCreated());
+                ps.setTimestamp(2, created);
+                ps.setTimestamp(3, created);
+                ps.setString(4, position.getId());
+            }
+
+            ps.setMaxRows((int) Math.min(Integer.MAX_VALUE, limit + 1L));
+            commentItems = readCommentItems(ps, 0L);
+            loadAttributes(conn, commentItems);
+        } catch (SQLException e) {
+            throw new CommentingException(e);
+        }
+
+        String nextCursor = null;
+
+        if (commentItems.size() > limit) {
+            commentItems.remove(commentItems.size() - 1);
+            nextCursor = CommentItemCursor.of(commentItems.get(commentItems.size() - 1)).encode();
+        }
+
+        return new CommentItemPage(commentItems, nextCursor);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * Each filter is translated into an {@code EXISTS} subquery on the attribute rows of the value type,
+     * and each ordering into the subqueries on the first value of the attribute, with the items not having
+     * the attribute first in ascending order.
+     * </P>
+     */
+    @Override
+    public List<CommentItem> queryCommentItems(CommentingContext commentingContext, String subjectId,
+            CommentItemQuery query, long offset, long limit) throws CommentingException {
+        if (limit <= 0L) {
+            return new LinkedList<>();
+        }
+
+        final List<Object> params = new ArrayList<>();
+        final String sql = createQueryStatement(subjectId, query, params);
+
+        try (Connection conn = getConnection(commentingContext); PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.size(); i++) {
+                final Object param = params.get(i);
+
+                if (param instanceof Calendar) {
+                    ps.setTimestamp(i + 1, new Timestamp(((Calendar) param).getTimeInMillis()));
+                } else {
+                    ps.setObject(i + 1, param);
+                }
+            }
+
+            ps.setMaxRows((int) Math.min(Integer.MAX_VALUE, Math.max(0L, offset) + limit));
+            final List<CommentItem> commentItems = readCommentItems(ps, offset);
+            loadAttributes(conn, commentItems);
+            return commentItems;
+        } catch (SQLException e) {
+            throw new CommentingException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * The page is read by a range predicate on {@code (created, id)}, following the {@code (author, created desc)}
+     * index from the position of the cursor.
+     * </P>
+     */
+    @Override
+    public CommentItemPage getLatestCommentItemPageByAuthor(CommentingContext commentingContext, String author,
+            String cursor, long limit) throws CommentingException {
+        return getLatestCommentItemPage(commentingContext, AUTHOR_PREDICATE, new Object[] { author }, cursor, limit);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * The items are found by an {@code EXISTS} subquery on the string attribute rows, in the same ordering
+     * and with the same range predicate as {@link #getLatestCommentItemPageByAuthor}.
+     * </P>
+     */
+    @Override
+    public CommentItemPage getLatestCommentItemPageByAttribute(CommentingContext commentingContext,
+            String attributeName, String value, String cursor, long limit) throws CommentingException {
+        return getLatestCommentItemPage(commentingContext, STRING_ATTRIBUTE_PREDICATE,
+                new Object[] { attributeName, value }, cursor, limit);
+    }
+
+    @Override
+    public long countCommentItemsBySubjectId(CommentingContext commentingContext, String subjectId)
+            throws CommentingException {
+        try (Connection conn = getConnection(commentingContext);
+                PreparedStatement ps = conn.prepareStatement(COUNT_BY_SUBJECT)) {
+            ps.setString(1, subjectId);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0L;
+            }
+        } catch (SQLException e) {
+            throw new CommentingException(e);
+        }
+    }
+
+    @Override
+    public Map<String, Long> countCommentItemsBySubjectIds(CommentingContext commentingContext,
+            Collection<String> subjectIds) throws CommentingException {
+        final Map<String, Long> countsMap = new LinkedHashMap<>();
+
+        for (String subjectId : subjectIds) {
+            countsMap.put(subjectId, 0L);
+        }
+
+        final List<String> ids = new ArrayList<>(countsMap.keySet());
+
+        try (Connection conn = getConnection(commentingContext)) {
+            for (int i = 0; i < ids.size(); i += IN_PREDICATE_CHUNK_SIZE) {
+                final List<String> chunk = ids.subList(i, Math.min(ids.size(), i + IN_PREDICATE_CHUNK_SIZE));
+
+                try (PreparedStatement ps = conn.prepareStatement(
+                        StringUtils.replace(COUNT_BY_SUBJECTS, "{0}", createPlaceholders(chunk.size())))) {
+                    for (int j = 0; j < chunk.size(); j++) {
+                        ps.setString(j + 1, chunk.get(j));
+                    }
+
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            countsMap.put(rs.getString(1), rs.getLong(2));
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new CommentingException(e);
+        }
+
+        return countsMap;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * All the rows are inserted by batched statements in a single transaction.
+     * If the transaction fails, every item is reported as failed.
+     * </P>
+     */
+    @Override
+    public List<CommentOperationResult> createCommentItems(final CommentingContext commentingContext,
+            final List<CommentItem> commentItems) throws CommentingException {
+        final CommentOperationResult[] results = new CommentOperationResult[commentItems.size()];
+        final String[] commentIds = new String[commentItems.size()];
+        final Timestamp now = new Timestamp(System.currentTimeMillis());
+
+        try (Connection conn = getConnection(commentingContext)) {
+            final boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement ps = conn.prepareStatement(INSERT);
+                    PreparedStatement attrPs = conn.prepareStatement(INSERT_ATTRIBUTE)) {
+                for (int i = 0; i < results.length; i++) {
+                    final CommentItem commentItem = commentItems.get(i);
+
+                    try {
+                        commentItem.setSubjectId(getSubjectId(commentingContext, commentItem));
+                        commentItem.setAuthor(getUserID());
+                    } catch (CommentingException e) {
+                        results[i] = CommentOperationResult.failed(commentItem, e);
+                        continue;
+                    }
+
+                    commentIds[i] = UUID.randomUUID().toString();
+                    ps.setString(1, commentIds[i]);
+                    ps.setString(2, StringUtils.defaultIfBlank(commentItem.getSubjectId(), ""));
+                    ps.setString(3, StringUtils.defaultIfBlank(commentItem.getAuthor(), ""));
+                    ps.setTimestamp(4, now);
+                    ps.setTimestamp(5, now);
+                    ps.setString(6, StringUtils.defaultIfBlank(commentItem.getContent(), ""));
+                    ps.addBatch();
+                    addAttributesBatch(attrPs, null, commentIds[i], commentItem);
+                }
+
+                ps.executeBatch();
+                attrPs.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                return failUncommitted(commentItems, results, e);
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            return failUncommitted(commentItems, results, e);
+        }
+
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                results[i] = CommentOperationResult.succeeded(commentItems.get(i), commentIds[i]);
+            }
+        }
+
+        return Arrays.asList(results);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * All the rows are updated by batched statements in a single transaction. The extra attributes in each item
+     * replace the existing attributes of the same names. If the transaction fails, every item is reported as failed.
+     * </P>
+     */
+    @Override
+    public List<CommentOperationResult> updateCommentItems(final CommentingContext commentingContext,
+            final List<CommentItem> commentItems) throws CommentingException {
+        final CommentOperationResult[] results = new CommentOperationResult[commentItems.size()];
+        final Timestamp now = new Timestamp(System.currentTimeMillis());
+
+        try (Connection conn = getConnection(commentingContext)) {
+            final boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement ps = conn.prepareStatement(UPDATE);
+                    PreparedStatement attrDeletePs = conn.prepareStatement(DELETE_ATTRIBUTE);
+                    PreparedStatement attrPs = conn.prepareStatement(INSERT_ATTRIBUTE)) {
+                final List<Integer> batchIndexes = new ArrayList<>();
+
+                for (int i = 0; i < results.length; i++) {
+                    final CommentItem commentItem = commentItems.get(i);
+
+                    try {
+                        if (StringUtils.isBlank(commentItem.getId())) {
+                            throw new CommentingException("No identifier in commentItem.");
+                        }
+
+                        commentItem.setSubjectId(getSubjectId(commentingContext, commentItem));
+                        commentItem.setAuthor(getUserID());
+                    } catch (CommentingException e) {
+                        results[i] = CommentOperationResult.failed(commentItem, e);
+                        continue;
+                    }
+
+                    ps.setString(1, StringUtils.defaultIfBlank(commentItem.getSubjectId(), ""));
+                    ps.setString(2, StringUtils.defaultIfBlank(commentItem.getAuthor(), ""));
+                    ps.setTimestamp(3, now);
+                    ps.setString(4, StringUtils.defaultIfBlank(commentItem.getContent(), ""));
+                    ps.setString(5, commentItem.getId());
+                    ps.addBatch();
+                    batchIndexes.add(i);
+                    addAttributesBatch(attrPs, attrDeletePs, commentItem.getId(), commentItem);
+                }
+
+                final int[] updateCounts = ps.executeBatch();
+                attrDeletePs.executeBatch();
+                attrPs.executeBatch();
+                conn.commit();
+
+                for (int j = 0; j < updateCounts.length && j < batchIndexes.size(); j++) {
+                    if (updateCounts[j] == 0) {
+                        final CommentItem commentItem = commentItems.get(batchIndexes.get(j));
+                        results[batchIndexes.get(j)] = CommentOperationResult.failed(commentItem,
+                                new CommentingException("Comment data not found: " + commentItem.getId()));
+                    }
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                return failUncommitted(commentItems, results, e);
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            return failUncommitted(commentItems, results, e);
+        }
+
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                results[i] = CommentOperationResult.succeeded(commentItems.get(i), commentItems.get(i).getId());
+            }
+        }
+
+        return Arrays.asList(results);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * All the rows are deleted by batched statements in a single transaction.
+     * If the transaction fails, every item is reported as failed.
+     * </P>
+     */
+    @Override
+    public List<CommentOperationResult> deleteCommentItems(final CommentingContext commentingContext,
+            final List<CommentItem> commentItems) throws CommentingException {
+        final CommentOperationResult[] results = new CommentOperationResult[commentItems.size()];
+
+        try (Connection conn = getConnection(commentingContext)) {
+            final boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement attrPs = conn.prepareStatement(DELETE_ATTRIBUTES);
+                    PreparedStatement ps = conn.prepareStatement(DELETE)) {
+                for (CommentItem commentItem : commentItems) {
+                    attrPs.setString(1, commentItem.getId());
+                    attrPs.addBatch();
+                    ps.setString(1, commentItem.getId());
+                    ps.addBatch();
+                }
+
+                attrPs.executeBatch();
+                ps.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                return failUncommitted(commentItems, results, e);
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            return failUncommitted(commentItems, results, e);
+        }
+
+        for (int i = 0; i < results.length; i++) {
+            results[i] = CommentOperationResult.succeeded(commentItems.get(i), commentItems.get(i).getId());
+        }
+
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Returns a connection from the data source, creating the schema first if not checked yet.
+     * @param commentingContext commenting context instance
+     * @return a connection from the data source
+     * @throws SQLException if the data source is not available or a database access error occurs
+     */
+    protected Connection getConnection(final CommentingContext commentingContext) throws SQLException {
+        if (dataSource != null) {
+            if (!dataSourceInitialized) {
+                initializeSchema(commentingContext, dataSource);
+                dataSourceInitialized = true;
+            }
+
+            return dataSource.getConnection();
+        }
+
+        final String name = getClusterOptions(commentingContext)
+                .getString("jdbc.comment.persistence.datasource", DEFAULT_DATASOURCE_NAME);
+        DataSource ds = DATA_SOURCES.get(name);
+
+        if (ds == null) {
+            try {
+                ds = (DataSource) new InitialContext().lookup(name);
+            } catch (NamingException e) {
+                throw new SQLException("Data source not found: " + name, e);
+            }
+
+            initializeSchema(commentingContext, ds);
+            DATA_SOURCES.put(name, ds);
+        }
+
+        return ds.getConnection();
+    }
+
+    /**
+     * Returns the dialect of the comment data tables to create, configured by
+     * {@code jdbc.comment.persistence.dialect} parameter, or determined by the database product name otherwise.
+     * @param commentingContext commenting context instance
+     * @param metaData database metadata
+     * @return the dialect of the comment data tables to create
+     * @throws SQLException if a database access error occurs
+     */
+    protected JdbcCommentSchemaDialect getSchemaDialect(final CommentingContext commentingContext,
+            final DatabaseMetaData metaData) throws SQLException {
+        final JdbcCommentSchemaDialect dialect = JdbcCommentSchemaDialect
+                .fromString(getClusterOptions(commentingContext).getString("jdbc.comment.persistence.dialect"));
+        return (dialect != null) ? dialect
+                : JdbcCommentSchemaDialect.fromDatabaseProductName(metaData.getDatabaseProductName());
+    }
+
+    /**
+     * Forgets the data sources looked up from JNDI, e.g, on shutdown, so that they are looked up again
+     * and the references to them are not kept after the application is undeployed.
+     */
+    static void clearDataSources() {
+        DATA_SOURCES.clear();
+    }
+
+    private void initializeSchema(final CommentingContext commentingContext, final DataSource ds)
+            throws SQLException {
+        if (!getClusterOptions(commentingContext).getAsBoolean("jdbc.comment.persistence.schema.create", true)) {
+            return;
+        }
+
+        try (Connection conn = ds.getConnection()) {
+            if (tableExists(conn.getMetaData(), "doccomment")) {
+                createMissingIndexes(conn);
+                return;
+            }
+
+            final JdbcCommentSchemaDialect dialect = getSchemaDialect(commentingContext, conn.getMetaData());
+
+            try (Statement stmt = conn.createStatement()) {
+                for (String sql : SCHEMA_STATEMENTS) {
+                    stmt.executeUpdate(MessageFormat.format(sql, dialect.getTextType(), dialect.getTimestampType(),
+                            dialect.getBigintType()));
+                }
+            }
+
+            if (!conn.getAutoCommit()) {
+                conn.commit();
+            }
+
+            log.info("Created the comment data tables in {} dialect.", dialect);
+        }
+    }
+
+    private static void createMissingIndexes(final Connection conn) throws SQLException {
+        final DatabaseMetaData metaData = conn.getMetaData();
+
+        try (Statement stmt = conn.createStatement()) {
+            for (String[] indexStatement : ADDED_INDEX_STATEMENTS) {
+                if (!indexExists(metaData, indexStatement[0])) {
+                    stmt.executeUpdate(indexStatement[1]);
+                    log.info("Created the comment data index: {}", indexStatement[0]);
+                }
+            }
+        }
+
+        if (!conn.getAutoCommit()) {
+            conn.commit();
+        }
+    }
+
+    private static boolean indexExists(final DatabaseMetaData metaData, final String indexName) throws SQLException {
+        for (String tableName : new String[] { "doccomment", "DOCCOMMENT" }) {
+            try (ResultSet rs = metaData.getIndexInfo(null, null, tableName, false, true)) {
+                while (rs.next()) {
+                    if (indexName.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                        return true;
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean tableExists(final DatabaseMetaData metaData, final String tableName) throws SQLException {
+        for (String name : new String[] { tableName, tableName.toUpperCase() }) {
+            try (ResultSet rs = metaData.getTables(null, null, name, new String[] { "TABLE" })) {
+                if (rs.next()) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    static String createQueryStatement(final String subjectId, final CommentItemQuery query,
+            final List<Object> params) {
+        final List<String> predicates = new ArrayList<>();
+
+        if (subjectId != null) {
+            predicates.add("c.subject_id = ?");
+            params.add(subjectId);
+        }
+
+        for (CommentItemQuery.Filter filter : query.getFilters()) {
+            final Object value = filter.getValue();
+            final String op = (filter.getOperator() == CommentItemQuery.Operator.NOT_EQUAL) ? "<>"
+                    : filter.getOperator().getSymbol();
+            final String condition;
+            params.add(filter.getAttributeName());
+
+            if (value instanceof Number) {
+                condition = "((a.attr_type = '" + TYPE_LONG + "' AND a.long_value " + op + " ?) OR (a.attr_type = '"
+                        + TYPE_DOUBLE + "' AND a.double_value " + op + " ?))";
+                params.add((value instanceof Long) ? value : ((Number) value).doubleValue());
+                params.add(((Number) value).doubleValue());
+            } else if (value instanceof Boolean) {
+                condition = "a.attr_type = '" + TYPE_BOOLEAN + "' AND a.long_value " + op + " ?";
+                params.add(((Boolean) value) ? 1L : 0L);
+            } else if (value instanceof Calendar) {
+                condition = "a.attr_type = '" + TYPE_DATE + "' AND a.date_value " + op + " ?";
+                params.add(value);
+            } else {
+                condition = "a.attr_type = '" + TYPE_STRING + "' AND a.string_value " + op + " ?";
+                params.add(value);
+            }
+
+            predicates.add("EXISTS (" + MessageFormat.format(ATTRIBUTE_SUBQUERY, "1") + " AND " + condition + ")");
+        }
+
+        final StringBuilder sb = new StringBuilder(SELECT_BY_QUERY);
+
+        if (!predicates.isEmpty()) {
+            sb.append(" WHERE ").append(StringUtils.join(predicates, " AND "));
+        }
+
+        sb.append(" ORDER BY ");
+
+        for (CommentItemQuery.Order order : query.getOrders()) {
+            final String direction = order.isDescending() ? " DESC, " : " ASC, ";
+            sb.append('(').append(MessageFormat.format(ATTRIBUTE_SUBQUERY, "COUNT(*)")).append(" AND a.idx = 0)")
+                    .append(direction);
+            params.add(order.getAttributeName());
+
+            for (String column : ATTRIBUTE_VALUE_COLUMNS) {
+                sb.append('(').append(MessageFormat.format(ATTRIBUTE_SUBQUERY, column)).append(" AND a.idx = 0)")
+                        .append(direction);
+                params.add(order.getAttributeName());
+            }
+        }
+
+        sb.append("c.created DESC, c.id DESC");
+        return sb.toString();
+    }
+
+    private static List<CommentItem> readCommentItems(final PreparedStatement ps, final long offset)
+            throws SQLException {
+        final List<CommentItem> commentItems = new LinkedList<>();
+
+        try (ResultSet rs = ps.executeQuery()) {
+            for (long skipped = 0L; skipped < offset && rs.next(); skipped++) {
+                // skip the rows before the offset
+            }
+
+            while (rs.next()) {
+                final CommentItem commentItem = new CommentItem();
+                commentItem.setId(rs.getString(1));
+                commentItem.setSubjectId(rs.getString(2));
+                commentItem.setAuthor(rs.getString(3));
+                commentItem.setCreated(toCalendar(rs.getTimestamp(4)));
+                commentItem.setLastModified(toCalendar(rs.getTimestamp(5)));
+                commentItem.setContent(StringUtils.defaultString(rs.getString(6)));
+                commentItems.add(commentItem);
+            }
+        }
+
+        return commentItems;
+    }
+
+    private CommentItemPage getLatestCommentItemPage(final CommentingContext commentingContext,
+            final String predicate, final Object[] params, final String cursor, final long limit)
+            throws CommentingException {
+        if (limit <= 0L) {
+            return new CommentItemPage(new LinkedList<>(), null);
+        }
+
+        final CommentItemCursor position = (cursor != null) ? CommentItemCursor.decode(cursor) : null;
+        final String sql = MessageFormat.format(SELECT_LATEST_BY_PREDICATE,
+                (position != null) ? predicate + CURSOR_PREDICATE : predicate);
+        final List<CommentItem> commentItems;
+
+        try (Connection conn = getConnection(commentingContext); PreparedStatement ps = conn.prepareStatement(sql)) {
+            int index = 1;
+
+            for (Object param : params) {
+                ps.setObject(index++, param);
+            }
+
+            if (position != null) {
+                final Timestamp created = new Timestamp(position.getCreated());
+                ps.setTimestamp(index++, created);
+                ps.setTimestamp(index++, created);
+                ps.setString(index, position.getId());
+            }
+
+            ps.setMaxRows((int) Math.min(Integer.MAX_VALUE, limit + 1L));
+            commentItems = readCommentItems(ps, 0L);
+            loadAttributes(conn, commentItems);
+        } catch (SQLException e) {
+            throw new CommentingException(e);
+        }
+
+        String nextCursor = null;
+
+        if (commentItems.size() > limit) {
+            commentItems.remove(commentItems.size() - 1);
+            nextCursor = CommentItemCursor.of(commentItems.get(commentItems.size() - 1)).encode();
+        }
+
+        return new CommentItemPage(commentItems, nextCursor);
+    }
+
+    /**
+     * Loads the extra attributes of all the {@code commentItems} by a query per chunk of the items.
+     */
+    private static void loadAttributes(final Connection conn, final List<CommentItem> commentItems)
+            throws SQLException {
+        final Map<String, CommentItem> commentItemsMap = new LinkedHashMap<>();
+
+        for (CommentItem commentItem : commentItems) {
+            commentItemsMap.put(commentItem.getId(), commentItem);
+        }
+
+        final List<String> ids = new ArrayList<>(commentItemsMap.keySet());
+
+        for (int i = 0; i < ids.size(); i += IN_PREDICATE_CHUNK_SIZE) {
+            final List<String> chunk = ids.subList(i, Math.min(ids.size(), i + IN_PREDICATE_CHUNK_SIZE));
+
+            try (PreparedStatement ps = conn.prepareStatement(
+                    StringUtils.replace(SELECT_ATTRIBUTES, "{0}", createPlaceholders(chunk.size())))) {
+                for (int j = 0; j < chunk.size(); j++) {
+                    ps.setString(j + 1, chunk.get(j));
+                }
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    CommentItem commentItem = null;
+                    String name = null;
+                    char type = TYPE_STRING;
+                    final List<Object> values = new ArrayList<>();
+
+                    while (rs.next()) {
+                        final CommentItem rowCommentItem = commentItemsMap.get(rs.getString(1));
+                        final String rowName = rs.getString(2);
+
+                        if (rowCommentItem != commentItem || !rowName.equals(name)) {
+                            setAttribute(commentItem, name, type, values);
+                            commentItem = rowCommentItem;
+                            name = rowName;
+                            values.clear();
+                        }
+
+                        type = rs.getString(4).charAt(0);
+                        values.add(readValue(rs, type));
+
+                        if (rs.getInt(3) < 0) {
+                            // single-valued attribute
+                            commentItem.setAttribute(name, values.get(0));
+                            commentItem = null;
+                            name = null;
+                            values.clear();
+                        }
+                    }
+
+                    setAttribute(commentItem, name, type, values);
+                }
+            }
+        }
+    }
+
+    private static Object readValue(final ResultSet rs, final char type) throws SQLException {
+        switch (type) {
+            case TYPE_BOOLEAN:
+                return rs.getLong(6) != 0L;
+            case TYPE_LONG:
+                return rs.getLong(6);
+            case TYPE_DOUBLE:
+                return rs.getDouble(7);
+            case TYPE_DATE:
+                return toCalendar(rs.getTimestamp(8));
+            default:
+                return rs.getString(5);
+        }
+    }
+
+    /**
+     * Sets the multi-valued attribute from the {@code values} read from the rows of the attribute.
+     */
+    private static void setAttribute(final CommentItem commentItem, final String name, final char type,
+            final List<Object> values) {
+        if (commentItem == null || name == null || values.isEmpty()) {
+            return;
+        }
+
+        switch (type) {
+            case TYPE_BOOLEAN: {
+                final boolean[] array = new boolean[values.size()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = (Boolean) values.get(i);
+                }
+                commentItem.setAttribute(name, array);
+                break;
+            }
+            case TYPE_LONG: {
+                final long[] array = new long[values.size()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = (Long) values.get(i);
+                }
+                commentItem.setAttribute(name, array);
+                break;
+            }
+            case TYPE_DOUBLE: {
+                final double[] array = new double[values.size()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = (Double) values.get(i);
+                }
+                commentItem.setAttribute(name, array);
+                break;
+            }
+            case TYPE_DATE:
+                commentItem.setAttribute(name, values.toArray(new Calendar[0]));
+                break;
+            default:
+                commentItem.setAttribute(name, values.toArray(new String[0]));
+        }
+    }
+
+    /**
+     * Adds the insert statements of the extra attributes of {@code commentItem} to the batch of {@code attrPs}.
+     * If {@code attrDeletePs} is not null, the delete statements of the existing attributes of the same names
+     * are added to its batch as well.
+     */
+    private static void addAttributesBatch(final PreparedStatement attrPs, final PreparedStatement attrDeletePs,
+            final String commentId, final CommentItem commentItem) throws SQLException {
+        for (String name : commentItem.getAttributeNames()) {
+            final Object value = commentItem.getAttribute(name);
+
+            if (value == null) {
+                continue;
+            }
+
+            if (attrDeletePs != null) {
+                attrDeletePs.setString(1, commentId);
+                attrDeletePs.setString(2, name);
+                attrDeletePs.addBatch();
+            }
+
+            if (!value.getClass().isArray()) {
+                addAttributeValueBatch(attrPs, commentId, name, -1, value);
+            } else if (value instanceof String[]) {
+                final String[] values = (String[]) value;
+                for (int i = 0; i < values.length; i++) {
+                    addAttributeValueBatch(attrPs, commentId, name, i, values[i]);
+                }
+            } else if (value instanceof boolean[]) {
+                final boolean[] values = (boolean[]) value;
+                for (int i = 0; i < values.length; i++) {
+                    addAttributeValueBatch(attrPs, commentId, name, i, values[i]);
+                }
+            } else if (value instanceof long[]) {
+                final long[] values = (long[]) value;
+                for (int i = 0; i < values.length; i++) {
+                    addAttributeValueBatch(attrPs, commentId, name, i, values[i]);
+                }
+            } else if (value instanceof double[]) {
+                final double[] values = (double[]) value;
+                for (int i = 0; i < values.length; i++) {
+                    addAttributeValueBatch(attrPs, commentId, name, i, values[i]);
+                }
+            } else if (value instanceof Calendar[]) {
+                final Calendar[] values = (Calendar[]) value;
+                for (int i = 0; i < values.length; i++) {
+                    addAttributeValueBatch(attrPs, commentId, name, i, values[i]);
+                }
+            }
+        }
+    }
+
+    private static void addAttributeValueBatch(final PreparedStatement attrPs, final String commentId,
+            final String name, final int idx, final Object value) throws SQLException {
+        final char type;
+
+        if (value instanceof String) {
+            type = TYPE_STRING;
+        } else if (value instanceof Boolean) {
+            type = TYPE_BOOLEAN;
+        } else if (value instanceof Long) {
+            type = TYPE_LONG;
+        } else if (value instanceof Double) {
+            type = TYPE_DOUBLE;
+        } else if (value instanceof Calendar) {
+            type = TYPE_DATE;
+        } else {
+            return;
+        }
+
+        attrPs.setString(1, commentId);
+        attrPs.setString(2, name);
+        attrPs.setInt(3, idx);
+        attrPs.setString(4, String.valueOf(type));
+        attrPs.setNull(5, Types.VARCHAR);
+        attrPs.setNull(6, Types.BIGINT);
+        attrPs.setNull(7, Types.DOUBLE);
+        attrPs.setNull(8, Types.TIMESTAMP);
+
+        switch (type) {
+            case TYPE_BOOLEAN:
+                attrPs.setLong(6, ((Boolean) value) ? 1L : 0L);
+                break;
+            case TYPE_LONG:
+                attrPs.setLong(6, (Long) value);
+                break;
+            case TYPE_DOUBLE:
+                attrPs.setDouble(7, (Double) value);
+                break;
+            case TYPE_DATE:
+                attrPs.setTimestamp(8, new Timestamp(((Calendar) value).getTimeInMillis()));
+                break;
+            default:
+                attrPs.setString(5, (String) value);
+        }
+
+        attrPs.addBatch();
+    }
+
+    private static List<CommentOperationResult> failUncommitted(final List<CommentItem> commentItems,
+            final CommentOperationResult[] results, final SQLException e) {
+        log.error("Failed to commit comment data items.", e);
+        final CommentingException ce = new CommentingException(e);
+
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                results[i] = CommentOperationResult.failed(commentItems.get(i), ce);
+            }
+        }
+
+        return Arrays.asList(results);
+    }
+
+
+    private static String createPlaceholders(final int size) {
+        return StringUtils.repeat("?", ", ", size);
+    }
+
+    private static Calendar toCalendar(final Timestamp timestamp) {
+        if (timestamp == null) {
+            return null;
+        }
+
+        final Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(timestamp.getTime());
+        return calendar;
+    }
+}
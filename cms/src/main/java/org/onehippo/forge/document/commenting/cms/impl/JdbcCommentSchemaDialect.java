@@ -0,0 +1,118 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.impl;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * SQL dialect of the comment data tables created by {@link JdbcCommentPersistenceManager},
+ * determining the column types which are not portable across the databases.
+ */
+public enum JdbcCommentSchemaDialect {
+
+    /**
+     * Standard SQL types, e.g, for H2, HSQLDB, Derby and DB2.
+     */
+    DEFAULT("CLOB", "TIMESTAMP", "BIGINT"),
+
+    POSTGRESQL("TEXT", "TIMESTAMP", "BIGINT"),
+
+    /**
+     * MySQL and MariaDB, with {@code DATETIME(3)} to keep the milliseconds without the automatic updates
+     * and the range of {@code TIMESTAMP} columns.
+     */
+    MYSQL("LONGTEXT", "DATETIME(3)", "BIGINT"),
+
+    /**
+     * Microsoft SQL Server, in which {@code TIMESTAMP} is a row version, not a date.
+     */
+    SQLSERVER("NVARCHAR(MAX)", "DATETIME2", "BIGINT"),
+
+    ORACLE("CLOB", "TIMESTAMP", "NUMBER(19)");
+
+    private final String textType;
+    private final String timestampType;
+    private final String bigintType;
+
+    JdbcCommentSchemaDialect(final String textType, final String timestampType, final String bigintType) {
+        this.textType = textType;
+        this.timestampType = timestampType;
+        this.bigintType = bigintType;
+    }
+
+    /**
+     * Returns the type of the unbounded text columns, e.g, the comment content.
+     * @return the type of the unbounded text columns
+     */
+    public String getTextType() {
+        return textType;
+    }
+
+    /**
+     * Returns the type of the date columns, with milliseconds.
+     * @return the type of the date columns
+     */
+    public String getTimestampType() {
+        return timestampType;
+    }
+
+    /**
+     * Returns the type of the 64-bit integer columns.
+     * @return the type of the 64-bit integer columns
+     */
+    public String getBigintType() {
+        return bigintType;
+    }
+
+    /**
+     * Returns the dialect by the (case insensitive) name, or null if {@code name} is blank or unknown.
+     * @param name dialect name
+     * @return the dialect by the name, or null if {@code name} is blank or unknown
+     */
+    public static JdbcCommentSchemaDialect fromString(final String name) {
+        if (StringUtils.isNotBlank(name)) {
+            for (JdbcCommentSchemaDialect dialect : values()) {
+                if (dialect.name().equalsIgnoreCase(name.trim())) {
+                    return dialect;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the dialect of the database by the product name reported by the JDBC driver,
+     * or {@link #DEFAULT} if not known.
+     * @param productName database product name
+     * @return the dialect of the database, or {@link #DEFAULT} if not known
+     */
+    public static JdbcCommentSchemaDialect fromDatabaseProductName(final String productName) {
+        final String name = StringUtils.lowerCase(StringUtils.trimToEmpty(productName));
+
+        if (name.contains("postgres")) {
+            return POSTGRESQL;
+        } else if (name.contains("mysql") || name.contains("mariadb")) {
+            return MYSQL;
+        } else if (name.contains("sql server")) {
+            return SQLSERVER;
+        } else if (name.contains("oracle")) {
+            return ORACLE;
+        }
+
+        return DEFAULT;
+    }
+}
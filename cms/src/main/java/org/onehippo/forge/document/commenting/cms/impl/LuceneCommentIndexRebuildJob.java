@@ -0,0 +1,260 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.hippoecm.frontend.plugin.config.impl.JavaPluginConfig;
+import org.onehippo.forge.document.commenting.cms.api.CommentItem;
+import org.onehippo.forge.document.commenting.cms.api.CommentingContext;
+import org.onehippo.forge.document.commenting.cms.api.CommentingException;
+import org.onehippo.repository.scheduling.RepositoryJob;
+import org.onehippo.repository.scheduling.RepositoryJobExecutionContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.onehippo.forge.document.commenting.cms.impl.DefaultJcrCommentPersistenceManager.DEFAULT_COMMENTS_LOCATION;
+import static org.onehippo.forge.document.commenting.cms.impl.DefaultJcrCommentPersistenceManager.NT_COMMENT;
+import static org.onehippo.forge.document.commenting.cms.impl.DefaultJcrCommentPersistenceManager.NT_COMMENTS_CONTAINER;
+
+/**
+ * Repository job rebuilding the {@link CommentLuceneIndex} from the comment data nodes under {@code /doccommentdata},
+ * or from another comment persistence manager.
+ * <P>
+ * The 26 x 26 containers are indexed in parallel by the worker threads, each with its own system session,
+ * in both {@link JcrCommentStorageLayout}s. The documents not indexed again by the run, i.e, of the comments
+ * removed from the repository, are deleted at the end only if all the containers were indexed successfully.
+ * Changes made through {@link LuceneIndexedCommentPersistenceManager} during the run are kept in the index.
+ * If {@code persistence.manager.delegate} is set to another implementation than
+ * {@link DefaultJcrCommentPersistenceManager}, the index is rebuilt from it by
+ * {@link LuceneIndexedCommentPersistenceManager#rebuildIndex(CommentingContext, int)} instead, with all the job
+ * attributes given as its {@code cluster.options}, e.g, {@code jdbc.comment.persistence.datasource}.
+ * A completed run marks the index rebuilt, after which it can serve the reads across the subjects.
+ * The index is local to the JVM, so the job rebuilds the index of the cluster node running it only.
+ * </P>
+ * <P>
+ * The job attributes are:
+ * </P>
+ * <UL>
+ *   <LI>{@code index.directory}: the index directory, which must be the same as {@code comment.index.directory}
+ *       plugin parameter, {@code doccommenting-index} by default, resolved by
+ *       {@link CommentPersistenceManagerUtils#resolveDataDirectory(String)} if relative.</LI>
+ *   <LI>{@code persistence.manager.delegate}: the FQCN of the comment persistence manager to rebuild the index from,
+ *       the same as {@code comment.persistence.manager.delegate} plugin parameter,
+ *       {@link DefaultJcrCommentPersistenceManager} by default.</LI>
+ *   <LI>{@code threads}: the number of the worker threads, 4 by default.</LI>
+ *   <LI>{@code batch.size}: the max number of comments indexed at once, 500 by default.</LI>
+ * </UL>
+ */
+public class LuceneCommentIndexRebuildJob implements RepositoryJob {
+
+    private static Logger log = LoggerFactory.getLogger(LuceneCommentIndexRebuildJob.class);
+
+    private static final int DEFAULT_THREADS = 4;
+
+    private static final int DEFAULT_BATCH_SIZE = 500;
+
+    @Override
+    public void execute(final RepositoryJobExecutionContext context) throws RepositoryException {
+        final String directory = StringUtils.defaultIfBlank(context.getAttribute("index.directory"),
+                LuceneIndexedCommentPersistenceManager.DEFAULT_INDEX_DIRECTORY);
+        final int threads = Math.max(1, NumberUtils.toInt(context.getAttribute("threads"), DEFAULT_THREADS));
+        final int batchSize = Math.max(1, NumberUtils.toInt(context.getAttribute("batch.size"), DEFAULT_BATCH_SIZE));
+
+        final CommentLuceneIndex index;
+
+        try {
+            index = CommentLuceneIndex.getInstance(CommentPersistenceManagerUtils.resolveDataDirectory(directory),
+                    CommentLuceneIndex.DEFAULT_REFRESH_INTERVAL);
+        } catch (IOException | CommentingException e) {
+            throw new RepositoryException("Cannot open the comment index in " + directory, e);
+        }
+
+        final String delegateClassName = context.getAttribute("persistence.manager.delegate");
+
+        if (StringUtils.isNotBlank(delegateClassName)
+                && !DefaultJcrCommentPersistenceManager.class.getName().equals(delegateClassName.trim())) {
+            rebuildFromDelegate(context, index, delegateClassName, batchSize);
+            return;
+        }
+
+        final long startTime = System.currentTimeMillis();
+        final Queue<String> bucketPaths = new ConcurrentLinkedQueue<>();
+        final List<Session> sessions = new ArrayList<>(threads);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "doc-commenting-index-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            final Session session = context.createSystemSession();
+            sessions.add(session);
+            final String rootPath = "/" + DEFAULT_COMMENTS_LOCATION;
+
+            if (!session.nodeExists(rootPath)) {
+                return;
+            }
+
+            final Node rootNode = session.getNode(rootPath);
+
+            for (String name1 : JcrCommentDataCompactionJob.getChildContainerNames(rootNode)) {
+                for (String name2 : JcrCommentDataCompactionJob.getChildContainerNames(rootNode.getNode(name1))) {
+                    bucketPaths.add(rootPath + "/" + name1 + "/" + name2);
+                }
+            }
+
+            log.info("Rebuilding the comment index in {} from {} containers with {} threads.", directory,
+                    bucketPaths.size(), threads);
+
+            final AtomicLong indexedCount = new AtomicLong();
+            final List<Future<?>> futures = new ArrayList<>(threads);
+
+            for (int i = 0; i < threads; i++) {
+                final Session workerSession = (i == 0) ? session : context.createSystemSession();
+
+                if (i > 0) {
+                    sessions.add(workerSession);
+                }
+
+                futures.add(executor.submit(() -> {
+                    final Worker worker = new Worker(index, batchSize);
+
+                    for (String bucketPath = bucketPaths.poll(); bucketPath != null; bucketPath = bucketPaths.poll()) {
+                        worker.indexContainer(workerSession.getNode(bucketPath));
+                        worker.flush();
+                        workerSession.refresh(false);
+                    }
+
+                    indexedCount.addAndGet(worker.indexedCount);
+                    return null;
+                }));
+            }
+
+            boolean completed = true;
+
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    log.error("Failed to rebuild the comment index.", e.getCause());
+                    completed = false;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    completed = false;
+                }
+            }
+
+            if (!completed) {
+                log.warn("Stopped rebuilding the comment index after indexing {} comments, "
+                        + "keeping the documents not indexed again.", indexedCount.get());
+                return;
+            }
+
+            index.deleteIndexedBefore(startTime);
+            index.markRebuilt(startTime);
+            log.info("Completed rebuilding the comment index: {} comments indexed in {} ms.", indexedCount.get(),
+                    System.currentTimeMillis() - startTime);
+        } catch (IOException e) {
+            throw new RepositoryException("Failed to complete rebuilding the comment index in " + directory, e);
+        } finally {
+            executor.shutdownNow();
+
+            for (Session session : sessions) {
+                session.logout();
+            }
+        }
+    }
+
+    private void rebuildFromDelegate(final RepositoryJobExecutionContext context, final CommentLuceneIndex index,
+            final String delegateClassName, final int batchSize) throws RepositoryException {
+        final JavaPluginConfig clusterOptions = new JavaPluginConfig();
+
+        for (String name : context.getAttributeNames()) {
+            clusterOptions.put(name, context.getAttribute(name));
+        }
+
+        final JavaPluginConfig pluginConfig = new JavaPluginConfig();
+        pluginConfig.put("cluster.options", clusterOptions);
+        final LuceneIndexedCommentPersistenceManager manager = new LuceneIndexedCommentPersistenceManager(
+                CommentPersistenceManagerUtils.createCommentPersistenceManager(delegateClassName), index);
+        final long startTime = System.currentTimeMillis();
+        log.info("Rebuilding the comment index from {}.", delegateClassName);
+
+        try {
+            final long indexedCount = manager.rebuildIndex(new CommentingContext(null, pluginConfig, null), batchSize);
+            log.info("Completed rebuilding the comment index: {} comments indexed in {} ms.", indexedCount,
+                    System.currentTimeMillis() - startTime);
+        } catch (CommentingException e) {
+            throw new RepositoryException("Failed to rebuild the comment index from " + delegateClassName, e);
+        }
+    }
+
+    private static class Worker {
+
+        private final CommentLuceneIndex index;
+        private final int batchSize;
+        private final List<CommentItem> batch = new ArrayList<>();
+        private long indexedCount;
+
+        private Worker(final CommentLuceneIndex index, final int batchSize) {
+            this.index = index;
+            this.batchSize = batchSize;
+        }
+
+        private void indexContainer(final Node containerNode) throws RepositoryException, IOException {
+            for (NodeIterator nodeIt = containerNode.getNodes(); nodeIt.hasNext(); ) {
+                final Node childNode = nodeIt.nextNode();
+
+                if (childNode.isNodeType(NT_COMMENT)) {
+                    batch.add(DefaultJcrCommentPersistenceManager.readCommentItem(childNode));
+
+                    if (batch.size() >= batchSize) {
+                        flush();
+                    }
+                } else if (childNode.isNodeType(NT_COMMENTS_CONTAINER)) {
+                    indexContainer(childNode);
+                }
+            }
+        }
+
+        private void flush() throws IOException {
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            index.index(batch);
+            indexedCount += batch.size();
+            batch.clear();
+        }
+    }
+}
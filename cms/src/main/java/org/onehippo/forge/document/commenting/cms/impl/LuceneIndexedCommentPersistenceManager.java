@@ -0,0 +1,439 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.hippoecm.frontend.plugin.config.IPluginConfig;
+import org.onehippo.forge.document.commenting.cms.api.CommentItem;
+import org.onehippo.forge.document.commenting.cms.api.CommentItemCursor;
+import org.onehippo.forge.document.commenting.cms.api.CommentItemPage;
+import org.onehippo.forge.document.commenting.cms.api.CommentItemQuery;
+import org.onehippo.forge.document.commenting.cms.api.CommentOperationResult;
+import org.onehippo.forge.document.commenting.cms.api.CommentPersistenceManager;
+import org.onehippo.forge.document.commenting.cms.api.CommentSearchCursor;
+import org.onehippo.forge.document.commenting.cms.api.CommentSearchHit;
+import org.onehippo.forge.document.commenting.cms.api.CommentSearchPage;
+import org.onehippo.forge.document.commenting.cms.api.CommentingContext;
+import org.onehippo.forge.document.commenting.cms.api.CommentingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link CommentPersistenceManager} decorator which maintains a local {@link CommentLuceneIndex}
+ * of the comment data items written through it, to look up comments across all the subjects by author and
+ * by attributes, e.g, "my open comments", and to search comments by full text with any delegate.
+ * <P>
+ * After each successful create or update, the item is read again from the delegate and indexed;
+ * after each successful delete, it is removed from the index. A failure to update the index is logged only,
+ * not failing the write. The reads by subject are still served by the delegate.
+ * </P>
+ * <P>
+ * The index is local to the JVM, so it misses the writes made through the other cluster nodes and the comments
+ * created before the index was enabled until rebuilt. So, the reads across the subjects are served by the index
+ * only if it is configured authoritative by {@code comment.index.authoritative} plugin parameter, e.g, in
+ * a single node setup or with a node-local delegate, and if it was rebuilt completely at least once.
+ * Otherwise, they are served by the delegate.
+ * </P>
+ * <P>
+ * The index directory and the searcher refresh interval in milliseconds can be configured by
+ * {@code comment.index.directory} and {@code comment.index.refresh.interval} plugin parameters. A relative
+ * index directory is resolved by {@link CommentPersistenceManagerUtils#resolveDataDirectory(String)}.
+ * The index can be rebuilt from the delegate by {@link #rebuildIndex(CommentingContext, int)}, or by
+ * {@link LuceneCommentIndexRebuildJob}.
+ * </P>
+ */
+public class LuceneIndexedCommentPersistenceManager extends DelegatingCommentPersistenceManager {
+
+    private static final long serialVersionUID = 1L;
+
+    private static Logger log = LoggerFactory.getLogger(LuceneIndexedCommentPersistenceManager.class);
+
+    public static final String DEFAULT_INDEX_DIRECTORY = "doccommenting-index";
+
+    /**
+     * Index given explicitly, e.g, in unit tests. Not kept on serialization.
+     */
+    private transient CommentLuceneIndex index;
+
+    public LuceneIndexedCommentPersistenceManager() {
+        super();
+    }
+
+    public LuceneIndexedCommentPersistenceManager(final CommentPersistenceManager delegate) {
+        super(delegate);
+    }
+
+    /**
+     * Creates a manager using {@code index} instead of the one in the configured directory.
+     * @param delegate delegate comment persistence manager
+     * @param index comment index
+     */
+    public LuceneIndexedCommentPersistenceManager(final CommentPersistenceManager delegate,
+            final CommentLuceneIndex index) {
+        super(delegate);
+        this.index = index;
+    }
+
+    /**
+     * Retrieves the page of the latest comment data of all the subjects by {@code author} and {@code attributes}
+     * from the index, following the position of {@code cursor}.
+     * @param commentingContext commenting context instance
+     * @param author author of the comment data items, or null for any author
+     * @param attributes attribute values to match exactly, each of which is {@link String}, {@link Boolean},
+     *        {@link Long}, {@link Double} or {@link java.util.Calendar}, or null for any attributes
+     * @param cursor opaque cursor returned by {@link CommentItemPage#getNextCursor()}, or null for the first page
+     * @param limit max item count limit of the page
+     * @return the page of comment data items
+     * @throws CommentingException if any exception occurs while reading the index
+     */
+    public CommentItemPage getLatestCommentItemPage(CommentingContext commentingContext, String author,
+            Map<String, ?> attributes, String cursor, long limit) throws CommentingException {
+        if (limit <= 0L) {
+            return new CommentItemPage(new ArrayList<>(), null);
+        }
+
+        final List<CommentItem> commentItems;
+
+        try {
+            commentItems = getIndex(commentingContext).getLatest(
+                    CommentLuceneIndex.createQuery(null, author, attributes),
+                    (cursor != null) ? CommentItemCursor.decode(cursor) : null, (int) Math.min(limit + 1L, 10000L));
+        } catch (IOException e) {
+            throw new CommentingException(e);
+        }
+
+        String nextCursor = null;
+
+        if (commentItems.size() > limit) {
+            commentItems.remove(commentItems.size() - 1);
+            nextCursor = CommentItemCursor.of(commentItems.get(commentItems.size() - 1)).encode();
+        }
+
+        return new CommentItemPage(commentItems, nextCursor);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * Reads the page from the index instead of the delegate if the index is authoritative.
+     * </P>
+     */
+    @Override
+    public CommentItemPage getLatestCommentItemPageByAuthor(CommentingContext commentingContext, String author,
+            String cursor, long limit) throws CommentingException {
+        if (!isIndexAuthoritative(commentingContext)) {
+            return super.getLatestCommentItemPageByAuthor(commentingContext, author, cursor, limit);
+        }
+
+        return getLatestCommentItemPage(commentingContext, author, null, cursor, limit);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * Reads the page from the index instead of the delegate if the index is authoritative.
+     * </P>
+     */
+    @Override
+    public CommentItemPage getLatestCommentItemPageByAttribute(CommentingContext commentingContext,
+            String attributeName, String value, String cursor, long limit) throws CommentingException {
+        if (!isIndexAuthoritative(commentingContext)) {
+            return super.getLatestCommentItemPageByAttribute(commentingContext, attributeName, value, cursor, limit);
+        }
+
+        return getLatestCommentItemPage(commentingContext, null, Collections.singletonMap(attributeName, value),
+                cursor, limit);
+    }
+
+    /**
+     * Counts the comment data items of all the subjects by {@code author} and {@code attributes} in the index.
+     * @param commentingContext commenting context instance
+     * @param author author of the comment data items, or null for any author
+     * @param attributes attribute values to match exactly, or null for any attributes
+     * @return the number of the matching comment data items
+     * @throws CommentingException if any exception occurs while reading the index
+     */
+    public long countCommentItems(CommentingContext commentingContext, String author, Map<String, ?> attributes)
+            throws CommentingException {
+        try {
+            return getIndex(commentingContext).count(CommentLuceneIndex.createQuery(null, author, attributes));
+        } catch (IOException e) {
+            throw new CommentingException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <P>
+     * Searches the index instead of the delegate if the index is authoritative, with the excerpts taken
+     * from the content or the string attributes containing any word of {@code text}.
+     * </P>
+     */
+    @Override
+    public CommentSearchPage searchCommentItems(CommentingContext commentingContext, String text, String cursor,
+            long limit) throws CommentingException {
+        if (!isIndexAuthoritative(commentingContext)) {
+            return super.searchCommentItems(commentingContext, text, cursor, limit);
+        }
+
+        final String[] terms = StringUtils.split(StringUtils.lowerCase(StringUtils.remove(text, '"')));
+
+        if (limit <= 0L || terms == null || terms.length == 0) {
+            return new CommentSearchPage(null, null);
+        }
+
+        final List<CommentSearchHit> indexHits;
+
+        try {
+            indexHits = getIndex(commentingContext).search(text,
+                    (cursor != null) ? CommentSearchCursor.decode(cursor) : null, (int) Math.min(limit + 1L, 10000L));
+        } catch (IOException e) {
+            throw new CommentingException(e);
+        }
+
+        final List<CommentSearchHit> hits = new ArrayList<>(indexHits.size());
+
+        for (CommentSearchHit indexHit : indexHits) {
+            hits.add(new CommentSearchHit(indexHit.getCommentItem(), indexHit.getScore(),
+                    CommentPersistenceManagerUtils.createExcerpt(indexHit.getCommentItem(), terms)));
+        }
+
+        String nextCursor = null;
+
+        if (hits.size() > limit) {
+            hits.remove(hits.size() - 1);
+            nextCursor = CommentSearchCursor.of(hits.get(hits.size() - 1)).encode();
+        }
+
+        return new CommentSearchPage(hits, nextCursor);
+    }
+
+    @Override
+    public String createCommentItem(CommentingContext commentingContext, CommentItem commentItem)
+            throws CommentingException {
+        final String commentId = super.createCommentItem(commentingContext, commentItem);
+        index(commentingContext, Collections.singletonList(CommentOperationResult.succeeded(commentItem, commentId)));
+        return commentId;
+    }
+
+    @Override
+    public void updateCommentItem(CommentingContext commentingContext, CommentItem commentItem)
+            throws CommentingException {
+        super.updateCommentItem(commentingContext, commentItem);
+        index(commentingContext,
+                Collections.singletonList(CommentOperationResult.succeeded(commentItem, commentItem.getId())));
+    }
+
+    @Override
+    public void deleteCommentItem(CommentingContext commentingContext, CommentItem commentItem)
+            throws CommentingException {
+        super.deleteCommentItem(commentingContext, commentItem);
+        unindex(commentingContext,
+                Collections.singletonList(CommentOperationResult.succeeded(commentItem, commentItem.getId())));
+    }
+
+    @Override
+    public List<CommentOperationResult> createCommentItems(CommentingContext commentingContext,
+            List<CommentItem> commentItems) throws CommentingException {
+        final List<CommentOperationResult> results = super.createCommentItems(commentingContext, commentItems);
+        index(commentingContext, results);
+        return results;
+    }
+
+    @Override
+    public List<CommentOperationResult> updateCommentItems(CommentingContext commentingContext,
+            List<CommentItem> commentItems) throws CommentingException {
+        final List<CommentOperationResult> results = super.updateCommentItems(commentingContext, commentItems);
+        index(commentingContext, results);
+        return results;
+    }
+
+    @Override
+    public List<CommentOperationResult> deleteCommentItems(CommentingContext commentingContext,
+            List<CommentItem> commentItems) throws CommentingException {
+        final List<CommentOperationResult> results = super.deleteCommentItems(commentingContext, commentItems);
+        unindex(commentingContext, results);
+        return results;
+    }
+
+    /**
+     * Rebuilds the index from the delegate, reading all the comment data items page by page by
+     * {@link CommentPersistenceManager#queryCommentItems(CommentingContext, String, CommentItemQuery, long, long)}
+     * without filters, and marks the index rebuilt.
+     * The documents indexed before the rebuild and not read again are removed unless still found by the delegate,
+     * e.g, when skipped by pages shifted by concurrent deletions.
+     * @param commentingContext commenting context instance
+     * @param batchSize the max number of comment data items read and indexed at once
+     * @return the number of the indexed comment data items
+     * @throws CommentingException if the delegate cannot list all the comment data items or the index fails
+     */
+    public long rebuildIndex(CommentingContext commentingContext, int batchSize) throws CommentingException {
+        final CommentLuceneIndex commentIndex = getIndex(commentingContext);
+        final CommentPersistenceManager delegate = getDelegate(commentingContext);
+        final CommentItemQuery query = new CommentItemQuery();
+        final int pageSize = Math.max(1, batchSize);
+        final long startTime = System.currentTimeMillis();
+        long indexedCount = 0L;
+
+        try {
+            for (long offset = 0L; ; offset += pageSize) {
+                final List<CommentItem> commentItems = delegate.queryCommentItems(commentingContext, null, query,
+                        offset, pageSize);
+
+                if (commentItems == null) {
+                    throw new CommentingException("Cannot list the comment data items to index by "
+                            + delegate.getClass().getName());
+                }
+
+                commentIndex.index(commentItems);
+                indexedCount += commentItems.size();
+
+                if (commentItems.size() < pageSize) {
+                    break;
+                }
+            }
+
+            final List<CommentItem> foundCommentItems = new ArrayList<>();
+            final List<String> removedCommentIds = new ArrayList<>();
+
+            for (String commentId : commentIndex.getIdsIndexedBefore(startTime)) {
+                CommentItem commentItem = null;
+
+                try {
+                    commentItem = delegate.getCommentItemById(commentingContext, commentId);
+                } catch (CommentingException e) {
+                    log.debug("Comment data item not found any more: {}", commentId, e);
+                }
+
+                if (commentItem != null) {
+                    foundCommentItems.add(commentItem);
+                } else {
+                    removedCommentIds.add(commentId);
+                }
+            }
+
+            commentIndex.index(foundCommentItems);
+            commentIndex.delete(removedCommentIds);
+            commentIndex.markRebuilt(startTime);
+            return indexedCount + foundCommentItems.size();
+        } catch (IOException e) {
+            throw new CommentingException("Failed to rebuild the comment index.", e);
+        }
+    }
+
+    /**
+     * Returns true if the reads across the subjects can be served by the index: if it is configured authoritative
+     * by {@code comment.index.authoritative} plugin parameter and it was rebuilt completely at least once.
+     * @param commentingContext commenting context instance
+     * @return true if the reads across the subjects can be served by the index
+     */
+    protected boolean isIndexAuthoritative(final CommentingContext commentingContext) {
+        if (index != null) {
+            return index.isRebuilt();
+        }
+
+        final IPluginConfig config = (commentingContext != null) ? commentingContext.getPluginConfig() : null;
+        return config != null && config.getAsBoolean("comment.index.authoritative", false)
+                && getIndex(commentingContext).isRebuilt();
+    }
+
+    /**
+     * Returns the index in the configured directory, opening it on the first access.
+     * @param commentingContext commenting context instance
+     * @return the comment index
+     */
+    protected CommentLuceneIndex getIndex(final CommentingContext commentingContext) {
+        if (index != null) {
+            return index;
+        }
+
+        final IPluginConfig config = (commentingContext != null) ? commentingContext.getPluginConfig() : null;
+        String directory = DEFAULT_INDEX_DIRECTORY;
+        long refreshInterval = CommentLuceneIndex.DEFAULT_REFRESH_INTERVAL;
+
+        if (config != null) {
+            directory = config.getString("comment.index.directory", directory);
+            refreshInterval = config.getAsLong("comment.index.refresh.interval", refreshInterval);
+        }
+
+        try {
+            return CommentLuceneIndex.getInstance(CommentPersistenceManagerUtils.resolveDataDirectory(directory),
+                    refreshInterval);
+        } catch (IOException e) {
+            throw new CommentingException("Cannot open the comment index in " + directory, e);
+        }
+    }
+
+    /**
+     * Indexes the comment data items of the succeeded results, as read again from the delegate,
+     * or as given in the results if not readable, e.g, pending in a write-behind queue.
+     */
+    private void index(final CommentingContext commentingContext, final List<CommentOperationResult> results) {
+        final List<CommentItem> commentItems = new ArrayList<>(results.size());
+
+        for (CommentOperationResult result : results) {
+            if (!result.isSucceeded() || StringUtils.isBlank(result.getCommentId())) {
+                continue;
+            }
+
+            CommentItem commentItem = null;
+
+            try {
+                commentItem = super.getCommentItemById(commentingContext, result.getCommentId());
+            } catch (CommentingException e) {
+                log.debug("Cannot read the comment data item to index: {}", result.getCommentId(), e);
+            }
+
+            if (commentItem == null && result.getCommentItem() != null) {
+                commentItem = (CommentItem) result.getCommentItem().clone();
+                commentItem.setId(result.getCommentId());
+            }
+
+            if (commentItem != null) {
+                commentItems.add(commentItem);
+            }
+        }
+
+        try {
+            getIndex(commentingContext).index(commentItems);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to index comment data items. The index should be rebuilt. {}", e.toString());
+        }
+    }
+
+    private void unindex(final CommentingContext commentingContext, final List<CommentOperationResult> results) {
+        final List<String> commentIds = new ArrayList<>(results.size());
+
+        for (CommentOperationResult result : results) {
+            if (result.isSucceeded() && StringUtils.isNotBlank(result.getCommentId())) {
+                commentIds.add(result.getCommentId());
+            }
+        }
+
+        try {
+            getIndex(commentingContext).delete(commentIds);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to remove comment data items from the index. The index should be rebuilt. {}",
+                    e.toString());
+        }
+    }
+}
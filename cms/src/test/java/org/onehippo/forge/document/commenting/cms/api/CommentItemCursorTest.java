@@ -0,0 +1,55 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Calendar;
+
+import org.junit.Test;
+
+public class CommentItemCursorTest {
+
+    @Test
+    public void testEncodeAndDecode() throws Exception {
+        Calendar created = Calendar.getInstance();
+        CommentItem comment = new CommentItem();
+        comment.setId("cafebabe-0000-0000-0000-000000000001");
+        comment.setCreated(created);
+
+        CommentItemCursor cursor = CommentItemCursor.decode(CommentItemCursor.of(comment).encode());
+        assertEquals(created.getTimeInMillis(), cursor.getCreated());
+        assertEquals("cafebabe-0000-0000-0000-000000000001", cursor.getId());
+    }
+
+    @Test
+    public void testLatestFirstOrdering() throws Exception {
+        CommentItemCursor cursor = new CommentItemCursor(1000L, "b");
+        assertTrue(cursor.isFollowedBy(999L, "z"));
+        assertTrue(cursor.isFollowedBy(1000L, "a"));
+        assertFalse(cursor.isFollowedBy(1000L, "b"));
+        assertFalse(cursor.isFollowedBy(1000L, "c"));
+        assertFalse(cursor.isFollowedBy(1001L, "a"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecodeInvalidCursor() throws Exception {
+        CommentItemCursor.decode("not a cursor");
+    }
+
+}
@@ -16,9 +16,18 @@
 package org.onehippo.forge.document.commenting.cms.api;
 
 import static junit.framework.TestCase.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 
@@ -52,6 +61,109 @@ public class CommentItemTest {
         assertEquals("Hello, World! Hello, World!", comment2.getContent());
         assertNotEquals(comment1, comment2);
         assertNotEquals(comment1.hashCode(), comment2.hashCode());
+
+        comment2 = (CommentItem) comment1.clone();
+        comment2.setAttribute("attr2", "changed");
+        assertNotEquals(comment1, comment2);
+    }
+
+    @Test
+    public void testLazyAttributes() throws Exception {
+        CountingAttributesLoader loader = new CountingAttributesLoader();
+        CommentItem comment = new CommentItem();
+        comment.setId("123");
+        comment.setAttributesLoader(loader);
+
+        assertFalse(comment.isAttributesLoaded());
+        assertEquals(0, CountingAttributesLoader.COUNT.get());
+        assertTrue(comment.toString().contains("(not loaded)"));
+        assertEquals(comment, comment.clone());
+        assertEquals(0, CountingAttributesLoader.COUNT.get());
+
+        CommentItem eager = new CommentItem();
+        eager.setId("123");
+        assertNotEquals(comment, eager);
+        assertEquals(1, CountingAttributesLoader.COUNT.get());
+
+        assertEquals("high", comment.getAttribute("priority"));
+        assertTrue(comment.isAttributesLoaded());
+        assertEquals(1, CountingAttributesLoader.COUNT.get());
+
+        comment.setAttribute("attr1", "value1");
+        assertEquals(2, comment.getAttributeNames().size());
+        assertEquals(1, CountingAttributesLoader.COUNT.get());
+    }
+
+    @Test
+    public void testEnsureAttributesLoaded() throws Exception {
+        CommentItem comment = new CommentItem();
+        comment.setId("123");
+        comment.setAttributesLoader(new CountingAttributesLoader());
+
+        comment.ensureAttributesLoaded();
+        assertTrue(comment.isAttributesLoaded());
+        assertEquals(1, CountingAttributesLoader.COUNT.get());
+
+        CommentItem cloned = (CommentItem) comment.clone();
+        assertTrue(cloned.isAttributesLoaded());
+        assertEquals("high", cloned.getAttribute("priority"));
+        assertEquals(1, CountingAttributesLoader.COUNT.get());
+    }
+
+    @Test
+    public void testSetAttributeBeforeLazyAttributesLoaded() throws Exception {
+        CommentItem comment = new CommentItem();
+        comment.setAttributesLoader(new CountingAttributesLoader());
+        comment.setAttribute("priority", "low");
+
+        assertEquals("low", comment.getAttribute("priority"));
+        assertEquals(1, comment.getAttributeNames().size());
+    }
+
+    @Test
+    public void testSerializeAndCloneWithLazyAttributes() throws Exception {
+        CommentItem comment = new CommentItem();
+        comment.setId("123");
+        comment.setAttributesLoader(new CountingAttributesLoader());
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+            oos.writeObject(comment);
+        }
+
+        CommentItem deserialized;
+
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+            deserialized = (CommentItem) ois.readObject();
+        }
+
+        assertFalse(deserialized.isAttributesLoaded());
+        assertEquals("high", deserialized.getAttribute("priority"));
+
+        CommentItem cloned = (CommentItem) comment.clone();
+        assertFalse(cloned.isAttributesLoaded());
+        assertEquals(comment, cloned);
+        assertEquals(deserialized, cloned);
+    }
+
+    private static class CountingAttributesLoader implements SerializableCallable<Map<String, Object>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final AtomicInteger COUNT = new AtomicInteger();
+
+        CountingAttributesLoader() {
+            COUNT.set(0);
+        }
+
+        @Override
+        public Map<String, Object> call() throws Exception {
+            COUNT.incrementAndGet();
+            Map<String, Object> attributes = new LinkedHashMap<>();
+            attributes.put("priority", "high");
+            return attributes;
+        }
     }
 
 }
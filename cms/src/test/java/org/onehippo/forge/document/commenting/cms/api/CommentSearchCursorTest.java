@@ -0,0 +1,59 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class CommentSearchCursorTest {
+
+    @Test
+    public void testEncodeAndDecode() throws Exception {
+        CommentItem comment = new CommentItem();
+        comment.setId("cafebabe-0000-0000-0000-000000000001");
+
+        CommentSearchCursor cursor = CommentSearchCursor
+                .decode(CommentSearchCursor.of(new CommentSearchHit(comment, 0.75, null)).encode());
+        assertEquals(0.75, cursor.getScore(), 0.0);
+        assertEquals("cafebabe-0000-0000-0000-000000000001", cursor.getId());
+        assertEquals(-1L, cursor.getOffset());
+
+        cursor = CommentSearchCursor.decode(CommentSearchCursor.of(new CommentSearchHit(comment, 0.75, null), 20L)
+                .encode());
+        assertEquals(0.75, cursor.getScore(), 0.0);
+        assertEquals("cafebabe-0000-0000-0000-000000000001", cursor.getId());
+        assertEquals(20L, cursor.getOffset());
+    }
+
+    @Test
+    public void testRelevanceOrdering() throws Exception {
+        CommentSearchCursor cursor = new CommentSearchCursor(2.0, "b");
+        assertTrue(cursor.isFollowedBy(1.5, "z"));
+        assertTrue(cursor.isFollowedBy(2.0, "a"));
+        assertFalse(cursor.isFollowedBy(2.0, "b"));
+        assertFalse(cursor.isFollowedBy(2.0, "c"));
+        assertFalse(cursor.isFollowedBy(2.5, "a"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecodeInvalidCursor() throws Exception {
+        CommentSearchCursor.decode("not a cursor");
+    }
+
+}
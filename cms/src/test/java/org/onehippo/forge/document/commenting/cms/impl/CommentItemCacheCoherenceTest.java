@@ -0,0 +1,148 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+
+import org.apache.jackrabbit.core.RepositoryImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.onehippo.forge.document.commenting.cms.api.CommentItem;
+import org.onehippo.forge.document.commenting.cms.api.CommentingContext;
+
+/**
+ * Two sessions on an in-memory repository stand in for two cluster nodes: comments are written through the session
+ * of node A, and the cache of node B observes the changes with the session of node B, like the changes delivered
+ * from the cluster journal.
+ */
+public class CommentItemCacheCoherenceTest {
+
+    private static final String SUBJECT_ID = "subject-1";
+    private static final long TIMEOUT_MILLIS = 10000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private RepositoryImpl repository;
+    private Session sessionA;
+    private Session sessionB;
+    private DefaultJcrCommentPersistenceManager managerA;
+    private DefaultJcrCommentPersistenceManager managerB;
+    private CommentingContext context;
+    private CommentItemCache cacheB;
+
+    @Before
+    public void setUp() throws Exception {
+        repository = DefaultJcrCommentPersistenceManagerTest.createRepository(folder.newFolder());
+        sessionA = repository.login(new SimpleCredentials("editor", new char[0]));
+        sessionB = repository.login(new SimpleCredentials("admin", new char[0]));
+        managerA = createManager(sessionA);
+        managerB = createManager(sessionB);
+        context = new CommentingContext(null, null, null);
+        cacheB = new CommentItemCache(10, 60000L);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        cacheB.stopObservation();
+
+        if (sessionB.isLive()) {
+            sessionB.logout();
+        }
+
+        sessionA.logout();
+        repository.shutdown();
+    }
+
+    @Test
+    public void testUpdateInvalidatesCacheOfOtherNode() throws Exception {
+        final String commentId = managerA.createCommentItem(context, createCommentItem("Hello"));
+        cacheOnNodeB(commentId, 0L);
+
+        final CommentItem update = managerA.getCommentItemById(context, commentId);
+        update.setContent("Hello again");
+        managerA.updateCommentItem(context, update);
+
+        awaitInvalidated(() -> cacheB.getCommentItem(commentId) == null);
+        awaitInvalidated(() -> cacheB.getLatestCommentItems(SUBJECT_ID, 10L) == null);
+        assertEquals("Hello again", managerB.getCommentItemById(context, commentId).getContent());
+    }
+
+    @Test
+    public void testCreateAndDeleteInvalidateCacheOfOtherNode() throws Exception {
+        final String commentId = managerA.createCommentItem(context, createCommentItem("Hello"));
+        cacheOnNodeB(commentId, 200L);
+
+        managerA.createCommentItem(context, createCommentItem("Another"));
+        awaitInvalidated(() -> cacheB.getLatestCommentItems(SUBJECT_ID, 10L) == null);
+        assertNotNull(cacheB.getCommentItem(commentId));
+
+        managerA.deleteCommentItem(context, managerA.getCommentItemById(context, commentId));
+        awaitInvalidated(() -> cacheB.getCommentItem(commentId) == null);
+    }
+
+    /**
+     * Reads the comments of the subject and the comment of {@code commentId} on node B into its cache,
+     * and starts observing the changes on node B.
+     */
+    private void cacheOnNodeB(final String commentId, final long invalidationDelay) throws Exception {
+        final List<CommentItem> commentItems = managerB.getLatestCommentItemsBySubjectId(context, SUBJECT_ID, 0L, 10L);
+        cacheB.putLatestCommentItems(SUBJECT_ID, 10L, commentItems, cacheB.getGeneration());
+        cacheB.putCommentItem(managerB.getCommentItemById(context, commentId), cacheB.getGeneration());
+        cacheB.startObservation(sessionB, invalidationDelay);
+
+        assertNotNull(cacheB.getLatestCommentItems(SUBJECT_ID, 10L));
+        assertNotNull(cacheB.getCommentItem(commentId));
+    }
+
+    private static void awaitInvalidated(final Callable<Boolean> invalidated) throws Exception {
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+
+        while (!invalidated.call()) {
+            assertTrue("Not invalidated in time.", System.currentTimeMillis() < deadline);
+            Thread.sleep(20L);
+        }
+    }
+
+    private static DefaultJcrCommentPersistenceManager createManager(final Session session) {
+        return new DefaultJcrCommentPersistenceManager() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected Session getSession() {
+                return session;
+            }
+        };
+    }
+
+    private static CommentItem createCommentItem(final String content) {
+        CommentItem commentItem = new CommentItem();
+        commentItem.setSubjectId(SUBJECT_ID);
+        commentItem.setContent(content);
+        return commentItem;
+    }
+}
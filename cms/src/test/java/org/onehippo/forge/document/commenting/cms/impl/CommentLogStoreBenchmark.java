@@ -0,0 +1,104 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.impl;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import org.onehippo.forge.document.commenting.cms.api.CommentItem;
+
+/**
+ * Measures the startup time of a {@link CommentLogStore} and the read time per document.
+ * Not run as a unit test. Run it from the test classpath with optional arguments:
+ * <pre>
+ * CommentLogStoreBenchmark [comments (default 1000000)] [subjects (default 10000)] [directory (default temp)]
+ * </pre>
+ */
+public class CommentLogStoreBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int READS = 10000;
+    private static final long READ_LIMIT = 10L;
+
+    public static void main(String[] args) throws Exception {
+        final int comments = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+        final int subjects = (args.length > 1) ? Integer.parseInt(args[1]) : 10000;
+        final File directory = (args.length > 2) ? new File(args[2])
+                : Files.createTempDirectory("doccommenting-log").toFile();
+        final Random random = new Random(0L);
+
+        CommentLogStore store = new CommentLogStore(directory, CommentLogStore.DEFAULT_MAX_SEGMENT_SIZE, false);
+
+        if (store.size() < comments) {
+            long start = System.currentTimeMillis();
+            final List<CommentItem> batch = new ArrayList<>(BATCH_SIZE);
+
+            for (int i = store.size(); i < comments; i++) {
+                batch.add(createCommentItem("subject-" + random.nextInt(subjects), i));
+
+                if (batch.size() == BATCH_SIZE) {
+                    store.put(batch, false);
+                    batch.clear();
+                }
+            }
+
+            store.put(batch, true);
+            System.out.printf("Wrote %d comments in %d ms.%n", comments, System.currentTimeMillis() - start);
+        }
+
+        store.close();
+
+        long start = System.nanoTime();
+        store = new CommentLogStore(directory, CommentLogStore.DEFAULT_MAX_SEGMENT_SIZE, false);
+        System.out.printf("Opened the store with %d comments in %d segments in %d ms.%n", store.size(),
+                store.getSegmentCount(), (System.nanoTime() - start) / 1000000L);
+
+        // warm up the mapped pages and the deserialization
+        for (int i = 0; i < READS; i++) {
+            store.getLatest("subject-" + random.nextInt(subjects), null, 0L, READ_LIMIT);
+        }
+
+        start = System.nanoTime();
+        long read = 0L;
+
+        for (int i = 0; i < READS; i++) {
+            read += store.getLatest("subject-" + random.nextInt(subjects), null, 0L, READ_LIMIT).size();
+        }
+
+        System.out.printf("Read %d comments of %d documents in %.3f ms per document.%n", read, READS,
+                (System.nanoTime() - start) / 1000000d / READS);
+        store.close();
+    }
+
+    private static CommentItem createCommentItem(final String subjectId, final int index) {
+        final CommentItem commentItem = new CommentItem();
+        commentItem.setId(UUID.randomUUID().toString());
+        commentItem.setSubjectId(subjectId);
+        commentItem.setAuthor("editor");
+        final Calendar created = Calendar.getInstance();
+        created.setTimeInMillis(1500000000000L + index * 1000L);
+        commentItem.setCreated(created);
+        commentItem.setLastModified(created);
+        commentItem.setContent("Comment " + index + " on the legal disclaimer of the document.");
+        commentItem.setAttribute("priority", (long) (index % 5));
+        return commentItem;
+    }
+}
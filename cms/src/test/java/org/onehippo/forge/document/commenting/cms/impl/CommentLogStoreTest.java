@@ -0,0 +1,297 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.onehippo.forge.document.commenting.cms.api.CommentItem;
+import org.onehippo.forge.document.commenting.cms.api.CommentItemCursor;
+
+public class CommentLogStoreTest {
+
+    private static final String SUBJECT_ID = "subject-1";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPutGetAndDelete() throws Exception {
+        CommentLogStore store = new CommentLogStore(folder.getRoot(), CommentLogStore.DEFAULT_MAX_SEGMENT_SIZE, false);
+        store.put(Arrays.asList(createCommentItem("c1", 1000L, "first"), createCommentItem("c2", 2000L, "second"),
+                createCommentItem("c3", 3000L, "third")), false);
+
+        assertEquals(3L, store.count(SUBJECT_ID));
+        assertEquals("second", store.get("c2").getContent());
+        assertEquals(Long.valueOf(2000L), store.get("c2").getAttribute("priority"));
+        assertEquals(Arrays.asList("c3", "c2", "c1"), getIds(store.getLatest(SUBJECT_ID, null, 0L, 10L)));
+        assertEquals(Arrays.asList("c2"), getIds(store.getLatest(SUBJECT_ID, null, 1L, 1L)));
+        assertEquals(Arrays.asList("c2", "c1"),
+                getIds(store.getLatest(SUBJECT_ID, new CommentItemCursor(3000L, "c3"), 0L, 10L)));
+
+        store.put(Collections.singletonList(createCommentItem("c2", 2000L, "updated")), false);
+        assertEquals("updated", store.get("c2").getContent());
+        assertEquals(3L, store.count(SUBJECT_ID));
+
+        store.delete(Collections.singletonList("c1"), false);
+        assertNull(store.get("c1"));
+        assertEquals(Arrays.asList("c3", "c2"), getIds(store.getLatest(SUBJECT_ID, null, 0L, 10L)));
+        store.close();
+    }
+
+    @Test
+    public void testRebuildIndexOnOpen() throws Exception {
+        CommentLogStore store = new CommentLogStore(folder.getRoot(), CommentLogStore.DEFAULT_MAX_SEGMENT_SIZE, false);
+        store.put(Arrays.asList(createCommentItem("c1", 1000L, "first"), createCommentItem("c2", 2000L, "second")),
+                true);
+        store.put(Collections.singletonList(createCommentItem("c1", 1000L, "updated")), true);
+        store.delete(Collections.singletonList("c2"), true);
+        store.close();
+
+        store = new CommentLogStore(folder.getRoot(), CommentLogStore.DEFAULT_MAX_SEGMENT_SIZE, false);
+        assertEquals(1, store.size());
+        assertEquals("updated", store.get("c1").getContent());
+        assertFalse(store.contains("c2"));
+        store.close();
+    }
+
+    @Test
+    public void testEncodeTypedAttributes() throws Exception {
+        CommentLogStore store = new CommentLogStore(folder.getRoot(), CommentLogStore.DEFAULT_MAX_SEGMENT_SIZE, false);
+        CommentItem commentItem = createCommentItem("c1", 1000L, StringUtils.repeat("long content ", 10000));
+        commentItem.setAuthor(null);
+        Calendar dueDate = Calendar.getInstance();
+        dueDate.setTimeInMillis(5000L);
+        commentItem.setAttribute("resolved", Boolean.TRUE);
+        commentItem.setAttribute("score", 0.5d);
+        commentItem.setAttribute("dueDate", dueDate);
+        commentItem.setAttribute("assignees", new String[] { "editor", "author" });
+        commentItem.setAttribute("flags", new boolean[] { true, false });
+        commentItem.setAttribute("counts", new long[] { 1L, 2L });
+        commentItem.setAttribute("weights", new double[] { 0.1d, 0.2d });
+        commentItem.setAttribute("reminders", new Calendar[] { dueDate });
+        commentItem.setAttribute("unsupported", Integer.valueOf(1));
+        store.put(Collections.singletonList(commentItem), true);
+        store.close();
+
+        store = new CommentLogStore(folder.getRoot(), CommentLogStore.DEFAULT_MAX_SEGMENT_SIZE, false);
+        CommentItem read = store.get("c1");
+        assertNull(read.getAuthor());
+        assertNull(read.getLastModified());
+        assertEquals(commentItem.getContent(), read.getContent());
+        assertEquals(1000L, read.getCreated().getTimeInMillis());
+        assertEquals(Long.valueOf(1000L), read.getAttribute("priority"));
+        assertEquals(Boolean.TRUE, read.getAttribute("resolved"));
+        assertEquals(Double.valueOf(0.5d), read.getAttribute("score"));
+        assertEquals(5000L, ((Calendar) read.getAttribute("dueDate")).getTimeInMillis());
+        assertArrayEquals(new String[] { "editor", "author" }, (String[]) read.getAttribute("assignees"));
+        assertTrue(Arrays.equals(new boolean[] { true, false }, (boolean[]) read.getAttribute("flags")));
+        assertTrue(Arrays.equals(new long[] { 1L, 2L }, (long[]) read.getAttribute("counts")));
+        assertTrue(Arrays.equals(new double[] { 0.1d, 0.2d }, (double[]) read.getAttribute("weights")));
+        assertEquals(5000L, ((Calendar[]) read.getAttribute("reminders"))[0].getTimeInMillis());
+        assertFalse(read.hasAttribute("unsupported"));
+        store.close();
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectUnsupportedFormatVersion() throws Exception {
+        CommentLogStore store = new CommentLogStore(folder.getRoot(), CommentLogStore.DEFAULT_MAX_SEGMENT_SIZE, false);
+        store.put(Collections.singletonList(createCommentItem("c1", 1000L, "first")), true);
+        store.close();
+
+        try (RandomAccessFile raf = new RandomAccessFile(folder.getRoot().listFiles()[0], "rw")) {
+            raf.seek(4L);
+            raf.writeInt(Integer.MAX_VALUE);
+        }
+
+        new CommentLogStore(folder.getRoot(), CommentLogStore.DEFAULT_MAX_SEGMENT_SIZE, false);
+    }
+
+    @Test
+    public void testTruncateTornRecordOnOpen() throws Exception {
+        CommentLogStore store = new CommentLogStore(folder.getRoot(), CommentLogStore.DEFAULT_MAX_SEGMENT_SIZE, false);
+        store.put(Arrays.asList(createCommentItem("c1", 1000L, "first"), createCommentItem("c2", 2000L, "second")),
+                true);
+        store.close();
+
+        File segmentFile = folder.getRoot().listFiles()[0];
+
+        try (RandomAccessFile raf = new RandomAccessFile(segmentFile, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        store = new CommentLogStore(folder.getRoot(), CommentLogStore.DEFAULT_MAX_SEGMENT_SIZE, false);
+        assertTrue(store.contains("c1"));
+        assertFalse(store.contains("c2"));
+
+        store.put(Collections.singletonList(createCommentItem("c3", 3000L, "third")), true);
+        store.close();
+
+        store = new CommentLogStore(folder.getRoot(), CommentLogStore.DEFAULT_MAX_SEGMENT_SIZE, false);
+        assertEquals(Arrays.asList("c3", "c1"), getIds(store.getLatest(SUBJECT_ID, null, 0L, 10L)));
+        store.close();
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        CommentLogStore store = new CommentLogStore(folder.getRoot(), 1024L, false);
+
+        for (int i = 0; i < 20; i++) {
+            store.put(Collections.singletonList(createCommentItem("c" + i, 1000L + i, "comment " + i)), false);
+        }
+
+        List<String> deleted = new ArrayList<>();
+
+        for (int i = 0; i < 20; i += 2) {
+            store.put(Collections.singletonList(createCommentItem("c" + i, 1000L + i, "updated " + i)), false);
+            deleted.add("c" + (i + 1));
+        }
+
+        store.delete(deleted, false);
+        final int segmentCount = store.getSegmentCount();
+        assertTrue(segmentCount > 1);
+
+        while (store.compact()) {
+            // compact all the segments with dead records
+        }
+
+        assertTrue(store.getSegmentCount() < segmentCount);
+        assertEquals(10, store.size());
+        store.close();
+
+        store = new CommentLogStore(folder.getRoot(), 1024L, false);
+        assertEquals(10, store.size());
+
+        for (int i = 0; i < 20; i += 2) {
+            assertEquals("updated " + i, store.get("c" + i).getContent());
+            assertFalse(store.contains("c" + (i + 1)));
+        }
+
+        store.close();
+    }
+
+    @Test
+    public void testCompactionDropsTombstones() throws Exception {
+        CommentLogStore store = new CommentLogStore(folder.getRoot(), 1024L, false);
+        List<String> deleted = new ArrayList<>();
+
+        for (int i = 0; i < 20; i++) {
+            store.put(Collections.singletonList(createCommentItem("c" + i, 1000L + i, "comment " + i)), false);
+            deleted.add("c" + i);
+        }
+
+        for (String commentId : deleted) {
+            store.delete(Collections.singletonList(commentId), false);
+        }
+
+        int rounds = 0;
+
+        while (store.compact()) {
+            assertTrue(++rounds <= 20);
+        }
+
+        assertEquals(0, store.size());
+        assertEquals(1, store.getSegmentCount());
+        assertFalse(store.compact());
+        store.close();
+
+        store = new CommentLogStore(folder.getRoot(), 1024L, false);
+        assertEquals(0, store.size());
+        assertTrue(store.getSubjectIds().isEmpty());
+        store.close();
+    }
+
+    @Test
+    public void testReadCompactedSegment() throws Exception {
+        CommentLogStore store = new CommentLogStore(folder.getRoot(), 1024L, false);
+
+        for (int i = 0; i < 20; i++) {
+            store.put(Collections.singletonList(createCommentItem("c" + i, 1000L + i, "comment " + i)), false);
+        }
+
+        final List<String> deleted = new ArrayList<>();
+
+        for (int i = 1; i < 20; i++) {
+            deleted.add("c" + i);
+        }
+
+        // the entry of c0 found before the compaction, e.g, by a concurrent reader, still refers to the first segment
+        final Object entry = getEntry(store, "c0");
+        store.delete(deleted, false);
+
+        while (store.compact()) {
+            // compact all the segments with dead records
+        }
+
+        assertEquals("comment 0", invokeRead(entry).getContent());
+        assertEquals("comment 0", store.get("c0").getContent());
+        store.close();
+    }
+
+    private static Object getEntry(final CommentLogStore store, final String commentId) throws Exception {
+        final Field field = CommentLogStore.class.getDeclaredField("entriesById");
+        field.setAccessible(true);
+        return ((Map<?, ?>) field.get(store)).get(commentId);
+    }
+
+    private static CommentItem invokeRead(final Object entry) throws Exception {
+        final Method method = CommentLogStore.class.getDeclaredMethod("read", entry.getClass());
+        method.setAccessible(true);
+        return (CommentItem) method.invoke(null, entry);
+    }
+
+    private static CommentItem createCommentItem(final String id, final long created, final String content) {
+        CommentItem commentItem = new CommentItem();
+        commentItem.setId(id);
+        commentItem.setSubjectId(SUBJECT_ID);
+        commentItem.setAuthor("editor");
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(created);
+        commentItem.setCreated(calendar);
+        commentItem.setContent(content);
+        commentItem.setAttribute("priority", created);
+        return commentItem;
+    }
+
+    private static List<String> getIds(final List<CommentItem> commentItems) {
+        List<String> ids = new ArrayList<>();
+
+        for (CommentItem commentItem : commentItems) {
+            ids.add(commentItem.getId());
+        }
+
+        return ids;
+    }
+}
@@ -0,0 +1,173 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.onehippo.forge.document.commenting.cms.api.CommentItem;
+import org.onehippo.forge.document.commenting.cms.api.CommentItemCursor;
+import org.onehippo.forge.document.commenting.cms.api.CommentSearchCursor;
+import org.onehippo.forge.document.commenting.cms.api.CommentSearchHit;
+import org.onehippo.forge.document.commenting.cms.api.CommentingContext;
+
+public class CommentLuceneIndexTest {
+
+    private CommentLuceneIndex index;
+
+    @Before
+    public void setUp() throws Exception {
+        index = new CommentLuceneIndex(new RAMDirectory(), CommentLuceneIndex.DEFAULT_REFRESH_INTERVAL, false);
+        index.index(Arrays.asList(createCommentItem("c1", "subject-1", "editor", 1000L, "open", 1L, "Fix the title"),
+                createCommentItem("c2", "subject-2", "editor", 2000L, "closed", 2L, "Check the image"),
+                createCommentItem("c3", "subject-1", "author", 3000L, "open", 2L, "Check the title again"),
+                createCommentItem("c4", "subject-3", "editor", 4000L, "open", 2L, "Shorten the summary")));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        index.close();
+    }
+
+    @Test
+    public void testGetAndDelete() throws Exception {
+        assertEquals(4, index.size());
+        assertEquals("Check the image", index.get("c2").getContent());
+        assertEquals(Long.valueOf(2L), index.get("c2").getAttribute("priority"));
+
+        index.index(Collections.singletonList(
+                createCommentItem("c2", "subject-2", "editor", 2000L, "closed", 3L, "Replace the image")));
+        assertEquals(4, index.size());
+        assertEquals("Replace the image", index.get("c2").getContent());
+
+        index.delete(Collections.singletonList("c2"));
+        assertEquals(3, index.size());
+        assertNull(index.get("c2"));
+    }
+
+    @Test
+    public void testLatestByAuthorAndAttributes() throws Exception {
+        assertEquals(Arrays.asList("c4", "c2", "c1"),
+                getIds(index.getLatest(CommentLuceneIndex.createQuery(null, "editor", null), null, 10)));
+        assertEquals(Arrays.asList("c4", "c1"), getIds(index.getLatest(
+                CommentLuceneIndex.createQuery(null, "editor", Collections.singletonMap("status", "open")), null, 10)));
+        assertEquals(Arrays.asList("c4", "c3", "c2"), getIds(index.getLatest(
+                CommentLuceneIndex.createQuery(null, null, Collections.singletonMap("priority", 2L)), null, 10)));
+        assertEquals(Arrays.asList("c3", "c1"),
+                getIds(index.getLatest(CommentLuceneIndex.createQuery("subject-1", null, null), null, 10)));
+        assertEquals(3L, index.count(CommentLuceneIndex.createQuery(null, null,
+                Collections.singletonMap("status", "open"))));
+
+        assertEquals(Arrays.asList("c2", "c1"), getIds(index.getLatest(
+                CommentLuceneIndex.createQuery(null, "editor", null), new CommentItemCursor(4000L, "c4"), 10)));
+        assertEquals(Arrays.asList("c2"), getIds(index.getLatest(
+                CommentLuceneIndex.createQuery(null, "editor", null), new CommentItemCursor(4000L, "c4"), 1)));
+    }
+
+    @Test
+    public void testSearch() throws Exception {
+        final List<CommentSearchHit> hits = index.search("check title", null, 10);
+        assertEquals(1, hits.size());
+        assertEquals("c3", hits.get(0).getCommentItem().getId());
+
+        final List<CommentSearchHit> firstPage = index.search("check", null, 1);
+        assertEquals(1, firstPage.size());
+
+        final List<CommentSearchHit> secondPage = index.search("check",
+                CommentSearchCursor.of(firstPage.get(0)), 10);
+        assertEquals(1, secondPage.size());
+        assertEquals(2, getIds(Arrays.asList(firstPage.get(0).getCommentItem(), secondPage.get(0).getCommentItem()))
+                .stream().distinct().count());
+    }
+
+    @Test
+    public void testDeleteIndexedBefore() throws Exception {
+        Thread.sleep(10L);
+        final long rebuildTime = System.currentTimeMillis();
+        index.index(Collections.singletonList(
+                createCommentItem("c1", "subject-1", "editor", 1000L, "open", 1L, "Fix the title")));
+        index.deleteIndexedBefore(rebuildTime);
+
+        assertEquals(1, index.size());
+        assertEquals("Fix the title", index.get("c1").getContent());
+    }
+
+    @Test
+    public void testRebuildFromDelegate() throws Exception {
+        final InMemoryCommentPersistenceManager delegate = new InMemoryCommentPersistenceManager(0) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected String getUserID() {
+                return "editor";
+            }
+        };
+        final CommentingContext context = new CommentingContext(null, null, null);
+        delegate.createCommentItems(context, Arrays.asList(
+                createCommentItem(null, "subject-1", "editor", 5000L, "open", 1L, "Existing before indexing"),
+                createCommentItem(null, "subject-2", "editor", 6000L, "open", 1L, "Existing one more")));
+        final LuceneIndexedCommentPersistenceManager manager = new LuceneIndexedCommentPersistenceManager(delegate,
+                index);
+
+        assertFalse(index.isRebuilt());
+        assertEquals(2, manager.getLatestCommentItemPageByAuthor(context, "editor", null, 10L).getCommentItems()
+                .size());
+
+        assertEquals(2L, manager.rebuildIndex(context, 1));
+        assertTrue(index.isRebuilt());
+        assertEquals(2, index.size());
+        assertNull(index.get("c1"));
+        assertEquals(2, manager.getLatestCommentItemPageByAuthor(context, "editor", null, 10L).getCommentItems()
+                .size());
+    }
+
+    private static CommentItem createCommentItem(final String id, final String subjectId, final String author,
+            final long created, final String status, final long priority, final String content) {
+        final CommentItem commentItem = new CommentItem();
+        commentItem.setId(id);
+        commentItem.setSubjectId(subjectId);
+        commentItem.setAuthor(author);
+        final Calendar createdTime = Calendar.getInstance();
+        createdTime.setTimeInMillis(created);
+        commentItem.setCreated(createdTime);
+        commentItem.setContent(content);
+        commentItem.setAttribute("status", status);
+        commentItem.setAttribute("priority", priority);
+        return commentItem;
+    }
+
+    private static List<String> getIds(final List<CommentItem> commentItems) {
+        final List<String> ids = new ArrayList<>();
+
+        for (CommentItem commentItem : commentItems) {
+            ids.add(commentItem.getId());
+        }
+
+        return ids;
+    }
+}
@@ -0,0 +1,303 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.onehippo.forge.document.commenting.cms.api.CommentItem;
+import org.onehippo.forge.document.commenting.cms.api.CommentItemPage;
+import org.onehippo.forge.document.commenting.cms.api.CommentItemQuery;
+import org.onehippo.forge.document.commenting.cms.api.CommentOperationResult;
+import org.onehippo.forge.document.commenting.cms.api.CommentPersistenceManager;
+import org.onehippo.forge.document.commenting.cms.api.CommentingContext;
+import org.onehippo.forge.document.commenting.cms.api.CommentingException;
+
+/**
+ * Behavior expected from every {@link CommentPersistenceManager} implementation, run against each implementation
+ * by a subclass creating the manager. The subject identifiers are set in the comment items, as there is no subject
+ * document in the context, and the managers should store {@code "editor"} as the author.
+ */
+public abstract class CommentPersistenceManagerContractTest {
+
+    protected static final String SUBJECT_ID = "subject-1";
+
+    protected CommentPersistenceManager manager;
+    protected CommentingContext context;
+
+    @Before
+    public void setUpManager() throws Exception {
+        manager = createCommentPersistenceManager();
+        context = new CommentingContext(null, null, null);
+    }
+
+    /**
+     * Creates the manager to test, with an empty store.
+     * @return the manager to test
+     * @throws Exception if the manager cannot be created
+     */
+    protected abstract CommentPersistenceManager createCommentPersistenceManager() throws Exception;
+
+    /**
+     * Returns true if the manager reads the latest comment pages by author and by attribute across the subjects,
+     * or false if it returns null from them as not supported.
+     * @return true if the manager reads the latest comment pages by author and by attribute
+     */
+    protected abstract boolean supportsCrossSubjectQueries();
+
+    @Test
+    public void testCreateAndRead() throws Exception {
+        CommentItem commentItem = createCommentItem(SUBJECT_ID, "Hello");
+        commentItem.setAttribute("title", "Greeting");
+        commentItem.setAttribute("resolved", Boolean.TRUE);
+        commentItem.setAttribute("priority", 3L);
+        commentItem.setAttribute("score", 0.5d);
+        commentItem.setAttribute("tags", new String[] { "a", "b" });
+        commentItem.setAttribute("ranks", new long[] { 2L, 1L });
+
+        final String commentId = manager.createCommentItem(context, commentItem);
+        assertNotNull(commentId);
+
+        CommentItem stored = manager.getCommentItemById(context, commentId);
+        assertEquals(commentId, stored.getId());
+        assertEquals(SUBJECT_ID, stored.getSubjectId());
+        assertEquals("editor", stored.getAuthor());
+        assertEquals("Hello", stored.getContent());
+        assertNotNull(stored.getCreated());
+        assertEquals("Greeting", stored.getAttribute("title"));
+        assertEquals(Boolean.TRUE, stored.getAttribute("resolved"));
+        assertEquals(3L, stored.getAttribute("priority"));
+        assertEquals(0.5d, stored.getAttribute("score"));
+        assertArrayEquals(new String[] { "a", "b" }, (String[]) stored.getAttribute("tags"));
+        assertTrue(Arrays.equals(new long[] { 2L, 1L }, (long[]) stored.getAttribute("ranks")));
+    }
+
+    @Test(expected = CommentingException.class)
+    public void testGetNonExistingCommentItem() throws Exception {
+        manager.getCommentItemById(context, "non-existing");
+    }
+
+    @Test
+    public void testUpdateAndDelete() throws Exception {
+        CommentItem commentItem = createCommentItem(SUBJECT_ID, "Hello");
+        commentItem.setAttribute("title", "Greeting");
+        commentItem.setAttribute("priority", 3L);
+        final String commentId = manager.createCommentItem(context, commentItem);
+
+        CommentItem stored = manager.getCommentItemById(context, commentId);
+        final Calendar created = stored.getCreated();
+
+        CommentItem update = new CommentItem();
+        update.setId(commentId);
+        update.setSubjectId(SUBJECT_ID);
+        update.setContent("Hello again");
+        update.setAttribute("priority", 1L);
+        manager.updateCommentItem(context, update);
+
+        stored = manager.getCommentItemById(context, commentId);
+        assertEquals("Hello again", stored.getContent());
+        assertEquals(created.getTimeInMillis(), stored.getCreated().getTimeInMillis());
+        assertEquals("Greeting", stored.getAttribute("title"));
+        assertEquals(1L, stored.getAttribute("priority"));
+
+        manager.deleteCommentItem(context, stored);
+        assertEquals(0L, manager.countCommentItemsBySubjectId(context, SUBJECT_ID));
+    }
+
+    @Test
+    public void testBatchOperations() throws Exception {
+        List<CommentItem> commentItems = new ArrayList<>();
+
+        for (int i = 0; i < 3; i++) {
+            commentItems.add(createCommentItem(SUBJECT_ID, "Comment " + i));
+        }
+
+        commentItems.add(createCommentItem("subject-2", "Other"));
+
+        List<CommentOperationResult> results = manager.createCommentItems(context, commentItems);
+        assertEquals(4, results.size());
+
+        for (CommentOperationResult result : results) {
+            assertTrue(result.isSucceeded());
+        }
+
+        Map<String, Long> counts = manager.countCommentItemsBySubjectIds(context,
+                Arrays.asList(SUBJECT_ID, "subject-2", "subject-3"));
+        assertEquals(Long.valueOf(3L), counts.get(SUBJECT_ID));
+        assertEquals(Long.valueOf(1L), counts.get("subject-2"));
+        assertEquals(Long.valueOf(0L), counts.get("subject-3"));
+
+        CommentItem missing = createCommentItem(SUBJECT_ID, "Missing");
+        missing.setId("non-existing");
+        CommentItem existing = manager.getCommentItemById(context, results.get(0).getCommentId());
+        results = manager.updateCommentItems(context, Arrays.asList(existing, missing));
+        assertTrue(results.get(0).isSucceeded());
+        assertFalse(results.get(1).isSucceeded());
+
+        results = manager.deleteCommentItems(context,
+                manager.getLatestCommentItemsBySubjectId(context, SUBJECT_ID, 0L, 10L));
+        assertEquals(3, results.size());
+        assertEquals(0L, manager.countCommentItemsBySubjectId(context, SUBJECT_ID));
+        assertEquals(1L, manager.countCommentItemsBySubjectId(context, "subject-2"));
+    }
+
+    @Test
+    public void testLatestCommentItemsAndPages() throws Exception {
+        List<CommentItem> commentItems = new ArrayList<>();
+
+        for (int i = 0; i < 5; i++) {
+            commentItems.add(createCommentItem(SUBJECT_ID, "Comment " + i));
+        }
+
+        manager.createCommentItems(context, commentItems);
+
+        List<CommentItem> latest = manager.getLatestCommentItemsBySubjectId(context, SUBJECT_ID, 0L, 10L);
+        assertEquals(5, latest.size());
+        assertEquals(latest.subList(1, 3), manager.getLatestCommentItemsBySubjectId(context, SUBJECT_ID, 1L, 2L));
+
+        List<CommentItem> paged = new ArrayList<>();
+        String cursor = null;
+
+        do {
+            CommentItemPage page = manager.getLatestCommentItemPageBySubjectId(context, SUBJECT_ID, cursor, 2L);
+            assertTrue(page.getCommentItems().size() <= 2);
+            paged.addAll(page.getCommentItems());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(latest, paged);
+        assertNull(manager.getLatestCommentItemPageBySubjectId(context, SUBJECT_ID, null, 5L).getNextCursor());
+    }
+
+    @Test
+    public void testQueryCommentItems() throws Exception {
+        List<CommentItem> commentItems = new ArrayList<>();
+
+        for (long priority : new long[] { 1L, 5L, 3L }) {
+            CommentItem commentItem = createCommentItem(SUBJECT_ID, "Priority " + priority);
+            commentItem.setAttribute("priority", priority);
+            commentItem.setAttribute("resolved", priority == 3L);
+            commentItems.add(commentItem);
+        }
+
+        commentItems.add(createCommentItem(SUBJECT_ID, "No priority"));
+        CommentItem otherCommentItem = createCommentItem("subject-2", "Priority 4");
+        otherCommentItem.setAttribute("priority", 4L);
+        commentItems.add(otherCommentItem);
+        manager.createCommentItems(context, commentItems);
+
+        CommentItemQuery query = new CommentItemQuery()
+                .filter("priority", CommentItemQuery.Operator.GREATER_THAN_OR_EQUAL, 3L).orderBy("priority", true);
+        List<CommentItem> results = manager.queryCommentItems(context, SUBJECT_ID, query, 0L, 10L);
+        assertNotNull(results);
+        assertEquals(Arrays.asList("Priority 5", "Priority 3"), getContents(results));
+
+        query = new CommentItemQuery().filter("priority", CommentItemQuery.Operator.GREATER_THAN, 1L)
+                .orderBy("priority", false);
+        assertEquals(Arrays.asList("Priority 3", "Priority 4", "Priority 5"),
+                getContents(manager.queryCommentItems(context, null, query, 0L, 10L)));
+        assertEquals(Arrays.asList("Priority 4"), getContents(manager.queryCommentItems(context, null, query, 1L, 1L)));
+
+        query = new CommentItemQuery().filter("resolved", CommentItemQuery.Operator.EQUAL, Boolean.FALSE);
+        assertEquals(2, manager.queryCommentItems(context, SUBJECT_ID, query, 0L, 10L).size());
+
+        query = new CommentItemQuery().orderBy("priority", false);
+        assertEquals("No priority", manager.queryCommentItems(context, SUBJECT_ID, query, 0L, 10L).get(0).getContent());
+    }
+
+    @Test
+    public void testLatestCommentItemPagesByAuthorAndAttribute() throws Exception {
+        List<CommentItem> commentItems = new ArrayList<>();
+
+        for (int i = 0; i < 5; i++) {
+            CommentItem commentItem = createCommentItem((i % 2 == 0) ? SUBJECT_ID : "subject-2", "Comment " + i);
+            commentItem.setAttribute("assignees", (i < 3) ? new String[] { "jane", "john" } : new String[] { "john" });
+            commentItems.add(commentItem);
+        }
+
+        manager.createCommentItems(context, commentItems);
+
+        if (!supportsCrossSubjectQueries()) {
+            assertNull(manager.getLatestCommentItemPageByAuthor(context, "editor", null, 2L));
+            assertNull(manager.getLatestCommentItemPageByAttribute(context, "assignees", "jane", null, 10L));
+            return;
+        }
+
+        List<CommentItem> paged = new ArrayList<>();
+        String cursor = null;
+
+        do {
+            CommentItemPage page = manager.getLatestCommentItemPageByAuthor(context, "editor", cursor, 2L);
+            assertNotNull(page);
+            assertTrue(page.getCommentItems().size() <= 2);
+            paged.addAll(page.getCommentItems());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(5, paged.size());
+
+        for (int i = 1; i < paged.size(); i++) {
+            assertTrue(paged.get(i - 1).getCreated().compareTo(paged.get(i).getCreated()) >= 0);
+        }
+
+        assertTrue(manager.getLatestCommentItemPageByAuthor(context, "nobody", null, 2L).getCommentItems().isEmpty());
+
+        CommentItemPage page = manager.getLatestCommentItemPageByAttribute(context, "assignees", "jane", null, 10L);
+        assertNotNull(page);
+        assertEquals(3, page.getCommentItems().size());
+        assertNull(page.getNextCursor());
+        assertEquals(5, manager.getLatestCommentItemPageByAttribute(context, "assignees", "john", null, 10L)
+                .getCommentItems().size());
+    }
+
+    @Test
+    public void testCommentItemsAreCopied() throws Exception {
+        CommentItem commentItem = createCommentItem(SUBJECT_ID, "Hello");
+        final String commentId = manager.createCommentItem(context, commentItem);
+
+        manager.getCommentItemById(context, commentId).setContent("Changed without update");
+        assertEquals("Hello", manager.getCommentItemById(context, commentId).getContent());
+    }
+
+    private static List<String> getContents(final List<CommentItem> commentItems) {
+        List<String> contents = new ArrayList<>();
+
+        for (CommentItem commentItem : commentItems) {
+            contents.add(commentItem.getContent());
+        }
+
+        return contents;
+    }
+
+    protected static CommentItem createCommentItem(final String subjectId, final String content) {
+        CommentItem commentItem = new CommentItem();
+        commentItem.setSubjectId(subjectId);
+        commentItem.setContent(content);
+        return commentItem;
+    }
+}
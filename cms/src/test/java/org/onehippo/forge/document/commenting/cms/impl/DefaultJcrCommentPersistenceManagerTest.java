@@ -0,0 +1,160 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Calendar;
+import java.util.Collections;
+
+import javax.jcr.Session;
+import javax.jcr.SimpleCredentials;
+
+import org.apache.jackrabbit.commons.cnd.CndImporter;
+import org.apache.jackrabbit.core.RepositoryImpl;
+import org.apache.jackrabbit.core.config.RepositoryConfig;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.onehippo.forge.document.commenting.cms.api.CommentItem;
+import org.onehippo.forge.document.commenting.cms.api.CommentItemDelta;
+import org.onehippo.forge.document.commenting.cms.api.CommentPersistenceManager;
+import org.onehippo.forge.document.commenting.cms.api.CommentingContext;
+
+/**
+ * Runs the contract against an in-memory Jackrabbit repository with the comment data node types registered
+ * from the CND of the repository module.
+ */
+public class DefaultJcrCommentPersistenceManagerTest extends CommentPersistenceManagerContractTest {
+
+    private static final String CND_PATH = "../repository/src/main/resources/hcm-config/doccommenting.cnd";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private RepositoryImpl repository;
+    private Session session;
+    private JcrCommentStorageLayout layout = JcrCommentStorageLayout.RANDOM;
+
+    @Override
+    protected CommentPersistenceManager createCommentPersistenceManager() throws Exception {
+        repository = createRepository(folder.newFolder());
+        session = repository.login(new SimpleCredentials("editor", new char[0]));
+        return new DefaultJcrCommentPersistenceManager() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected Session getSession() {
+                return session;
+            }
+
+            @Override
+            protected JcrCommentStorageLayout getStorageLayout(final CommentingContext commentingContext) {
+                return layout;
+            }
+        };
+    }
+
+    @Override
+    protected boolean supportsCrossSubjectQueries() {
+        return true;
+    }
+
+    /**
+     * Creates an in-memory repository in {@code dir}, with the comment data node types registered.
+     */
+    static RepositoryImpl createRepository(final File dir) throws Exception {
+        final RepositoryImpl repository;
+
+        try (InputStream input = DefaultJcrCommentPersistenceManagerTest.class
+                .getResourceAsStream("jackrabbit-repository.xml")) {
+            repository = RepositoryImpl.create(RepositoryConfig.create(input, dir.getAbsolutePath()));
+        }
+
+        final Session session = repository.login(new SimpleCredentials("admin", new char[0]));
+
+        try (InputStreamReader reader = new InputStreamReader(Files.newInputStream(Paths.get(CND_PATH)),
+                StandardCharsets.UTF_8)) {
+            CndImporter.registerNodeTypes(reader, session);
+        } finally {
+            session.logout();
+        }
+
+        return repository;
+    }
+
+    @Test
+    public void testRandomLayoutAfterSubjectContainerCreated() throws Exception {
+        layout = JcrCommentStorageLayout.SUBJECT;
+        manager.createCommentItem(context, createCommentItem(SUBJECT_ID, "In the subject container"));
+        assertNotNull(manager.getCommentItemsStamp(context, SUBJECT_ID));
+
+        layout = JcrCommentStorageLayout.RANDOM;
+        final Calendar since = Calendar.getInstance();
+        since.add(Calendar.MINUTE, -1);
+        final String commentId = manager.createCommentItem(context,
+                createCommentItem(SUBJECT_ID, "In a random container"));
+
+        assertNull(manager.getCommentItemsStamp(context, SUBJECT_ID));
+        assertEquals(2L, manager.countCommentItemsBySubjectId(context, SUBJECT_ID));
+        assertEquals(Long.valueOf(2L),
+                manager.countCommentItemsBySubjectIds(context, Collections.singleton(SUBJECT_ID)).get(SUBJECT_ID));
+        assertEquals(2, manager.getLatestCommentItemsBySubjectId(context, SUBJECT_ID, 0L, 10L).size());
+
+        final CommentItemDelta delta = manager.getCommentItemsModifiedSince(context, SUBJECT_ID, since);
+        assertEquals(2, delta.getModifiedCommentItems().size());
+
+        final CommentItem stored = manager.getCommentItemById(context, commentId);
+        manager.deleteCommentItem(context, stored);
+        assertEquals(1L, manager.countCommentItemsBySubjectId(context, SUBJECT_ID));
+        assertEquals(Collections.singletonList(commentId),
+                manager.getCommentItemsModifiedSince(context, SUBJECT_ID, since).getDeletedCommentIds());
+    }
+
+    @Test
+    public void testSubjectLayoutBeforeRandomLayoutCommentsMigrated() throws Exception {
+        manager.createCommentItem(context, createCommentItem(SUBJECT_ID, "In a random container"));
+
+        layout = JcrCommentStorageLayout.SUBJECT;
+        manager.createCommentItem(context, createCommentItem(SUBJECT_ID, "In the subject container"));
+
+        assertNull(manager.getCommentItemsStamp(context, SUBJECT_ID));
+        assertEquals(2L, manager.countCommentItemsBySubjectId(context, SUBJECT_ID));
+        assertEquals(2, manager.getLatestCommentItemsBySubjectId(context, SUBJECT_ID, 0L, 10L).size());
+        assertEquals(2, manager.getLatestCommentItemPageBySubjectId(context, SUBJECT_ID, null, 10L)
+                .getCommentItems().size());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (session != null) {
+            session.logout();
+        }
+
+        if (repository != null) {
+            repository.shutdown();
+        }
+    }
+}
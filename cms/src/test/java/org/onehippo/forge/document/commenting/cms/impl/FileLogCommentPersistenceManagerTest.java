@@ -0,0 +1,52 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.impl;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+import org.onehippo.forge.document.commenting.cms.api.CommentPersistenceManager;
+
+public class FileLogCommentPersistenceManagerTest extends CommentPersistenceManagerContractTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CommentLogStore store;
+
+    @Override
+    protected CommentPersistenceManager createCommentPersistenceManager() throws Exception {
+        store = new CommentLogStore(folder.newFolder(), CommentLogStore.DEFAULT_MAX_SEGMENT_SIZE, false);
+        return new FileLogCommentPersistenceManager(store) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected String getUserID() {
+                return "editor";
+            }
+        };
+    }
+
+    @Override
+    protected boolean supportsCrossSubjectQueries() {
+        return false;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        store.close();
+    }
+}
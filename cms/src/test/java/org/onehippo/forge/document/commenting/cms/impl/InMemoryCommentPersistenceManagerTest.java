@@ -0,0 +1,91 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.onehippo.forge.document.commenting.cms.api.CommentItem;
+import org.onehippo.forge.document.commenting.cms.api.CommentOperationResult;
+import org.onehippo.forge.document.commenting.cms.api.CommentPersistenceManager;
+import org.onehippo.forge.document.commenting.cms.api.CommentSearchPage;
+
+public class InMemoryCommentPersistenceManagerTest extends CommentPersistenceManagerContractTest {
+
+    @Override
+    protected CommentPersistenceManager createCommentPersistenceManager() throws Exception {
+        return createManager(0);
+    }
+
+    @Override
+    protected boolean supportsCrossSubjectQueries() {
+        return true;
+    }
+
+    @Test
+    public void testBoundedCapacity() throws Exception {
+        manager = createManager(2);
+
+        List<CommentOperationResult> results = manager.createCommentItems(context,
+                Arrays.asList(createCommentItem(SUBJECT_ID, "One"), createCommentItem(SUBJECT_ID, "Two"),
+                        createCommentItem(SUBJECT_ID, "Three")));
+        assertTrue(results.get(0).isSucceeded());
+        assertTrue(results.get(1).isSucceeded());
+        assertFalse(results.get(2).isSucceeded());
+
+        manager.deleteCommentItem(context, manager.getCommentItemById(context, results.get(0).getCommentId()));
+        manager.createCommentItem(context, createCommentItem(SUBJECT_ID, "Three"));
+        assertEquals(2L, manager.countCommentItemsBySubjectId(context, SUBJECT_ID));
+    }
+
+    @Test
+    public void testSearch() throws Exception {
+        CommentItem tagged = createCommentItem(SUBJECT_ID, "<p>Please check the disclaimer.</p>");
+        tagged.setAttribute("label", "legal");
+        manager.createCommentItems(context, Arrays.asList(tagged,
+                createCommentItem("subject-2", "The legal disclaimer is outdated. Legal should review it."),
+                createCommentItem("subject-3", "Unrelated comment")));
+
+        CommentSearchPage page = manager.searchCommentItems(context, "Legal disclaimer", null, 1L);
+        assertEquals(1, page.getHits().size());
+        assertEquals("subject-2", page.getHits().get(0).getCommentItem().getSubjectId());
+        assertTrue(page.getHits().get(0).getExcerpt().contains("<strong>legal</strong> <strong>disclaimer</strong>"));
+        assertTrue(page.hasNext());
+
+        page = manager.searchCommentItems(context, "Legal disclaimer", page.getNextCursor(), 1L);
+        assertEquals(1, page.getHits().size());
+        assertEquals(SUBJECT_ID, page.getHits().get(0).getCommentItem().getSubjectId());
+        assertFalse(page.hasNext());
+
+        assertTrue(manager.searchCommentItems(context, "missing", null, 10L).getHits().isEmpty());
+    }
+
+    private static InMemoryCommentPersistenceManager createManager(final int capacity) {
+        return new InMemoryCommentPersistenceManager(capacity) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected String getUserID() {
+                return "editor";
+            }
+        };
+    }
+}
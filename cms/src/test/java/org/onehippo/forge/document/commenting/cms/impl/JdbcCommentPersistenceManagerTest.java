@@ -0,0 +1,76 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.impl;
+
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.After;
+import org.onehippo.forge.document.commenting.cms.api.CommentPersistenceManager;
+import org.onehippo.forge.document.commenting.cms.api.CommentingContext;
+
+public class JdbcCommentPersistenceManagerTest extends CommentPersistenceManagerContractTest {
+
+    private JdbcConnectionPool dataSource;
+
+    @Override
+    protected CommentPersistenceManager createCommentPersistenceManager() throws Exception {
+        dataSource = JdbcConnectionPool.create("jdbc:h2:mem:" + getClass().getSimpleName() + System.nanoTime()
+                + ";DB_CLOSE_DELAY=-1" + getUrlOptions(), "sa", "");
+        final JdbcCommentSchemaDialect dialect = getSchemaDialect();
+        return new JdbcCommentPersistenceManager(dataSource) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected String getUserID() {
+                return "editor";
+            }
+
+            @Override
+            protected JdbcCommentSchemaDialect getSchemaDialect(final CommentingContext commentingContext,
+                    final DatabaseMetaData metaData) throws SQLException {
+                return (dialect != null) ? dialect : super.getSchemaDialect(commentingContext, metaData);
+            }
+        };
+    }
+
+    @Override
+    protected boolean supportsCrossSubjectQueries() {
+        return true;
+    }
+
+    /**
+     * Returns the extra options of the H2 database URL, e.g, the compatibility mode.
+     * @return the extra options of the H2 database URL
+     */
+    protected String getUrlOptions() {
+        return "";
+    }
+
+    /**
+     * Returns the dialect of the tables to create, or null to determine it by the database product name.
+     * @return the dialect of the tables to create, or null to determine it by the database product name
+     */
+    protected JdbcCommentSchemaDialect getSchemaDialect() {
+        return null;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        dataSource.dispose();
+    }
+}
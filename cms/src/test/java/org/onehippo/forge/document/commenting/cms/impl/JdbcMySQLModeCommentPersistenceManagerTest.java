@@ -0,0 +1,32 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.cms.impl;
+
+/**
+ * Runs the contract with the tables created in the MySQL dialect, in the MySQL compatibility mode of H2.
+ */
+public class JdbcMySQLModeCommentPersistenceManagerTest extends JdbcCommentPersistenceManagerTest {
+
+    @Override
+    protected String getUrlOptions() {
+        return ";MODE=MySQL";
+    }
+
+    @Override
+    protected JdbcCommentSchemaDialect getSchemaDialect() {
+        return JdbcCommentSchemaDialect.MYSQL;
+    }
+}
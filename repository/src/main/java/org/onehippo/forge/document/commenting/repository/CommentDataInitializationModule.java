@@ -0,0 +1,106 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.repository;
+
+import javax.jcr.InvalidItemStateException;
+import javax.jcr.ItemExistsException;
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.onehippo.repository.modules.DaemonModule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Daemon module initializing the comment data container nodes on startup: the {@code /doccommentdata} node
+ * and its 26 x 26 container nodes from {@code a/a} to {@code z/z}, in which the comment data is stored.
+ * <P>
+ * Only the missing container nodes are added, so it is safe to run on every startup. If another cluster node adds
+ * the same container nodes at the same time, the session is refreshed and the initialization is retried.
+ * </P>
+ */
+public class CommentDataInitializationModule implements DaemonModule {
+
+    private static Logger log = LoggerFactory.getLogger(CommentDataInitializationModule.class);
+
+    private static final String COMMENTS_LOCATION = "doccommentdata";
+
+    private static final String NT_COMMENTS_CONTAINER = "doccommenting:commentdatacontainer";
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    @Override
+    public void initialize(final Session session) throws RepositoryException {
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                final int count = addMissingContainerNodes(session);
+
+                if (count > 0) {
+                    session.save();
+                    log.info("Added {} comment data container nodes.", count);
+                }
+
+                return;
+            } catch (InvalidItemStateException | ItemExistsException e) {
+                log.info("Comment data container nodes added concurrently. Retrying: {}", e.toString());
+                session.refresh(false);
+            }
+        }
+
+        log.warn("Failed to initialize the comment data container nodes after {} attempts.", MAX_ATTEMPTS);
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    private int addMissingContainerNodes(final Session session) throws RepositoryException {
+        final Node rootNode = session.getRootNode();
+        int count = 0;
+        Node docCommentsDataNode;
+
+        if (rootNode.hasNode(COMMENTS_LOCATION)) {
+            docCommentsDataNode = rootNode.getNode(COMMENTS_LOCATION);
+        } else {
+            docCommentsDataNode = rootNode.addNode(COMMENTS_LOCATION, NT_COMMENTS_CONTAINER);
+            count++;
+        }
+
+        for (char c1 = 'a'; c1 <= 'z'; c1++) {
+            final String name1 = Character.toString(c1);
+            Node letterNode;
+
+            if (docCommentsDataNode.hasNode(name1)) {
+                letterNode = docCommentsDataNode.getNode(name1);
+            } else {
+                letterNode = docCommentsDataNode.addNode(name1, NT_COMMENTS_CONTAINER);
+                count++;
+            }
+
+            for (char c2 = 'a'; c2 <= 'z'; c2++) {
+                final String name2 = Character.toString(c2);
+
+                if (!letterNode.hasNode(name2)) {
+                    letterNode.addNode(name2, NT_COMMENTS_CONTAINER);
+                    count++;
+                }
+            }
+        }
+
+        return count;
+    }
+}
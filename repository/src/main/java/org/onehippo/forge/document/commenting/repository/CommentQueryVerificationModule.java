@@ -0,0 +1,223 @@
+/**
+ * Copyright 2026 Bloomreach (http://www.bloomreach.com)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *         <a href="http://www.apache.org/licenses/LICENSE-2.0">http://www.apache.org/licenses/LICENSE-2.0</a>
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onehippo.forge.document.commenting.repository;
+
+import java.text.MessageFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import javax.jcr.ValueFactory;
+import javax.jcr.query.InvalidQueryException;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryManager;
+
+import org.apache.commons.lang3.StringUtils;
+import org.onehippo.repository.modules.AbstractReconfigurableDaemonModule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Daemon module verifying the comment data queries on startup: the default query and the queries configured
+ * by {@code jcr.comment.persistence.query.sql2}, {@code jcr.comment.persistence.query},
+ * {@code jcr.comment.persistence.projection.query.sql2} and {@code jcr.comment.persistence.projection.query}
+ * parameters in the {@code cluster.options} of the commenting plugins.
+ * <P>
+ * Each query is parsed and executed once for the subject identifier of an existing comment data node, bound to
+ * the {@code $subjectId} bind variable of a JCR-SQL2 query or formatted into an XPath query template, and a warning
+ * is logged if the query cannot be parsed, does not constrain {@code doccommenting:subjectid}, does not find
+ * the comment data of the subject, e.g, because the indexing configuration of the workspace excludes the property,
+ * or takes longer than the configured {@code slow.query.threshold} in milliseconds to read all the comment data
+ * of the subject.
+ * </P>
+ * <P>
+ * If there is no comment data yet, the queries are only parsed.
+ * </P>
+ */
+public class CommentQueryVerificationModule extends AbstractReconfigurableDaemonModule {
+
+    private static Logger log = LoggerFactory.getLogger(CommentQueryVerificationModule.class);
+
+    private static final String DEFAULT_COMMENTS_QUERY =
+            "SELECT * FROM [doccommenting:commentdata] AS comment WHERE comment.[doccommenting:subjectid] = $subjectId ORDER BY comment.[doccommenting:created] DESC";
+
+    private static final String CONFIGURED_QUERIES_QUERY =
+            "//element(cluster.options)[@jcr.comment.persistence.query.sql2 or @jcr.comment.persistence.query"
+            + " or @jcr.comment.persistence.projection.query.sql2 or @jcr.comment.persistence.projection.query]";
+
+    private static final String[] SQL2_QUERY_PARAM_NAMES =
+            { "jcr.comment.persistence.query.sql2", "jcr.comment.persistence.projection.query.sql2" };
+
+    private static final String[] XPATH_QUERY_PARAM_NAMES =
+            { "jcr.comment.persistence.query", "jcr.comment.persistence.projection.query" };
+
+    private static final String SAMPLE_COMMENT_QUERY = "//element(*,doccommenting:commentdata)";
+
+    private static final String SUBJECT_ID_BIND_VARIABLE = "subjectId";
+
+    private static final String SUBJECT_ID_PROPERTY_NAME = "doccommenting:subjectid";
+
+    private static final long DEFAULT_SLOW_QUERY_THRESHOLD = 500L;
+
+    private long slowQueryThreshold = DEFAULT_SLOW_QUERY_THRESHOLD;
+
+    @Override
+    protected void doConfigure(final Node moduleConfig) throws RepositoryException {
+        slowQueryThreshold = DEFAULT_SLOW_QUERY_THRESHOLD;
+
+        if (moduleConfig.hasProperty("slow.query.threshold")) {
+            slowQueryThreshold = moduleConfig.getProperty("slow.query.threshold").getLong();
+        }
+    }
+
+    @Override
+    protected void doInitialize(final Session session) throws RepositoryException {
+        final QueryManager queryManager = session.getWorkspace().getQueryManager();
+        final String sampleSubjectId = findSampleSubjectId(queryManager);
+
+        if (sampleSubjectId == null) {
+            log.info("No comment data found, so the comment data queries are only parsed.");
+        }
+
+        for (Map.Entry<String, String> entry : findQueryTemplates(queryManager).entrySet()) {
+            verifyQueryTemplate(queryManager, session.getValueFactory(), entry.getKey(), entry.getValue(),
+                    sampleSubjectId);
+        }
+    }
+
+    @Override
+    protected void doShutdown() {
+    }
+
+    /**
+     * Returns the map of query template to query language of the default query and the configured queries.
+     */
+    private Map<String, String> findQueryTemplates(final QueryManager queryManager) throws RepositoryException {
+        final Map<String, String> queryTemplates = new LinkedHashMap<>();
+        queryTemplates.put(DEFAULT_COMMENTS_QUERY, Query.JCR_SQL2);
+
+        try {
+            final Query query = queryManager.createQuery(CONFIGURED_QUERIES_QUERY, Query.XPATH);
+
+            for (NodeIterator nodeIt = query.execute().getNodes(); nodeIt.hasNext(); ) {
+                final Node clusterOptionsNode = nodeIt.nextNode();
+
+                addQueryTemplates(queryTemplates, clusterOptionsNode, SQL2_QUERY_PARAM_NAMES, Query.JCR_SQL2);
+                addQueryTemplates(queryTemplates, clusterOptionsNode, XPATH_QUERY_PARAM_NAMES, Query.XPATH);
+            }
+        } catch (RepositoryException e) {
+            log.warn("Failed to find the configured comment data queries.", e);
+        }
+
+        return queryTemplates;
+    }
+
+    /**
+     * Returns the subject identifier of an existing comment data node, or null if there is no comment data.
+     */
+    private String findSampleSubjectId(final QueryManager queryManager) {
+        try {
+            final Query query = queryManager.createQuery(SAMPLE_COMMENT_QUERY, Query.XPATH);
+            query.setLimit(1L);
+            final NodeIterator nodeIt = query.execute().getNodes();
+
+            if (nodeIt.hasNext()) {
+                final Node commentNode = nodeIt.nextNode();
+
+                if (commentNode.hasProperty(SUBJECT_ID_PROPERTY_NAME)) {
+                    return commentNode.getProperty(SUBJECT_ID_PROPERTY_NAME).getString();
+                }
+            }
+        } catch (RepositoryException e) {
+            log.warn("Failed to find comment data to verify the comment data queries with.", e);
+        }
+
+        return null;
+    }
+
+    private static void addQueryTemplates(final Map<String, String> queryTemplates, final Node clusterOptionsNode,
+            final String[] paramNames, final String language) throws RepositoryException {
+        for (String paramName : paramNames) {
+            if (clusterOptionsNode.hasProperty(paramName)) {
+                final String queryTemplate = clusterOptionsNode.getProperty(paramName).getString();
+
+                if (StringUtils.isNotBlank(queryTemplate)) {
+                    queryTemplates.put(queryTemplate, language);
+                }
+            }
+        }
+    }
+
+    private void verifyQueryTemplate(final QueryManager queryManager, final ValueFactory valueFactory,
+            final String queryTemplate, final String language, final String sampleSubjectId) {
+        if (!StringUtils.contains(queryTemplate, SUBJECT_ID_PROPERTY_NAME)) {
+            log.warn("The comment data query does not constrain {}, so it reads all the comment data: {}",
+                    SUBJECT_ID_PROPERTY_NAME, queryTemplate);
+        }
+
+        final String subjectId = StringUtils.defaultString(sampleSubjectId);
+        String statement = queryTemplate;
+
+        if (Query.XPATH.equals(language)) {
+            try {
+                statement = MessageFormat.format(queryTemplate, subjectId);
+            } catch (IllegalArgumentException e) {
+                log.warn("Invalid comment data query template: {}. {}", queryTemplate, e.toString());
+                return;
+            }
+        }
+
+        try {
+            final long startTime = System.currentTimeMillis();
+            final Query query = queryManager.createQuery(statement, language);
+
+            if (Query.JCR_SQL2.equals(language)) {
+                query.bindValue(SUBJECT_ID_BIND_VARIABLE, valueFactory.createValue(subjectId));
+            }
+
+            if (sampleSubjectId == null) {
+                return;
+            }
+
+            long count = 0L;
+
+            for (NodeIterator nodeIt = query.execute().getNodes(); nodeIt.hasNext(); nodeIt.nextNode()) {
+                ++count;
+            }
+
+            final long duration = System.currentTimeMillis() - startTime;
+
+            if (count == 0L) {
+                log.warn("The comment data query found no comment data of subject {}, which has comment data."
+                        + " Check whether the indexing configuration of the workspace indexes {}: {}",
+                        sampleSubjectId, SUBJECT_ID_PROPERTY_NAME, statement);
+            } else if (duration > slowQueryThreshold) {
+                log.warn("The comment data query took {}ms, longer than {}ms, to read {} comment data nodes: {}",
+                        duration, slowQueryThreshold, count, statement);
+            } else {
+                log.info("The comment data query took {}ms to read {} comment data nodes: {}", duration, count,
+                        statement);
+            }
+        } catch (InvalidQueryException e) {
+            log.warn("Invalid comment data query: {}. {}", statement, e.toString());
+        } catch (RepositoryException e) {
+            log.warn("Failed to verify comment data query: {}. {}", statement, e.toString());
+        }
+    }
+}